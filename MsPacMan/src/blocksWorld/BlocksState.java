@@ -32,7 +32,7 @@ import java.util.Map;
  * @author Samuel J. Sarjant
  */
 public class BlocksState {
-	private Integer[] intState_;
+	private int[] intState_;
 	public int length;
 
 	/**
@@ -41,17 +41,29 @@ public class BlocksState {
 	 * @param state
 	 *            The integer representation of the state.
 	 */
-	public BlocksState(Integer[] state) {
+	public BlocksState(int[] state) {
 		intState_ = state;
 		length = state.length;
 	}
 
+	/**
+	 * Creates a new block state from a boxed integer representation.
+	 * 
+	 * @param state
+	 *            The integer representation of the state.
+	 */
+	public BlocksState(Integer[] state) {
+		this(new int[state.length]);
+		for (int i = 0; i < state.length; i++)
+			intState_[i] = state[i];
+	}
+
 	/**
 	 * Gets the integer representation of the state.
 	 * 
 	 * @return The state in integer form.
 	 */
-	public Integer[] getState() {
+	public int[] getState() {
 		return intState_;
 	}
 
@@ -76,11 +88,7 @@ public class BlocksState {
 
 	@Override
 	public BlocksState clone() {
-		Integer[] cloneState = new Integer[intState_.length];
-		for (int i = 0; i < intState_.length; i++) {
-			cloneState[i] = intState_[i];
-		}
-		return new BlocksState(cloneState);
+		return new BlocksState(intState_.clone());
 	}
 
 	/**
@@ -137,7 +145,7 @@ public class BlocksState {
 	 *            a row has any blocks in it.
 	 * @return The new value of column (same or + 1).
 	 */
-	protected int recursiveBuildString(int currBlock, Integer[] blocks,
+	protected int recursiveBuildString(int currBlock, int[] blocks,
 			int column, Map<Integer, Point> posMap, String[][] blocksChars) {
 		if (!posMap.containsKey(currBlock)) {
 			if (blocks[currBlock] == 0) {
@@ -64,6 +64,9 @@ public class BlocksWorldEnvironment extends RRLEnvironment {
 	/** The maximum number of steps the agent is allocated. */
 	protected int maxSteps_;
 
+	/** The native transition model, or null if Jess rules apply moves. */
+	protected BlocksWorldModel model_;
+
 	/** The number of blocks. Default 10. */
 	protected int maxBlocks_ = 10;
 
@@ -83,11 +86,26 @@ public class BlocksWorldEnvironment extends RRLEnvironment {
 	private float[] ratio;
 
 	/**
-	 * Calculates the optimal number of steps to solve the problem.
+	 * Calculates the optimal number of steps to solve the problem, directly
+	 * from the state if the goal is supported by the {@link BlocksWorldSolver}.
 	 * 
 	 * @return The minimal number of steps to take for solving.
 	 */
 	private int optimalSteps() {
+		int steps = BlocksWorldSolver.optimalSteps(StateSpec.getInstance()
+				.getGoalName(), state_.getState(), getGoalBlocks());
+		if (steps != BlocksWorldSolver.UNSOLVED)
+			return steps;
+		return policyOptimalSteps();
+	}
+
+	/**
+	 * Calculates the optimal number of steps to solve the problem by running
+	 * the optimal policy through the environment.
+	 * 
+	 * @return The minimal number of steps to take for solving.
+	 */
+	public int policyOptimalSteps() {
 		RelationalPolicy optimalPolicy = optimalPolicy_;
 		steps_ = 0;
 
@@ -119,12 +137,18 @@ public class BlocksWorldEnvironment extends RRLEnvironment {
 	protected void assertStateFacts(Rete rete, List<String> goalArgs)
 			throws Exception {
 		if (steps_ != 0) {
-			// Apply the action
-			rete.run();
+			// Apply the action (native moves have already been written)
+			if (model_ == null)
+				rete.run();
 			return;
 		}
 
-		Integer[] intState = state_.getState();
+		if (model_ != null) {
+			model_.reset(state_.getState(), rete);
+			return;
+		}
+
+		int[] intState = state_.getState();
 
 		// Scanning through, making predicates (On)
 		for (int i = 0; i < state_.length; i++) {
@@ -181,12 +205,11 @@ public class BlocksWorldEnvironment extends RRLEnvironment {
 		maxSteps_ = (int) (numBlocks / actionSuccess_);
 		Pair<Integer, Integer>[] rooted = new Pair[numBlocks];
 		Pair<Integer, Integer>[] floating = new Pair[numBlocks];
-		Integer[] worldState = new Integer[numBlocks];
+		int[] worldState = new int[numBlocks];
 
 		for (int x = 0; x < numBlocks; x++) {
 			rooted[x] = new Pair<Integer, Integer>(-1, -1);
 			floating[x] = new Pair<Integer, Integer>(x, x);
-			worldState[x] = 0;
 		} /* Initially, each block is a floating tower */
 		int nrt = 0;
 		int nft = numBlocks;
@@ -286,8 +309,8 @@ public class BlocksWorldEnvironment extends RRLEnvironment {
 	@Override
 	protected void stepState(Object action) {
 		// We have an action, apply it
-		BlocksState newState = state_;
 		boolean actionFailed = false;
+		boolean stateChanged = false;
 		RelationalPredicate actionFact = null;
 		if (RRLExperiment.random_.nextDouble() >= actionSuccess_) {
 			actionFailed = true;
@@ -302,30 +325,38 @@ public class BlocksWorldEnvironment extends RRLEnvironment {
 
 		if (action != null) {
 			actionFact = (RelationalPredicate) action;
-			try {
-				StateSpec.getInstance().getRete()
-						.assertString(action.toString());
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-
-			newState = state_.clone();
+			if (model_ != null) {
+				// Apply the move natively, writing only the changed facts
+				int[] indices = actionIndices(actionFact);
+				stateChanged = model_.move(indices[0], indices[1]);
+				if (stateChanged)
+					state_.getState()[indices[0]] = indices[1] + 1;
+			} else {
+				try {
+					StateSpec.getInstance().getRete()
+							.assertString(action.toString());
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
 
-			resolveAction(newState, actionFact);
+				BlocksState newState = state_.clone();
+				resolveAction(newState, actionFact);
+				// If our new state is different, update observations
+				stateChanged = !state_.equals(newState);
+				if (stateChanged)
+					state_ = newState;
+			}
 		}
 
 		// Notify the user what the action is if outputting.
 		if ((RRLExperiment.debugMode_ || viewingMode_) && !optimal_) {
 			if (actionFact != null)
-				System.out.println("\t" + actionFact + " ->\n" + newState);
+				System.out.println("\t" + actionFact + " ->\n" + state_);
 			else
 				System.out.println("\t\t\tNo action chosen.");
 		}
 
-		// If our new state is different, update observations
-		if (!state_.equals(newState)) {
-			state_ = newState;
-		} else if (!actionFailed) {
+		if (!stateChanged && !actionFailed) {
 			// If the agent caused the state to remain the same, exit the
 			// episode with max negative reward.
 			steps_ = maxSteps_;
@@ -336,26 +367,36 @@ public class BlocksWorldEnvironment extends RRLEnvironment {
 	}
 
 	/**
-	 * Resolve the action on the integer representation.
+	 * Converts the arguments of a move action into block indices.
 	 * 
-	 * @param newState
-	 *            The state of the world to alter.
 	 * @param actionFact
-	 *            The action being resolved.
+	 *            The move action.
+	 * @return The moved block and destination indices, where the floor is -1.
 	 */
-	protected void resolveAction(BlocksState newState,
-			RelationalPredicate actionFact) {
-		// Finding the block objects
+	protected int[] actionIndices(RelationalPredicate actionFact) {
 		int[] indices = new int[2];
-
-		// Convert the blocks to indices
 		for (int i = 0; i < indices.length; i++) {
 			if (actionFact.getArguments()[i].equals("floor"))
-				indices[i] = -1;
+				indices[i] = BlocksWorldModel.FLOOR;
 			else
 				indices[i] = Integer.parseInt(actionFact.getArguments()[i]
 						.substring(1));
 		}
+		return indices;
+	}
+
+	/**
+	 * Resolve the action on the integer representation.
+	 * 
+	 * @param newState
+	 *            The state of the world to alter.
+	 * @param actionFact
+	 *            The action being resolved.
+	 */
+	protected void resolveAction(BlocksState newState,
+			RelationalPredicate actionFact) {
+		// Convert the blocks to indices
+		int[] indices = actionIndices(actionFact);
 
 		// Perform the action
 		newState.getState()[indices[0]] = indices[1] + 1;
@@ -415,6 +456,10 @@ public class BlocksWorldEnvironment extends RRLEnvironment {
 			}
 		}
 
+		model_ = null;
+		if (((BlocksWorldStateSpec) StateSpec.getInstance()).isNativeDynamics())
+			model_ = new BlocksWorldModel();
+
 		precalculateBlockRatios(maxBlocks_);
 		optimalPolicy_ = createOptimalPolicy(StateSpec.getInstance()
 				.getGoalName());
@@ -488,6 +533,20 @@ public class BlocksWorldEnvironment extends RRLEnvironment {
 			return ratio[z];
 	}
 
+	/**
+	 * Gets the goal arguments as block indices.
+	 * 
+	 * @return The index of each goal argument, in order.
+	 */
+	public int[] getGoalBlocks() {
+		if (goalArgs_ == null)
+			return new int[0];
+		int[] goalBlocks = new int[goalArgs_.size()];
+		for (int i = 0; i < goalBlocks.length; i++)
+			goalBlocks[i] = Integer.parseInt(goalArgs_.get(i).substring(1));
+		return goalBlocks;
+	}
+
 	/**
 	 * Testing method. Gets the current state of the blocks world.
 	 * 
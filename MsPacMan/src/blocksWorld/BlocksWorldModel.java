@@ -0,0 +1,374 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/blocksWorld/BlocksWorldModel.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package blocksWorld;
+
+import jess.Fact;
+import jess.JessException;
+import jess.Rete;
+
+/**
+ * A native transition model for the blocks world. Moves are applied to a
+ * primitive state and the derived clear, above, height and highest relations
+ * are maintained in Java, so only the facts that actually change are written
+ * to the Rete, rather than Jess rules rewriting the state every step.
+ * 
+ * @author Sam Sarjant
+ */
+public class BlocksWorldModel {
+	/** The floor index. */
+	public static final int FLOOR = -1;
+
+	/** The above facts of each block, from the block it is on downwards. */
+	private Fact[][] aboveFacts_;
+
+	/** The clear facts of the blocks (null if not clear). */
+	private Fact[] clearFacts_;
+
+	/** The height of each block, where blocks on the floor have height 1. */
+	private int[] height_;
+
+	/** The number of blocks at each height. */
+	private int[] heightCounts_;
+
+	/** The height facts of the blocks. */
+	private Fact[] heightFacts_;
+
+	/** The highest facts of the blocks (null if not highest). */
+	private Fact[] highestFacts_;
+
+	/** The height of the highest blocks. */
+	private int maxHeight_;
+
+	/** The number of blocks resting on each block. */
+	private int[] numOnTop_;
+
+	/** The on facts of the blocks. */
+	private Fact[] onFacts_;
+
+	/** The Rete the facts are written to (can be null). */
+	private Rete rete_;
+
+	/** What each block is on, where 0 is the floor and i + 1 is block i. */
+	private int[] state_;
+
+	/**
+	 * Asserts a fact into the Rete.
+	 * 
+	 * @param fact
+	 *            The fact to assert.
+	 * @return The asserted fact, or null if there is no Rete.
+	 */
+	private Fact assertFact(String fact) throws JessException {
+		if (rete_ == null)
+			return null;
+		return rete_.assertString(fact);
+	}
+
+	/**
+	 * Recalculates the height and above facts of a block from the block it is
+	 * on, which must already be up to date.
+	 * 
+	 * @param block
+	 *            The block to place.
+	 */
+	private void placeBlock(int block) throws JessException {
+		int under = state_[block] - 1;
+		height_[block] = (under == FLOOR) ? 1 : height_[under] + 1;
+		heightCounts_[height_[block]]++;
+		if (height_[block] > maxHeight_)
+			maxHeight_ = height_[block];
+		if (rete_ == null)
+			return;
+
+		onFacts_[block] = assertFact("(on " + name(block) + " " + name(under)
+				+ ")");
+		heightFacts_[block] = assertFact("(height " + name(block) + " "
+				+ height_[block] + ")");
+		// Above everything it is on, down to the floor
+		aboveFacts_[block] = new Fact[height_[block]];
+		int below = under;
+		for (int i = 0; i < aboveFacts_[block].length; i++) {
+			aboveFacts_[block][i] = assertFact("(above " + name(block) + " "
+					+ name(below) + ")");
+			if (below != FLOOR)
+				below = state_[below] - 1;
+		}
+	}
+
+	/**
+	 * Removes a block's height and above facts before it is moved.
+	 * 
+	 * @param block
+	 *            The block being lifted.
+	 */
+	private void liftBlock(int block) throws JessException {
+		heightCounts_[height_[block]]--;
+		if (rete_ == null)
+			return;
+
+		retractFact(onFacts_[block]);
+		retractFact(heightFacts_[block]);
+		for (Fact above : aboveFacts_[block])
+			retractFact(above);
+	}
+
+	/**
+	 * Retracts a fact from the Rete, if it is present.
+	 * 
+	 * @param fact
+	 *            The fact to retract.
+	 */
+	private void retractFact(Fact fact) throws JessException {
+		if (rete_ != null && fact != null)
+			rete_.retract(fact);
+	}
+
+	/**
+	 * Sets the clear fact of a block.
+	 * 
+	 * @param block
+	 *            The block (ignored if the floor, which is always clear).
+	 */
+	private void updateClear(int block) throws JessException {
+		if (block == FLOOR)
+			return;
+		boolean clear = numOnTop_[block] == 0;
+		if (rete_ == null)
+			clearFacts_[block] = null;
+		else if (clear && clearFacts_[block] == null)
+			clearFacts_[block] = assertFact("(clear " + name(block) + ")");
+		else if (!clear && clearFacts_[block] != null) {
+			retractFact(clearFacts_[block]);
+			clearFacts_[block] = null;
+		}
+	}
+
+	/**
+	 * Sets the highest facts to match the current maximum height.
+	 */
+	private void updateHighest() throws JessException {
+		while (maxHeight_ > 0 && heightCounts_[maxHeight_] == 0)
+			maxHeight_--;
+		if (rete_ == null)
+			return;
+
+		for (int i = 0; i < state_.length; i++) {
+			boolean highest = height_[i] == maxHeight_;
+			if (highest && highestFacts_[i] == null)
+				highestFacts_[i] = assertFact("(highest " + name(i) + ")");
+			else if (!highest && highestFacts_[i] != null) {
+				retractFact(highestFacts_[i]);
+				highestFacts_[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * Gets the height of a block.
+	 * 
+	 * @param block
+	 *            The block index.
+	 * @return The number of blocks in the tower up to and including the block.
+	 */
+	public int getHeight(int block) {
+		return height_[block];
+	}
+
+	/**
+	 * Gets the current state, in {@link BlocksState} form. This array is live
+	 * and must not be modified.
+	 * 
+	 * @return What each block is on, where 0 is the floor and i + 1 is block
+	 *         i.
+	 */
+	public int[] getState() {
+		return state_;
+	}
+
+	/**
+	 * If a block is somewhere above another block (or the floor).
+	 * 
+	 * @param block
+	 *            The upper block.
+	 * @param below
+	 *            The lower block, or {@link #FLOOR}.
+	 * @return True if block is in a tower above below.
+	 */
+	public boolean isAbove(int block, int below) {
+		if (below == FLOOR)
+			return true;
+		for (int under = state_[block] - 1; under != FLOOR; under = state_[under] - 1)
+			if (under == below)
+				return true;
+		return false;
+	}
+
+	/**
+	 * If nothing is on a block.
+	 * 
+	 * @param block
+	 *            The block index.
+	 * @return True if the block is clear.
+	 */
+	public boolean isClear(int block) {
+		return numOnTop_[block] == 0;
+	}
+
+	/**
+	 * If a block is at the top of the highest tower (or one of them).
+	 * 
+	 * @param block
+	 *            The block index.
+	 * @return True if no block is higher.
+	 */
+	public boolean isHighest(int block) {
+		return height_[block] == maxHeight_;
+	}
+
+	/**
+	 * Moves a block onto another block or the floor. Only the facts that
+	 * change are written to the Rete. A move that would leave the state
+	 * unchanged, or put a block above itself, is ignored.
+	 * 
+	 * @param block
+	 *            The block to move.
+	 * @param dest
+	 *            The block to move onto, or {@link #FLOOR}.
+	 * @return True if the state changed.
+	 */
+	public boolean move(int block, int dest) {
+		if (state_[block] == dest + 1 || block == dest
+				|| (dest != FLOOR && isAbove(dest, block)))
+			return false;
+
+		try {
+			int oldUnder = state_[block] - 1;
+
+			// Any blocks resting on the moved block move with it
+			int[] tower = new int[] { block };
+			if (numOnTop_[block] > 0) {
+				int size = 0;
+				tower = new int[state_.length];
+				tower[size++] = block;
+				for (int h = height_[block] + 1; h <= maxHeight_; h++)
+					for (int i = 0; i < state_.length; i++)
+						if (height_[i] == h && isAbove(i, block))
+							tower[size++] = i;
+				int[] trimmed = new int[size];
+				System.arraycopy(tower, 0, trimmed, 0, size);
+				tower = trimmed;
+			}
+
+			for (int moved : tower)
+				liftBlock(moved);
+			if (oldUnder != FLOOR)
+				numOnTop_[oldUnder]--;
+			state_[block] = dest + 1;
+			if (dest != FLOOR)
+				numOnTop_[dest]++;
+			for (int moved : tower)
+				placeBlock(moved);
+
+			updateClear(oldUnder);
+			updateClear(dest);
+			updateHighest();
+		} catch (JessException e) {
+			e.printStackTrace();
+		}
+		return true;
+	}
+
+	/**
+	 * Resets the model to a state, asserting the block, on, clear, above,
+	 * height and highest facts of every block into the Rete (which should not
+	 * contain any prior state facts).
+	 * 
+	 * @param state
+	 *            What each block is on, where 0 is the floor and i + 1 is
+	 *            block i. The array is copied.
+	 * @param rete
+	 *            The Rete to write facts to, or null to only track the state.
+	 */
+	public void reset(int[] state, Rete rete) {
+		int numBlocks = state.length;
+		rete_ = rete;
+		state_ = state.clone();
+		height_ = new int[numBlocks];
+		heightCounts_ = new int[numBlocks + 1];
+		numOnTop_ = new int[numBlocks];
+		maxHeight_ = 0;
+		onFacts_ = new Fact[numBlocks];
+		heightFacts_ = new Fact[numBlocks];
+		aboveFacts_ = new Fact[numBlocks][];
+		clearFacts_ = new Fact[numBlocks];
+		highestFacts_ = new Fact[numBlocks];
+
+		try {
+			for (int i = 0; i < numBlocks; i++) {
+				assertFact("(block " + name(i) + ")");
+				if (state_[i] != 0)
+					numOnTop_[state_[i] - 1]++;
+			}
+
+			// Place the blocks from the floor up
+			boolean[] placed = new boolean[numBlocks];
+			for (int i = 0; i < numBlocks; i++)
+				placeTower(i, placed);
+
+			for (int i = 0; i < numBlocks; i++)
+				updateClear(i);
+			updateHighest();
+		} catch (JessException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Places a block after everything below it.
+	 * 
+	 * @param block
+	 *            The block to place.
+	 * @param placed
+	 *            The blocks already placed.
+	 */
+	private void placeTower(int block, boolean[] placed) throws JessException {
+		if (placed[block])
+			return;
+		if (state_[block] != 0)
+			placeTower(state_[block] - 1, placed);
+		placeBlock(block);
+		placed[block] = true;
+	}
+
+	/**
+	 * Gets the Jess name of a block.
+	 * 
+	 * @param block
+	 *            The block index, or {@link #FLOOR}.
+	 * @return The name of the block.
+	 */
+	public static String name(int block) {
+		if (block == FLOOR)
+			return "floor";
+		return "b" + block;
+	}
+}
@@ -0,0 +1,300 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/blocksWorld/BlocksWorldScaling.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package blocksWorld;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+import jess.Rete;
+
+import relationalFramework.StateSpec;
+import rrlFramework.Config;
+import rrlFramework.RRLExperiment;
+import util.PhaseTimer;
+import util.PhaseTimer.Phase;
+
+/**
+ * Runs a fixed number of fixed-seed CERRLA episodes in the blocks world at
+ * increasing numbers of blocks, recording the time per step spent in each
+ * phase, the number of Rete facts and the heap in use. The growth of each
+ * phase with the number of blocks is fitted as a power law, and the harness
+ * fails if any exponent exceeds the allowed bound.
+ *
+ * @author Sam Sarjant
+ */
+public class BlocksWorldScaling extends RRLExperiment {
+	/** The default numbers of blocks to run. */
+	private static final int[] DEFAULT_SIZES = { 10, 20, 50, 100, 200, 500,
+			1000 };
+
+	/** The default number of episodes to run per size. */
+	private static final int DEFAULT_EPISODES = 5;
+
+	/** The default bound on the growth exponent of any phase. */
+	private static final double DEFAULT_MAX_EXPONENT = 2;
+
+	/** Phases spending less than this per step are too small to fit. */
+	private static final double MIN_FIT_NANOS = 1000;
+
+	/** The seed every size is run with. */
+	private static final int SEED = 0;
+
+	/** The numbers of blocks to run. */
+	private final int[] sizes_;
+
+	/** The number of episodes to run per size. */
+	private final int episodes_;
+
+	/** The bound on the growth exponent of any phase. */
+	private final double maxExponent_;
+
+	/** The nanoseconds per step of each phase, for each size. */
+	private final double[][] stepNanos_;
+
+	/** The number of steps taken at each size. */
+	private final long[] steps_;
+
+	/** The most Rete facts seen at the end of an episode, for each size. */
+	private final int[] facts_;
+
+	/** The heap in use after the episodes, for each size. */
+	private final long[] heap_;
+
+	/** The most Rete facts seen at the end of an episode at this size. */
+	private int peakFacts_;
+
+	/**
+	 * Creates a scaling harness.
+	 *
+	 * @param args
+	 *            The experiment args (argument file and program args).
+	 * @param sizes
+	 *            The numbers of blocks to run, in increasing order.
+	 * @param episodes
+	 *            The number of episodes to run per size.
+	 * @param maxExponent
+	 *            The bound on the growth exponent of any phase.
+	 */
+	public BlocksWorldScaling(String[] args, int[] sizes, int episodes,
+			double maxExponent) {
+		super(args);
+		sizes_ = sizes;
+		episodes_ = episodes;
+		maxExponent_ = maxExponent;
+		stepNanos_ = new double[sizes.length][Phase.values().length];
+		steps_ = new long[sizes.length];
+		facts_ = new int[sizes.length];
+		heap_ = new long[sizes.length];
+	}
+
+	/**
+	 * Counts the facts currently in the Rete.
+	 *
+	 * @return The number of facts.
+	 */
+	private int countFacts() {
+		Rete rete = StateSpec.getInstance().getRete();
+		int count = 0;
+		for (Iterator<?> iter = rete.listFacts(); iter.hasNext(); iter.next())
+			count++;
+		return count;
+	}
+
+	/**
+	 * Runs the episodes for a single number of blocks.
+	 *
+	 * @param index
+	 *            The index of the size to run.
+	 */
+	private void runSize(int index) {
+		// Replace the block count in the environment args
+		ArrayList<String> extraArgs = new ArrayList<String>();
+		for (String arg : Config.getInstance().getExtraArgs())
+			if (!arg.matches("\\d+(-\\d+)?"))
+				extraArgs.add(arg);
+		extraArgs.add(sizes_[index] + "");
+
+		random_ = new Random(SEED);
+		agent_.initialise(SEED);
+		environment_.initialise(SEED,
+				extraArgs.toArray(new String[extraArgs.size()]));
+
+		PhaseTimer.reset();
+		peakFacts_ = 0;
+		for (int i = 0; i < episodes_; i++)
+			episode();
+
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		heap_[index] = runtime.totalMemory() - runtime.freeMemory();
+		facts_[index] = peakFacts_;
+		steps_[index] = Math.max(1,
+				PhaseTimer.getCount(Phase.FACT_ASSERTION));
+		for (Phase phase : Phase.values())
+			stepNanos_[index][phase.ordinal()] = 1.0
+					* PhaseTimer.getNanos(phase) / steps_[index];
+
+		agent_.cleanup();
+		environment_.cleanup();
+	}
+
+	@Override
+	protected void episode() {
+		super.episode();
+		peakFacts_ = Math.max(peakFacts_, countFacts());
+	}
+
+	/**
+	 * Fits the growth exponent of a phase over the sizes run, as the least
+	 * squares slope of log time per step against log blocks. Sizes where the
+	 * phase took too little time to measure are left out.
+	 *
+	 * @param phase
+	 *            The phase to fit.
+	 * @return The growth exponent, or NaN if fewer than two sizes could be
+	 *         used.
+	 */
+	public double getExponent(Phase phase) {
+		int n = 0;
+		double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+		for (int i = 0; i < sizes_.length; i++) {
+			double nanos = stepNanos_[i][phase.ordinal()];
+			if (nanos < MIN_FIT_NANOS)
+				continue;
+			double x = Math.log(sizes_[i]);
+			double y = Math.log(nanos);
+			n++;
+			sumX += x;
+			sumY += y;
+			sumXX += x * x;
+			sumXY += x * y;
+		}
+		double denom = n * sumXX - sumX * sumX;
+		if (n < 2 || denom == 0)
+			return Double.NaN;
+		return (n * sumXY - sumX * sumY) / denom;
+	}
+
+	/**
+	 * Runs every size and reports the results.
+	 *
+	 * @return True if every phase grew within the exponent bound.
+	 */
+	public boolean runScaling() {
+		StateSpec.initInstance(Config.getInstance().getEnvironmentClass(),
+				Config.getInstance().getGoalString());
+		Config.getInstance().setGoal(StateSpec.getInstance().getGoalName());
+		if (!(environment_ instanceof BlocksWorldEnvironment)) {
+			System.err.println("The scaling harness requires a blocks world "
+					+ "environment.");
+			return false;
+		}
+
+		PhaseTimer.setEnabled(true);
+		try {
+			for (int i = 0; i < sizes_.length; i++) {
+				if (i > 0)
+					StateSpec.reinitInstance(true);
+				runSize(i);
+				System.out.println(formatSize(i));
+			}
+		} finally {
+			PhaseTimer.setEnabled(false);
+		}
+
+		boolean withinBounds = true;
+		System.out.println();
+		for (Phase phase : Phase.values()) {
+			double exponent = getExponent(phase);
+			boolean exceeded = exponent > maxExponent_;
+			System.out.println(phase + ": n^"
+					+ String.format("%.2f", exponent)
+					+ (exceeded ? " EXCEEDS n^" + maxExponent_ : ""));
+			if (exceeded)
+				withinBounds = false;
+		}
+		return withinBounds;
+	}
+
+	/**
+	 * Formats the results of a single size.
+	 *
+	 * @param index
+	 *            The index of the size.
+	 * @return A single line summarising the size.
+	 */
+	private String formatSize(int index) {
+		StringBuffer buffer = new StringBuffer(sizes_[index] + " blocks, "
+				+ steps_[index] + " steps:");
+		for (Phase phase : Phase.values())
+			buffer.append(" " + phase + " "
+					+ String.format("%.1f", stepNanos_[index][phase.ordinal()]
+							/ 1000) + "us");
+		buffer.append(", " + facts_[index] + " facts, "
+				+ (heap_[index] / (1024 * 1024)) + "MB heap");
+		return buffer.toString();
+	}
+
+	/**
+	 * Runs the scaling harness from the command line. Exits with a non-zero
+	 * status if any phase grows faster than the bound.
+	 *
+	 * @param args
+	 *            The blocks world argument file, optionally followed by
+	 *            -sizes 10,20,..., -episodes N and -maxExponent X, then any
+	 *            regular program args.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: BlocksWorldScaling <argumentFile> "
+					+ "[-sizes 10,20,...] [-episodes N] [-maxExponent X] "
+					+ "[program args]");
+			return;
+		}
+
+		int[] sizes = DEFAULT_SIZES;
+		int episodes = DEFAULT_EPISODES;
+		double maxExponent = DEFAULT_MAX_EXPONENT;
+		ArrayList<String> experimentArgs = new ArrayList<String>();
+		experimentArgs.add(args[0]);
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-sizes")) {
+				String[] split = args[++i].split(",");
+				sizes = new int[split.length];
+				for (int j = 0; j < split.length; j++)
+					sizes[j] = Integer.parseInt(split[j]);
+			} else if (args[i].equals("-episodes"))
+				episodes = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-maxExponent"))
+				maxExponent = Double.parseDouble(args[++i]);
+			else
+				experimentArgs.add(args[i]);
+		}
+
+		BlocksWorldScaling scaling = new BlocksWorldScaling(
+				experimentArgs.toArray(new String[experimentArgs.size()]),
+				sizes, episodes, maxExponent);
+		if (!scaling.runScaling())
+			System.exit(1);
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/blocksWorld/BlocksWorldSolver.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package blocksWorld;
+
+import java.util.Arrays;
+
+/**
+ * Calculates the optimal number of moves to achieve a blocks world goal
+ * directly from the state, rather than by running the optimal policy through
+ * the environment. All supported goals are solved in linear time.
+ * 
+ * @author Sam Sarjant
+ */
+public class BlocksWorldSolver {
+	/** The value returned for goals the solver does not handle. */
+	public static final int UNSOLVED = -1;
+
+	private BlocksWorldSolver() {
+	}
+
+	/**
+	 * Counts the blocks above a block.
+	 * 
+	 * @param block
+	 *            The block index.
+	 * @param onTop
+	 *            The block resting on each block (-1 if clear).
+	 * @return The number of blocks in the tower above the block.
+	 */
+	private static int countAbove(int block, int[] onTop) {
+		int count = 0;
+		for (int above = onTop[block]; above != -1; above = onTop[above])
+			count++;
+		return count;
+	}
+
+	/**
+	 * Checks if one block is somewhere below another.
+	 * 
+	 * @param upper
+	 *            The upper block.
+	 * @param lower
+	 *            The lower block.
+	 * @param state
+	 *            The blocks state.
+	 * @return True if lower is in the tower beneath upper.
+	 */
+	private static boolean isBelow(int upper, int lower, int[] state) {
+		for (int under = state[upper] - 1; under != -1; under = state[under] - 1)
+			if (under == lower)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Calculates the height of every block, where blocks on the floor have
+	 * height 1, and the tower each block is in.
+	 * 
+	 * @param state
+	 *            The blocks state.
+	 * @param onTop
+	 *            The block resting on each block (-1 if clear).
+	 * @param towers
+	 *            An array to fill with the bottom block of each block's tower.
+	 * @return The height of each block.
+	 */
+	private static int[] heights(int[] state, int[] onTop, int[] towers) {
+		int[] heights = new int[state.length];
+		for (int i = 0; i < state.length; i++) {
+			if (state[i] != 0)
+				continue;
+			// Walk up each tower from the floor
+			int height = 1;
+			for (int block = i; block != -1; block = onTop[block]) {
+				heights[block] = height++;
+				towers[block] = i;
+			}
+		}
+		return heights;
+	}
+
+	/**
+	 * Gets the optimal number of moves to achieve a goal.
+	 * 
+	 * @param goalName
+	 *            The goal name (e.g. on$A$B or stack).
+	 * @param state
+	 *            The blocks state, where each block is on the floor (0) or
+	 *            block i (i + 1).
+	 * @param goalBlocks
+	 *            The indices of the goal arguments, in order.
+	 * @return The optimal number of moves, or {@link #UNSOLVED} if the goal is
+	 *         not supported.
+	 */
+	public static int optimalSteps(String goalName, int[] state,
+			int[] goalBlocks) {
+		int[] onTop = new int[state.length];
+		Arrays.fill(onTop, -1);
+		for (int i = 0; i < state.length; i++)
+			if (state[i] != 0)
+				onTop[state[i] - 1] = i;
+
+		if (goalName.equals("on$A$B")) {
+			int a = goalBlocks[0];
+			int b = goalBlocks[1];
+			if (state[a] == b + 1)
+				return 0;
+			int aboveA = countAbove(a, onTop);
+			int aboveB = countAbove(b, onTop);
+			// In the same tower, clearing the lower block clears the other
+			if (isBelow(a, b, state) || isBelow(b, a, state))
+				return Math.max(aboveA, aboveB) + 1;
+			return aboveA + aboveB + 1;
+		}
+
+		if (goalName.equals("clear$A"))
+			return countAbove(goalBlocks[0], onTop);
+
+		if (goalName.equals("highest$A")) {
+			// Clear the block, then move it onto a higher tower if need be
+			int a = goalBlocks[0];
+			int[] towers = new int[state.length];
+			int[] heights = heights(state, onTop, towers);
+			boolean highest = true;
+			for (int i = 0; i < state.length; i++)
+				if (towers[i] != towers[a] && heights[i] > heights[a])
+					highest = false;
+			return countAbove(a, onTop) + (highest ? 0 : 1);
+		}
+
+		if (goalName.equals("stack")) {
+			// Everything moves onto the tallest tower
+			int maxHeight = 0;
+			for (int height : heights(state, onTop, new int[state.length]))
+				maxHeight = Math.max(maxHeight, height);
+			return state.length - maxHeight;
+		}
+
+		if (goalName.equals("unstack")) {
+			// Every block not on the floor moves once
+			int moves = 0;
+			for (int on : state)
+				if (on != 0)
+					moves++;
+			return moves;
+		}
+
+		return UNSOLVED;
+	}
+}
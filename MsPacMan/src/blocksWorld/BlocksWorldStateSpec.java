@@ -27,13 +27,20 @@ import relationalFramework.RelationalPredicate;
 import relationalFramework.StateSpec;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
 import relationalFramework.agentObservations.BackgroundKnowledge;
 
+import cerrla.ProgramArgument;
+
 public class BlocksWorldStateSpec extends StateSpec {
+	/** The background rules maintained natively by {@link BlocksWorldModel}. */
+	private static final Collection<String> NATIVE_RULES = Arrays.asList(
+			"clearRule", "aboveRule1", "aboveRule2", "heightRule",
+			"highestRule");
 
 	@Override
 	protected Map<String, String> initialiseActionPreconditions() {
@@ -67,12 +74,30 @@ public class BlocksWorldStateSpec extends StateSpec {
 	@Override
 	protected Collection<String> initialiseActionRules() {
 		Collection<String> actionRules = new ArrayList<String>();
+		if (isNativeDynamics())
+			return actionRules;
+
 		// Block to block movement
 		actionRules.add("?action <- (move ?A ?B) ?oldOn <- (on ?A ?C)"
 				+ " => (assert (on ?A ?B)) (retract ?oldOn ?action)");
 		return actionRules;
 	}
 
+	@Override
+	protected boolean isReteBackgroundRule(String ruleName) {
+		return !isNativeDynamics() || !NATIVE_RULES.contains(ruleName);
+	}
+
+	/**
+	 * If moves are applied by a {@link BlocksWorldModel} rather than by Jess
+	 * rules.
+	 * 
+	 * @return True if the world dynamics are native.
+	 */
+	public boolean isNativeDynamics() {
+		return ProgramArgument.NATIVE_DYNAMICS.booleanValue();
+	}
+
 	@Override
 	protected Map<String, BackgroundKnowledge> initialiseBackgroundKnowledge() {
 		Map<String, BackgroundKnowledge> bkMap = new HashMap<String, BackgroundKnowledge>();
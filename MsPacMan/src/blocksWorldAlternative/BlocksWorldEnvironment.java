@@ -48,7 +48,7 @@ public class BlocksWorldEnvironment extends blocksWorld.BlocksWorldEnvironment {
 			return;
 		}
 
-		Integer[] intState = state_.getState();
+		int[] intState = state_.getState();
 
 		// Scanning through, making predicates (On, OnFloor)
 		for (int i = 0; i < state_.length; i++) {
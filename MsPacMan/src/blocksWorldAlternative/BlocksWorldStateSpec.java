@@ -76,6 +76,14 @@ public class BlocksWorldStateSpec extends blocksWorld.BlocksWorldStateSpec {
 		return actionRules;
 	}
 
+	/**
+	 * The alternative world has its own actions, so it always uses Jess rules.
+	 */
+	@Override
+	public boolean isNativeDynamics() {
+		return false;
+	}
+
 	@Override
 	protected Map<String, BackgroundKnowledge> initialiseBackgroundKnowledge() {
 		Map<String, BackgroundKnowledge> bkMap = new HashMap<String, BackgroundKnowledge>();
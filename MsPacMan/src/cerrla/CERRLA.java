@@ -47,6 +47,8 @@ import rrlFramework.RRLActions;
 import rrlFramework.RRLAgent;
 import rrlFramework.RRLObservations;
 import util.GoalConditionComparator;
+import util.PhaseTimer;
+import util.PhaseTimer.Phase;
 import util.Recursive;
 
 /**
@@ -198,9 +200,11 @@ public class CERRLA implements RRLAgent {
 	 * @return The actions the policy returned.
 	 */
 	private RRLActions evaluatePolicy(RRLObservations observations) {
+		long start = PhaseTimer.start();
 		PolicyActions policyActions = agentPolicy_.get(
 				observations.getAgentTurn()).evaluatePolicy(observations,
 				StateSpec.getInstance().getNumReturnedActions());
+		PhaseTimer.stop(Phase.POLICY_EVALUATION, start);
 
 		return new RRLActions(policyActions);
 	}
@@ -39,6 +39,10 @@ import java.util.Queue;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections.BidiMap;
 
@@ -48,6 +52,8 @@ import cerrla.modular.ModularSubGoal;
 import cerrla.modular.PolicyItem;
 import cerrla.modular.SpecificGoalCondition;
 
+import jCloisterZone.CarcassonneLeague;
+import jCloisterZone.CarcassonneStateSpec;
 import jess.QueryResult;
 import jess.Rete;
 import jess.ValueVector;
@@ -57,10 +63,13 @@ import relationalFramework.RelationalPolicy;
 import relationalFramework.RelationalPredicate;
 import relationalFramework.RelationalRule;
 import relationalFramework.StateSpec;
+import relationalFramework.agentObservations.CoveringSnapshot;
 import relationalFramework.agentObservations.LocalAgentObservations;
 import rrlFramework.Config;
 import rrlFramework.RRLObservations;
 import util.MultiMap;
+import util.PhaseTimer;
+import util.PhaseTimer.Phase;
 
 /**
  * A localised-to-goal class containing the agent's behaviour, the current goal,
@@ -77,6 +86,18 @@ public class LocalCrossEntropyDistribution implements Serializable,
 
 	private static final long serialVersionUID = 6883881456264179505L;
 
+	/**
+	 * The maximum number of queued asynchronous scans before steps stop
+	 * taking snapshots.
+	 */
+	private static final int MAX_PENDING_SCANS = 8;
+
+	/**
+	 * The single background worker for asynchronous covering. Shared by all
+	 * distributions, as the environment observations are shared.
+	 */
+	private static ExecutorService coveringWorker_;
+
 	public static final String MODULAR_SUFFIX = ".mod";
 
 	/** The relative directory in which modules are stored. */
@@ -91,6 +112,9 @@ public class LocalCrossEntropyDistribution implements Serializable,
 	/** The current best policy testing episode. */
 	private transient int bestPolicyEpisode_ = -1;
 
+	/** If asynchronous scans have changed the observations since publishing. */
+	private transient volatile boolean coveredAsync_;
+
 	/** The current episode as evidenced by this generator. */
 	private int currentEpisode_;
 
@@ -109,6 +133,9 @@ public class LocalCrossEntropyDistribution implements Serializable,
 	/** If this generator is not specialising new rules. */
 	private transient boolean isSpecialising_;
 
+	/** The league valuing Carcassonne samples (if leagueGames is set). */
+	private transient CarcassonneLeague league_;
+
 	/** The localised agent observations for this goal. */
 	private transient LocalAgentObservations localAgentObservations_;
 
@@ -121,6 +148,9 @@ public class LocalCrossEntropyDistribution implements Serializable,
 	/** If the policy generator has updated yet. */
 	private boolean oldUpdated_;
 
+	/** The number of asynchronous scans queued but not yet observed. */
+	private transient AtomicInteger pendingScans_;
+
 	/** The performance object, noting figures. */
 	private final Performance performance_;
 
@@ -209,6 +239,70 @@ public class LocalCrossEntropyDistribution implements Serializable,
 		setState(AlgorithmState.TRAINING);
 	}
 
+	/**
+	 * Waits for any outstanding asynchronous covering scans and publishes the
+	 * resulting RLGG rules to the policy generator. Called at episode
+	 * boundaries, so the observations are never read while the worker is
+	 * modifying them.
+	 */
+	private void publishCoveredRules() {
+		long start = PhaseTimer.start();
+		drainCoveringWorker();
+		if (coveredAsync_) {
+			coveredAsync_ = false;
+			Collection<RelationalRule> oldRLGGs = policyGenerator_
+					.removeRLGGRules();
+			Collection<RelationalRule> covered = localAgentObservations_
+					.getRLGGRules(oldRLGGs);
+			policyGenerator_.addRLGGRules(covered);
+		}
+		PhaseTimer.stop(Phase.COVERING_DRAIN, start);
+	}
+
+	/**
+	 * Takes a snapshot of the current state and queues it for covering by the
+	 * background worker.
+	 * 
+	 * @param observations
+	 *            The current state observations.
+	 * @param activatedActions
+	 *            The actions found by the current RLGG rules.
+	 * @param goalReplacements
+	 *            The current goal replacements.
+	 */
+	@SuppressWarnings("unchecked")
+	private void queueCoveringScan(RRLObservations observations,
+			MultiMap<String, String[]> activatedActions,
+			BidiMap goalReplacements) {
+		if (pendingScans_ == null)
+			pendingScans_ = new AtomicInteger();
+		// If the worker is falling behind, skip this step.
+		if (pendingScans_.get() >= MAX_PENDING_SCANS)
+			return;
+
+		if (goalReplacements == null)
+			goalReplacements = observations.getGoalReplacements();
+		final CoveringSnapshot snapshot = new CoveringSnapshot(
+				observations.getState(), observations.getValidActions(),
+				activatedActions, goalReplacements);
+		pendingScans_.incrementAndGet();
+		getCoveringWorker().submit(new Runnable() {
+			@Override
+			public void run() {
+				long start = PhaseTimer.start();
+				try {
+					if (localAgentObservations_.observeSnapshot(snapshot))
+						coveredAsync_ = true;
+				} catch (Exception e) {
+					e.printStackTrace();
+				} finally {
+					PhaseTimer.stop(Phase.COVERING, start);
+					pendingScans_.decrementAndGet();
+				}
+			}
+		});
+	}
+
 	/**
 	 * If the sample being recorded is a valid sample (consists of current
 	 * rules).
@@ -392,9 +486,54 @@ public class LocalCrossEntropyDistribution implements Serializable,
 			elites.clear();
 	}
 
+	/**
+	 * Values a sample by playing it in a league of Carcassonne games, rather
+	 * than by the episodes it was sampled in. The league is created on first
+	 * use.
+	 * 
+	 * @param sample
+	 *            The sample being valued.
+	 * @param average
+	 *            The sample's average reward over its episodes, used if every
+	 *            league game fails.
+	 * @return The sample's mean reward over the league games.
+	 */
+	private double evaluateInLeague(ModularPolicy sample, double average) {
+		if (league_ == null) {
+			int numGames = ProgramArgument.LEAGUE_GAMES.intValue();
+			league_ = new CarcassonneLeague(numGames, Math.min(numGames,
+					Runtime.getRuntime().availableProcessors()), Config
+					.getInstance().getExtraArgs());
+		}
+
+		// Each sample plays its own games
+		double value = league_.evaluate(sample,
+				policyGenerator_.getPoliciesEvaluated());
+		if (Double.isNaN(value))
+			return average;
+		return value;
+	}
+
+	/**
+	 * If samples are valued by a league of games rather than their episodes.
+	 * Only the main goal of a Carcassonne experiment is, and only if the
+	 * leagueGames argument is set.
+	 * 
+	 * @return True if samples are valued in a league.
+	 */
+	private boolean isLeagueEvaluated() {
+		return ProgramArgument.LEAGUE_GAMES.intValue() > 0
+				&& goalCondition_.isMainGoal()
+				&& StateSpec.getInstance() instanceof CarcassonneStateSpec;
+	}
+
 	public void cleanup() {
 		if (!ProgramArgument.LOAD_AGENT_OBSERVATIONS.booleanValue())
 			localAgentObservations_.cleanup();
+		if (league_ != null) {
+			league_.shutdown();
+			league_ = null;
+		}
 	}
 
 	/**
@@ -406,7 +545,8 @@ public class LocalCrossEntropyDistribution implements Serializable,
 	 * @param observations
 	 *            The current state observations.
 	 * @param activatedActions
-	 *            The actions found by the current RLGG rules.
+	 *            The actions found by the current RLGG rules, or null if the
+	 *            RLGG rules were not evaluated this step.
 	 * @param moduleParamReplacements
 	 *            Optional module parameter replacements to apply to the current
 	 *            goal replacements.
@@ -425,20 +565,33 @@ public class LocalCrossEntropyDistribution implements Serializable,
 				return null;
 		}
 
+		if (frozen_ || activatedActions == null)
+			return null;
+
+		// Asynchronous covering only takes a snapshot (once the RLGG rules
+		// exist to act with).
+		if (ProgramArgument.ASYNC_COVERING.booleanValue()
+				&& !policyGenerator_.getRLGGRules().isEmpty()) {
+			queueCoveringScan(observations, activatedActions, goalReplacements);
+			return null;
+		}
+
 		// Only trigger RLGG covering if it is needed.
-		if (!frozen_
-				&& localAgentObservations_.observeState(observations,
-						activatedActions, goalReplacements)) {
+		long start = PhaseTimer.start();
+		List<RelationalRule> newRules = null;
+		if (localAgentObservations_.observeState(observations,
+				activatedActions, goalReplacements)) {
 			// Remove the old RLGGs
 			Collection<RelationalRule> oldRLGGs = policyGenerator_
 					.removeRLGGRules();
 			Collection<RelationalRule> covered = localAgentObservations_
 					.getRLGGRules(oldRLGGs);
 
-			return policyGenerator_.addRLGGRules(covered);
+			newRules = policyGenerator_.addRLGGRules(covered);
 		}
+		PhaseTimer.stop(Phase.COVERING, start);
 
-		return null;
+		return newRules;
 	}
 
 	/**
@@ -687,6 +840,24 @@ public class LocalCrossEntropyDistribution implements Serializable,
 		return false;
 	}
 
+	/**
+	 * Checks if the RLGG rules need to be evaluated for covering this step.
+	 * 
+	 * @param state
+	 *            The current state.
+	 * @return True if covering should be checked this step.
+	 */
+	public boolean isCoveringCheckNeeded(Rete state) {
+		if (frozen_)
+			return false;
+		// The asynchronous covering worker owns the observations' unseen
+		// predicates and settling state, so they can't be read here.
+		if (!ProgramArgument.SETTLED_FAST_PATH.booleanValue()
+				|| ProgramArgument.ASYNC_COVERING.booleanValue())
+			return true;
+		return localAgentObservations_.isCoveringCheckNeeded(state);
+	}
+
 	public boolean isFrozen() {
 		return frozen_;
 	}
@@ -718,6 +889,8 @@ public class LocalCrossEntropyDistribution implements Serializable,
 	 */
 	public void recordSample(ModularPolicy sample,
 			ArrayList<double[]> policyRewards) {
+		publishCoveredRules();
+
 		// Performance
 		if (!frozen_)
 			currentEpisode_ += policyRewards.size();
@@ -740,14 +913,19 @@ public class LocalCrossEntropyDistribution implements Serializable,
 		if (!frozen_) {
 			// Add sample to elites
 			if (isValidSample(sample, true)) {
-				PolicyValue pv = new PolicyValue(sample, average,
+				double value = average;
+				if (isLeagueEvaluated())
+					value = evaluateInLeague(sample, average);
+				PolicyValue pv = new PolicyValue(sample, value,
 						policyGenerator_.getPoliciesEvaluated());
 				elites_.add(pv);
 			}
 			policyGenerator_.incrementPoliciesEvaluated();
 
 			// Update distributions (depending on number of elites)
+			long start = PhaseTimer.start();
 			updateDistributions(elites_, population_, numElites_);
+			PhaseTimer.stop(Phase.CE_UPDATE, start);
 
 			// TODO Change this to only note if sub-goal dists are USED.
 			// Noting relevant sub-goal distributions
@@ -842,6 +1020,7 @@ public class LocalCrossEntropyDistribution implements Serializable,
 	 */
 	public void saveCEDistribution(File serFile,
 			boolean saveEnvAgentObservations, int run) {
+		drainCoveringWorker();
 		try {
 			// Write the main behaviour to temp and module
 			if (goalCondition_.isMainGoal()) {
@@ -934,6 +1113,8 @@ public class LocalCrossEntropyDistribution implements Serializable,
 	 * Simply resets episode reward.
 	 */
 	public void startEpisode() {
+		publishCoveredRules();
+
 		// Check for convergence
 		if (isConverged())
 			freeze(true);
@@ -944,6 +1125,44 @@ public class LocalCrossEntropyDistribution implements Serializable,
 		return goalCondition_.toString() + " Behaviour";
 	}
 
+	/**
+	 * Waits until the covering worker (if any) has processed every queued
+	 * snapshot.
+	 */
+	private static void drainCoveringWorker() {
+		if (coveringWorker_ == null)
+			return;
+		try {
+			coveringWorker_.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}).get();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gets the background worker for asynchronous covering.
+	 * 
+	 * @return The covering worker.
+	 */
+	private static synchronized ExecutorService getCoveringWorker() {
+		if (coveringWorker_ == null) {
+			coveringWorker_ = Executors
+					.newSingleThreadExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "AsyncCovering");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return coveringWorker_;
+	}
+
 	/**
 	 * Basic method which fetches a module location for a given environment and
 	 * local goal.
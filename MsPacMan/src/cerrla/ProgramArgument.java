@@ -39,6 +39,9 @@ import util.Pair;
 
 public enum ProgramArgument implements Serializable {
 	ALPHA(0.6, "alpha", null, ParameterType.UPDATING, "Step size update"),
+	ASYNC_COVERING(false, "asyncCovering", null, ParameterType.SAMPLING,
+			"If covering scans are run by a background worker, with the "
+					+ "resulting RLGG rules published at episode boundaries."),
 	BETA(0.01, "beta", null, ParameterType.CONVERGENCE,
 			"If KL sum updates are less than Beta * Alpha"),
 	BOUNDED_ELITES(true, "boundedElites", null, ParameterType.UPDATING,
@@ -46,6 +49,13 @@ public enum ProgramArgument implements Serializable {
 	CONFIDENCE_INTERVAL(3.0, "confidenceInterval", "-C",
 			ParameterType.SAMPLING, "The amount of confidence for sampling "
 					+ "every element at least once."),
+	CONTINUE_MOVEMENTS(false, "continueMovements", null,
+			ParameterType.EVALUATION,
+			"If Mario continues a movement between decision points rather "
+					+ "than the policy deciding every frame."),
+	COVERING_THREADS(1, "coveringThreads", null, ParameterType.EVALUATION,
+			"The number of threads a covering scan is split over "
+					+ "(by action predicate). 1 = serial scanning."),
 	DYNAMIC_SLOTS(true, "dynamicSlots", null, ParameterType.SPECIALISATION,
 			"If the slots grow dynamically"),
 	EARLY_UPDATING(true, "earlyUpdating", null, ParameterType.UPDATING,
@@ -70,11 +80,20 @@ public enum ProgramArgument implements Serializable {
 			ParameterType.SAMPLING, "The SD of the slot order"),
 	INITIAL_SLOT_MEAN(0.5, "initialSlotMean", "-mu", ParameterType.SAMPLING,
 			"The initial slot mu probabilities."),
+	LAZY_DISTANCES(false, "lazyDistances", null, ParameterType.EVALUATION,
+			"If distances are only computed for the objects rules bind, rather "
+					+ "than asserted for every object (Ms. PacMan only)."),
+	LEAGUE_GAMES(0, "leagueGames", null, ParameterType.EVALUATION,
+			"If > 0, the number of league games each sampled policy is valued "
+					+ "over (Carcassonne only)."),
 	LOAD_AGENT_OBSERVATIONS(true, "loadAgentObservations", null,
 			ParameterType.EVALUATION,
 			"If agent observations should be loaded from file ever."),
 	LOCAL_ALPHA(true, "localAlpha", null, ParameterType.UPDATING,
 			"If updates are performed slot locally"),
+	NATIVE_DYNAMICS(true, "nativeDynamics", null, ParameterType.EVALUATION,
+			"If Blocks World moves are applied natively rather than by Jess "
+					+ "rules."),
 	NEGATIVE_UPDATES(false, "negativeUpdates", null, ParameterType.UPDATING,
 			"If performing negative updates"),
 	NUM_NUMERICAL_SPLITS(3, "numNumericalSplits", null,
@@ -100,6 +119,9 @@ public enum ProgramArgument implements Serializable {
 	POPULATION_UPDATES(false, "populationUpdates", null,
 			ParameterType.UPDATING,
 			"If updates are performed in an online fashion, or population-based."),
+	RECORD_EPISODES(false, "recordEpisodes", null, ParameterType.EVALUATION,
+			"If the environment records its episodes for replaying "
+					+ "(Ms. PacMan only)."),
 	RESET_ELITES(false, "resetElites", null, ParameterType.UPDATING,
 			"If the entire elites are reset when a new slot is created."),
 	RESET_SLOT_COUNT(false, "resetSlotCount", null, ParameterType.UPDATING,
@@ -113,6 +135,9 @@ public enum ProgramArgument implements Serializable {
 					+ "so they aren't loaded in successive runs."),
 	SEED_MODULE_RULES(false, "seedModuleRules", null, ParameterType.SAMPLING,
 			"If module rules should just be loaded & seeded _once_."),
+	SETTLED_FAST_PATH(false, "settledFastPath", null, ParameterType.SAMPLING,
+			"If RLGG rules are only evaluated on a sample of steps once the "
+					+ "agent observations have settled (not with asyncCovering)."),
 	SLOT_FIXING(false, "slotFixing", null, ParameterType.CONVERGENCE,
 			"If slots can be fixed."),
 	SLOT_THRESHOLD(0.5, "slotThreshold", null, ParameterType.SPECIALISATION,
@@ -130,6 +155,9 @@ public enum ProgramArgument implements Serializable {
 			"Number of iterations to test the final testing for"),
 	TESTING(false, "test", "-t", ParameterType.EVALUATION,
 			"If just running tests"),
+	TICK_FAST_FORWARD(true, "tickFastForward", null,
+			ParameterType.EVALUATION,
+			"If headless Ms. Pac-Man skips animation ticks that change nothing."),
 	USE_GENERAL_MODULES(false, "useGeneralModules", null,
 			ParameterType.SAMPLING, "If using/learning general modules"),
 	USE_MODULES(false, "useModules", null, ParameterType.SAMPLING,
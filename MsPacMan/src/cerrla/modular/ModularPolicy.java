@@ -211,7 +211,8 @@ public class ModularPolicy extends RelationalPolicy {
 	 * @param policyActions
 	 *            The collection to add the actions to.
 	 * @param activatedActions
-	 *            The actions the RLGG rules return.
+	 *            The actions the RLGG rules return (or null if they were not
+	 *            evaluated this step).
 	 * @param actionsFound
 	 *            The number of actions found so far.
 	 * @param actionsRequired
@@ -456,8 +457,7 @@ public class ModularPolicy extends RelationalPolicy {
 			int actionsReturned) {
 		isEvaluated_ = true;
 		PolicyActions policyActions = new PolicyActions();
-		MultiMap<String, String[]> activatedActions = MultiMap
-				.createSortedSetMultiMap(ArgumentComparator.getInstance());
+		MultiMap<String, String[]> activatedActions = null;
 		int actionsReturnedModified = (actionsReturned <= -1) ? Integer.MAX_VALUE
 				: actionsReturned;
 		Rete state = observations.getState();
@@ -465,18 +465,21 @@ public class ModularPolicy extends RelationalPolicy {
 		try {
 			// First evaluate the RLGG rules (if any). If the actions there
 			// don't match up to the activated actions, covering will be
-			// required.
-			for (RelationalRule rlgg : ceDistribution_.getPolicyGenerator()
-					.getRLGGRules().values()) {
-				SortedSet<String[]> rlggActions = new TreeSet<String[]>(
-						ArgumentComparator.getInstance());
-				evaluateRule(
-						rlgg,
-						state,
-						observations.getValidActions(rlgg.getActionPredicate()),
-						rlggActions, false);
-				activatedActions.putCollection(rlgg.getActionPredicate(),
-						rlggActions);
+			// required. Once settled, this is only needed on some steps.
+			if (ceDistribution_.isCoveringCheckNeeded(state)) {
+				activatedActions = MultiMap
+						.createSortedSetMultiMap(ArgumentComparator
+								.getInstance());
+				for (RelationalRule rlgg : ceDistribution_
+						.getPolicyGenerator().getRLGGRules().values()) {
+					SortedSet<String[]> rlggActions = new TreeSet<String[]>(
+							ArgumentComparator.getInstance());
+					evaluateRule(rlgg, state, observations
+							.getValidActions(rlgg.getActionPredicate()),
+							rlggActions, false);
+					activatedActions.putCollection(rlgg.getActionPredicate(),
+							rlggActions);
+				}
 			}
 
 			// Next, evaluate the rest of the policy until an adequate number of
@@ -0,0 +1,171 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/jCloisterZone/CarcassonneDriver.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package jCloisterZone;
+
+import java.util.List;
+import java.util.Random;
+
+import org.ini4j.Ini;
+
+import com.jcloisterzone.UserInterface;
+import com.jcloisterzone.ai.legacyplayer.LegacyAiPlayer;
+import com.jcloisterzone.game.Game;
+import com.jcloisterzone.game.PlayerSlot;
+import com.jcloisterzone.game.phase.CreateGamePhase;
+import com.jcloisterzone.game.phase.DrawPhase;
+import com.jcloisterzone.game.phase.GameOverPhase;
+import com.jcloisterzone.game.phase.Phase;
+import com.jcloisterzone.rmi.ServerIF;
+import com.jcloisterzone.ui.Client;
+
+/**
+ * Drives a JCloisterZone game synchronously on the calling thread. Server
+ * calls go straight to the current phase object and phases are entered in
+ * turn (using the proxyless create and draw phases) until a learning player
+ * must choose a tile placement or meeple action, or the game ends. AI players
+ * move within the same calls, so there are no sockets, client proxies or
+ * thread hand-offs.
+ *
+ * @author Sam Sarjant
+ */
+public class CarcassonneDriver {
+	/** The owner ID for every slot (all players are local). */
+	public static final long CLIENT_ID = 1;
+
+	/** The game being driven. */
+	private final Game game_;
+
+	/** The in-process server passing actions to the current phase. */
+	private final LocalCarcassonneServer server_;
+
+	/** If a game has been started before. */
+	private boolean started_;
+
+	/** The user interface(s) to keep between games. */
+	private UserInterface userInterface_;
+
+	/**
+	 * Creates the game and in-process server.
+	 *
+	 * @param configFile
+	 *            The JCloisterZone config file resource.
+	 */
+	public CarcassonneDriver(String configFile) {
+		Ini config = new Ini();
+		try {
+			config.load(Client.class.getClassLoader().getResource(configFile));
+		} catch (Exception ex) {
+			ex.printStackTrace();
+			System.exit(1);
+		}
+
+		game_ = new Game();
+		server_ = new LocalCarcassonneServer(game_);
+		game_.getPhases().put(ProxylessCreateGamePhase.class,
+				new ProxylessCreateGamePhase(game_, server_));
+		game_.setConfig(config);
+	}
+
+	/**
+	 * Enters phases until one is waiting on a player (an AI player will have
+	 * already acted within the phase), or the game is over.
+	 */
+	public void advance() {
+		Phase phase = game_.getPhase();
+		while (phase != null && !phase.isEntered()) {
+			if (phase.getClass().equals(CreateGamePhase.class))
+				phase = game_.getPhases().get(ProxylessCreateGamePhase.class);
+			if (phase.getClass().equals(DrawPhase.class))
+				phase = game_.getPhases().get(ProxylessDrawPhase.class);
+
+			phase.setEntered(true);
+			phase.enter();
+			phase = game_.getPhase();
+		}
+	}
+
+	public Game getGame() {
+		return game_;
+	}
+
+	public ServerIF getServer() {
+		return server_;
+	}
+
+	public boolean isGameOver() {
+		return game_.getPhase() instanceof GameOverPhase;
+	}
+
+	/**
+	 * Registers the relational wrapper as an observer of the game and as the
+	 * interface for the non-AI players.
+	 *
+	 * @param wrapper
+	 *            The relational wrapper.
+	 */
+	public void setInterface(CarcassonneRelationalWrapper wrapper) {
+		wrapper.setGame(game_);
+		game_.addGameListener(wrapper);
+		game_.addUserInterface(wrapper);
+		userInterface_ = game_.getUserInterface();
+	}
+
+	/**
+	 * Sets the random number generator used to draw tiles.
+	 *
+	 * @param random
+	 *            The random number generator.
+	 */
+	public void setRandomGenerator(Random random) {
+		server_.setRandomGenerator(random);
+	}
+
+	/**
+	 * Starts a new game with the given players, in order, and advances it to
+	 * the first decision of a non-AI player.
+	 *
+	 * @param slots
+	 *            The player slots, in turn order.
+	 */
+	public void startGame(List<PlayerSlot> slots) {
+		game_.setPhase(game_.getPhases().get(ProxylessCreateGamePhase.class));
+		if (started_ && slots.size() > 1) {
+			// Remove the previous game's AI interfaces and slots
+			game_.clearUserInterface();
+			game_.addUserInterface(userInterface_);
+			for (int i = 0; i < PlayerSlot.COUNT; i++)
+				server_.updateSlot(new PlayerSlot(i), null);
+		}
+
+		for (int i = 0; i < slots.size(); i++) {
+			PlayerSlot slot = slots.get(i);
+			PlayerSlot cloneSlot = new PlayerSlot(i, slot.getType(),
+					slot.getNick(), slot.getOwner());
+			cloneSlot.setAiClassName(slot.getAiClassName());
+			server_.updateSlot(cloneSlot, LegacyAiPlayer.supportedExpansions());
+		}
+
+		server_.startGame();
+		started_ = true;
+		advance();
+	}
+}
@@ -29,6 +29,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,8 +58,6 @@ import com.jcloisterzone.figure.SmallFollower;
 import com.jcloisterzone.game.Game;
 import com.jcloisterzone.game.PlayerSlot;
 import com.jcloisterzone.game.phase.ActionPhase;
-import com.jcloisterzone.game.phase.CreateGamePhase;
-import com.jcloisterzone.game.phase.DrawPhase;
 import com.jcloisterzone.game.phase.GameOverPhase;
 import com.jcloisterzone.game.phase.Phase;
 import com.jcloisterzone.game.phase.TilePhase;
@@ -71,8 +70,10 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 	private static final String CERRLA_NAME = "CERRLA";
 	private static final String HUMAN_NAME = "HUMAN";
 	private static final int NO_ACTION_PENALTY = -1000;
-	/** The Carcassonne client. */
+	/** The Carcassonne client (GUI mode only). */
 	private RRLJCloisterClient client_;
+	/** The synchronous game driver (when not viewing the GUI). */
+	private CarcassonneDriver driver_;
 	/** The user interface for the client. */
 	private UserInterface clientInterface_;
 	/** The current player. */
@@ -83,6 +84,8 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 	private Game environment_;
 	/** If viewing experiment in GUI. */
 	private boolean guiMode_ = true;
+	/** If the game is always run headless, regardless of experiment mode. */
+	private boolean headless_;
 	/** If there are multiple learning agents at once. */
 	private boolean multiLearners_ = false;
 	/** The player delay when viewing GUI version. */
@@ -93,6 +96,8 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 	private Map<Player, Integer> prevScores_ = new HashMap<Player, Integer>();
 	/** The players that did not place a tile during the game. */
 	private Collection<Player> earlyExitPlayers_ = new HashSet<Player>();
+	/** The random number generator (the experiment's when null). */
+	private Random random_;
 	/** The relational wrapper for (de)relationalising the game. */
 	protected CarcassonneRelationalWrapper relationalWrapper_ = new CarcassonneRelationalWrapper();
 	/** The Carcassonne server. */
@@ -100,6 +105,21 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 	/** The current players of the game. */
 	private ArrayList<PlayerSlot> slots_;
 
+	public CarcassonneEnvironment() {
+		this(false);
+	}
+
+	/**
+	 * Creates a Carcassonne environment.
+	 * 
+	 * @param headless
+	 *            If the game is always run headless (otherwise only in
+	 *            experiment mode).
+	 */
+	public CarcassonneEnvironment(boolean headless) {
+		headless_ = headless;
+	}
+
 	/**
 	 * Calculates a player's reward between steps.
 	 * 
@@ -159,6 +179,15 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 		}
 	}
 
+	/**
+	 * Gets the random number generator to make random choices with.
+	 * 
+	 * @return The given generator, or the experiment's.
+	 */
+	private Random getRandom() {
+		return (random_ == null) ? RRLExperiment.random_ : random_;
+	}
+
 	private int getPlayerPrevScore(Player player) {
 		if (!prevScores_.containsKey(player))
 			prevScores_.put(player, 0);
@@ -167,10 +196,15 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 	}
 
 	/**
-	 * Cycles through the phases whenever necessary. Also replaces the
-	 * proxy-based DrawPhase with a proxyless version.
+	 * Cycles through the phases whenever necessary. The driver handles this
+	 * when not in GUI mode.
 	 */
 	private void runPhases() {
+		if (driver_ != null) {
+			driver_.advance();
+			return;
+		}
+
 		// Sleep for visual aid.
 		if (playerDelay > 0) {
 			try {
@@ -183,16 +217,6 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 
 		// Cycle through (probably only once) to keep the game moving.
 		while (phase != null && !phase.isEntered()) {
-			// Modifying phases to proxyless versions
-			if (!guiMode_) {
-				if (phase.getClass().equals(CreateGamePhase.class))
-					phase = environment_.getPhases().get(
-							ProxylessCreateGamePhase.class);
-				if (phase.getClass().equals(DrawPhase.class))
-					phase = environment_.getPhases().get(
-							ProxylessDrawPhase.class);
-			}
-
 			phase.setEntered(true);
 			phase.enter();
 			phase = environment_.getPhase();
@@ -271,7 +295,7 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 
 	@Override
 	protected boolean isReteDriven() {
-		return false;
+		return true;
 	}
 
 	@Override
@@ -288,28 +312,59 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 		return (terminal) ? 1 : 0;
 	}
 
-	@Override
-	protected void startState() {
-		relationalWrapper_.startState();
+	/**
+	 * Creates the player slots for the game.
+	 * 
+	 * @param clientID
+	 *            The client owning the slots.
+	 */
+	private void createSlots(long clientID) {
+		slots_ = new ArrayList<PlayerSlot>(players_.length);
+		int slotIndex = 0;
+		for (String playerName : players_) {
+			String playerNameIndex = playerName + slotIndex;
+			if (playerName.equals(CERRLA_NAME)) {
+				// Agent-controlled
+				slots_.add(new PlayerSlot(slotIndex,
+						PlayerSlot.SlotType.PLAYER, playerNameIndex, clientID));
+			} else if (playerName.equals(AI_NAME)) {
+				// AI controlled
+				PlayerSlot slot = new PlayerSlot(slotIndex,
+						PlayerSlot.SlotType.AI, playerNameIndex, clientID);
+				slot.setAiClassName(LegacyAiPlayer.class.getName());
+				slots_.add(slot);
+			} else if (playerName.equals(RANDOM_NAME)) {
+				// AI controlled
+				PlayerSlot slot = new PlayerSlot(slotIndex,
+						PlayerSlot.SlotType.AI, playerNameIndex, clientID);
+				slot.setAiClassName(RandomAIPlayer.class.getName());
+				slots_.add(slot);
+			} else if (playerName.equals(HUMAN_NAME)) {
+				// Human-controlled
+				slots_.add(new PlayerSlot(slotIndex,
+						PlayerSlot.SlotType.PLAYER, playerNameIndex, clientID));
+			}
+			slotIndex++;
+		}
+	}
 
-		while (!ProgramArgument.EXPERIMENT_MODE.booleanValue()
-				&& client_.isRunning()) {
+	/**
+	 * Starts a game through the GUI client, waiting on the client and server
+	 * threads to catch up.
+	 */
+	private void startGuiState() {
+		while (client_.isRunning()) {
 			try {
 				Thread.yield();
 			} catch (Exception e) {
 			}
 		}
 		client_.createGame();
-		earlyExit_ = false;
-		earlyExitPlayers_.clear();
-		prevScores_.clear();
 
 		if (environment_ == null) {
 			// Sleep only as long as it needs to to get the clientID.
-			long clientID = (ProgramArgument.EXPERIMENT_MODE.booleanValue()) ? client_
-					.getClientId() : -1;
-			while (!ProgramArgument.EXPERIMENT_MODE.booleanValue()
-					&& clientID == -1) {
+			long clientID = -1;
+			while (clientID == -1) {
 				try {
 					Thread.yield();
 					clientID = client_.getClientId();
@@ -318,43 +373,12 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 			}
 
 			server_ = client_.getServer();
-			server_.setRandomGenerator(RRLExperiment.random_);
-
-			// Handle number of players playing
-			slots_ = new ArrayList<PlayerSlot>(players_.length);
-			int slotIndex = 0;
-			for (String playerName : players_) {
-				String playerNameIndex = playerName + slotIndex;
-				if (playerName.equals(CERRLA_NAME)) {
-					// Agent-controlled
-					slots_.add(new PlayerSlot(slotIndex,
-							PlayerSlot.SlotType.PLAYER, playerNameIndex,
-							clientID));
-				} else if (playerName.equals(AI_NAME)) {
-					// AI controlled
-					PlayerSlot slot = new PlayerSlot(slotIndex,
-							PlayerSlot.SlotType.AI, playerNameIndex, clientID);
-					slot.setAiClassName(LegacyAiPlayer.class.getName());
-					slots_.add(slot);
-				} else if (playerName.equals(RANDOM_NAME)) {
-					// AI controlled
-					PlayerSlot slot = new PlayerSlot(slotIndex,
-							PlayerSlot.SlotType.AI, playerNameIndex, clientID);
-					slot.setAiClassName(RandomAIPlayer.class.getName());
-					slots_.add(slot);
-				} else if (playerName.equals(HUMAN_NAME)) {
-					// Human-controlled
-					slots_.add(new PlayerSlot(slotIndex,
-							PlayerSlot.SlotType.PLAYER, playerNameIndex,
-							clientID));
-				}
-				slotIndex++;
-			}
+			server_.setRandomGenerator(getRandom());
+			createSlots(clientID);
 
 			// Start the game.
 			environment_ = client_.getGame();
-			while (!ProgramArgument.EXPERIMENT_MODE.booleanValue()
-					&& environment_ == null) {
+			while (environment_ == null) {
 				try {
 					Thread.yield();
 				} catch (Exception e) {
@@ -363,9 +387,6 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 			}
 			relationalWrapper_.setGame(environment_);
 			environment_.addGameListener(relationalWrapper_);
-			// Ad-hoc fix
-			if (ProgramArgument.EXPERIMENT_MODE.booleanValue())
-				environment_.addUserInterface(relationalWrapper_);
 			clientInterface_ = environment_.getUserInterface();
 		} else if (players_.length > 1) {
 			// Reset the UIs
@@ -379,12 +400,10 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 			}
 		}
 		// Ad-hoc fix
-		if (!ProgramArgument.EXPERIMENT_MODE.booleanValue()) {
-			environment_.addUserInterface(relationalWrapper_);
-		}
+		environment_.addUserInterface(relationalWrapper_);
 
 		// Randomise the slots
-		Collections.shuffle(slots_, RRLExperiment.random_);
+		Collections.shuffle(slots_, getRandom());
 		for (int i = 0; i < slots_.size(); i++) {
 			PlayerSlot slot = slots_.get(i);
 			PlayerSlot cloneSlot = new PlayerSlot(i, slot.getType(),
@@ -395,9 +414,8 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 
 		server_.startGame();
 		// Sleep until game has started
-		while (!ProgramArgument.EXPERIMENT_MODE.booleanValue()
-				&& (environment_ == null || environment_.getBoard() == null || environment_
-						.getTilePack() == null)) {
+		while (environment_ == null || environment_.getBoard() == null
+				|| environment_.getTilePack() == null) {
 			environment_ = ((ClientStub) Proxy.getInvocationHandler(server_))
 					.getGame();
 			try {
@@ -407,6 +425,29 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 		}
 
 		runPhases();
+	}
+
+	@Override
+	protected void startState() {
+		relationalWrapper_.startState();
+		earlyExit_ = false;
+		earlyExitPlayers_.clear();
+		prevScores_.clear();
+
+		if (driver_ != null) {
+			if (environment_ == null) {
+				driver_.setRandomGenerator(getRandom());
+				driver_.setInterface(relationalWrapper_);
+				server_ = driver_.getServer();
+				environment_ = driver_.getGame();
+				createSlots(CarcassonneDriver.CLIENT_ID);
+			}
+
+			// Randomise the slots
+			Collections.shuffle(slots_, getRandom());
+			driver_.startGame(slots_);
+		} else
+			startGuiState();
 
 		currentPlayer_ = null;
 	}
@@ -417,7 +458,8 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 		if (action == null || earlyExit_) {
 			earlyExit_ = true;
 			relationalWrapper_.gameOver();
-			client_.closeGame(true);
+			if (client_ != null)
+				client_.closeGame(true);
 			return;
 		}
 
@@ -445,12 +487,14 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 	@Override
 	public void cleanup() {
 		client_ = null;
+		driver_ = null;
 		clientInterface_ = null;
 		currentPlayer_ = null;
 		slots_ = null;
 		if (earlyExitPlayers_ != null)
 			earlyExitPlayers_.clear();
-		environment_.clearUserInterface();
+		if (environment_ != null)
+			environment_.clearUserInterface();
 		environment_ = null;
 		server_ = null;
 		if (slots_ != null)
@@ -459,12 +503,12 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 
 	@Override
 	public void initialise(int runIndex, String[] extraArg) {
-		guiMode_ = !ProgramArgument.EXPERIMENT_MODE.booleanValue();
+		guiMode_ = !headless_ && !ProgramArgument.EXPERIMENT_MODE.booleanValue();
 		String goal = StateSpec.getInstance().getGoalName();
 		checkMultiplayer(goal);
 
 		// Only initialise the client if it's not already initialised.
-		if (client_ == null) {
+		if (client_ == null && driver_ == null) {
 			// Parse play speed
 			for (String arg : extraArg) {
 				checkMultiplayer(arg);
@@ -482,6 +526,7 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 				players_[0] = CERRLA_NAME;
 			}
 
+			relationalWrapper_.setSynchronous(!guiMode_);
 			if (guiMode_) {
 				client_ = new GuiCarcassonneClient("config.ini", true);
 				try {
@@ -489,78 +534,63 @@ public class CarcassonneEnvironment extends RRLEnvironment {
 				} catch (InterruptedException e) {
 				}
 			} else
-				client_ = new LocalCarcassonneClient("config.ini");
+				driver_ = new CarcassonneDriver("config.ini");
 		}
 	}
 
+	/**
+	 * Gets the game currently being played.
+	 * 
+	 * @return The game, or null if not yet started.
+	 */
+	public Game getGame() {
+		return environment_;
+	}
+
+	public CarcassonneRelationalWrapper getRelationalWrapper() {
+		return relationalWrapper_;
+	}
+
+	/**
+	 * Sets the random number generator for the game (tile draws, seating
+	 * order and random choices). By default the experiment's is used.
+	 * 
+	 * @param random
+	 *            The random number generator.
+	 */
+	public void setRandomGenerator(Random random) {
+		random_ = random;
+		relationalWrapper_.setRandomGenerator(random);
+		if (driver_ != null)
+			driver_.setRandomGenerator(random);
+	}
+
 	public static void main(String[] args) {
 		int repetitions = 100;
 		double[] scores = new double[repetitions];
 
-		RRLJCloisterClient client = new LocalCarcassonneClient("config.ini");
-		ServerIF server = null;
-		Game game = client.getGame();
-		Player firstPlayer = null;
+		CarcassonneDriver driver = new CarcassonneDriver("config.ini");
 		ArrayList<PlayerSlot> slots = new ArrayList<PlayerSlot>();
-		for (int r = 0; r < repetitions; r++) {
-			client.createGame();
-			if (game == null) {
-				server = new LocalCarcassonneServer(client.getGame());
-				PlayerSlot slot = new PlayerSlot(0, PlayerSlot.SlotType.AI,
-						"RANDOM" + 0, client.getClientId());
-				slot.setAiClassName(RandomAIPlayer.class.getName());
-				slots.add(slot);
-				for (int j = 1; j < Integer.parseInt(args[0]); j++) {
-					slot = new PlayerSlot(j, PlayerSlot.SlotType.AI,
-							"AI" + j, client.getClientId());
-					slot.setAiClassName(LegacyAiPlayer.class.getName());
-					slots.add(slot);
-				}
-				game = client.getGame();
-			} else {
-				// Reset the UIs
-				server.stopGame();
-				game.clearUserInterface();
-
-				// Clear the slots and re-add them.
-				for (int i = 0; i < PlayerSlot.COUNT; i++) {
-					server.updateSlot(new PlayerSlot(i), null);
-				}
-			}
+		PlayerSlot slot = new PlayerSlot(0, PlayerSlot.SlotType.AI, "RANDOM"
+				+ 0, CarcassonneDriver.CLIENT_ID);
+		slot.setAiClassName(RandomAIPlayer.class.getName());
+		slots.add(slot);
+		for (int j = 1; j < Integer.parseInt(args[0]); j++) {
+			slot = new PlayerSlot(j, PlayerSlot.SlotType.AI, "AI" + j,
+					CarcassonneDriver.CLIENT_ID);
+			slot.setAiClassName(LegacyAiPlayer.class.getName());
+			slots.add(slot);
+		}
 
+		for (int r = 0; r < repetitions; r++) {
 			Collections.shuffle(slots);
-			for (int i = 0; i < slots.size(); i++) {
-				PlayerSlot slot = slots.get(i);
-				PlayerSlot cloneSlot = new PlayerSlot(i, slot.getType(),
-						slot.getNick(), slot.getOwner());
-				cloneSlot.setAiClassName(slot.getAiClassName());
-				server.updateSlot(cloneSlot,
-						LegacyAiPlayer.supportedExpansions());
-			}
-
-			server.startGame();
+			// All AI players, so the game plays out in full.
+			driver.startGame(slots);
 
-			Phase phase = game.getPhase();
-
-			// Cycle through (probably only once) to keep the game moving.
-			while (phase != null && !phase.isEntered()) {
-				// Modifying phases to proxyless versions
-				if (phase.getClass().equals(CreateGamePhase.class))
-					phase = game.getPhases()
-							.get(ProxylessCreateGamePhase.class);
-				if (phase.getClass().equals(DrawPhase.class))
-					phase = game.getPhases().get(ProxylessDrawPhase.class);
-
-				phase.setEntered(true);
-				phase.enter();
-				phase = game.getPhase();
-
-				if (game.getTurnPlayer().getNick().equals("RANDOM0"))
-					firstPlayer = game.getTurnPlayer();
-			}
-			int score = firstPlayer.getPoints();
-			scores[r] = score;
-			System.out.println(score);
+			for (Player player : driver.getGame().getAllPlayers())
+				if (player.getNick().equals("RANDOM0"))
+					scores[r] = player.getPoints();
+			System.out.println((int) scores[r]);
 		}
 
 		Mean m = new Mean();
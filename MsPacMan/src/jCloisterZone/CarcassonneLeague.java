@@ -0,0 +1,309 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/jCloisterZone/CarcassonneLeague.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package jCloisterZone;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.math.stat.descriptive.moment.Mean;
+import org.apache.commons.math.stat.descriptive.moment.StandardDeviation;
+
+import jess.Rete;
+
+import relationalFramework.PolicyActions;
+import relationalFramework.RelationalPolicy;
+import relationalFramework.RelationalRule;
+import relationalFramework.StateSpec;
+import rrlFramework.RRLEnvironment;
+import rrlFramework.RRLObservations;
+
+import cerrla.modular.ModularPolicy;
+import cerrla.modular.ModularSubGoal;
+import cerrla.modular.PolicyItem;
+
+/**
+ * Plays a fixed policy in a number of independent Carcassonne games at once
+ * to estimate its value. Every game has its own headless environment (and
+ * so its own JCloisterZone game), its own random seed and its own copy of
+ * the Rete, and is played on one of a fixed pool of worker threads. A game's
+ * value is the score it earned the policy, and the policy's value is the mean
+ * over the games.
+ *
+ * The policy is evaluated as a plain rule list (the rules of any modular
+ * sub-goals are included in place), so nothing is learned while playing. The
+ * league can be used standalone (see main), or, with the leagueGames argument,
+ * learning values each sampled policy by its mean over a league rather than
+ * by the episodes it was sampled in.
+ *
+ * @author Sam Sarjant
+ */
+public class CarcassonneLeague {
+	/** The most times a game is restarted because it began already won. */
+	private static final int MAX_START_ATTEMPTS = 100;
+
+	/** The games' environments. */
+	private final CarcassonneEnvironment[] environments_;
+
+	/** The pool playing the games. */
+	private final ExecutorService workers_;
+
+	/** The number of games that failed in the last playGames call. */
+	private int numFailed_;
+
+	/**
+	 * Creates a league of new games.
+	 *
+	 * @param numGames
+	 *            The number of games to play per evaluation.
+	 * @param numThreads
+	 *            The number of threads to play the games with.
+	 * @param extraArgs
+	 *            The environment arguments (e.g. the opponents).
+	 */
+	public CarcassonneLeague(int numGames, int numThreads, String[] extraArgs) {
+		environments_ = new CarcassonneEnvironment[numGames];
+		for (int i = 0; i < numGames; i++) {
+			environments_[i] = new CarcassonneEnvironment(true);
+			environments_[i].initialise(i, extraArgs);
+		}
+		workers_ = Executors.newFixedThreadPool(Math.max(1, numThreads),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "CarcassonneGame");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Adds the rules of a policy (and of any modular sub-goals it contains)
+	 * to a plain policy.
+	 *
+	 * @param policy
+	 *            The policy to add the rules of.
+	 * @param flatPolicy
+	 *            The policy being added to.
+	 */
+	private void addRules(RelationalPolicy policy, RelationalPolicy flatPolicy) {
+		for (PolicyItem item : policy.getRules()) {
+			if (item instanceof RelationalRule)
+				flatPolicy.addRule((RelationalRule) item);
+			else if (item instanceof ModularSubGoal) {
+				ModularPolicy subPolicy = ((ModularSubGoal) item)
+						.getModularPolicy();
+				if (subPolicy != null)
+					addRules(subPolicy, flatPolicy);
+			}
+		}
+	}
+
+	/**
+	 * Plays a single game with the policy.
+	 *
+	 * @param environment
+	 *            The game's environment.
+	 * @param policy
+	 *            The policy to play with.
+	 * @return The environmental reward the policy received.
+	 */
+	private double playGame(RRLEnvironment environment,
+			RelationalPolicy policy) {
+		int numActions = StateSpec.getInstance().getNumReturnedActions();
+		double total = 0;
+		RRLObservations observations = environment.startEpisode();
+		for (int attempts = 1; observations.isTerminal() == RRLEnvironment.TERMINAL_WIN; attempts++) {
+			if (attempts >= MAX_START_ATTEMPTS)
+				throw new IllegalStateException("The game began already won "
+						+ attempts + " times");
+			observations = environment.startEpisode();
+		}
+		while (true) {
+			PolicyActions actions = policy.evaluatePolicy(observations,
+					numActions);
+			observations = environment.step(actions);
+			double[] rewards = observations.getRewards(observations
+					.getAgentTurn());
+			if (rewards != null)
+				total += rewards[RRLObservations.ENVIRONMENTAL_INDEX];
+			if (observations.isTerminal() != RRLEnvironment.NOT_TERMINAL)
+				break;
+		}
+		return total;
+	}
+
+	/**
+	 * Plays every game once with a policy, in parallel. Each game's seed is
+	 * drawn from the league seed in order, so a league is reproducible (as
+	 * far as the opponents are). A game that fails is reported and left out
+	 * of the results (see getNumFailed).
+	 *
+	 * @param policy
+	 *            The policy to play with.
+	 * @param seed
+	 *            The seed to draw the games' seeds from.
+	 * @return The reward the policy received in each completed game, in game
+	 *         order.
+	 */
+	public double[] playGames(RelationalPolicy policy, long seed) {
+		final RelationalPolicy flatPolicy = new RelationalPolicy();
+		addRules(policy, flatPolicy);
+
+		// Make the rule queries before copying the Rete
+		StateSpec spec = StateSpec.getInstance();
+		try {
+			for (PolicyItem rule : flatPolicy.getRules())
+				spec.getRuleQuery((RelationalRule) rule, false);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		final byte[] savedRete = spec.saveRete();
+
+		final double[] values = new double[environments_.length];
+		Random seeds = new Random(seed);
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(
+				environments_.length);
+		for (int i = 0; i < environments_.length; i++) {
+			final int index = i;
+			final long gameSeed = seeds.nextLong();
+			futures.add(workers_.submit(new Callable<Object>() {
+				@Override
+				public Object call() {
+					StateSpec spec = StateSpec.getInstance();
+					Rete rete = StateSpec.loadRete(savedRete);
+					spec.setThreadRete(rete);
+					try {
+						environments_[index].setRandomGenerator(new Random(
+								gameSeed));
+						values[index] = playGame(environments_[index],
+								flatPolicy);
+					} finally {
+						spec.setThreadRete(null);
+					}
+					return null;
+				}
+			}));
+		}
+
+		// Leave out (and report) any games that failed
+		boolean[] failed = new boolean[values.length];
+		numFailed_ = 0;
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (Exception e) {
+				System.err.println("Carcassonne game " + i + " failed:");
+				e.printStackTrace();
+				failed[i] = true;
+				numFailed_++;
+			}
+		}
+		double[] completed = new double[values.length - numFailed_];
+		for (int i = 0, j = 0; i < values.length; i++)
+			if (!failed[i])
+				completed[j++] = values[i];
+		return completed;
+	}
+
+	/**
+	 * Estimates the value of a policy as its mean reward over the games.
+	 *
+	 * @param policy
+	 *            The policy to evaluate.
+	 * @param seed
+	 *            The seed to draw the games' seeds from.
+	 * @return The mean reward of the policy over the completed games.
+	 */
+	public double evaluate(RelationalPolicy policy, long seed) {
+		return new Mean().evaluate(playGames(policy, seed));
+	}
+
+	/**
+	 * Shuts down the worker threads and games. The league cannot be used
+	 * afterwards.
+	 */
+	public void shutdown() {
+		workers_.shutdown();
+		for (CarcassonneEnvironment environment : environments_)
+			environment.cleanup();
+	}
+
+	/**
+	 * Gets the number of games that failed (and were left out of the results)
+	 * in the last playGames call.
+	 *
+	 * @return The number of failed games.
+	 */
+	public int getNumFailed() {
+		return numFailed_;
+	}
+
+	public int size() {
+		return environments_.length;
+	}
+
+	/**
+	 * Plays a policy file in a league and prints the results.
+	 *
+	 * @param args
+	 *            The goal (e.g. multiAI3), the policy file, the number of
+	 *            games, the number of threads and optionally the seed.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.err.println("Usage: CarcassonneLeague <goal> <policyFile> "
+					+ "<numGames> <numThreads> [seed]");
+			return;
+		}
+
+		StateSpec.initInstance("jCloisterZone.Carcassonne", args[0]);
+		long seed = (args.length > 4) ? Long.parseLong(args[4]) : 0;
+		CarcassonneLeague league = new CarcassonneLeague(
+				Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+				new String[0]);
+		try {
+			RelationalPolicy policy = RelationalPolicy
+					.loadPolicyFile(new File(args[1]));
+			long start = System.currentTimeMillis();
+			double[] values = league.playGames(policy, seed);
+			long elapsed = System.currentTimeMillis() - start;
+			for (double value : values)
+				System.out.println((int) value);
+			System.out.println("Mean: " + new Mean().evaluate(values)
+					+ ", SD: " + new StandardDeviation().evaluate(values)
+					+ ", " + values.length + " games in " + elapsed + "ms, "
+					+ league.getNumFailed() + " failed");
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			league.shutdown();
+		}
+	}
+}
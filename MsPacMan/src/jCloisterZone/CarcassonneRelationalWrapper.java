@@ -21,12 +21,14 @@
  */
 package jCloisterZone;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
@@ -35,11 +37,10 @@ import relationalFramework.RelationalPredicate;
 import rrlFramework.RRLExperiment;
 import util.Pair;
 
+import jess.Fact;
 import jess.JessException;
 import jess.Rete;
 
-import cerrla.ProgramArgument;
-
 import com.jcloisterzone.Expansion;
 import com.jcloisterzone.Player;
 import com.jcloisterzone.UserInterface;
@@ -84,28 +85,75 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	public static final String NO_ACTION = "No Action";
 	/** The available actions to take per action phase. */
 	private List<PlayerAction> actions_;
-	/** Features that have already been asserted this iteration. */
-	private Collection<Feature> assertedFeatures_ = new HashSet<Feature>();
-	/** The positions that have already been asserted this iteration. */
-	private Collection<Position> assertedPositions_ = new HashSet<Position>(150);
 	/** Cache of cities for farm evaluation. */
 	private Map<City, CityScoreContext> cityCache_ = new HashMap<City, CityScoreContext>(
 			100);
+	/** If a city has been completed since the board facts were updated. */
+	private boolean cityCompleted_;
 	/** The current game environment. */
 	private Game environment_;
+	/** The facts asserted for each board feature, by feature name. */
+	private Map<String, Collection<Fact>> featureFacts_ = new HashMap<String, Collection<Fact>>();
 	/** A map for storing meeple feature locations. */
 	private Map<String, Feature> featureMap_ = new HashMap<String, Feature>();
+	/** The name each placed feature (part) is asserted under. */
+	private Map<Feature, String> featureNames_ = new HashMap<Feature, String>();
+	/** If every board fact needs to be asserted (the Rete was reset). */
+	private boolean fullUpdate_ = true;
 	/** A map for storing valid locations. */
 	private Map<String, Position> locationMap_ = new HashMap<String, Position>();
+	/** The feature asserted under each board feature name. */
+	private Map<String, Feature> namedFeatures_ = new HashMap<String, Feature>();
+	/** The tiles placed since the board facts were updated. */
+	private Collection<Tile> placedTiles_ = new ArrayList<Tile>();
+	/** The index of legal tile placements around the board. */
+	private PlacementIndex placementIndex_ = new PlacementIndex();
+	/** The location facts asserted for each board position. */
+	private Map<Position, Collection<Fact>> positionFacts_ = new HashMap<Position, Collection<Fact>>();
 	/** If no action (a random action) was selected in the last step. */
 	private boolean randomActionSelected_;
-	/** If this thread is safe to execute. */
+	/** The random number generator (the experiment's when null). */
+	private Random random_;
+	/** If this thread is safe to execute (null when driven synchronously). */
 	private volatile CountDownLatch readyToExecute_;
+	/** The facts asserted for the current step only. */
+	private Collection<Fact> stepFacts_ = new ArrayList<Fact>();
+	/** The positions asserted for the current step only. */
+	private Collection<Position> stepPositions_ = new HashSet<Position>();
+	/** The surrounding tile count fact of each board position. */
+	private Map<Position, Fact> surroundingFacts_ = new HashMap<Position, Fact>();
+	/** If the game is driven synchronously on the agent's thread. */
+	private boolean synchronous_;
 	/** The count of tiles for unique IDs. */
 	private int tileCount_ = 0;
-	/** The available tile positions per tile phase. */
+	/** The facts asserted for each placed tile. */
+	private Map<Tile, Collection<Fact>> tileFacts_ = new HashMap<Tile, Collection<Fact>>();
+	/** The names of the placed tiles (fixed for the game). */
+	private Map<Tile, String> tileNames_ = new HashMap<Tile, String>();
+	/** The legal tile placements of the current tile phase. */
 	private Map<Position, Set<Rotation>> tilePositions_;
+	/** The features changed by game events since the board facts were updated. */
+	private Collection<Feature> touchedFeatures_ = new HashSet<Feature>();
 
+	/**
+	 * Asserts a fact into a group of facts, so it can be retracted with the
+	 * group later.
+	 * 
+	 * @param rete
+	 *            The rete object to assert to.
+	 * @param fact
+	 *            The fact to assert.
+	 * @param group
+	 *            The group the fact belongs to.
+	 * @throws JessException
+	 *             Should something go awry...
+	 */
+	private void assertFact(Rete rete, String fact, Collection<Fact> group)
+			throws JessException {
+		Fact asserted = rete.assertString(fact);
+		if (asserted != null && !group.contains(asserted))
+			group.add(asserted);
+	}
 	/**
 	 * Asserts a city.
 	 * 
@@ -113,19 +161,18 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	 *            The rete object to assert/retract the facts.
 	 * @param road
 	 *            The (portion of) city to assert.
+	 * @param group
+	 *            The group the facts belong to.
 	 */
-	private String assertCity(Rete rete, City city) throws JessException {
+	private String assertCity(Rete rete, City city, Collection<Fact> group)
+			throws JessException {
 		CityScoreContext cityContext = new CityScoreContext(environment_);
 		city.walk(cityContext);
-		Feature master = cityContext.getMasterFeature();
-		String cityName = formatFeature(master);
-		if (!assertedFeatures_.contains(master)) {
-			rete.assertString("(city " + cityName + ")");
-
-			// Completable assertions
-			assertCompletable(rete, cityName, cityContext);
-			assertedFeatures_.add(master);
-		}
+		String cityName = formatFeature(cityContext.getMasterFeature());
+		assertFact(rete, "(city " + cityName + ")", group);
+
+		// Completable assertions
+		assertCompletable(rete, cityName, cityContext, group);
 		return cityName;
 	}
 
@@ -136,33 +183,35 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	 *            The rete object to assert/retract the facts.
 	 * @param road
 	 *            The cloister to assert.
+	 * @param group
+	 *            The group the facts belong to.
 	 */
-	private String assertCloister(Rete rete, Cloister cloister)
-			throws JessException {
+	private String assertCloister(Rete rete, Cloister cloister,
+			Collection<Fact> group) throws JessException {
 		String cloisterName = formatFeature(cloister);
-		rete.assertString("(cloister " + cloisterName + ")");
+		assertFact(rete, "(cloister " + cloisterName + ")", group);
 
 		// Don't assert other information about unplaced cloisters.
 		Position cloisterLoc = cloister.getTile().getPosition();
 		if (cloisterLoc != null) {
-			String cloisterLocStr = assertPosition(rete, cloisterLoc);
+			String cloisterLocStr = assertPosition(rete, cloisterLoc, true);
 			CloisterScoreContext context = (CloisterScoreContext) cloister
 					.getScoreContext();
 			context.visit(cloister);
-			rete.assertString("(worth " + cloisterName + " "
-					+ context.getPoints() + ")");
+			assertFact(rete, "(worth " + cloisterName + " "
+					+ context.getPoints() + ")", group);
 			if (context.isCompleted())
-				rete.assertString("(completed " + cloisterName + ")");
+				assertFact(rete, "(completed " + cloisterName + ")", group);
 
-			rete.assertString("(cloisterZone " + cloisterLocStr + " "
-					+ cloisterName + ")");
+			assertFact(rete, "(cloisterZone " + cloisterLocStr + " "
+					+ cloisterName + ")", group);
 
 			// Assert surrounding zone locations
 			for (Position adjDiag : Position.ADJACENT_AND_DIAGONAL.values()) {
 				Position p = cloisterLoc.add(adjDiag);
-				String loc = assertPosition(rete, p);
-				rete.assertString("(cloisterZone " + loc + " " + cloisterName
-						+ ")");
+				String loc = assertPosition(rete, p, true);
+				assertFact(rete, "(cloisterZone " + loc + " " + cloisterName
+						+ ")", group);
 			}
 		}
 		return cloisterName;
@@ -177,19 +226,22 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	 *            The name of the feature.
 	 * @param context
 	 *            The context (details) of the feature.
+	 * @param group
+	 *            The group the facts belong to.
 	 * @throws JessException
 	 *             Should something go awry...
 	 */
 	private void assertCompletable(Rete rete, String featureName,
-			PositionCollectingScoreContext context) throws JessException {
+			PositionCollectingScoreContext context, Collection<Fact> group)
+			throws JessException {
 		if (context.isCompleted())
-			rete.assertString("(completed " + featureName + ")");
+			assertFact(rete, "(completed " + featureName + ")", group);
 		else {
 			// Assert open edges
-			rete.assertString("(open " + featureName + " "
-					+ context.getOpenEdges() + ")");
+			assertFact(rete, "(open " + featureName + " "
+					+ context.getOpenEdges() + ")", group);
 		}
-		assertWorthAndMeeples(rete, featureName, context);
+		assertWorthAndMeeples(rete, featureName, context, group);
 	}
 
 	/**
@@ -199,77 +251,50 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	 *            The rete object to assert/retract the facts.
 	 * @param road
 	 *            The (portion of) farm to assert.
+	 * @param group
+	 *            The group the facts belong to.
 	 */
-	private String assertFarm(Rete rete, Farm farm) throws JessException {
+	private String assertFarm(Rete rete, Farm farm, Collection<Fact> group)
+			throws JessException {
 		FarmScoreContext farmContext = new FarmScoreContext(environment_);
 		farmContext.setCityCache(cityCache_);
 		farm.walk(farmContext);
-		Feature master = farmContext.getMasterFeature();
-		String farmName = formatFeature(master);
-		if (!assertedFeatures_.contains(master)) {
-			rete.assertString("(farm " + farmName + ")");
-
-			// Assert player meeple control
-			for (Player p : farmContext.getMajorOwners()) {
-				rete.assertString("(controls " + formatPlayer(p) + " "
-						+ farmName + ")");
-			}
-			assertWorthAndMeeples(rete, farmName, farmContext);
-			assertedFeatures_.add(master);
+		String farmName = formatFeature(farmContext.getMasterFeature());
+		assertFact(rete, "(farm " + farmName + ")", group);
+
+		// Assert player meeple control
+		for (Player p : farmContext.getMajorOwners()) {
+			assertFact(rete, "(controls " + formatPlayer(p) + " " + farmName
+					+ ")", group);
 		}
+		assertWorthAndMeeples(rete, farmName, farmContext, group);
 		return farmName;
 	}
 
 	/**
-	 * Asserts a feature of a tile.
+	 * Asserts the facts of a feature (whichever tile it is seen from).
 	 * 
 	 * @param rete
 	 *            The rete object to assert/retract the facts.
 	 * @param terrain
 	 *            The feature to assert.
-	 * @param tileName
-	 *            The name of the tile.
+	 * @param group
+	 *            The group the facts belong to.
+	 * @return The name of the feature.
 	 * @throws JessException
 	 *             Should something go awry...
 	 */
-	private void assertFeature(Rete rete, Feature terrain, String tileName)
-			throws JessException {
-		String featureName = null;
-		if (terrain instanceof Road) {
-			featureName = assertRoad(rete, (Road) terrain);
-		} else if (terrain instanceof City) {
-			featureName = assertCity(rete, (City) terrain);
-		} else if (terrain instanceof Farm) {
-			featureName = assertFarm(rete, (Farm) terrain);
-		} else if (terrain instanceof Cloister) {
-			featureName = assertCloister(rete, (Cloister) terrain);
-		}
-
-		// Assert the feature in the tile
-		rete.assertString("(tileContains " + tileName + " " + featureName + ")");
-
-		// Assert the tile edges
-		Location tileLocation = terrain.getLocation();
-		for (Location side : Location.sides()) {
-			// Check the side location.
-			if (side.isPartOf(tileLocation)
-					|| (tileLocation.isFarmLocation() && ((side.hashCode() >> 8) & tileLocation
-							.hashCode()) != 0)) {
-				// Name the edge.
-				String edge = null;
-				if (side.equals(Location.N))
-					edge = "north";
-				else if (side.equals(Location.E))
-					edge = "east";
-				else if (side.equals(Location.S))
-					edge = "south";
-				else if (side.equals(Location.W))
-					edge = "west";
-
-				rete.assertString("(tileEdge " + tileName + " " + edge + " "
-						+ featureName + ")");
-			}
-		}
+	private String assertFeature(Rete rete, Feature terrain,
+			Collection<Fact> group) throws JessException {
+		if (terrain instanceof Road)
+			return assertRoad(rete, (Road) terrain, group);
+		else if (terrain instanceof City)
+			return assertCity(rete, (City) terrain, group);
+		else if (terrain instanceof Farm)
+			return assertFarm(rete, (Farm) terrain, group);
+		else if (terrain instanceof Cloister)
+			return assertCloister(rete, (Cloister) terrain, group);
+		return null;
 	}
 
 	/**
@@ -277,31 +302,29 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	 * 
 	 * @param rete
 	 *            The rete object to assert/retract to.
-	 * @param currentTile
-	 *            The current tile being placed/meeple'd
-	 * @param tileStr
-	 *            The name of the tile.
 	 * @throws JessException
 	 *             Should something go awry...
 	 */
 	private void assertPhaseSpecific(Rete rete) throws JessException {
 		Phase phase = environment_.getPhase();
 
-		// Assert current tile features.
+		// Assert current tile features (a loose copy, without location).
 		Tile currentTile = environment_.getTilePack().getCurrentTile();
-		String tileStr = assertTile(rete, currentTile, false);
-		rete.assertString("(currentTile " + tileStr + ")");
+		String tileStr = nameTile(currentTile);
+		assertTile(rete, currentTile, tileStr, false, stepFacts_);
+		assertFact(rete, "(currentTile " + tileStr + ")", stepFacts_);
 
 		// Phase specific assertions
 		if (phase instanceof TilePhase) {
 			// Board positions
+			tilePositions_ = getTilePlacements(currentTile);
 			for (Position pos : tilePositions_.keySet()) {
 				// Assert the position
-				String loc = assertPosition(rete, pos);
+				String loc = assertPosition(rete, pos, false);
 				Set<Rotation> rotations = tilePositions_.get(pos);
 				for (Rotation rot : rotations) {
-					rete.assertString("(validLoc " + tileStr + " " + loc + " "
-							+ rot + ")");
+					assertFact(rete, "(validLoc " + tileStr + " " + loc + " "
+							+ rot + ")", stepFacts_);
 				}
 
 				locationMap_.put(loc, pos);
@@ -321,8 +344,8 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 						String masterStr = formatFeature(master.getResult());
 
 						// Assert the meeple loc.
-						rete.assertString("(meepleLoc " + tileStr + " "
-								+ masterStr + ")");
+						assertFact(rete, "(meepleLoc " + tileStr + " "
+								+ masterStr + ")", stepFacts_);
 
 						featureMap_.put(masterStr, terrain);
 					}
@@ -332,30 +355,38 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	}
 
 	/**
-	 * Formats a position as a JESS constant.
+	 * Formats a position as a JESS constant, asserting the location facts if
+	 * not already asserted. Board positions keep their facts between steps,
+	 * other positions are only asserted for the current step.
 	 * 
 	 * @param rete
 	 *            The rete object to assert/retract the facts.
 	 * @param position
 	 *            The position to format.
+	 * @param onBoard
+	 *            If the position is referred to by the board facts.
 	 * @return A String version of the position.
 	 */
-	private String assertPosition(Rete rete, Position position)
-			throws JessException {
-		String loc = "loc_" + position.x + "_" + position.y;
-		if (!assertedPositions_.contains(position)) {
-			rete.assertString("(location " + loc + ")");
-			rete.assertString("(locationXY " + loc + " " + position.x + " "
-					+ position.y + ")");
-
-			// Assert the number of surrounding tiles
-			int numAdjacentAndDiagonal = environment_.getBoard()
-					.getAdjacentAndDiagonalTiles(position).size();
-			rete.assertString("(numSurroundingTiles " + loc + " "
-					+ numAdjacentAndDiagonal + ")");
-			assertedPositions_.add(position);
-		}
-
+	private String assertPosition(Rete rete, Position position,
+			boolean onBoard) throws JessException {
+		String loc = formatPosition(position);
+		if (positionFacts_.containsKey(position))
+			return loc;
+
+		Collection<Fact> group = stepFacts_;
+		if (onBoard) {
+			group = new ArrayList<Fact>(3);
+			positionFacts_.put(position, group);
+		} else if (!stepPositions_.add(position))
+			return loc;
+
+		assertFact(rete, "(location " + loc + ")", group);
+		assertFact(rete, "(locationXY " + loc + " " + position.x + " "
+				+ position.y + ")", group);
+		Fact surrounding = assertSurrounding(rete, position);
+		group.add(surrounding);
+		if (onBoard)
+			surroundingFacts_.put(position, surrounding);
 		return loc;
 	}
 
@@ -366,53 +397,121 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	 *            The rete object to assert/retract the facts.
 	 * @param road
 	 *            The (portion of) road to assert.
+	 * @param group
+	 *            The group the facts belong to.
 	 */
-	private String assertRoad(Rete rete, Road road) throws JessException {
+	private String assertRoad(Rete rete, Road road, Collection<Fact> group)
+			throws JessException {
 		RoadScoreContext roadContext = new RoadScoreContext(environment_);
 		road.walk(roadContext);
-		Feature master = roadContext.getMasterFeature();
-		String roadName = formatFeature(master);
-		if (!assertedFeatures_.contains(master)) {
-			rete.assertString("(road " + roadName + ")");
-
-			// Completable assertions
-			assertCompletable(rete, roadName, roadContext);
-			assertedFeatures_.add(master);
-		}
+		String roadName = formatFeature(roadContext.getMasterFeature());
+		assertFact(rete, "(road " + roadName + ")", group);
+
+		// Completable assertions
+		assertCompletable(rete, roadName, roadContext, group);
 		return roadName;
 	}
 
 	/**
-	 * Asserts a tile (and its edges)
+	 * Asserts the number of tiles surrounding a position.
+	 * 
+	 * @param rete
+	 *            The rete object to assert the fact.
+	 * @param position
+	 *            The position.
+	 * @return The asserted fact.
+	 */
+	private Fact assertSurrounding(Rete rete, Position position)
+			throws JessException {
+		int numAdjacentAndDiagonal = environment_.getBoard()
+				.getAdjacentAndDiagonalTiles(position).size();
+		return rete.assertString("(numSurroundingTiles "
+				+ formatPosition(position) + " " + numAdjacentAndDiagonal + ")");
+	}
+
+	/**
+	 * Asserts a tile (and its edges). Features already on the board are
+	 * referred to by their board name, other features are asserted with the
+	 * tile.
 	 * 
 	 * @param rete
 	 *            The rete object to assert/retract the facts.
 	 * @param tile
 	 *            The tile to assert
+	 * @param tileStr
+	 *            The name of the tile.
 	 * @param assertPos
 	 *            If the tile location should be asserted.
+	 * @param group
+	 *            The group the facts belong to.
 	 * @throws JessException
 	 *             Should something go awry...
 	 */
-	private String assertTile(Rete rete, Tile tile, boolean assertPos)
-			throws JessException {
-		String tileStr = tile.toString();
-		tileStr = tileStr.substring(0, tileStr.indexOf('(')) + (tileCount_++);
-		rete.assertString("(tile " + tileStr + ")");
+	private void assertTile(Rete rete, Tile tile, String tileStr,
+			boolean assertPos, Collection<Fact> group) throws JessException {
+		assertFact(rete, "(tile " + tileStr + ")", group);
 
 		if (assertPos) {
 			// Assert tile location
 			Position tilePos = tile.getPosition();
-			rete.assertString("(tileLocation " + tileStr + " "
-					+ assertPosition(rete, tilePos) + ")");
+			assertFact(rete, "(tileLocation " + tileStr + " "
+					+ assertPosition(rete, tilePos, true) + ")", group);
 		}
 
 		// Assert tile features
 		for (Feature terrain : tile.getFeatures()) {
-			assertFeature(rete, terrain, tileStr);
+			String featureName = featureNames_.get(terrain);
+			if (featureName == null)
+				featureName = assertFeature(rete, terrain, group);
+			assertTileFeature(rete, terrain, tileStr, featureName, group);
 		}
+	}
 
-		return tileStr;
+	/**
+	 * Asserts that a tile contains a feature, and the edges the feature is on.
+	 * 
+	 * @param rete
+	 *            The rete object to assert/retract the facts.
+	 * @param terrain
+	 *            The feature in the tile.
+	 * @param tileName
+	 *            The name of the tile.
+	 * @param featureName
+	 *            The name of the feature.
+	 * @param group
+	 *            The group the facts belong to.
+	 * @throws JessException
+	 *             Should something go awry...
+	 */
+	private void assertTileFeature(Rete rete, Feature terrain,
+			String tileName, String featureName, Collection<Fact> group)
+			throws JessException {
+		// Assert the feature in the tile
+		assertFact(rete, "(tileContains " + tileName + " " + featureName + ")",
+				group);
+
+		// Assert the tile edges
+		Location tileLocation = terrain.getLocation();
+		for (Location side : Location.sides()) {
+			// Check the side location.
+			if (side.isPartOf(tileLocation)
+					|| (tileLocation.isFarmLocation() && ((side.hashCode() >> 8) & tileLocation
+							.hashCode()) != 0)) {
+				// Name the edge.
+				String edge = null;
+				if (side.equals(Location.N))
+					edge = "north";
+				else if (side.equals(Location.E))
+					edge = "east";
+				else if (side.equals(Location.S))
+					edge = "south";
+				else if (side.equals(Location.W))
+					edge = "west";
+
+				assertFact(rete, "(tileEdge " + tileName + " " + edge + " "
+						+ featureName + ")", group);
+			}
+		}
 	}
 
 	/**
@@ -424,23 +523,26 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	 *            The name fo the feature.
 	 * @param context
 	 *            The context of the feature.
+	 * @param group
+	 *            The group the facts belong to.
 	 * @throws JessException
 	 *             Should something go awry...
 	 */
 	private void assertWorthAndMeeples(Rete rete, String featureName,
-			AbstractScoreContext context) throws JessException {
+			AbstractScoreContext context, Collection<Fact> group)
+			throws JessException {
 		// Assert terrain worth
 		int worth = 0;
 		if (context instanceof PositionCollectingScoreContext)
 			worth = ((PositionCollectingScoreContext) context).getPoints(true);
 		else if (context instanceof FarmScoreContext)
 			worth = ((FarmScoreContext) context).getPoints(null);
-		rete.assertString("(worth " + featureName + " " + worth + ")");
+		assertFact(rete, "(worth " + featureName + " " + worth + ")", group);
 
 		// Assert player meeple control
 		for (Player p : context.getMajorOwners()) {
-			rete.assertString("(controls " + formatPlayer(p) + " "
-					+ featureName + ")");
+			assertFact(rete, "(controls " + formatPlayer(p) + " "
+					+ featureName + ")", group);
 		}
 
 		// Assert placedMeeples
@@ -452,8 +554,8 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 			meepleCount.put(player, count + 1);
 		}
 		for (Player p : meepleCount.keySet())
-			rete.assertString("(placedMeeples " + formatPlayer(p) + " "
-					+ meepleCount.get(p) + " " + featureName + ")");
+			assertFact(rete, "(placedMeeples " + formatPlayer(p) + " "
+					+ meepleCount.get(p) + " " + featureName + ")", group);
 	}
 
 	/**
@@ -471,22 +573,35 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 		return p.getNick().trim().replaceAll(" ", "_");
 	}
 
+	private String formatPosition(Position position) {
+		return "loc_" + position.x + "_" + position.y;
+	}
+
+	/**
+	 * Creates a new unique name for a tile.
+	 * 
+	 * @param tile
+	 *            The tile to name.
+	 * @return The tile name.
+	 */
+	private String nameTile(Tile tile) {
+		String tileStr = tile.toString();
+		return tileStr.substring(0, tileStr.indexOf('(')) + (tileCount_++);
+	}
+
 	/**
 	 * Selects a random tile placement.
 	 * 
-	 * @param game
-	 *            The current state of the game.
 	 * @return A valid placed Pair of position and rotation.
 	 */
-	private Pair<Position, Rotation> randomTilePlacement(Game game) {
-		Map<Position, Set<Rotation>> placements = game.getBoard()
-				.getAvailablePlacements();
-		int selected = RRLExperiment.random_.nextInt(placements.size());
+	private Pair<Position, Rotation> randomTilePlacement() {
+		Map<Position, Set<Rotation>> placements = tilePositions_;
+		int selected = getRandom().nextInt(placements.size());
 		// Random position
 		for (Position pos : placements.keySet()) {
 			if (selected == 0) {
 				Set<Rotation> rots = placements.get(pos);
-				selected = RRLExperiment.random_.nextInt(rots.size());
+				selected = getRandom().nextInt(rots.size());
 				// Random rotation
 				for (Rotation rot : rots) {
 					if (selected == 0) {
@@ -502,7 +617,58 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	}
 
 	/**
-	 * Sleeps (yields thread) until the game is ready to accept actions.
+	 * Gets the random number generator to make random choices with.
+	 * 
+	 * @return The given generator, or the experiment's.
+	 */
+	private Random getRandom() {
+		return (random_ == null) ? RRLExperiment.random_ : random_;
+	}
+
+	/**
+	 * Gets the legal placements of a tile on the current board, from the
+	 * placement index.
+	 * 
+	 * @param tile
+	 *            The (unplaced) tile.
+	 * @return The rotations the tile can be placed in at each position.
+	 */
+	public synchronized Map<Position, Set<Rotation>> getTilePlacements(
+			Tile tile) {
+		return placementIndex_.getPlacements(tile);
+	}
+
+	/**
+	 * Retracts a group of facts, emptying the group.
+	 * 
+	 * @param rete
+	 *            The rete object to retract from.
+	 * @param group
+	 *            The facts to retract (can be null).
+	 * @throws JessException
+	 *             Should something go awry...
+	 */
+	private void retractFacts(Rete rete, Collection<Fact> group)
+			throws JessException {
+		if (group == null)
+			return;
+		for (Fact fact : group)
+			rete.retract(fact);
+		group.clear();
+	}
+
+	/**
+	 * Notes that the game is ready for the agent to act (only needed when the
+	 * game runs on another thread).
+	 */
+	private void signalReady() {
+		if (readyToExecute_ != null)
+			readyToExecute_.countDown();
+	}
+
+	/**
+	 * Sleeps (yields thread) until the game is ready to accept actions. When
+	 * driven synchronously, the game is always ready.
 	 * 
 	 * @param game
 	 *            The game.
@@ -511,7 +677,7 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	private boolean sleepUntilReady(Game game) {
 		// Wait for the game.
 		try {
-			if (!ProgramArgument.EXPERIMENT_MODE.booleanValue())
+			if (!synchronous_)
 				readyToExecute_.await();
 		} catch (Exception e) {
 		}
@@ -521,13 +687,123 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 			return true;
 
 		// Restart the counter.
-		if (!ProgramArgument.EXPERIMENT_MODE.booleanValue())
+		if (!synchronous_)
 			readyToExecute_ = new CountDownLatch(1);
 		return false;
 	}
 
 	/**
-	 * Asserts the facts of the state.
+	 * Updates the board facts changed since the last update. New tiles are
+	 * asserted, and the facts of every feature on them (or otherwise changed
+	 * by a meeple or completion) are re-asserted under the feature's current
+	 * name, as joining features can change which part is the master. Tiles
+	 * holding a renamed feature part are re-asserted, as are the cloisters and
+	 * surrounding tile counts around new tiles, and every farm if a city was
+	 * completed.
+	 * 
+	 * @param rete
+	 *            The rete object to assert/retract to.
+	 * @param placed
+	 *            The tiles placed since the last update.
+	 * @param touched
+	 *            The features changed by game events since the last update.
+	 * @param cityCompleted
+	 *            If a city was completed since the last update.
+	 * @throws JessException
+	 *             Should something go awry...
+	 */
+	private void updateBoard(Rete rete, Collection<Tile> placed,
+			Collection<Feature> touched, boolean cityCompleted)
+			throws JessException {
+		Board board = environment_.getBoard();
+		Collection<Tile> dirtyTiles = new HashSet<Tile>(placed);
+		Collection<Feature> dirtyFeatures = new HashSet<Feature>(touched);
+		Collection<Position> dirtyPositions = new HashSet<Position>();
+		for (Tile tile : placed) {
+			dirtyFeatures.addAll(tile.getFeatures());
+			Position tilePos = tile.getPosition();
+			for (Position adjDiag : Position.ADJACENT_AND_DIAGONAL.values())
+				dirtyPositions.add(tilePos.add(adjDiag));
+			// Cloisters are worth more with every surrounding tile
+			for (Tile adjTile : board.getAdjacentAndDiagonalTiles(tilePos))
+				for (Feature terrain : adjTile.getFeatures())
+					if (terrain instanceof Cloister)
+						dirtyFeatures.add(terrain);
+		}
+		if (cityCompleted) {
+			// Farms are worth more with every completed city
+			cityCache_.clear();
+			for (Feature terrain : namedFeatures_.values())
+				if (terrain instanceof Farm)
+					dirtyFeatures.add(terrain);
+		}
+
+		// Surrounding tile counts
+		for (Position pos : dirtyPositions) {
+			Fact surrounding = surroundingFacts_.get(pos);
+			if (surrounding != null) {
+				rete.retract(surrounding);
+				Collection<Fact> group = positionFacts_.get(pos);
+				group.remove(surrounding);
+				surrounding = assertSurrounding(rete, pos);
+				group.add(surrounding);
+				surroundingFacts_.put(pos, surrounding);
+			}
+		}
+
+		// Name each changed feature by its current master
+		Collection<Feature> walked = new HashSet<Feature>();
+		Collection<String> staleNames = new HashSet<String>();
+		Map<String, Feature> updated = new HashMap<String, Feature>();
+		for (Feature terrain : dirtyFeatures) {
+			if (walked.contains(terrain)
+					|| terrain.getTile().getPosition() == null)
+				continue;
+			FeatureParts parts = new FeatureParts();
+			terrain.walk(parts);
+			String featureName = formatFeature(parts.getResult());
+			for (Feature part : parts.getParts()) {
+				walked.add(part);
+				String oldName = featureNames_.put(part, featureName);
+				if (!featureName.equals(oldName)) {
+					if (oldName != null)
+						staleNames.add(oldName);
+					dirtyTiles.add(part.getTile());
+				}
+			}
+			staleNames.add(featureName);
+			updated.put(featureName, parts.getResult());
+		}
+
+		// Re-assert the changed features
+		for (String featureName : staleNames) {
+			retractFacts(rete, featureFacts_.remove(featureName));
+			namedFeatures_.remove(featureName);
+		}
+		for (Map.Entry<String, Feature> entry : updated.entrySet()) {
+			Collection<Fact> group = new ArrayList<Fact>();
+			featureFacts_.put(entry.getKey(), group);
+			namedFeatures_.put(entry.getKey(), entry.getValue());
+			assertFeature(rete, entry.getValue(), group);
+		}
+
+		// Re-assert the new tiles and those with renamed features
+		for (Tile tile : dirtyTiles) {
+			Collection<Fact> group = tileFacts_.get(tile);
+			if (group == null) {
+				group = new ArrayList<Fact>();
+				tileFacts_.put(tile, group);
+				tileNames_.put(tile, nameTile(tile));
+			} else
+				retractFacts(rete, group);
+			assertTile(rete, tile, tileNames_.get(tile), true, group);
+		}
+	}
+
+	/**
+	 * Asserts the facts of the state. Board facts persist between steps and
+	 * only those changed since the last step are re-asserted, while the
+	 * current tile, players and valid locations are asserted anew every step.
 	 * 
 	 * @param rete
 	 *            The rete object to assert/retract to.
@@ -542,32 +818,47 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 			return;
 
 		// Other initialisations
-		assertedFeatures_.clear();
-		assertedPositions_.clear();
-		tileCount_ = 0;
 		environment_ = game;
 		featureMap_.clear();
-
-		// Assert board features.
-		Board board = environment_.getBoard();
-		// Assert all tiles and terrain
-		for (Tile tile : board.getAllTiles()) {
-			assertTile(rete, tile, true);
+		retractFacts(rete, stepFacts_);
+		stepPositions_.clear();
+
+		// Update the board facts.
+		Collection<Tile> placed;
+		Collection<Feature> touched;
+		boolean cityCompleted;
+		synchronized (this) {
+			if (fullUpdate_) {
+				placed = new ArrayList<Tile>(environment_.getBoard()
+						.getAllTiles());
+				for (Tile tile : placed)
+					placementIndex_.placeTile(tile);
+			} else
+				placed = new ArrayList<Tile>(placedTiles_);
+			touched = new ArrayList<Feature>(touchedFeatures_);
+			cityCompleted = cityCompleted_;
+			placedTiles_.clear();
+			touchedFeatures_.clear();
+			cityCompleted_ = false;
+			fullUpdate_ = false;
 		}
+		updateBoard(rete, placed, touched, cityCompleted);
+
 		// Assert remaining tiles.
 		int tilePackSize = environment_.getTilePack().size();
-		rete.assertString("(tilesLeft " + tilePackSize + ")");
+		assertFact(rete, "(tilesLeft " + tilePackSize + ")", stepFacts_);
 
 		// Assert player scores
 		for (Player p : environment_.getAllPlayers()) {
 			String pName = formatPlayer(p);
-			rete.assertString("(player " + pName + ")");
-			rete.assertString("(score " + pName + " " + p.getPoints() + ")");
+			assertFact(rete, "(player " + pName + ")", stepFacts_);
+			assertFact(rete, "(score " + pName + " " + p.getPoints() + ")",
+					stepFacts_);
 			// Assert player meeple count
-			rete.assertString("(meeplesLeft " + pName + " "
-					+ p.getUndeployedFollowers().size() + ")");
+			assertFact(rete, "(meeplesLeft " + pName + " "
+					+ p.getUndeployedFollowers().size() + ")", stepFacts_);
 			if (p == environment_.getTurnPlayer())
-				rete.assertString("(currentPlayer " + pName + ")");
+				assertFact(rete, "(currentPlayer " + pName + ")", stepFacts_);
 		}
 
 		try {
@@ -578,6 +869,33 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 		}
 	}
 
+	/**
+	 * Retracts every board fact and asserts the board again from scratch (as
+	 * at the start of an episode), keeping the placed tiles' names. The
+	 * result should be the same as the incremental updates made so far.
+	 * 
+	 * @param rete
+	 *            The rete object to assert/retract to.
+	 * @throws JessException
+	 *             Should something go awry...
+	 */
+	public void reassertBoard(Rete rete) throws JessException {
+		for (Collection<Fact> group : featureFacts_.values())
+			retractFacts(rete, group);
+		for (Collection<Fact> group : tileFacts_.values())
+			retractFacts(rete, group);
+		for (Collection<Fact> group : positionFacts_.values())
+			retractFacts(rete, group);
+		cityCache_.clear();
+		featureFacts_.clear();
+		featureNames_.clear();
+		namedFeatures_.clear();
+		positionFacts_.clear();
+		surroundingFacts_.clear();
+		updateBoard(rete, new ArrayList<Tile>(environment_.getBoard()
+				.getAllTiles()), new ArrayList<Feature>(), false);
+	}
+
 	/**
 	 * Was no tile placed in the previous iteration?
 	 * 
@@ -588,13 +906,16 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	}
 
 	@Override
-	public void completed(Completable feature, CompletableScoreContext ctx) {
-		// N/A
+	public synchronized void completed(Completable feature,
+			CompletableScoreContext ctx) {
+		touchedFeatures_.add((Feature) feature);
+		if (feature instanceof City)
+			cityCompleted_ = true;
 	}
 
 	@Override
 	public void deployed(Meeple meeple) {
-		// N/A
+		touchMeeple(meeple);
 	}
 
 	@Override
@@ -609,7 +930,7 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 
 	@Override
 	public void gameOver() {
-		readyToExecute_.countDown();
+		signalReady();
 	}
 
 	/**
@@ -630,7 +951,7 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 			boolean alwaysAction) {
 		randomActionSelected_ = false;
 		Phase phase = environment_.getPhase();
-		RelationalPredicate action = actions.getFirstRandomAction();
+		RelationalPredicate action = actions.getFirstRandomAction(getRandom());
 		if (phase instanceof TilePhase) {
 			// Exit the game if no action choice made.
 			if (action == null) {
@@ -641,10 +962,10 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 				if (alwaysAction) {
 					// Select a random tile placement.
 					randomActionSelected_ = true;
-					return randomTilePlacement(game);
+					return randomTilePlacement();
 				} else {
 					// Exit the episode.
-					readyToExecute_.countDown();
+					signalReady();
 
 					return null;
 				}
@@ -704,9 +1025,10 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 
 
 	@Override
-	public void scored(Feature feature, int points, String label,
-			Meeple meeple, boolean isFinal) {
-		// N/A
+	public synchronized void scored(Feature feature, int points,
+			String label, Meeple meeple, boolean isFinal) {
+		if (feature != null)
+			touchedFeatures_.add(feature);
 	}
 
 	@Override
@@ -724,7 +1046,7 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	public synchronized void selectAction(List<PlayerAction> actions) {
 		if (environment_.getTurnPlayer().getSlot().getType() == SlotType.PLAYER) {
 			actions_ = actions;
-			readyToExecute_.countDown();
+			signalReady();
 		}
 	}
 
@@ -736,9 +1058,9 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	@Override
 	public synchronized void selectTilePlacement(
 			Map<Position, Set<Rotation>> placements) {
+		// The placements are found through the placement index instead
 		if (environment_.getTurnPlayer().getSlot().getType() == SlotType.PLAYER) {
-			tilePositions_ = placements;
-			readyToExecute_.countDown();
+			signalReady();
 		}
 	}
 
@@ -751,15 +1073,56 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 		environment_ = game;
 	}
 
+	/**
+	 * Sets the random number generator used for random choices (such as
+	 * choosing between fired actions). By default the experiment's is used.
+	 * 
+	 * @param random
+	 *            The random number generator.
+	 */
+	public void setRandomGenerator(Random random) {
+		random_ = random;
+	}
+
+	/**
+	 * Sets whether the game is driven synchronously on the agent's thread, in
+	 * which case there is nothing to wait on between steps.
+	 * 
+	 * @param synchronous
+	 *            If the game is driven synchronously.
+	 */
+	public void setSynchronous(boolean synchronous) {
+		synchronous_ = synchronous;
+	}
+
 	@Override
 	public void started(Snapshot snapshot) {
 		// N/A
 	}
 
 	public void startState() {
-		readyToExecute_ = new CountDownLatch(1);
+		readyToExecute_ = (synchronous_) ? null : new CountDownLatch(1);
 		cityCache_.clear();
 		locationMap_.clear();
+
+		// The Rete is reset at the start of the episode
+		synchronized (this) {
+			fullUpdate_ = true;
+			placedTiles_.clear();
+			touchedFeatures_.clear();
+			cityCompleted_ = false;
+			placementIndex_.clear();
+		}
+		featureFacts_.clear();
+		featureNames_.clear();
+		namedFeatures_.clear();
+		positionFacts_.clear();
+		stepFacts_.clear();
+		stepPositions_.clear();
+		surroundingFacts_.clear();
+		tileFacts_.clear();
+		tileNames_.clear();
+		tileCount_ = 0;
 	}
 
 	@Override
@@ -773,8 +1136,21 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 	}
 
 	@Override
-	public void tilePlaced(Tile tile) {
-		// N/A
+	public synchronized void tilePlaced(Tile tile) {
+		placedTiles_.add(tile);
+		placementIndex_.placeTile(tile);
+	}
+
+	/**
+	 * Notes the feature a meeple is (or was) on as changed.
+	 * 
+	 * @param meeple
+	 *            The meeple.
+	 */
+	private synchronized void touchMeeple(Meeple meeple) {
+		Feature feature = meeple.getFeature();
+		if (feature != null)
+			touchedFeatures_.add(feature);
 	}
 
 	@Override
@@ -790,7 +1166,7 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 
 	@Override
 	public void undeployed(Meeple meeple) {
-		// N/A
+		touchMeeple(meeple);
 	}
 
 	@Override
@@ -829,4 +1205,23 @@ public class CarcassonneRelationalWrapper implements GameEventListener,
 		// N/A
 	}
 
+	/**
+	 * Finds the master of a feature, noting every part of the feature walked.
+	 * 
+	 * @author Sam Sarjant
+	 */
+	private static class FeatureParts extends FindMaster {
+		/** The parts of the feature. */
+		private Collection<Feature> parts_ = new ArrayList<Feature>();
+
+		@Override
+		public boolean visit(Feature feature) {
+			parts_.add(feature);
+			return super.visit(feature);
+		}
+
+		public Collection<Feature> getParts() {
+			return parts_;
+		}
+	}
 }
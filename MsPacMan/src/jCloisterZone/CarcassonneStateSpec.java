@@ -92,7 +92,7 @@ public class CarcassonneStateSpec extends StateSpec {
 				"(cEdge ?N ?E) (ccEdge ?N ?W) (oppEdge ?N ?S) => (assert (cEdge ?E ?S) "
 						+ "(ccEdge ?E ?N) (oppEdge ?E ?W))", false));
 
-		// Next to rule
+		// Next to rule (logical, as the board facts persist between steps)
 		// TODO This nextTo rule isn't working...
 		bckKnowledge
 				.put("nextToRule",
@@ -101,7 +101,7 @@ public class CarcassonneStateSpec extends StateSpec {
 										+ "(edgeDirection ?E ?Ex ?Ey) (locationXY ?L2 ?A2&:(= ?A2 (+ ?A ?Ex)) ?B2&:(= ?B2 (+ ?B ?Ey))) "
 										+ "(tileLocation ?T2 ?L2) (oppEdge ?E ?Eopp) "
 										+ "(tileEdge ?T2 ?Eopp ?Ter) => (assert (nextTo ?L1 ?E ?Ter))",
-								false));
+								true));
 
 		return bckKnowledge;
 	}
@@ -313,4 +313,10 @@ public class CarcassonneStateSpec extends StateSpec {
 			constants.add("(orientation " + r.toString() + ")");
 		return constants;
 	}
+
+	@Override
+	protected boolean isLogicalTypes() {
+		// Board facts persist between steps, so types must follow them.
+		return true;
+	}
 }
@@ -0,0 +1,201 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/jCloisterZone/PlacementIndex.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package jCloisterZone;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.jcloisterzone.board.Location;
+import com.jcloisterzone.board.Position;
+import com.jcloisterzone.board.Rotation;
+import com.jcloisterzone.board.Tile;
+import com.jcloisterzone.feature.City;
+import com.jcloisterzone.feature.Feature;
+import com.jcloisterzone.feature.Road;
+
+/**
+ * An index of the open positions around the board, keyed by the edges a tile
+ * must have to be placed there. Each side of an open position is either
+ * constrained by the neighbouring tile's edge (city, road or farm) or open,
+ * giving a pattern such as "C?F?". A drawn tile's edges (in each rotation)
+ * match at most 15 patterns, so the legal placements are found by lookup
+ * rather than by checking every open position. The index is updated as each
+ * tile is placed. Only the basic game's edge types are indexed.
+ *
+ * Feature locations are given in the tile's unrotated frame, so they are
+ * rotated into board directions before the edges are read.
+ *
+ * @author Sam Sarjant
+ */
+public class PlacementIndex {
+	/** The edge codes. */
+	private static final char CITY = 'C', ROAD = 'R', FARM = 'F', OPEN = '?';
+
+	/** The tile sides, in clockwise order. */
+	private static final Location[] SIDES = { Location.N, Location.E,
+			Location.S, Location.W };
+
+	/** The edge pattern of each open position. */
+	private Map<Position, String> frontier_ = new HashMap<Position, String>();
+
+	/** The open positions for each edge pattern. */
+	private Map<String, Set<Position>> patterns_ = new HashMap<String, Set<Position>>();
+
+	/** The positions of the placed tiles. */
+	private Set<Position> placed_ = new HashSet<Position>();
+
+	/**
+	 * Gets the edge codes of a tile in a given rotation.
+	 *
+	 * @param tile
+	 *            The tile.
+	 * @param rotation
+	 *            The rotation of the tile on the board.
+	 * @return The edge code of each side, in clockwise order from north.
+	 */
+	private char[] getEdges(Tile tile, Rotation rotation) {
+		char[] edges = { FARM, FARM, FARM, FARM };
+		for (Feature terrain : tile.getFeatures()) {
+			char code;
+			if (terrain instanceof City)
+				code = CITY;
+			else if (terrain instanceof Road)
+				code = ROAD;
+			else
+				continue;
+
+			Location location = terrain.getLocation().rotateCW(rotation);
+			for (int i = 0; i < SIDES.length; i++)
+				if (SIDES[i].isPartOf(location))
+					edges[i] = code;
+		}
+		return edges;
+	}
+
+	/**
+	 * Removes an open position from the index.
+	 *
+	 * @param position
+	 *            The position.
+	 * @return The edge pattern of the position, or null if it wasn't open.
+	 */
+	private String removeOpen(Position position) {
+		String pattern = frontier_.remove(position);
+		if (pattern != null) {
+			Set<Position> positions = patterns_.get(pattern);
+			positions.remove(position);
+			if (positions.isEmpty())
+				patterns_.remove(pattern);
+		}
+		return pattern;
+	}
+
+	/**
+	 * Clears the index (for a new game).
+	 */
+	public void clear() {
+		frontier_.clear();
+		patterns_.clear();
+		placed_.clear();
+	}
+
+	/**
+	 * Gets the legal placements of a tile on the board.
+	 *
+	 * @param tile
+	 *            The (unplaced) tile.
+	 * @return The rotations the tile can be placed in at each position.
+	 */
+	public Map<Position, Set<Rotation>> getPlacements(Tile tile) {
+		Map<Position, Set<Rotation>> placements = new HashMap<Position, Set<Rotation>>();
+		char[] pattern = new char[SIDES.length];
+		for (Rotation rot : Rotation.values()) {
+			char[] rotated = getEdges(tile, rot);
+
+			// Every pattern the rotated edges satisfy (at least one side
+			// constrained)
+			for (int mask = 1; mask < (1 << SIDES.length); mask++) {
+				for (int i = 0; i < SIDES.length; i++)
+					pattern[i] = ((mask & (1 << i)) != 0) ? rotated[i] : OPEN;
+				Set<Position> positions = patterns_.get(new String(pattern));
+				if (positions == null)
+					continue;
+				for (Position pos : positions) {
+					Set<Rotation> rotations = placements.get(pos);
+					if (rotations == null) {
+						rotations = new HashSet<Rotation>();
+						placements.put(pos, rotations);
+					}
+					rotations.add(rot);
+				}
+			}
+		}
+		return placements;
+	}
+
+	/**
+	 * Gets the number of open positions.
+	 *
+	 * @return The number of positions a tile could be placed next to.
+	 */
+	public int size() {
+		return frontier_.size();
+	}
+
+	/**
+	 * Notes a tile as placed, closing its position and constraining the open
+	 * positions beside it.
+	 *
+	 * @param tile
+	 *            The placed tile.
+	 */
+	public void placeTile(Tile tile) {
+		Position position = tile.getPosition();
+		if (!placed_.add(position))
+			return;
+		removeOpen(position);
+
+		char[] edges = getEdges(tile, tile.getRotation());
+		for (int i = 0; i < SIDES.length; i++) {
+			Position adj = position.add(Position.ADJACENT.get(SIDES[i]));
+			if (placed_.contains(adj))
+				continue;
+
+			// The opposite side of the neighbour must match this edge
+			String pattern = removeOpen(adj);
+			char[] constraint = (pattern == null) ? new char[] { OPEN, OPEN,
+					OPEN, OPEN } : pattern.toCharArray();
+			constraint[(i + 2) % SIDES.length] = edges[i];
+			pattern = new String(constraint);
+
+			frontier_.put(adj, pattern);
+			Set<Position> positions = patterns_.get(pattern);
+			if (positions == null) {
+				positions = new HashSet<Position>();
+				patterns_.put(pattern, positions);
+			}
+			positions.add(adj);
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/mario/LevelGeometry.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package mario;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The static level terrain seen so far, in absolute level cells, along with
+ * the static things found in it (searchable bricks and boxes, coins and pits).
+ * The things in a column are only found once, and found again only if the
+ * terrain they depend on changes (a brick is broken, a coin is collected or
+ * more of a pit comes into view), so the level only needs scanning as it
+ * scrolls into view. Everything relative to Mario is left to the caller.
+ *
+ * Cells that haven't been seen are treated like cells beyond the edge of the
+ * observation field were: Mario can't fit under a thing above an unseen cell,
+ * a thing below an unseen cell isn't an edge, and pits are bottomless unless
+ * ground has been seen below them. Cells seen earlier are remembered, so a
+ * pit with ground seen below it (now out of view) is not a pit, and pit widths
+ * extend over every column seen.
+ *
+ * @author Sam Sarjant
+ */
+public class LevelGeometry {
+	/** The number of level rows tracked (rows beyond this are unseen). */
+	public static final int MAX_ROWS = 32;
+
+	/** The value of a cell that hasn't been seen. */
+	public static final byte UNSEEN = Byte.MIN_VALUE;
+
+	/** The terrain of each seen column, by absolute column. */
+	private final Map<Integer, byte[]> terrain_ = new HashMap<Integer, byte[]>();
+
+	/** The static things of each column, by absolute column. */
+	private final Map<Integer, List<StaticThing>> things_ = new HashMap<Integer, List<StaticThing>>();
+
+	/** The Mario mode the things were found for (fit checks depend on it). */
+	private int marioMode_ = -1;
+
+	/**
+	 * Checks if a cell has been seen to be solid (unseen cells aren't).
+	 *
+	 * @param column
+	 *            The column.
+	 * @param row
+	 *            The row.
+	 * @return True if the cell was seen and is not passable.
+	 */
+	private boolean isSolid(int column, int row) {
+		byte val = get(column, row);
+		return val != UNSEEN && !ObservationConstants.isEmptyCell(val);
+	}
+
+	/**
+	 * Checks if Mario can fit under a thing.
+	 *
+	 * @param column
+	 *            The thing's column.
+	 * @param row
+	 *            The thing's row.
+	 * @return True if there is room for Mario beneath the thing.
+	 */
+	private boolean canMarioFitUnder(int column, int row) {
+		int space = (marioMode_ != 0) ? 2 : 1;
+		for (int yMod = 1; yMod <= space; yMod++) {
+			if (row + yMod >= MAX_ROWS
+					|| !ObservationConstants.isEmptyCell(get(column, row
+							+ yMod)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds a pit beside a solid cell. A pit is an edge with no bottom, and is
+	 * as wide as the gap to the next solid column (within jumping height).
+	 * The location of the pit is its leftmost column.
+	 *
+	 * @param column
+	 *            The column of the solid cell.
+	 * @param row
+	 *            The row of the solid cell.
+	 * @return The pit, or null if the cell isn't the edge of a pit.
+	 */
+	private StaticThing findPit(int column, int row) {
+		// The cell must be a top edge with a bottomless gap on the right
+		if (!ObservationConstants.isEmptyCell(get(column, row - 1)))
+			return null;
+		int xMod = column + 1;
+		if (!terrain_.containsKey(xMod)
+				|| !ObservationConstants.isEmptyCell(get(xMod, row)))
+			return null;
+		for (int yMod = row + 1; yMod < MAX_ROWS; yMod++)
+			if (isSolid(xMod, yMod))
+				return null;
+
+		// Determine the width (to the last column seen)
+		int pitRow = row;
+		xMod++;
+		boolean foundSide = false;
+		while (!foundSide) {
+			xMod++;
+			if (!terrain_.containsKey(xMod))
+				break;
+			// Scan down from the jump height
+			int yScan = Math.max(0, row - RLMarioMovement.MAX_JUMP_HEIGHT
+					/ 16 + 1);
+			while (yScan < MAX_ROWS && !foundSide) {
+				if (isSolid(xMod, yScan)) {
+					foundSide = true;
+					// If the other side is higher, use that row
+					if (yScan < pitRow)
+						pitRow = yScan;
+				}
+				yScan++;
+			}
+		}
+		return new StaticThing("pit", "pit", column + 1, pitRow, false, xMod
+				- column - 1, xMod);
+	}
+
+	/**
+	 * Finds the static things in a column.
+	 *
+	 * @param column
+	 *            The column.
+	 * @return The things whose (assertion) location is in the column.
+	 */
+	private List<StaticThing> findThings(int column) {
+		List<StaticThing> things = new ArrayList<StaticThing>();
+		byte[] cells = terrain_.get(column);
+		for (int row = 0; row < MAX_ROWS; row++) {
+			switch (cells[row]) {
+			// Brick
+			case (ObservationConstants.LVL_BRICK):
+			case (ObservationConstants.LVL_BREAKABLE_BRICK):
+				// If searchable, it's a brick. Otherwise it's just terrain
+				if (canMarioFitUnder(column, row)) {
+					things.add(new StaticThing("brick", "brk", column, row,
+							false, 1, column));
+					break;
+				}
+			case (ObservationConstants.LVL_UNBREAKABLE_BRICK):
+				if (canMarioFitUnder(column, row)) {
+					things.add(new StaticThing("box", "box", column, row,
+							false, 1, column));
+					break;
+				}
+				// Terrain
+			case (ObservationConstants.LVL_BORDER_HILL):
+			case (ObservationConstants.LVL_CANNON_MUZZLE):
+			case (ObservationConstants.LVL_CANNON_TRUNK):
+			case (ObservationConstants.LVL_FLOWER_POT):
+			case (ObservationConstants.LVL_FLOWER_POT_OR_CANNON):
+			case (ObservationConstants.LVL_BORDER_CANNOT_PASS_THROUGH):
+				StaticThing pit = findPit(column, row);
+				if (pit != null)
+					things.add(pit);
+				break;
+			// Coin
+			case (ObservationConstants.LVL_COIN):
+				things.add(new StaticThing("coin", "coin", column, row, true,
+						1, column));
+				break;
+			}
+		}
+		return things;
+	}
+
+	/**
+	 * Forgets the things found in and before a changed column that could
+	 * depend on it: the column itself, the column to its left (pit edges) and
+	 * any pit reaching over it.
+	 *
+	 * @param column
+	 *            The changed column.
+	 */
+	private void invalidate(int column) {
+		things_.remove(column);
+		things_.remove(column - 1);
+		Iterator<Map.Entry<Integer, List<StaticThing>>> iter = things_
+				.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<Integer, List<StaticThing>> entry = iter.next();
+			if (entry.getKey() >= column)
+				continue;
+			for (StaticThing thing : entry.getValue()) {
+				if (thing.spanEnd_ >= column - 1) {
+					iter.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets the level (for a new episode).
+	 */
+	public void clear() {
+		terrain_.clear();
+		things_.clear();
+		marioMode_ = -1;
+	}
+
+	/**
+	 * Gets the terrain of a cell.
+	 *
+	 * @param column
+	 *            The absolute column.
+	 * @param row
+	 *            The absolute row.
+	 * @return The terrain value, or UNSEEN if not seen.
+	 */
+	public byte get(int column, int row) {
+		if (row < 0 || row >= MAX_ROWS)
+			return UNSEEN;
+		byte[] cells = terrain_.get(column);
+		return (cells == null) ? UNSEEN : cells[row];
+	}
+
+	/**
+	 * Gets the static things located in a column, finding them if necessary.
+	 *
+	 * @param column
+	 *            The absolute column.
+	 * @return The static things in the column.
+	 */
+	public List<StaticThing> getThings(int column) {
+		List<StaticThing> things = things_.get(column);
+		if (things == null) {
+			if (!terrain_.containsKey(column))
+				return Collections.emptyList();
+			things = findThings(column);
+			things_.put(column, things);
+		}
+		return things;
+	}
+
+	/**
+	 * Notes the terrain currently in view.
+	 *
+	 * @param levelObs
+	 *            The level observations.
+	 * @param originX
+	 *            The absolute column of the observations' left side.
+	 * @param originY
+	 *            The absolute row of the observations' top.
+	 * @param marioMode
+	 *            Mario's current mode (small, large or fire).
+	 */
+	public void update(byte[][] levelObs, int originX, int originY,
+			int marioMode) {
+		if (marioMode != marioMode_) {
+			things_.clear();
+			marioMode_ = marioMode;
+		}
+
+		int width = (levelObs.length == 0) ? 0 : levelObs[0].length;
+		for (int x = 0; x < width; x++) {
+			int column = originX + x;
+			byte[] cells = terrain_.get(column);
+			boolean changed = false;
+			if (cells == null) {
+				cells = new byte[MAX_ROWS];
+				Arrays.fill(cells, UNSEEN);
+				terrain_.put(column, cells);
+				changed = true;
+			}
+			for (int y = 0; y < levelObs.length; y++) {
+				int row = originY + y;
+				if (row >= 0 && row < MAX_ROWS && cells[row] != levelObs[y][x]) {
+					cells[row] = levelObs[y][x];
+					changed = true;
+				}
+			}
+			if (changed)
+				invalidate(column);
+		}
+	}
+
+	/**
+	 * A static thing in the level.
+	 *
+	 * @author Sam Sarjant
+	 */
+	public static class StaticThing {
+		/** The condition asserted for the thing. */
+		private final String condition_;
+
+		/** The prefix of the thing's name. */
+		private final String prefix_;
+
+		/** The absolute column of the thing. */
+		private final int column_;
+
+		/** The absolute row of the thing. */
+		private final int row_;
+
+		/** If the thing can be jumped into (rather than onto). */
+		private final boolean jumpInto_;
+
+		/** The width of the thing (in cells). */
+		private final int width_;
+
+		/** The last column the thing depends on. */
+		private final int spanEnd_;
+
+		public StaticThing(String condition, String prefix, int column,
+				int row, boolean jumpInto, int width, int spanEnd) {
+			condition_ = condition;
+			prefix_ = prefix;
+			column_ = column;
+			row_ = row;
+			jumpInto_ = jumpInto;
+			width_ = width;
+			spanEnd_ = spanEnd;
+		}
+
+		public String getCondition() {
+			return condition_;
+		}
+
+		public String getPrefix() {
+			return prefix_;
+		}
+
+		public int getColumn() {
+			return column_;
+		}
+
+		public int getRow() {
+			return row_;
+		}
+
+		public boolean isJumpInto() {
+			return jumpInto_;
+		}
+
+		public int getWidth() {
+			return width_;
+		}
+	}
+}
@@ -151,6 +151,26 @@ public class RLMarioEnvironment extends RRLEnvironment {
 		else
 			noActionCount_ = 0;
 
+		performFrame(groundAction);
+		if (!ProgramArgument.CONTINUE_MOVEMENTS.booleanValue())
+			return;
+
+		// Continue the movement until the policy needs to decide again
+		while (!environment_.isLevelFinished()) {
+			groundAction = marioMovement_.continueDecision(environment_);
+			if (groundAction == null)
+				break;
+			performFrame(groundAction);
+		}
+	}
+
+	/**
+	 * Performs an action for a single (playing) frame.
+	 * 
+	 * @param groundAction
+	 *            The keys to press.
+	 */
+	private void performFrame(boolean[] groundAction) {
 		environment_.performAction(groundAction);
 
 		environment_.tick();
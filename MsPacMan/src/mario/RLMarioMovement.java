@@ -55,6 +55,8 @@ public class RLMarioMovement {
 	private static final int ACTION_OFF = -1;
 	private static final int ACTION_ON = 1;
 	private static final int ACTION_ANY = 0;
+	/** The most frames a movement is continued without re-deciding. */
+	private static final int MAX_DECISION_FRAMES = 8;
 
 	private byte[][] basicLevelObs_;
 	private int[] currentEndDiffs_ = new int[2];
@@ -74,6 +76,20 @@ public class RLMarioMovement {
 	private Collection<String> shellPositions_ = new HashSet<String>();
 	private int[] startEndDiffs_ = new int[2];
 	private Collection<String> staticObjectFacts_ = new HashSet<String>();
+	/** The static level seen so far, with its bricks, boxes, coins and pits. */
+	private LevelGeometry geometry_ = new LevelGeometry();
+	/** The movement being continued (or null if it cannot be continued). */
+	private RelationalPredicate decisionAction_;
+	/** The number of frames the movement has been continued for. */
+	private int decisionFrames_;
+	/** The enemies in view when the movement was decided. */
+	private float[] decisionEnemies_;
+	/** Mario's mode when the movement was decided. */
+	private int decisionMode_;
+	/** If Mario was carrying when the movement was decided. */
+	private boolean decisionCarrying_;
+	/** If Mario has been off the ground since the movement was decided. */
+	private boolean leftGround_;
 
 	/**
 	 * Asserts any enemy objects present at a given point within the observation
@@ -283,8 +299,47 @@ public class RLMarioMovement {
 	}
 
 	/**
-	 * Asserts any level objects present at a given point within the observation
-	 * field and any relevant relations that object has.
+	 * Notes the level observations in the level geometry and asserts the
+	 * static level objects (bricks, boxes, coins and pits) within the
+	 * observation field. The objects of a column are only found when it comes
+	 * into view or changes.
+	 * 
+	 * @param rete
+	 *            The Rete object to assert to.
+	 * @param environment
+	 *            The MarioEnvironment.
+	 * @param levelObs
+	 *            The level observation field.
+	 * @throws Exception
+	 *             Should something go awry.
+	 */
+	private void assertLevelGeometry(Rete rete, MarioEnvironment environment,
+			byte[][] levelObs) throws Exception {
+		float[] marioPos = environment.getMarioFloatPos();
+		int originX = (int) (marioPos[0] / LevelScene.cellSize)
+				- environment.getReceptiveFieldWidth() / 2;
+		int originY = (int) (marioPos[1] / LevelScene.cellSize)
+				- environment.getReceptiveFieldHeight() / 2;
+		geometry_.update(levelObs, originX, originY, environment.getMarioMode());
+
+		int width = (levelObs.length == 0) ? 0 : levelObs[0].length;
+		for (int x = 0; x < width; x++) {
+			for (LevelGeometry.StaticThing thing : geometry_.getThings(originX
+					+ x)) {
+				int relX = thing.getColumn() - originX;
+				int relY = thing.getRow() - originY;
+				if (relX >= 0 && relX < width && relY >= 0
+						&& relY < levelObs.length)
+					assertThing(rete, environment, thing.getCondition(),
+							thing.getPrefix(), relX, relY, thing.isJumpInto(),
+							levelObs, thing.getWidth());
+			}
+		}
+	}
+
+	/**
+	 * Asserts any items present at a given point within the observation field
+	 * (the static level objects are asserted from the level geometry).
 	 * 
 	 * @param rete
 	 *            The Rete object to assert to.
@@ -306,51 +361,28 @@ public class RLMarioMovement {
 	private void assertLevelObjects(Rete rete, MarioEnvironment environment,
 			byte[][] levelObs, byte[][] enemyObs, byte x, byte y)
 			throws Exception {
-		byte levelVal = levelObs[y][x];
-		switch (levelVal) {
-		// Brick
-		case (ObservationConstants.LVL_BRICK):
-		case (ObservationConstants.LVL_BREAKABLE_BRICK):
-			// If searchable, assert brick. Otherwise it's just terrain
-			if (canMarioFit(environment, x, y, levelObs, true)) {
-				assertThing(rete, environment, "brick", "brk", x, y, false,
-						levelObs, 1);
-
-				if (RRLExperiment.debugMode_)
-					System.out.print("b ");
+		if (RRLExperiment.debugMode_) {
+			switch (levelObs[y][x]) {
+			case (ObservationConstants.LVL_BRICK):
+			case (ObservationConstants.LVL_BREAKABLE_BRICK):
+				System.out.print("b ");
 				break;
-			}
-		case (ObservationConstants.LVL_UNBREAKABLE_BRICK):
-			// If searchable, assert brick. Otherwise it's just terrain
-			if (canMarioFit(environment, x, y, levelObs, true)) {
-				assertThing(rete, environment, "box", "box", x, y, false,
-						levelObs, 1);
-
-				if (RRLExperiment.debugMode_)
-					System.out.print("B ");
+			case (ObservationConstants.LVL_UNBREAKABLE_BRICK):
+				System.out.print("B ");
 				break;
-			}
-			// Terrain
-		case (ObservationConstants.LVL_BORDER_HILL):
-		case (ObservationConstants.LVL_CANNON_MUZZLE):
-		case (ObservationConstants.LVL_CANNON_TRUNK):
-		case (ObservationConstants.LVL_FLOWER_POT):
-		case (ObservationConstants.LVL_FLOWER_POT_OR_CANNON):
-		case (ObservationConstants.LVL_BORDER_CANNOT_PASS_THROUGH):
-			checkForPit(rete, environment, levelObs, x, y);
-			if (RRLExperiment.debugMode_)
+			case (ObservationConstants.LVL_BORDER_HILL):
+			case (ObservationConstants.LVL_CANNON_MUZZLE):
+			case (ObservationConstants.LVL_CANNON_TRUNK):
+			case (ObservationConstants.LVL_FLOWER_POT):
+			case (ObservationConstants.LVL_FLOWER_POT_OR_CANNON):
+			case (ObservationConstants.LVL_BORDER_CANNOT_PASS_THROUGH):
 				System.out.print("# ");
-			break;
-		// Coin
-		case (ObservationConstants.LVL_COIN):
-			assertThing(rete, environment, "coin", "coin", x, y, true,
-					levelObs, 1);
-			if (RRLExperiment.debugMode_)
+				break;
+			case (ObservationConstants.LVL_COIN):
 				System.out.print("c ");
-			break;
-		default:
-			if (RRLExperiment.debugMode_) {
-				if (x == 9 && y == 9)
+				break;
+			default:
+				if (x == marioCentreX_ && y == marioCentreY_)
 					System.out.print("M ");
 				else
 					System.out.print(". ");
@@ -498,68 +530,19 @@ public class RLMarioMovement {
 	}
 
 	/**
-	 * A pit is defined as an edge with no bottom. The width of a pit is defined
-	 * by how far across to the other side. The location of the pit is the
-	 * leftmost side.
+	 * Gets the types of the enemies (and items) in view, in sorted order.
 	 * 
-	 * @param rete
-	 *            The Rete object to assert to.
 	 * @param environment
 	 *            The MarioEnvironment.
-	 * @param levelObs
-	 *            The current level observations.
-	 * @param x
-	 *            The x position to start from (known to be solid).
-	 * @param y
-	 *            The y position to start from (known to be solid).
+	 * @return The enemy types.
 	 */
-	private void checkForPit(Rete rete, MarioEnvironment environment,
-			byte[][] levelObs, byte x, byte y) throws Exception {
-		// First check if this is an edge
-		// Is there anything above this?
-		if (((y - 1) >= 0) && isBlank(levelObs[y - 1][x])) {
-			// Only check to the right.
-			int xMod = x + 1;
-			// This side is blank - we have an edge
-			if ((xMod < levelObs[y].length) && isBlank(levelObs[y][xMod])) {
-				// Decrease y to the bottom. If blank, we have a pit
-				boolean isPit = true;
-				int yMod = y + 1;
-				while (isPit && yMod < levelObs.length) {
-					isPit = isBlank(levelObs[yMod][xMod]);
-					yMod++;
-				}
-
-				// If a pit, determine the width
-				if (isPit) {
-					xMod++;
-					boolean isSolid = false;
-					while (!isSolid) {
-						xMod++;
-						if (xMod >= levelObs[y].length)
-							break;
-						// Scan down from y + JUMP_HEIGHT
-						byte yScan = (byte) (y - MAX_JUMP_HEIGHT / 16 + 1);
-						yScan = (byte) Math.max(0, yScan);
-						while (yScan < levelObs.length && !isSolid) {
-							if (!isBlank(levelObs[yScan][xMod])) {
-								isSolid = true;
-								// If the other side is higher, use that as y
-								// coord
-								if (yScan < y)
-									y = yScan;
-							}
-							yScan++;
-						}
-					}
-
-					// Assert the pit
-					// Find the left side
-					assertThing(rete, environment, "pit", "pit", x + 1, y,
-							false, levelObs, xMod - x - 1);
-				}
-			}
-		}
+	private float[] getEnemyTypes(MarioEnvironment environment) {
+		float[] enemyPos = environment.getEnemiesFloatPos();
+		float[] types = new float[enemyPos.length / 3];
+		for (int e = 0; e < types.length; e++)
+			types[e] = enemyPos[e * 3];
+		Arrays.sort(types);
+		return types;
 	}
 
 	/**
@@ -576,6 +559,8 @@ public class RLMarioMovement {
 		if (environment.getTick() <= 1) {
 			// Environment initialisation
 			staticObjectFacts_.clear();
+			geometry_.clear();
+			decisionAction_ = null;
 
 			isMarioInAir_ = false;
 			prevBoolAction_ = new boolean[Environment.numberOfKeys];
@@ -596,6 +581,64 @@ public class RLMarioMovement {
 		}
 	}
 
+	/**
+	 * Notes the movement the policy decided on, and the situation it was
+	 * decided in.
+	 * 
+	 * @param action
+	 *            The action the movement follows, or null if the movement
+	 *            cannot be continued.
+	 * @param environment
+	 *            The MarioEnvironment.
+	 */
+	private void noteDecision(RelationalPredicate action,
+			MarioEnvironment environment) {
+		decisionAction_ = action;
+		decisionFrames_ = 0;
+		if (action == null)
+			return;
+		decisionEnemies_ = getEnemyTypes(environment);
+		decisionMode_ = environment.getMarioMode();
+		decisionCarrying_ = environment.isMarioCarrying();
+		leftGround_ = !environment.isMarioOnGround();
+	}
+
+	/**
+	 * Converts a partial action into the keys to press, noting them as
+	 * Mario's previous action.
+	 * 
+	 * @param partialAction
+	 *            The keys' states (on, off or any).
+	 * @param environment
+	 *            The MarioEnvironment.
+	 * @return The keys to press.
+	 */
+	private boolean[] pressKeys(int[] partialAction,
+			MarioEnvironment environment) {
+		// If the selected action isn't null, reset the previous bool action.
+		Arrays.fill(prevBoolAction_, false);
+		for (int i = 0; i < partialAction.length; i++) {
+			if (partialAction[i] != 0)
+				prevBoolAction_[i] = partialAction[i] == 1;
+		}
+
+		// If Mario is on the ground and cannot jump, allow him time to breathe
+		if (environment.isMarioOnGround() && !environment.isMarioAbleToJump()) {
+			prevBoolAction_[Environment.MARIO_KEY_JUMP] = false;
+			prevBoolAction_[Environment.MARIO_KEY_LEFT] = false;
+			prevBoolAction_[Environment.MARIO_KEY_RIGHT] = false;
+		}
+
+		if (prevBoolAction_[Environment.MARIO_KEY_RIGHT]
+				&& !prevBoolAction_[Environment.MARIO_KEY_LEFT])
+			marioDirection_ = Environment.MARIO_KEY_RIGHT;
+		else if (prevBoolAction_[Environment.MARIO_KEY_LEFT]
+				&& !prevBoolAction_[Environment.MARIO_KEY_RIGHT])
+			marioDirection_ = Environment.MARIO_KEY_LEFT;
+
+		return prevBoolAction_;
+	}
+
 	/**
 	 * If the given value represents a level observation 'blank', or passable
 	 * tile that can be entered.
@@ -605,9 +648,7 @@ public class RLMarioMovement {
 	 * @return True if the value is blank.
 	 */
 	private boolean isBlank(byte val) {
-		if ((val == 0) || (val == ObservationConstants.LVL_COIN))
-			return true;
-		return false;
+		return ObservationConstants.isEmptyCell(val);
 	}
 
 	/**
@@ -1140,7 +1181,10 @@ public class RLMarioMovement {
 		byte[][] enemyObs = environment.getEnemiesObservationZ(0);
 		float[] enemyPos = environment.getEnemiesFloatPos();
 
-		// Assert the level objects
+		// Assert the static level objects in view
+		assertLevelGeometry(rete, environment, levelObs);
+
+		// Assert the items
 		for (byte y = 0; y < levelObs.length; y++) {
 			for (byte x = 0; x < levelObs[y].length; x++) {
 				// Level objects, like coins and solid objects
@@ -1335,6 +1379,9 @@ public class RLMarioMovement {
 		// left/false, +1 right/true)
 		RelationalPredicate bestAction = null;
 		List<int[]> selectedActions = new ArrayList<int[]>();
+		List<RelationalPredicate> selectedPreds = new ArrayList<RelationalPredicate>();
+		RelationalPredicate decisionAction = null;
+		int numDecided = 0;
 		int[] partialAction = new int[Environment.numberOfKeys];
 		partialAction[Environment.MARIO_KEY_DOWN] = ACTION_OFF;
 		partialAction[5] = ACTION_OFF;
@@ -1360,12 +1407,14 @@ public class RLMarioMovement {
 				if (actionWeight > bestWeight) {
 					bestWeight = actionWeight;
 					selectedActions.clear();
+					selectedPreds.clear();
 					bestAction = action;
 				}
 				if (actionWeight == bestWeight) {
 					// If two objects are of the same distance, add them both
 					// and select a random one.
 					selectedActions.add(actionArray);
+					selectedPreds.add(action);
 					actionLink = firedAction;
 				}
 			}
@@ -1375,10 +1424,11 @@ public class RLMarioMovement {
 				if (RRLExperiment.debugMode_)
 					System.out.println(bestAction);
 
-				int[] randomSelected = selectedActions
-						.get(RRLExperiment.random_.nextInt(selectedActions
-								.size()));
+				int index = RRLExperiment.random_.nextInt(selectedActions
+						.size());
+				int[] randomSelected = selectedActions.get(index);
 				boolean resolvedAction = true;
+				boolean changed = false;
 				// Apply it to the boolean array
 				for (int i = 0; i < partialAction.length; i++) {
 					if (partialAction[i] == 0
@@ -1387,10 +1437,15 @@ public class RLMarioMovement {
 							partialAction[i] = randomSelected[i];
 							// Something changed, trigger rule
 							actionLink.triggerRule();
+							changed = true;
 						} else
 							resolvedAction = false;
 					}
 				}
+				if (changed) {
+					decisionAction = selectedPreds.get(index);
+					numDecided++;
+				}
 
 				if (resolvedAction) {
 					break;
@@ -1398,28 +1453,70 @@ public class RLMarioMovement {
 			}
 		}
 
-		// If the selected action isn't null, reset the previous bool action.
-		Arrays.fill(prevBoolAction_, false);
-		for (int i = 0; i < partialAction.length; i++) {
-			if (partialAction[i] != 0)
-				prevBoolAction_[i] = partialAction[i] == 1;
-		}
+		// Only a movement decided by a single action can be continued
+		noteDecision((numDecided == 1) ? decisionAction : null, environment);
+		return pressKeys(partialAction, environment);
+	}
 
-		// If Mario is on the ground and cannot jump, allow him time to breathe
-		if (environment.isMarioOnGround() && !environment.isMarioAbleToJump()) {
-			prevBoolAction_[Environment.MARIO_KEY_JUMP] = false;
-			prevBoolAction_[Environment.MARIO_KEY_LEFT] = false;
-			prevBoolAction_[Environment.MARIO_KEY_RIGHT] = false;
+	/**
+	 * Continues the current movement for another frame, unless the frame is a
+	 * decision point. A decision point is reached when the movement is done
+	 * (Mario reached its target, or landed after being off the ground at any
+	 * point since the decision), cannot be continued (it was a shot, or
+	 * combined several actions), the situation changed (Mario's mode or
+	 * carrying, or the enemies in view) or the movement has run for
+	 * MAX_DECISION_FRAMES. Otherwise the movement is re-grounded from Mario's
+	 * current position, without forming the relational observations.
+	 * 
+	 * @param environment
+	 *            The current Mario environment state.
+	 * @return The keys to press for the frame, or null if the policy needs to
+	 *         decide.
+	 */
+	public boolean[] continueDecision(MarioEnvironment environment) {
+		if (decisionAction_ == null || ++decisionFrames_ >= MAX_DECISION_FRAMES)
+			return null;
+		if (decisionAction_.getFactName().startsWith("shoot"))
+			return null;
+
+		boolean onGround = environment.isMarioOnGround();
+		// Landing ends a jump (or fall), wherever it began
+		if (!onGround)
+			leftGround_ = true;
+		else if (leftGround_)
+			return null;
+		if (environment.getMarioMode() != decisionMode_
+				|| environment.isMarioCarrying() != decisionCarrying_
+				|| !Arrays.equals(getEnemyTypes(environment), decisionEnemies_))
+			return null;
+
+		// Check if the target has been reached
+		float[] marioPos = environment.getMarioFloatPos();
+		String[] args = decisionAction_.getArguments();
+		if (!args[0].equals("goal")) {
+			int x = Integer.parseInt(args[0].split("_")[1]);
+			if (Math.abs(marioPos[0] - x) <= CELL_SIZE / 2)
+				return null;
 		}
 
-		if (prevBoolAction_[Environment.MARIO_KEY_RIGHT]
-				&& !prevBoolAction_[Environment.MARIO_KEY_LEFT])
-			marioDirection_ = Environment.MARIO_KEY_RIGHT;
-		else if (prevBoolAction_[Environment.MARIO_KEY_LEFT]
-				&& !prevBoolAction_[Environment.MARIO_KEY_RIGHT])
-			marioDirection_ = Environment.MARIO_KEY_LEFT;
-
-		return prevBoolAction_;
+		if (onGround) {
+			marioGroundPos_ = new int[2];
+			marioGroundPos_[0] = (int) marioPos[0];
+			marioGroundPos_[1] = (int) marioPos[1];
+		}
+		int[] actionArray = applyAction(decisionAction_, marioGroundPos_,
+				marioPos, environment.getLevelSceneObservationZ(2),
+				prevBoolAction_, marioDirection_,
+				environment.getMarioMode() != 0, environment.isMarioCarrying());
+		int[] partialAction = new int[Environment.numberOfKeys];
+		partialAction[Environment.MARIO_KEY_DOWN] = ACTION_OFF;
+		partialAction[5] = ACTION_OFF;
+		if (environment.isMarioCarrying())
+			partialAction[Mario.KEY_SPEED] = ACTION_ON;
+		for (int i = 0; i < partialAction.length; i++)
+			if (partialAction[i] == 0)
+				partialAction[i] = actionArray[i];
+		return pressKeys(partialAction, environment);
 	}
 
 	/**
@@ -0,0 +1,54 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/msPacMan/BoardGeometry.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package msPacMan;
+
+/**
+ * The pixel geometry of the board. The game rules measure collisions in
+ * pixels, so the simulation needs these values even when no GameUI is
+ * attached. They are calculated identically to the GameUI's values.
+ * 
+ * @author Sam Sarjant
+ */
+public class BoardGeometry {
+	/** The pixel length of a cell. */
+	final int CELL_LENGTH;
+
+	/** The pixel width of a wall edge. */
+	final int WALL1;
+
+	/** The pixel offset of the maze from the board edge. */
+	final int m_gridInset;
+
+	/**
+	 * Creates the geometry for a board of the given height.
+	 * 
+	 * @param height
+	 *            The pixel height of the board.
+	 * @param gameSizeY
+	 *            The number of cells in the maze's height.
+	 */
+	public BoardGeometry(int height, int gameSizeY) {
+		CELL_LENGTH = height / (gameSizeY + 1);
+		m_gridInset = CELL_LENGTH / 2;
+		WALL1 = CELL_LENGTH / 4;
+	}
+}
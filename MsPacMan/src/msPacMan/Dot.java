@@ -62,6 +62,6 @@ public class Dot extends Thing {
 	}
 
 	@Override
-	protected void updatePixelVals(GameUI gameUI) {
+	protected void updatePixelVals(BoardGeometry geometry) {
 	}
 }
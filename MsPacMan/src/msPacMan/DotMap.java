@@ -0,0 +1,285 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/msPacMan/DotMap.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package msPacMan;
+
+import java.awt.Point;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map of maze cells to the (power)dots within them, stored as a bitset of
+ * the occupied cells over an array of dot objects. The array is normally
+ * shared with a {@link MazeLayout}, so a game only needs its own bitset to
+ * track which dots remain. The array is copied before being written to, so
+ * the shared layout is never modified.
+ * 
+ * @author Sam Sarjant
+ */
+public final class DotMap<T extends PacPoint> extends AbstractMap<Point, T> {
+	/** The width of the maze. */
+	private final int sizeX_;
+
+	/** The height of the maze. */
+	private final int sizeY_;
+
+	/** The dots, indexed by cell (x * sizeY + y). */
+	private Object[] items_;
+
+	/** If the items array is shared and must be copied before writing. */
+	private boolean shared_;
+
+	/** The cells which currently contain a dot. */
+	private final BitSet present_;
+
+	/** The number of dots present. */
+	private int size_;
+
+	/**
+	 * Creates an empty dot map.
+	 * 
+	 * @param sizeX
+	 *            The width of the maze.
+	 * @param sizeY
+	 *            The height of the maze.
+	 */
+	public DotMap(int sizeX, int sizeY) {
+		sizeX_ = sizeX;
+		sizeY_ = sizeY;
+		items_ = new Object[sizeX * sizeY];
+		present_ = new BitSet(sizeX * sizeY);
+	}
+
+	/**
+	 * Gets the cell index of a key.
+	 * 
+	 * @param key
+	 *            The key (a Point).
+	 * @return The cell index or -1 if the key is not a cell in the maze.
+	 */
+	private int index(Object key) {
+		if (!(key instanceof Point))
+			return -1;
+		Point p = (Point) key;
+		if (p.x < 0 || p.y < 0 || p.x >= sizeX_ || p.y >= sizeY_)
+			return -1;
+		return p.x * sizeY_ + p.y;
+	}
+
+	/**
+	 * Uses a (shared) array of dots and sets which of them are present.
+	 * 
+	 * @param items
+	 *            The dots indexed by cell. Not modified by this map.
+	 * @param present
+	 *            The cells which contain a dot. Copied.
+	 */
+	void share(Object[] items, BitSet present) {
+		items_ = items;
+		shared_ = true;
+		present_.clear();
+		present_.or(present);
+		size_ = present_.cardinality();
+	}
+
+	/**
+	 * Gets the array of dots indexed by cell.
+	 * 
+	 * @return The array of dots. Must not be modified.
+	 */
+	Object[] getItems() {
+		shared_ = true;
+		return items_;
+	}
+
+	/**
+	 * Gets the cells which contain a dot.
+	 * 
+	 * @return A copy of the present cells.
+	 */
+	public BitSet getMask() {
+		return (BitSet) present_.clone();
+	}
+
+	@Override
+	public void clear() {
+		present_.clear();
+		size_ = 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		int i = index(key);
+		return i >= 0 && present_.get(i);
+	}
+
+	@Override
+	public Set<Map.Entry<Point, T>> entrySet() {
+		return new AbstractSet<Map.Entry<Point, T>>() {
+			@Override
+			public Iterator<Map.Entry<Point, T>> iterator() {
+				final CellIterator cells = new CellIterator();
+				return new Iterator<Map.Entry<Point, T>>() {
+					@Override
+					public boolean hasNext() {
+						return cells.hasNext();
+					}
+
+					@Override
+					public Map.Entry<Point, T> next() {
+						int i = cells.nextCell();
+						return new SimpleImmutableEntry<Point, T>(new Point(i
+								/ sizeY_, i % sizeY_), item(i));
+					}
+
+					@Override
+					public void remove() {
+						cells.remove();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size_;
+			}
+		};
+	}
+
+	@Override
+	public T get(Object key) {
+		int i = index(key);
+		if (i < 0 || !present_.get(i))
+			return null;
+		return item(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T item(int i) {
+		return (T) items_[i];
+	}
+
+	@Override
+	public T put(Point key, T value) {
+		int i = index(key);
+		if (i < 0)
+			throw new IllegalArgumentException("Point " + key
+					+ " is outside the maze.");
+		T previous = get(key);
+		if (items_[i] != value) {
+			if (shared_) {
+				items_ = items_.clone();
+				shared_ = false;
+			}
+			items_[i] = value;
+		}
+		if (previous == null) {
+			present_.set(i);
+			size_++;
+		}
+		return previous;
+	}
+
+	@Override
+	public T remove(Object key) {
+		T previous = get(key);
+		if (previous != null) {
+			present_.clear(index(key));
+			size_--;
+		}
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return size_;
+	}
+
+	@Override
+	public Collection<T> values() {
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				final CellIterator cells = new CellIterator();
+				return new Iterator<T>() {
+					@Override
+					public boolean hasNext() {
+						return cells.hasNext();
+					}
+
+					@Override
+					public T next() {
+						return item(cells.nextCell());
+					}
+
+					@Override
+					public void remove() {
+						cells.remove();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size_;
+			}
+		};
+	}
+
+	/**
+	 * Iterates through the present cells in index order.
+	 * 
+	 * @author Sam Sarjant
+	 */
+	private class CellIterator {
+		/** The next present cell. */
+		private int next_ = present_.nextSetBit(0);
+
+		/** The last returned cell. */
+		private int last_ = -1;
+
+		boolean hasNext() {
+			return next_ >= 0;
+		}
+
+		int nextCell() {
+			if (next_ < 0)
+				throw new NoSuchElementException();
+			last_ = next_;
+			next_ = present_.nextSetBit(next_ + 1);
+			return last_;
+		}
+
+		void remove() {
+			if (last_ < 0 || !present_.get(last_))
+				throw new IllegalStateException();
+			present_.clear(last_);
+			size_--;
+		}
+	}
+}
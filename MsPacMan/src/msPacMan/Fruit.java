@@ -103,8 +103,8 @@ public class Fruit extends Thing {
 	}
 
 	@Override
-	public void tickThing(GameUI gameUI) {
-		super.tickThing(gameUI);
+	public void tickThing(BoardGeometry geometry) {
+		super.tickThing(geometry);
 		// Count down for how long the Points for eating the Fruit popup
 		if (m_nTicks2Popup > 0) {
 			m_nTicks2Popup--;
@@ -212,6 +212,45 @@ public class Fruit extends Thing {
 		}
 	}
 
+	@Override
+	int getSteadyTicks() {
+		int ticks = super.getSteadyTicks();
+
+		// Timers running out
+		if (m_nTicks2Popup > 0)
+			ticks = Math.min(ticks, m_nTicks2Popup - 1);
+		if (m_nTicks2Show > 0)
+			return Math.min(ticks, m_nTicks2Show - 1);
+		if (m_nTicks2Hide > 0)
+			ticks = Math.min(ticks, m_nTicks2Hide - 1);
+
+		// Choosing a new direction
+		if (!m_bAvailable)
+			return ticks;
+		if (m_destinationX < 0 || m_destinationY < 0
+				|| (m_locX == m_destinationX && m_locY == m_destinationY
+						&& m_deltaLocX == 0 && m_deltaLocY == 0))
+			return 0;
+		return ticks;
+	}
+
+	@Override
+	void skipTicks(int ticks, BoardGeometry geometry) {
+		super.skipTicks(ticks, geometry);
+		if (m_nTicks2Popup > 0)
+			m_nTicks2Popup -= ticks;
+		if (m_nTicks2Show > 0) {
+			m_nTicks2Show -= ticks;
+			m_bVisible = false;
+		} else if (m_nTicks2Hide > 0)
+			m_nTicks2Hide -= ticks;
+	}
+
+	@Override
+	boolean canCollide() {
+		return m_bAvailable && m_bVisible;
+	}
+
 	@Override
 	public void returnToStart() {
 		super.returnToStart();
@@ -221,6 +260,36 @@ public class Fruit extends Thing {
 		// m_nTicks2Show += 5000 / m_gameModel.m_pacMan.m_delay;
 	}
 
+	@Override
+	void saveState(GameSnapshot.StateBuffer buffer) {
+		super.saveState(buffer);
+		buffer.put(m_destinationX);
+		buffer.put(m_destinationY);
+		buffer.put(m_bAvailable);
+		buffer.put(m_nTicks2Show);
+		buffer.put(m_nTicks2Hide);
+		buffer.put(m_bounceCount);
+		buffer.put(m_nTicks2Popup);
+		buffer.put(m_eatenPoints);
+		buffer.put(m_bounceUp);
+		buffer.put(m_bounceY);
+	}
+
+	@Override
+	void loadState(GameSnapshot.StateBuffer buffer) {
+		super.loadState(buffer);
+		m_destinationX = buffer.getInt();
+		m_destinationY = buffer.getInt();
+		m_bAvailable = buffer.getBoolean();
+		m_nTicks2Show = buffer.getInt();
+		m_nTicks2Hide = buffer.getInt();
+		m_bounceCount = buffer.getInt();
+		m_nTicks2Popup = buffer.getInt();
+		m_eatenPoints = buffer.getInt();
+		m_bounceUp = buffer.getBoolean();
+		m_bounceY = buffer.getDouble();
+	}
+
 	// This method will check if the bounding box of the fruit intersects with
 	// the bound box of the player. If so, then player eats the fruit for points
 	// return: 0 for no collision, 3 for ate the fruit
@@ -255,20 +324,20 @@ public class Fruit extends Thing {
 	}
 
 	@Override
-	protected void updatePixelVals(GameUI gameUI) {
-		double fruitX = gameUI.m_gridInset + m_locX * gameUI.CELL_LENGTH;
-		double fruitY = gameUI.m_gridInset + m_locY * gameUI.CELL_LENGTH;
+	protected void updatePixelVals(BoardGeometry geometry) {
+		double fruitX = geometry.m_gridInset + m_locX * geometry.CELL_LENGTH;
+		double fruitY = geometry.m_gridInset + m_locY * geometry.CELL_LENGTH;
 
 		if (m_deltaLocX != 0)
 			fruitX += m_deltaLocX
-					* (gameUI.CELL_LENGTH / (m_deltaMax * 2.0 - 1));
+					* (geometry.CELL_LENGTH / (m_deltaMax * 2.0 - 1));
 		else if (m_deltaLocY != 0)
 			fruitY += m_deltaLocY
-					* (gameUI.CELL_LENGTH / (m_deltaMax * 2.0 - 1));
+					* (geometry.CELL_LENGTH / (m_deltaMax * 2.0 - 1));
 
 		pixelX_ = (int) fruitX;
 		pixelY_ = (int) fruitY;
-		pixelSize_ = gameUI.CELL_LENGTH;
+		pixelSize_ = geometry.CELL_LENGTH;
 		pixelShrink_ = 0;
 	}
 	
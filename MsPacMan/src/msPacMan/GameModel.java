@@ -23,8 +23,6 @@
 package msPacMan;
 
 import java.awt.*;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Random;
 
 
@@ -76,8 +74,8 @@ public class GameModel {
 	static final int STATE_ABOUT = 10; // About page
 
 	public int[][] m_gameState; // Represents maze as integers
-	public Map<Point, Dot> m_dots;
-	public Map<Point, PowerDot> m_powerdots;
+	public DotMap<Dot> m_dots; // Dots remaining over the shared maze
+	public DotMap<PowerDot> m_powerdots;
 	public int m_gameSizeX;
 	public int m_gameSizeY;
 	public int m_stage; // Same as level of difficulty
@@ -132,7 +130,8 @@ public class GameModel {
 	public boolean noPowerDots_ = false;
 	public boolean oneLife_ = false;
 
-	private Random random_ = new Random();
+	private Random random_ = new GameRandom(new Random().nextLong());
+	private MazeLayout maze_; // The current (shared) maze
 
 	GameModel(PacMan pacMan) {
 		m_pacMan = pacMan;
@@ -142,8 +141,8 @@ public class GameModel {
 		m_gameSizeX = 28;
 		m_gameSizeY = 31;
 		m_gameState = new int[m_gameSizeX][m_gameSizeY];
-		m_dots = new HashMap<Point, Dot>();
-		m_powerdots = new HashMap<Point, PowerDot>();
+		m_dots = new DotMap<Dot>(m_gameSizeX, m_gameSizeY);
+		m_powerdots = new DotMap<PowerDot>(m_gameSizeX, m_gameSizeY);
 
 		// Ghosts and Pacman
 		m_player = new Player(this, Thing.PACMAN, 13, 23, false);
@@ -163,6 +162,74 @@ public class GameModel {
 		createScatterChaseTable();
 	}
 
+	/**
+	 * A bare model used only to load a maze into.
+	 */
+	private GameModel() {
+		m_gameSizeX = 28;
+		m_gameSizeY = 31;
+		m_gameState = new int[m_gameSizeX][m_gameSizeY];
+		m_dots = new DotMap<Dot>(m_gameSizeX, m_gameSizeY);
+		m_powerdots = new DotMap<PowerDot>(m_gameSizeX, m_gameSizeY);
+	}
+
+	/**
+	 * Runs a maze loader once to create its shared layout.
+	 * 
+	 * @param maze
+	 *            The maze index.
+	 * @return The layout of the maze.
+	 */
+	static MazeLayout loadLayout(int maze) {
+		GameModel model = new GameModel();
+		switch (maze) {
+		case MazeLayout.PACMAN_MAZE:
+			model.loadPacManMaze();
+			break;
+		case MazeLayout.MS_PACMAN_MAZE_1:
+			model.loadMsPacManMaze1();
+			break;
+		case MazeLayout.MS_PACMAN_MAZE_2:
+			model.loadMsPacManMaze2();
+			break;
+		case MazeLayout.MS_PACMAN_MAZE_3:
+			model.loadMsPacManMaze3();
+			break;
+		case MazeLayout.MS_PACMAN_MAZE_4:
+			model.loadMsPacManMaze4();
+			break;
+		case MazeLayout.INTRO_MAZE:
+			model.loadIntroMaze();
+			break;
+		}
+		// Patch the maze for the ghost hideout
+		if (maze != MazeLayout.INTRO_MAZE)
+			model.loadGhostHideout();
+		return new MazeLayout(maze, model, 13, 23);
+	}
+
+	/**
+	 * Switches the game to a maze, with all of its dots present.
+	 * 
+	 * @param maze
+	 *            The shared maze layout.
+	 */
+	private void setMaze(MazeLayout maze) {
+		maze_ = maze;
+		m_gameState = maze.gameState_;
+		m_dots.share(maze.dots_, maze.dotMask_);
+		m_powerdots.share(maze.powerDots_, maze.powerDotMask_);
+	}
+
+	/**
+	 * Gets the maze currently being played.
+	 * 
+	 * @return The shared maze layout, or null if no maze is loaded.
+	 */
+	public MazeLayout getMaze() {
+		return maze_;
+	}
+
 	public void setRandom(Random random) {
 		random_ = random;
 		m_ghosts[Ghost.BLINKY].random_ = random_;
@@ -173,6 +240,100 @@ public class GameModel {
 		m_fruit.random_ = random_;
 	}
 
+	/**
+	 * Captures the dynamic state of the game.
+	 * 
+	 * @return A snapshot that can be restored into this or another game.
+	 */
+	GameSnapshot snapshot() {
+		GameSnapshot.StateBuffer buffer = new GameSnapshot.StateBuffer();
+		buffer.put(m_pacMan.m_globalTickCount);
+		buffer.put(m_pacMan.m_ticksPerSec);
+		buffer.put(m_stage);
+		buffer.put(m_state);
+		buffer.put(m_pausedState);
+		buffer.put(m_highScore);
+		buffer.put(m_nextFreeUp);
+		buffer.put(m_nTicksPowerup);
+		buffer.put(m_nTicks2LevelComp);
+		buffer.put(m_nTicks2BeginPlay);
+		buffer.put(m_bPlayStartClip);
+		buffer.put(m_bStartClipPlayed);
+		buffer.put(m_nTicks2DeadPlay);
+		buffer.put(m_nOrigTicksPerSecond);
+		buffer.put(m_nLives);
+		buffer.put(m_eatGhostPoints);
+		buffer.put(m_totalFoodCount);
+		buffer.put(m_currentFoodCount);
+		buffer.put(m_nTicks2Backoff);
+		buffer.put(m_bIntroInited);
+		buffer.put(m_nTicks2AboutShow);
+		buffer.put(m_nTicks2GameOver);
+		buffer.put(scatterChaseDifficulty_);
+		buffer.put(scatterChaseIndex_);
+		buffer.put(noDots_);
+		buffer.put(noPowerDots_);
+		buffer.put(oneLife_);
+		for (Thing thing : m_things)
+			thing.saveState(buffer);
+
+		long randomState = (random_ instanceof GameRandom) ? ((GameRandom) random_)
+				.getState() : -1;
+		return new GameSnapshot(buffer.toArray(), maze_, m_dots.getMask(),
+				m_powerdots.getMask(), randomState);
+	}
+
+	/**
+	 * Restores the dynamic state of the game from a snapshot. If the snapshot
+	 * has a random state and this game uses a GameRandom, the generator is
+	 * restored too.
+	 * 
+	 * @param snapshot
+	 *            The snapshot to restore.
+	 */
+	void restore(GameSnapshot snapshot) {
+		GameSnapshot.StateBuffer buffer = new GameSnapshot.StateBuffer(
+				snapshot.values_);
+		m_pacMan.m_globalTickCount = buffer.getInt();
+		m_pacMan.setTicksPerSec(buffer.getInt());
+		m_stage = buffer.getInt();
+		m_state = buffer.getInt();
+		m_pausedState = buffer.getInt();
+		m_highScore = buffer.getInt();
+		m_nextFreeUp = buffer.getInt();
+		m_nTicksPowerup = buffer.getInt();
+		m_nTicks2LevelComp = buffer.getInt();
+		m_nTicks2BeginPlay = buffer.getInt();
+		m_bPlayStartClip = buffer.getBoolean();
+		m_bStartClipPlayed = buffer.getBoolean();
+		m_nTicks2DeadPlay = buffer.getInt();
+		m_nOrigTicksPerSecond = buffer.getInt();
+		m_nLives = buffer.getInt();
+		m_eatGhostPoints = buffer.getInt();
+		m_totalFoodCount = buffer.getInt();
+		m_currentFoodCount = buffer.getInt();
+		m_nTicks2Backoff = buffer.getInt();
+		m_bIntroInited = buffer.getBoolean();
+		m_nTicks2AboutShow = buffer.getInt();
+		m_nTicks2GameOver = buffer.getInt();
+		scatterChaseDifficulty_ = buffer.getInt();
+		scatterChaseIndex_ = buffer.getInt();
+		noDots_ = buffer.getBoolean();
+		noPowerDots_ = buffer.getBoolean();
+		oneLife_ = buffer.getBoolean();
+		for (Thing thing : m_things)
+			thing.loadState(buffer);
+
+		if (snapshot.maze_ != null) {
+			maze_ = snapshot.maze_;
+			m_gameState = maze_.gameState_;
+			m_dots.share(snapshot.maze_.dots_, snapshot.dots_);
+			m_powerdots.share(snapshot.maze_.powerDots_, snapshot.powerdots_);
+		}
+		if (snapshot.randomState_ >= 0 && random_ instanceof GameRandom)
+			((GameRandom) random_).setState(snapshot.randomState_);
+	}
+
 	/**
 	 * Creates the scatter chase table as given by the PacMan dossier.
 	 */
@@ -322,42 +483,12 @@ public class GameModel {
 		m_pacMan.m_globalTickCount = 0;
 
 		m_stage++;
-		m_dots.clear();
-		m_powerdots.clear();
 		// There are five different game boards which are
 		// rotated after a board is completed twice
-		switch (m_stage % MAX_LEVELS) {
-		case 1:
-		case 2:
-			loadPacManMaze();
-			m_pacMan.m_gameUI.m_wallColor = Color.blue;
-			m_pacMan.m_gameUI.m_wallAltColor = Color.white;
-			break;
-		case 3:
-		case 4:
-			loadMsPacManMaze1();
-			m_pacMan.m_gameUI.m_wallColor = Color.red;
-			m_pacMan.m_gameUI.m_wallAltColor = Color.white;
-			break;
-		case 5:
-		case 6:
-			loadMsPacManMaze2();
-			m_pacMan.m_gameUI.m_wallColor = new Color(0, 255, 0); // Green
-			m_pacMan.m_gameUI.m_wallAltColor = Color.white;
-			break;
-		case 7:
-		case 8:
-			loadMsPacManMaze3();
-			m_pacMan.m_gameUI.m_wallColor = Color.cyan;
-			m_pacMan.m_gameUI.m_wallAltColor = Color.white;
-			break;
-		case 9:
-		case 0:
-			loadMsPacManMaze4();
-			m_pacMan.m_gameUI.m_wallColor = Color.magenta;
-			m_pacMan.m_gameUI.m_wallAltColor = Color.white;
-			break;
-		}
+		setMaze(MazeLayout.getLayout(MazeLayout.getStageMaze(m_stage)));
+		// The maze colours are only needed if the game is being drawn
+		if (m_pacMan.m_gameUI != null)
+			m_pacMan.m_gameUI.updateWallColor();
 
 		if (noPowerDots_) {
 			m_powerdots.clear();
@@ -369,9 +500,6 @@ public class GameModel {
 		if (noDots_)
 			m_dots.clear();
 
-		// Patch the maze for the ghost hideout
-		loadGhostHideout();
-
 		// For level 1-10, speed goes up by 3 ticks. After 10, speed goes up 1
 		// tick per level.
 		if (m_stage > 10)
@@ -449,7 +577,7 @@ public class GameModel {
 	// Initialize the gamestate for running the intro
 	// animation
 	public void initIntro() {
-		loadIntroMaze();
+		setMaze(MazeLayout.getLayout(MazeLayout.INTRO_MAZE));
 		m_stage = 1;
 		m_bPlayStartClip = false;
 
@@ -518,7 +646,7 @@ public class GameModel {
 	// //////////////////////////////////////////////////
 
 	// The original pacman maze!!!
-	public void loadPacManMaze() {
+	private void loadPacManMaze() {
 		m_gameState[0][0] = PAL_BEND_BOTTOMRIGHT | PAL_EDGE_TOP | PAL_EDGE_LEFT
 				| GS_SOUTH | GS_EAST;
 		m_gameState[0][1] = PAL_EDGE_LEFT | PAL_LINE_VERT | GS_NORTH | GS_SOUTH;
@@ -2002,7 +2130,7 @@ public class GameModel {
 	}
 
 	// The original MsPacman maze
-	public void loadMsPacManMaze2() {
+	private void loadMsPacManMaze2() {
 		m_gameState[0][0] = PAL_BEND_BOTTOMRIGHT | PAL_EDGE_TOP | PAL_EDGE_LEFT
 				| GS_SOUTH | GS_EAST;
 		m_gameState[0][1] = PAL_EDGE_LEFT | PAL_LINE_VERT | GS_NORTH | GS_SOUTH;
@@ -3465,7 +3593,7 @@ public class GameModel {
 	// the ghosts will paint over the walls. We need to patch the hideout
 	// to add invisble walls to make the ghosts stay within a
 	// a safe boundary.
-	void loadGhostHideout() {
+	private void loadGhostHideout() {
 		m_gameState[17][12] = PAL_BEND_BOTTOMLEFT;
 		m_gameState[17][13] = PAL_EDGE_LEFT | PAL_LINE_VERT;
 		m_gameState[17][14] = PAL_EDGE_LEFT | PAL_LINE_VERT;
@@ -3498,7 +3626,7 @@ public class GameModel {
 	}
 
 	// Simple maze that allows the ghosts to run left
-	public void loadIntroMaze() {
+	private void loadIntroMaze() {
 		m_gameState[0][0] = 0;
 		m_gameState[0][1] = 0;
 		m_gameState[0][2] = 0;
@@ -4376,7 +4504,7 @@ public class GameModel {
 	}
 
 	// The original MsPacman maze
-	void loadMsPacManMaze1() {
+	private void loadMsPacManMaze1() {
 		m_gameState[0][0] = PAL_BEND_BOTTOMRIGHT | PAL_EDGE_TOP | PAL_EDGE_LEFT
 				| GS_SOUTH | GS_EAST;
 		m_gameState[0][1] = PAL_EDGE_LEFT | PAL_LINE_VERT | GS_NORTH | GS_SOUTH;
@@ -5808,7 +5936,7 @@ public class GameModel {
 	}
 
 	// The original MsPacman maze
-	void loadMsPacManMaze4() {
+	private void loadMsPacManMaze4() {
 		m_gameState[0][0] = PAL_BEND_BOTTOMRIGHT | PAL_EDGE_TOP | PAL_EDGE_LEFT
 				| GS_SOUTH | GS_EAST;
 		m_gameState[0][1] = PAL_EDGE_LEFT | PAL_LINE_VERT | GS_NORTH | GS_SOUTH;
@@ -7281,7 +7409,7 @@ public class GameModel {
 	}
 
 	// The original MsPacman maze
-	void loadMsPacManMaze3() {
+	private void loadMsPacManMaze3() {
 		m_gameState[0][0] = PAL_EDGE_TOP | PAL_LINE_HORIZ | GS_EAST;
 		m_gameState[0][1] = GS_NORTH | GS_SOUTH;
 		m_gameState[0][2] = PAL_LINE_HORIZ | GS_SOUTH | GS_EAST;
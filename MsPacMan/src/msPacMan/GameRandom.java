@@ -0,0 +1,82 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/msPacMan/GameRandom.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package msPacMan;
+
+import java.util.Random;
+
+/**
+ * A random number generator with the same sequence as java.util.Random, but
+ * with its internal state exposed so a game can be snapshotted and restored
+ * exactly. Not thread-safe; each game owns its own generator.
+ * 
+ * @author Sam Sarjant
+ */
+public class GameRandom extends Random {
+	private static final long serialVersionUID = -4190447209712335561L;
+
+	/** The linear congruential multiplier. */
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+
+	/** The linear congruential addend. */
+	private static final long ADDEND = 0xBL;
+
+	/** The 48-bit mask. */
+	private static final long MASK = (1L << 48) - 1;
+
+	/** The current 48-bit state. */
+	private long state_;
+
+	public GameRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		state_ = (seed ^ MULTIPLIER) & MASK;
+		super.setSeed(seed);
+	}
+
+	@Override
+	protected int next(int bits) {
+		state_ = (state_ * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state_ >>> (48 - bits));
+	}
+
+	/**
+	 * Gets the internal state of the generator.
+	 * 
+	 * @return The 48-bit state.
+	 */
+	public long getState() {
+		return state_;
+	}
+
+	/**
+	 * Sets the internal state of the generator, as returned by getState().
+	 * 
+	 * @param state
+	 *            The 48-bit state.
+	 */
+	public void setState(long state) {
+		state_ = state & MASK;
+	}
+}
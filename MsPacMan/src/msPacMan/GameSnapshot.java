@@ -0,0 +1,161 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/msPacMan/GameSnapshot.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package msPacMan;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable copy of the dynamic state of a Ms. PacMan game: the timers and
+ * counters of the game, the positions and timers of every Thing, the dots
+ * remaining and the random generator's state. A snapshot can be restored into
+ * the game it was taken from (to reset or rewind it) or into a new game (to
+ * fork it).
+ * 
+ * @author Sam Sarjant
+ */
+public final class GameSnapshot {
+	/** The scalar state of the game and its Things, in a fixed order. */
+	final int[] values_;
+
+	/** The (shared) maze being played, or null if none is loaded. */
+	final MazeLayout maze_;
+
+	/** The cells containing dots. */
+	final BitSet dots_;
+
+	/** The cells containing powerdots. */
+	final BitSet powerdots_;
+
+	/** The random generator's state, or -1 if not capturable. */
+	final long randomState_;
+
+	GameSnapshot(int[] values, MazeLayout maze, BitSet dots,
+			BitSet powerdots, long randomState) {
+		values_ = values;
+		maze_ = maze;
+		dots_ = dots;
+		powerdots_ = powerdots;
+		randomState_ = randomState;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		GameSnapshot other = (GameSnapshot) obj;
+		if (randomState_ != other.randomState_)
+			return false;
+		if (maze_ != other.maze_)
+			return false;
+		if (!Arrays.equals(values_, other.values_))
+			return false;
+		if (!dots_.equals(other.dots_))
+			return false;
+		if (!powerdots_.equals(other.powerdots_))
+			return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(values_);
+		result = prime * result + dots_.hashCode();
+		result = prime * result + powerdots_.hashCode();
+		result = prime * result + (int) (randomState_ ^ (randomState_ >>> 32));
+		return result;
+	}
+
+	/**
+	 * A simple growable buffer the game and its Things write their scalar
+	 * state into (and read it back from) in a fixed order.
+	 * 
+	 * @author Sam Sarjant
+	 */
+	static class StateBuffer {
+		/** The values. */
+		private int[] values_;
+
+		/** The current read/write position. */
+		private int position_;
+
+		/** Creates a buffer for writing. */
+		StateBuffer() {
+			values_ = new int[256];
+		}
+
+		/** Creates a buffer for reading the given values. */
+		StateBuffer(int[] values) {
+			values_ = values;
+		}
+
+		void put(int value) {
+			if (position_ == values_.length) {
+				int[] larger = new int[values_.length * 2];
+				System.arraycopy(values_, 0, larger, 0, values_.length);
+				values_ = larger;
+			}
+			values_[position_++] = value;
+		}
+
+		void put(boolean value) {
+			put(value ? 1 : 0);
+		}
+
+		void put(double value) {
+			long bits = Double.doubleToLongBits(value);
+			put((int) (bits >>> 32));
+			put((int) bits);
+		}
+
+		int getInt() {
+			return values_[position_++];
+		}
+
+		boolean getBoolean() {
+			return values_[position_++] != 0;
+		}
+
+		double getDouble() {
+			long high = getInt();
+			long low = getInt() & 0xffffffffL;
+			return Double.longBitsToDouble((high << 32) | low);
+		}
+
+		/**
+		 * Gets the written values.
+		 * 
+		 * @return A copy of the values written so far.
+		 */
+		int[] toArray() {
+			int[] values = new int[position_];
+			System.arraycopy(values_, 0, values, 0, position_);
+			return values;
+		}
+	}
+}
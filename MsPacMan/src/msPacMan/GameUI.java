@@ -102,6 +102,33 @@ public class GameUI extends Canvas {
 		m_readyFontItalic = new Font("Helvetica", Font.BOLD | Font.ITALIC, 20);
 	}
 
+	// Sets the wall colours for the current maze.
+	void updateWallColor() {
+		switch (m_gameModel.m_stage % GameModel.MAX_LEVELS) {
+		case 1:
+		case 2:
+			m_wallColor = Color.blue;
+			break;
+		case 3:
+		case 4:
+			m_wallColor = Color.red;
+			break;
+		case 5:
+		case 6:
+			m_wallColor = new Color(0, 255, 0); // Green
+			break;
+		case 7:
+		case 8:
+			m_wallColor = Color.cyan;
+			break;
+		case 9:
+		case 0:
+			m_wallColor = Color.magenta;
+			break;
+		}
+		m_wallAltColor = Color.white;
+	}
+
 	// Refresh the Redraw Hash whenever the board changes.
 	void refreshRedrawHash() {
 		m_redrawHash.clear();
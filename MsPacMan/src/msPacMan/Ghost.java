@@ -41,6 +41,17 @@ public class Ghost extends Thing {
 	/** The density ratio of the ghosts. */
 	public static final double DENSITY_RADIUS = 10;
 
+	/**
+	 * The preferred order of directions towards a target, indexed by whether
+	 * the target is mostly horizontal (4), in the negative direction along the
+	 * major axis (2) and in the negative direction along the minor axis (1).
+	 */
+	private static final byte[][] DIRECTION_ORDER = {
+			{ DOWN, RIGHT, LEFT, UP }, { DOWN, LEFT, RIGHT, UP },
+			{ UP, RIGHT, LEFT, DOWN }, { UP, LEFT, RIGHT, DOWN },
+			{ RIGHT, DOWN, UP, LEFT }, { RIGHT, UP, DOWN, LEFT },
+			{ LEFT, DOWN, UP, RIGHT }, { LEFT, UP, DOWN, RIGHT } };
+
 	int[] m_ghostMouthX; // X points of Ghost's crooked mouth when Pacman
 	// powersup
 	int[] m_ghostMouthY; // Y points of Ghost's crooked mouth when Pacman
@@ -462,8 +473,8 @@ public class Ghost extends Thing {
 
 	// Overriden to update Ghost's directions
 	@Override
-	public void tickThing(GameUI gameUI) {
-		super.tickThing(gameUI);
+	public void tickThing(BoardGeometry geometry) {
+		super.tickThing(geometry);
 		boolean bBackoff = false;
 		// Don't let the ghost go back the way it came.
 		byte prevDirection = STILL;
@@ -607,6 +618,58 @@ public class Ghost extends Thing {
 		m_bOldChaseMode = m_bChaseMode;
 	}
 
+	@Override
+	int getSteadyTicks() {
+		int ticks = super.getSteadyTicks();
+
+		// Timers running out
+		if (m_nTicks2Popup > 0)
+			ticks = Math.min(ticks, m_nTicks2Popup - 1);
+		if (m_nTicks2Exit > 0)
+			ticks = Math.min(ticks, m_nTicks2Exit - 1);
+		if (m_nTicks2Flee > 0)
+			ticks = Math.min(ticks, m_nTicks2Flee - 1);
+
+		// Backing off or choosing a new direction
+		if (m_bChaseMode != m_bOldChaseMode || m_destinationX < 0
+				|| m_destinationY < 0)
+			return 0;
+		int doorX = m_gameModel.m_doorLocX;
+		int doorY = m_gameModel.m_doorLocY;
+		if (m_bEnteringDoor
+				&& (m_destinationX != doorX || m_destinationY != doorY + 2 || m_direction != DOWN))
+			return 0;
+
+		// Reaching the destination, or entering or leaving the room
+		if (m_deltaLocX == 0 && m_deltaLocY == 0) {
+			if (m_locX == m_destinationX && m_locY == m_destinationY)
+				return 0;
+			if (m_locX == doorX
+					&& (m_locY == doorY - 1 || m_locY == doorY + 2))
+				return 0;
+		}
+		return ticks;
+	}
+
+	@Override
+	void skipTicks(int ticks, BoardGeometry geometry) {
+		super.skipTicks(ticks, geometry);
+		if (m_nTicks2Popup > 0)
+			m_nTicks2Popup -= ticks;
+		if (m_nTicks2Exit > 0)
+			m_nTicks2Exit -= ticks;
+		if (isEdible()) {
+			m_nTicks2Flee -= ticks;
+			flashing_ = m_nTicks2Flee < 2000 / m_gameModel.m_pacMan.m_delay;
+		} else
+			flashing_ = false;
+	}
+
+	@Override
+	boolean canCollide() {
+		return !m_bEaten;
+	}
+
 	void setNextDirection(byte prevDirection, boolean bBackoff) {
 		int deltaX, deltaY;
 		Point target;
@@ -618,52 +681,12 @@ public class Ghost extends Thing {
 		deltaX = m_locX - target.x;
 		deltaY = m_locY - target.y;
 
-		if (Math.abs(deltaX) > Math.abs(deltaY)) {
-			if (deltaX > 0) {
-				bestDirection[0] = LEFT;
-				bestDirection[3] = RIGHT;
-				if (deltaY > 0) {
-					bestDirection[1] = UP;
-					bestDirection[2] = DOWN;
-				} else {
-					bestDirection[1] = DOWN;
-					bestDirection[2] = UP;
-				}
-			} else {
-				bestDirection[0] = RIGHT;
-				bestDirection[3] = LEFT;
-				if (deltaY > 0) {
-					bestDirection[1] = UP;
-					bestDirection[2] = DOWN;
-				} else {
-					bestDirection[1] = DOWN;
-					bestDirection[2] = UP;
-				}
-			}
-		} else {
-			if (deltaY > 0) {
-				bestDirection[0] = UP;
-				bestDirection[3] = DOWN;
-				if (deltaX > 0) {
-					bestDirection[1] = LEFT;
-					bestDirection[2] = RIGHT;
-				} else {
-					bestDirection[1] = RIGHT;
-					bestDirection[2] = LEFT;
-				}
-
-			} else {
-				bestDirection[0] = DOWN;
-				bestDirection[3] = UP;
-				if (deltaX > 0) {
-					bestDirection[1] = LEFT;
-					bestDirection[2] = RIGHT;
-				} else {
-					bestDirection[1] = RIGHT;
-					bestDirection[2] = LEFT;
-				}
-			}
-		}
+		int order;
+		if (Math.abs(deltaX) > Math.abs(deltaY))
+			order = 4 | ((deltaX > 0) ? 2 : 0) | ((deltaY > 0) ? 1 : 0);
+		else
+			order = ((deltaY > 0) ? 2 : 0) | ((deltaX > 0) ? 1 : 0);
+		System.arraycopy(DIRECTION_ORDER[order], 0, bestDirection, 0, 4);
 
 		// There's a 20% chance that the ghost will try the sub-optimal
 		// direction first.
@@ -980,6 +1003,62 @@ public class Ghost extends Thing {
 		m_bEnteringDoor = false;
 	}
 
+	@Override
+	void saveState(GameSnapshot.StateBuffer buffer) {
+		super.saveState(buffer);
+		buffer.put(m_bOtherPolygon);
+		buffer.put(m_lastDirection);
+		buffer.put(m_destinationX);
+		buffer.put(m_destinationY);
+		buffer.put(m_targetX);
+		buffer.put(m_targetY);
+		buffer.put(m_nTicks2Exit);
+		buffer.put(m_nExitMilliSec);
+		buffer.put(m_nTicks2Flee);
+		buffer.put(m_bEaten);
+		buffer.put(m_ghostDeltaMax);
+		buffer.put(m_eatenPoints);
+		buffer.put(m_nTicks2Popup);
+		buffer.put(m_bEnteringDoor);
+		buffer.put(m_bChaseMode);
+		buffer.put(m_bOldChaseMode);
+		buffer.put(m_cornerX);
+		buffer.put(m_cornerY);
+		buffer.put(m_bCanFollow);
+		buffer.put(m_bCanBackTrack);
+		buffer.put(m_bCanUseNextBest);
+		buffer.put(m_bInsaneAI);
+		buffer.put(flashing_);
+	}
+
+	@Override
+	void loadState(GameSnapshot.StateBuffer buffer) {
+		super.loadState(buffer);
+		m_bOtherPolygon = buffer.getBoolean();
+		m_lastDirection = buffer.getInt();
+		m_destinationX = buffer.getInt();
+		m_destinationY = buffer.getInt();
+		m_targetX = buffer.getInt();
+		m_targetY = buffer.getInt();
+		m_nTicks2Exit = buffer.getInt();
+		m_nExitMilliSec = buffer.getInt();
+		m_nTicks2Flee = buffer.getInt();
+		m_bEaten = buffer.getBoolean();
+		m_ghostDeltaMax = buffer.getInt();
+		m_eatenPoints = buffer.getInt();
+		m_nTicks2Popup = buffer.getInt();
+		m_bEnteringDoor = buffer.getBoolean();
+		m_bChaseMode = buffer.getBoolean();
+		m_bOldChaseMode = buffer.getBoolean();
+		m_cornerX = buffer.getInt();
+		m_cornerY = buffer.getInt();
+		m_bCanFollow = buffer.getBoolean();
+		m_bCanBackTrack = buffer.getBoolean();
+		m_bCanUseNextBest = buffer.getBoolean();
+		m_bInsaneAI = buffer.getBoolean();
+		flashing_ = buffer.getBoolean();
+	}
+
 	/**
 	 * Checks if this ghost is flashing.
 	 * 
@@ -990,16 +1069,16 @@ public class Ghost extends Thing {
 	}
 
 	@Override
-	protected void updatePixelVals(GameUI gameUI) {
-		pixelSize_ = gameUI.CELL_LENGTH + gameUI.WALL1 + gameUI.WALL1;
-		pixelX_ = gameUI.m_gridInset
-				+ (int) (m_locX * gameUI.CELL_LENGTH - pixelSize_ / 2.0
-						+ gameUI.CELL_LENGTH / 2.0 + m_deltaLocX
-						* (gameUI.CELL_LENGTH / (m_deltaMax * 2.0 - 1)));
-		pixelY_ = gameUI.m_gridInset
-				+ (int) (m_locY * gameUI.CELL_LENGTH - pixelSize_ / 2.0
-						+ gameUI.CELL_LENGTH / 2.0 + m_deltaLocY
-						* (gameUI.CELL_LENGTH / (m_deltaMax * 2.0 - 1)));
+	protected void updatePixelVals(BoardGeometry geometry) {
+		pixelSize_ = geometry.CELL_LENGTH + geometry.WALL1 + geometry.WALL1;
+		pixelX_ = geometry.m_gridInset
+				+ (int) (m_locX * geometry.CELL_LENGTH - pixelSize_ / 2.0
+						+ geometry.CELL_LENGTH / 2.0 + m_deltaLocX
+						* (geometry.CELL_LENGTH / (m_deltaMax * 2.0 - 1)));
+		pixelY_ = geometry.m_gridInset
+				+ (int) (m_locY * geometry.CELL_LENGTH - pixelSize_ / 2.0
+						+ geometry.CELL_LENGTH / 2.0 + m_deltaLocY
+						* (geometry.CELL_LENGTH / (m_deltaMax * 2.0 - 1)));
 		pixelShrink_ = -pixelSize_ / 4;
 	}
 
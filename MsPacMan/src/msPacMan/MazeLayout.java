@@ -0,0 +1,323 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/msPacMan/MazeLayout.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package msPacMan;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The static topology of one of the mazes: the wall and drawing bits of every
+ * cell, the cells which initially hold (power)dots, the junctions and the warp
+ * cells. Each maze is loaded once and shared by every game, so games only
+ * track which of the dots remain.
+ * 
+ * @author Sam Sarjant
+ */
+public final class MazeLayout {
+	/** The original Pac-Man maze. */
+	public static final int PACMAN_MAZE = 0;
+	/** The first Ms. Pac-Man maze. */
+	public static final int MS_PACMAN_MAZE_1 = 1;
+	/** The second Ms. Pac-Man maze. */
+	public static final int MS_PACMAN_MAZE_2 = 2;
+	/** The third Ms. Pac-Man maze. */
+	public static final int MS_PACMAN_MAZE_3 = 3;
+	/** The fourth Ms. Pac-Man maze. */
+	public static final int MS_PACMAN_MAZE_4 = 4;
+	/** The maze shown during the intro. */
+	public static final int INTRO_MAZE = 5;
+
+	/** The lazily loaded layouts, indexed by maze. */
+	private static final MazeLayout[] LAYOUTS = new MazeLayout[INTRO_MAZE + 1];
+
+	/** The directions (wall bit, x offset, y offset) out of a cell. */
+	private static final int[][] DIRECTIONS = { { GameModel.GS_NORTH, 0, -1 },
+			{ GameModel.GS_EAST, 1, 0 }, { GameModel.GS_SOUTH, 0, 1 },
+			{ GameModel.GS_WEST, -1, 0 } };
+
+	/** The maze index. */
+	private final int maze_;
+
+	/** The width of the maze. */
+	private final int sizeX_;
+
+	/** The height of the maze. */
+	private final int sizeY_;
+
+	/** The wall and drawing bits of each cell. Never modified. */
+	final int[][] gameState_;
+
+	/** The dots indexed by cell. Never modified. */
+	final Object[] dots_;
+
+	/** The cells initially containing dots. */
+	final BitSet dotMask_;
+
+	/** The powerdots indexed by cell. Never modified. */
+	final Object[] powerDots_;
+
+	/** The cells initially containing powerdots. */
+	final BitSet powerDotMask_;
+
+	/** The cells reachable from the player's start. */
+	private final BitSet reachable_;
+
+	/** The reachable cells with more than two exits. */
+	private final int[] junctions_;
+
+	/** The reachable cells with an exit off the edge of the maze. */
+	private final int[] warps_;
+
+	/**
+	 * The next turning point when moving from each cell in each direction,
+	 * indexed by (cell * 4 + direction - 1). -1 if the move is invalid.
+	 */
+	private final short[] destinations_;
+
+	/**
+	 * Creates the layout from a freshly loaded maze.
+	 * 
+	 * @param maze
+	 *            The maze index.
+	 * @param model
+	 *            The bare model the maze was loaded into.
+	 * @param startX
+	 *            The player's starting x location.
+	 * @param startY
+	 *            The player's starting y location.
+	 */
+	MazeLayout(int maze, GameModel model, int startX, int startY) {
+		maze_ = maze;
+		sizeX_ = model.m_gameSizeX;
+		sizeY_ = model.m_gameSizeY;
+		gameState_ = model.m_gameState;
+		dots_ = model.m_dots.getItems();
+		dotMask_ = model.m_dots.getMask();
+		powerDots_ = model.m_powerdots.getItems();
+		powerDotMask_ = model.m_powerdots.getMask();
+
+		// Walk every corridor once, so movement only needs a lookup
+		destinations_ = new short[sizeX_ * sizeY_ * 4];
+		Point destination = new Point();
+		for (int cell = 0; cell < sizeX_ * sizeY_; cell++) {
+			for (byte dir = Thing.UP; dir <= Thing.RIGHT; dir++) {
+				if (Thing.getDestination(dir, cell / sizeY_, cell % sizeY_,
+						destination, model))
+					destinations_[cell * 4 + dir - 1] = (short) (destination.x
+							* sizeY_ + destination.y);
+				else
+					destinations_[cell * 4 + dir - 1] = -1;
+			}
+		}
+
+		// Flood the maze from the start to find the junctions and warps
+		reachable_ = new BitSet(sizeX_ * sizeY_);
+		List<Integer> junctions = new ArrayList<Integer>();
+		List<Integer> warps = new ArrayList<Integer>();
+		int[] queue = new int[sizeX_ * sizeY_];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = startX * sizeY_ + startY;
+		reachable_.set(queue[0]);
+		while (head < tail) {
+			int cell = queue[head++];
+			int x = cell / sizeY_;
+			int y = cell % sizeY_;
+			int exits = 0;
+			boolean warp = false;
+			for (int[] dir : DIRECTIONS) {
+				if ((gameState_[x][y] & dir[0]) != 0)
+					continue;
+				exits++;
+				int nx = x + dir[1];
+				int ny = y + dir[2];
+				if (nx < 0 || ny < 0 || nx >= sizeX_ || ny >= sizeY_) {
+					warp = true;
+					nx = (nx + sizeX_) % sizeX_;
+					ny = (ny + sizeY_) % sizeY_;
+				}
+				int next = nx * sizeY_ + ny;
+				if (!reachable_.get(next)) {
+					reachable_.set(next);
+					queue[tail++] = next;
+				}
+			}
+			if (exits > 2)
+				junctions.add(cell);
+			if (warp)
+				warps.add(cell);
+		}
+		junctions_ = toArray(junctions);
+		warps_ = toArray(warps);
+	}
+
+	/**
+	 * Converts a list of cells into a sorted array.
+	 */
+	private static int[] toArray(List<Integer> cells) {
+		int[] array = new int[cells.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = cells.get(i);
+		Arrays.sort(array);
+		return array;
+	}
+
+	/**
+	 * Converts cells into points.
+	 */
+	private List<Point> toPoints(int[] cells) {
+		List<Point> points = new ArrayList<Point>(cells.length);
+		for (int cell : cells)
+			points.add(new Point(cell / sizeY_, cell % sizeY_));
+		return points;
+	}
+
+	/**
+	 * Gets the wall and drawing bits of a cell.
+	 * 
+	 * @param x
+	 *            The x location.
+	 * @param y
+	 *            The y location.
+	 * @return The GS_ and PAL_ bits of the cell.
+	 */
+	public int getCell(int x, int y) {
+		return gameState_[x][y];
+	}
+
+	/**
+	 * Gets the next turning point when moving from a cell in a direction, as
+	 * {@link Thing#getDestination(int, int, int, Point, GameModel)} would.
+	 * 
+	 * @param direction
+	 *            The direction to move in (UP, DOWN, LEFT or RIGHT).
+	 * @param x
+	 *            The x location.
+	 * @param y
+	 *            The y location.
+	 * @param point
+	 *            The point to set to the turning point.
+	 * @return True if the move is valid, false otherwise.
+	 */
+	public boolean getDestination(int direction, int x, int y, Point point) {
+		int destination = destinations_[(x * sizeY_ + y) * 4 + direction - 1];
+		if (destination < 0)
+			return false;
+		point.setLocation(destination / sizeY_, destination % sizeY_);
+		return true;
+	}
+
+	/**
+	 * Gets the cells which contain dots at the start of a level.
+	 * 
+	 * @return A copy of the dot cells (indexed by x * height + y).
+	 */
+	public BitSet getDotMask() {
+		return (BitSet) dotMask_.clone();
+	}
+
+	/**
+	 * Gets the junctions of the maze: the reachable cells with more than two
+	 * exits.
+	 * 
+	 * @return A new list of the junction locations.
+	 */
+	public List<Point> getJunctions() {
+		return toPoints(junctions_);
+	}
+
+	public int getMaze() {
+		return maze_;
+	}
+
+	/**
+	 * Gets the cells which contain powerdots at the start of a level.
+	 * 
+	 * @return A copy of the powerdot cells (indexed by x * height + y).
+	 */
+	public BitSet getPowerDotMask() {
+		return (BitSet) powerDotMask_.clone();
+	}
+
+	public int getSizeX() {
+		return sizeX_;
+	}
+
+	public int getSizeY() {
+		return sizeY_;
+	}
+
+	/**
+	 * Gets the warp cells of the maze: the reachable cells with an exit off
+	 * the edge of the maze.
+	 * 
+	 * @return A new list of the warp locations.
+	 */
+	public List<Point> getWarps() {
+		return toPoints(warps_);
+	}
+
+	/**
+	 * If a cell can be reached by the player.
+	 * 
+	 * @param x
+	 *            The x location.
+	 * @param y
+	 *            The y location.
+	 * @return True if the cell is reachable from the player's start.
+	 */
+	public boolean isReachable(int x, int y) {
+		return reachable_.get(x * sizeY_ + y);
+	}
+
+	/**
+	 * Gets the shared layout of a maze, loading it the first time it is
+	 * requested.
+	 * 
+	 * @param maze
+	 *            The maze index.
+	 * @return The layout of the maze.
+	 */
+	public static synchronized MazeLayout getLayout(int maze) {
+		if (LAYOUTS[maze] == null)
+			LAYOUTS[maze] = GameModel.loadLayout(maze);
+		return LAYOUTS[maze];
+	}
+
+	/**
+	 * Gets the maze played on a given stage. The five mazes are rotated after
+	 * each is completed twice.
+	 * 
+	 * @param stage
+	 *            The stage (starting at 1).
+	 * @return The maze index for the stage.
+	 */
+	public static int getStageMaze(int stage) {
+		int level = stage % GameModel.MAX_LEVELS;
+		if (level == 0)
+			return MS_PACMAN_MAZE_4;
+		return (level - 1) / 2;
+	}
+}
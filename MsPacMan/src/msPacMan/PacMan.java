@@ -31,11 +31,24 @@ import javax.swing.JFrame;
 
 
 public class PacMan {
+	/** The pixel width of the game board. */
+	public static final int BOARD_WIDTH = 409;
+	/** The pixel height of the game board. */
+	public static final int BOARD_HEIGHT = 450;
+	/**
+	 * The cell distance within which Pacman and another Thing could touch
+	 * while both stay within their cells.
+	 */
+	private static final int COLLISION_CELLS = 3;
+
 	private JFrame gui_;
 	protected GameModel m_gameModel;
+	/** The drawing components. Null when the game is headless. */
 	public TopCanvas m_topCanvas;
 	public BottomCanvas m_bottomCanvas;
 	public GameUI m_gameUI;
+	/** The board geometry the game rules use for collisions. */
+	protected BoardGeometry m_geometry;
 	protected Ticker m_ticker; // Used to update the game state and UI
 	// protected SoundManager m_soundMgr;
 	protected int m_globalTickCount = 0;
@@ -46,59 +59,122 @@ public class PacMan {
 	/** The agent interfacing with this program. */
 	protected PacManKeyAdapter keyAdapter_;
 
+	/**
+	 * Initialises the game. In experiment mode the game runs headless: only
+	 * the game rules are created and no drawing components exist.
+	 * 
+	 * @param experimentMode
+	 *            If the game is running without being watched.
+	 */
 	public void init(boolean experimentMode) {
 		setTicksPerSec(35);
 
-		// Create canvases and layout
 		m_gameModel = new GameModel(this);
-		m_gameUI = new GameUI(this, m_gameModel, 409, 450);
+		m_geometry = new BoardGeometry(BOARD_HEIGHT, m_gameModel.m_gameSizeY);
+
+		keyAdapter_ = new PacManKeyAdapter(this);
+		if (!experimentMode)
+			attachUI();
+	}
+
+	/**
+	 * Creates the drawing components and shows them in a frame, so a human
+	 * can watch the game.
+	 */
+	public void attachUI() {
+		if (m_gameUI != null)
+			return;
+
+		// Create canvases and layout
+		m_gameUI = new GameUI(this, m_gameModel, BOARD_WIDTH, BOARD_HEIGHT);
+		m_gameUI.updateWallColor();
 		m_topCanvas = new TopCanvas(m_gameModel, 250, 150);
 		m_bottomCanvas = new BottomCanvas(this, m_gameModel, 250, 300);
 
-		keyAdapter_ = new PacManKeyAdapter(this);
-		if (!experimentMode) {
-			gui_ = new JFrame("Reinforcement Learning Ms. PacMan");
-			
-			GridBagLayout gridBag = new GridBagLayout();
-			GridBagConstraints c = new GridBagConstraints();
+		gui_ = new JFrame("Reinforcement Learning Ms. PacMan");
 
-			gui_.setLayout(gridBag);
+		GridBagLayout gridBag = new GridBagLayout();
+		GridBagConstraints c = new GridBagConstraints();
 
-			c.gridwidth = 1;
-			c.gridheight = 3;
+		gui_.setLayout(gridBag);
 
-			gridBag.setConstraints(m_gameUI, c);
-			gui_.add(m_gameUI);
+		c.gridwidth = 1;
+		c.gridheight = 3;
 
-			c.gridwidth = GridBagConstraints.REMAINDER;
-			c.gridheight = 1;
-			gridBag.setConstraints(m_topCanvas, c);
-			gui_.add(m_topCanvas);
+		gridBag.setConstraints(m_gameUI, c);
+		gui_.add(m_gameUI);
 
-			gridBag.setConstraints(m_bottomCanvas, c);
-			gui_.add(m_bottomCanvas);
+		c.gridwidth = GridBagConstraints.REMAINDER;
+		c.gridheight = 1;
+		gridBag.setConstraints(m_topCanvas, c);
+		gui_.add(m_topCanvas);
 
-			gui_.requestFocus();
-			// Add event subscribers
-			gui_.addKeyListener(keyAdapter_);
+		gridBag.setConstraints(m_bottomCanvas, c);
+		gui_.add(m_bottomCanvas);
 
-			gui_.validate();
+		gui_.requestFocus();
+		// Add event subscribers
+		gui_.addKeyListener(keyAdapter_);
 
-			gui_.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-			gui_.pack();
-			gui_.setVisible(true);
-		}
+		gui_.validate();
+
+		gui_.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		gui_.pack();
+		gui_.setVisible(true);
 	}
 
 	public void reinit() {
 		m_gameModel = new GameModel(this);
-		m_gameUI.m_gameModel = m_gameModel;
-		m_topCanvas.m_gameModel = m_gameModel;
-		m_bottomCanvas.m_gameModel = m_gameModel;
+		if (m_gameUI != null) {
+			m_gameUI.m_gameModel = m_gameModel;
+			m_topCanvas.m_gameModel = m_gameModel;
+			m_bottomCanvas.m_gameModel = m_gameModel;
+		}
 
 		m_globalTickCount = 0;
 	}
 
+	/**
+	 * Captures the dynamic state of the current game.
+	 * 
+	 * @return A snapshot of the game.
+	 */
+	public GameSnapshot snapshot() {
+		return m_gameModel.snapshot();
+	}
+
+	/**
+	 * Restores the current game to a snapshot taken from this or another
+	 * game.
+	 * 
+	 * @param snapshot
+	 *            The snapshot to restore.
+	 */
+	public void restore(GameSnapshot snapshot) {
+		m_gameModel.restore(snapshot);
+		if (m_gameUI != null) {
+			m_gameUI.updateWallColor();
+			m_gameUI.refreshRedrawHash();
+			m_gameUI.m_bRedrawAll = true;
+		}
+	}
+
+	/**
+	 * Forks the current game into a new headless game with an identical state
+	 * (including its own copy of the random generator state), which can be
+	 * played on without affecting this game.
+	 * 
+	 * @return A new headless game in the same state as this one.
+	 */
+	public PacMan fork() {
+		PacMan fork = new PacMan();
+		fork.init(true);
+		GameModel model = fork.m_gameModel;
+		model.setRandom(new GameRandom(0));
+		model.restore(m_gameModel.snapshot());
+		return fork;
+	}
+
 	public URL getCodeBase() {
 		File here = new File(".");
 		try {
@@ -109,6 +185,15 @@ public class PacMan {
 		return null;
 	}
 
+	/**
+	 * If the game is running without any drawing components.
+	 * 
+	 * @return True if no GameUI is attached.
+	 */
+	public boolean isHeadless() {
+		return m_gameUI == null;
+	}
+
 	/**
 	 * Gets the JFrame this object uses.
 	 * 
@@ -127,9 +212,11 @@ public class PacMan {
 		if (m_gameModel.m_state == GameModel.STATE_ABOUT) {
 			// m_soundMgr.stop();
 			m_gameModel.m_bIntroInited = false;
-			m_gameUI.m_bShowIntro = false;
-			m_gameUI.m_bShowAbout = true;
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null) {
+				m_gameUI.m_bShowIntro = false;
+				m_gameUI.m_bShowAbout = true;
+				m_gameUI.m_bRedrawAll = true;
+			}
 			m_gameModel.m_nTicks2AboutShow++;
 			if (m_gameModel.m_nTicks2AboutShow == 15000 / m_delay) {
 				m_gameModel.m_state = GameModel.STATE_INTRO;
@@ -138,12 +225,15 @@ public class PacMan {
 
 		} else if (m_gameModel.m_state == GameModel.STATE_INTRO) {
 			tickIntro();
-			m_gameUI.m_bShowIntro = true;
+			if (m_gameUI != null)
+				m_gameUI.m_bShowIntro = true;
 
 		} else if (m_gameModel.m_state == GameModel.STATE_PAUSED) {
-			m_gameUI.m_bDrawPaused = true;
-			m_gameUI.m_bRedrawAll = true;
-			m_gameUI.repaint();
+			if (m_gameUI != null) {
+				m_gameUI.m_bDrawPaused = true;
+				m_gameUI.m_bRedrawAll = true;
+				m_gameUI.repaint();
+			}
 			return;
 
 		} else if (m_gameModel.m_state == GameModel.STATE_NEWGAME) {
@@ -152,15 +242,18 @@ public class PacMan {
 			m_gameModel.m_state = GameModel.STATE_BEGIN_PLAY;
 			m_gameModel.m_nTicks2BeginPlay = 0;
 			m_gameModel.m_bIntroInited = false;
-			m_gameUI.m_bShowIntro = false;
-			m_gameUI.m_bShowAbout = false;
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null) {
+				m_gameUI.m_bShowIntro = false;
+				m_gameUI.m_bShowAbout = false;
+				m_gameUI.m_bRedrawAll = true;
+			}
 
 		} else if (m_gameModel.m_state == GameModel.STATE_GAMEOVER) {
 			if (m_gameModel.m_nTicks2GameOver == 0) {
 				if (m_gameModel.m_player.m_score > m_gameModel.m_highScore) {
 					m_gameModel.m_highScore = m_gameModel.m_player.m_score;
-					m_topCanvas.repaint();
+					if (m_gameUI != null)
+						m_topCanvas.repaint();
 				}
 			}
 
@@ -172,9 +265,11 @@ public class PacMan {
 				m_gameModel.m_nTicks2GameOver = 0;
 			}
 
-			m_gameUI.m_bDrawGameOver = true;
-			m_gameUI.m_bRedrawAll = true;
-			m_gameUI.repaint();
+			if (m_gameUI != null) {
+				m_gameUI.m_bDrawGameOver = true;
+				m_gameUI.m_bRedrawAll = true;
+				m_gameUI.repaint();
+			}
 			return;
 
 		} else if (m_gameModel.m_state == GameModel.STATE_LEVELCOMPLETE) {
@@ -190,7 +285,8 @@ public class PacMan {
 			} else {
 				m_gameModel.restartGame();
 				m_gameModel.m_state = GameModel.STATE_BEGIN_PLAY;
-				m_bottomCanvas.repaint();
+				if (m_gameUI != null)
+					m_bottomCanvas.repaint();
 
 			}
 
@@ -203,18 +299,149 @@ public class PacMan {
 			tickDeadPlay();
 		}
 
-		if (redraw) {
+		if (redraw && m_gameUI != null) {
 			m_gameUI.repaint();
 			m_topCanvas.repaint();
 		}
 
 	}
 
+	/**
+	 * Ticks the game until it is ready for the agent to act again: at least
+	 * the given number of ticks, then onwards until the game is back in a
+	 * learning state (through deaths and level transitions).
+	 * 
+	 * @param minTicks
+	 *            The minimum number of ticks to run.
+	 * @param fastForward
+	 *            If ticks whose outcome can be calculated directly can be
+	 *            skipped (only when headless).
+	 * @return The number of ticks simulated (including skipped ticks).
+	 */
+	public int tickUntilLearning(int minTicks, boolean fastForward) {
+		int i = 0;
+		while ((i < minTicks) || (!m_gameModel.isLearning())) {
+			if (fastForward)
+				i += skipIdleTicks(minTicks - i - 1);
+			tick(false);
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Skips the ticks leading up to the game's next event, leaving the game
+	 * on the tick before that event. During the death or level complete
+	 * animations only the animation counters change between events. During
+	 * play, ticks are skipped while every Thing either stands still or moves
+	 * steadily within its cell, up to the tick before any Thing reaches the
+	 * centre or edge of its cell, a timer (such as an eaten ghost's points
+	 * popup) runs out, or Pacman could touch a ghost or the fruit. The skipped
+	 * ticks are still counted in the global tick count, so the game is
+	 * tick-for-tick identical to ticking through. When drawn, these ticks
+	 * animate and redraw the board, so nothing is skipped unless headless.
+	 * 
+	 * @param maxPlayTicks
+	 *            The most ticks of play to skip.
+	 * @return The number of ticks skipped.
+	 */
+	public int skipIdleTicks(int maxPlayTicks) {
+		if (!isHeadless())
+			return 0;
+
+		int skip = 0;
+		if (m_gameModel.m_state == GameModel.STATE_DEAD_PLAY
+				&& m_gameModel.m_nTicks2DeadPlay > 0) {
+			int count = m_gameModel.m_nTicks2DeadPlay;
+			skip = nextEventTick(count, 1000 / m_delay,
+					(SoundManager.SOUND_PACMANDIES_LENGTH + 1000) / m_delay)
+					- count - 1;
+			if (skip > 0)
+				m_gameModel.m_nTicks2DeadPlay += skip;
+		} else if (m_gameModel.m_state == GameModel.STATE_LEVELCOMPLETE
+				&& m_gameModel.m_nTicks2LevelComp > 0) {
+			int count = m_gameModel.m_nTicks2LevelComp;
+			skip = nextEventTick(count, 600 / m_delay, 1900 / m_delay) - count
+					- 1;
+			if (skip > 0)
+				m_gameModel.m_nTicks2LevelComp += skip;
+		} else if (m_gameModel.m_state == GameModel.STATE_PLAYING) {
+			skip = Math.min(maxPlayTicks, getSteadyPlayTicks());
+			if (skip > 0) {
+				for (Thing thing : m_gameModel.m_things)
+					thing.skipTicks(skip, m_geometry);
+				boolean bFleeing = false;
+				for (Ghost ghost : m_gameModel.m_ghosts)
+					bFleeing |= ghost.isEdible();
+				if (!bFleeing)
+					m_gameModel.m_eatGhostPoints = 200;
+			}
+		}
+
+		if (skip <= 0)
+			return 0;
+		m_globalTickCount += skip;
+		return skip;
+	}
+
+	/**
+	 * Gets the number of ticks of play that could be skipped: no Thing needs
+	 * ticking, nothing can be eaten and nothing can collide with Pacman.
+	 * 
+	 * @return The number of ticks before the next event.
+	 */
+	private int getSteadyPlayTicks() {
+		Player player = m_gameModel.m_player;
+		if (player.m_score >= m_gameModel.m_nextFreeUp
+				|| m_gameModel.m_totalFoodCount == m_gameModel.m_currentFoodCount)
+			return 0;
+
+		int ticks = Integer.MAX_VALUE;
+		for (Thing thing : m_gameModel.m_things) {
+			ticks = Math.min(ticks, thing.getSteadyTicks());
+			if (ticks <= 0)
+				return 0;
+		}
+
+		for (Thing thing : m_gameModel.m_things) {
+			if (!thing.canCollide())
+				continue;
+			// The next tick checks the current bounds, the following ticks
+			// bounds within the current cells
+			if (!thing.m_boundingBox.intersection(player.m_boundingBox)
+					.isEmpty())
+				return 0;
+			if (Math.abs(thing.m_locX - player.m_locX) < COLLISION_CELLS
+					&& Math.abs(thing.m_locY - player.m_locY) < COLLISION_CELLS)
+				ticks = 1;
+		}
+		return ticks;
+	}
+
+	/**
+	 * Finds the next counter value at which an animation event occurs.
+	 * 
+	 * @param count
+	 *            The current counter value.
+	 * @param eventTicks
+	 *            The counter values events occur at.
+	 * @return The smallest event value greater than the count, or count + 1
+	 *         if there are no more events.
+	 */
+	private int nextEventTick(int count, int... eventTicks) {
+		int next = Integer.MAX_VALUE;
+		for (int eventTick : eventTicks)
+			if (eventTick > count && eventTick < next)
+				next = eventTick;
+		return (next == Integer.MAX_VALUE) ? count + 1 : next;
+	}
+
 	// Ticked when level has completed
 	public void tickLevelComplete() {
 		if (m_gameModel.m_nTicks2LevelComp == 0) {
 			m_gameModel.setPausedGame(true);
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null)
+				m_gameUI.m_bRedrawAll = true;
 		}
 
 		m_gameModel.m_nTicks2LevelComp++;
@@ -223,13 +450,17 @@ public class PacMan {
 		if (m_gameModel.m_nTicks2LevelComp == 600 / m_delay) {
 			m_gameModel.setVisibleThings(false);
 			m_gameModel.m_player.m_bVisible = true;
-			m_gameUI.m_bFlipWallColor = true;
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null) {
+				m_gameUI.m_bFlipWallColor = true;
+				m_gameUI.m_bRedrawAll = true;
+			}
 
 		} else if (m_gameModel.m_nTicks2LevelComp > 600 / m_delay
 				&& (m_gameModel.m_nTicks2LevelComp % (200 / m_delay)) == 0) {
-			m_gameUI.m_bFlipWallColor = !m_gameUI.m_bFlipWallColor;
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null) {
+				m_gameUI.m_bFlipWallColor = !m_gameUI.m_bFlipWallColor;
+				m_gameUI.m_bRedrawAll = true;
+			}
 		}
 
 		if (m_gameModel.m_nTicks2LevelComp == 1900 / m_delay) {
@@ -237,9 +468,11 @@ public class PacMan {
 			m_gameModel.loadNextLevel();
 			m_gameModel.m_state = GameModel.STATE_BEGIN_PLAY;
 			m_gameModel.m_nTicks2LevelComp = 0;
-			m_gameUI.m_bFlipWallColor = false;
-			m_gameUI.m_bRedrawAll = true;
-			m_bottomCanvas.repaint();
+			if (m_gameUI != null) {
+				m_gameUI.m_bFlipWallColor = false;
+				m_gameUI.m_bRedrawAll = true;
+				m_bottomCanvas.repaint();
+			}
 		}
 	}
 
@@ -250,7 +483,8 @@ public class PacMan {
 			m_gameModel.m_player.m_rotationDying = 0;
 			m_gameModel.m_player.m_mouthDegreeDying = 45;
 			m_gameModel.m_player.m_mouthArcDying = 135;
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null)
+				m_gameUI.m_bRedrawAll = true;
 			m_gameModel.m_nOrigTicksPerSecond = m_ticksPerSec;
 			setTicksPerSec(35);
 			// m_soundMgr.stop();
@@ -264,7 +498,8 @@ public class PacMan {
 				m_gameModel.m_ghosts[i].setVisible(false);
 			}
 			m_gameModel.m_fruit.setVisible(false);
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null)
+				m_gameUI.m_bRedrawAll = true;
 			// m_soundMgr.playSound(SoundManager.SOUND_PACMANDIES);
 		}
 
@@ -273,7 +508,8 @@ public class PacMan {
 			m_gameModel.m_state = GameModel.STATE_DEADPACMAN; // STATE_LEVELCOMPLETE
 			m_gameModel.m_nTicks2DeadPlay = 0;
 			setTicksPerSec(m_gameModel.m_nOrigTicksPerSecond);
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null)
+				m_gameUI.m_bRedrawAll = true;
 		}
 	}
 
@@ -282,16 +518,19 @@ public class PacMan {
 		if (m_gameModel.m_nTicks2BeginPlay == 0) {
 			m_gameModel.setVisibleThings(false);
 			m_gameModel.setPausedGame(true);
-			m_gameUI.m_bDrawReady = true;
-			m_gameUI.m_bDrawGameOver = false;
-			m_gameUI.m_bRedrawAll = true;
-			m_gameUI.m_bFlipWallColor = false;
-			m_gameUI.refreshRedrawHash();
+			if (m_gameUI != null) {
+				m_gameUI.m_bDrawReady = true;
+				m_gameUI.m_bDrawGameOver = false;
+				m_gameUI.m_bRedrawAll = true;
+				m_gameUI.m_bFlipWallColor = false;
+				m_gameUI.refreshRedrawHash();
+			}
 			if (m_gameModel.m_bPlayStartClip) {
 				// m_soundMgr.playSound(SoundManager.SOUND_START);
 				m_gameModel.m_bPlayStartClip = false;
 			}
-			m_bottomCanvas.repaint();
+			if (m_gameUI != null)
+				m_bottomCanvas.repaint();
 		}
 
 		m_gameModel.m_nTicks2BeginPlay++;
@@ -312,8 +551,10 @@ public class PacMan {
 			m_gameModel.setVisibleThings(true);
 			m_gameModel.m_fruit.setVisible(false);
 			m_gameModel.setPausedGame(false);
-			m_gameUI.m_bDrawReady = false;
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null) {
+				m_gameUI.m_bDrawReady = false;
+				m_gameUI.m_bRedrawAll = true;
+			}
 			m_gameModel.m_nTicks2BeginPlay = 0;
 			m_gameModel.m_bStartClipPlayed = true;
 			// m_soundMgr.playSound(SoundManager.SOUND_SIREN);
@@ -329,7 +570,7 @@ public class PacMan {
 		if (m_gameModel.m_player.m_score >= m_gameModel.m_nextFreeUp) {
 			m_gameModel.m_nLives += 1;
 			m_gameModel.m_nextFreeUp *= 10;
-			if (redraw)
+			if (redraw && m_gameUI != null)
 				m_bottomCanvas.repaint();
 		}
 
@@ -355,7 +596,7 @@ public class PacMan {
 
 		// Tick and then Move each Thing (includes Pacman and Ghosts)
 		for (int i = 0; i < m_gameModel.m_things.length; i++) {
-			m_gameModel.m_things[i].tickThing(m_gameUI);
+			m_gameModel.m_things[i].tickThing(m_geometry);
 			if (m_gameModel.m_things[i].canMove())
 				Move(m_gameModel.m_things[i]);
 		}
@@ -385,7 +626,8 @@ public class PacMan {
 			m_gameModel.initIntro();
 			setTicksPerSec(35);
 			m_gameModel.m_bIntroInited = true;
-			m_gameUI.m_bRedrawAll = true;
+			if (m_gameUI != null)
+				m_gameUI.m_bRedrawAll = true;
 		}
 
 		// Check if Ghost has run to the left of the Runway
@@ -431,7 +673,7 @@ public class PacMan {
 
 		// Tick and then Move each Thing (includes Pacman and Ghosts)
 		for (int i = 0; i < m_gameModel.m_things.length; i++) {
-			m_gameModel.m_things[i].tickThing(m_gameUI);
+			m_gameModel.m_things[i].tickThing(m_geometry);
 			if (m_gameModel.m_things[i].canMove())
 				Move(m_gameModel.m_things[i]);
 		}
@@ -682,7 +924,8 @@ public class PacMan {
 
 			case KeyEvent.VK_N:
 				m_pacMan.m_gameModel.m_state = GameModel.STATE_NEWGAME;
-				m_pacMan.m_gameUI.m_bDrawPaused = false;
+				if (m_pacMan.m_gameUI != null)
+					m_pacMan.m_gameUI.m_bDrawPaused = false;
 				break;
 
 			case KeyEvent.VK_P:
@@ -691,8 +934,10 @@ public class PacMan {
 
 				if (m_pacMan.m_gameModel.m_state == GameModel.STATE_PAUSED) {
 					m_pacMan.m_gameModel.m_state = m_pacMan.m_gameModel.m_pausedState;
-					m_pacMan.m_gameUI.m_bDrawPaused = false;
-					m_pacMan.m_gameUI.m_bRedrawAll = true;
+					if (m_pacMan.m_gameUI != null) {
+						m_pacMan.m_gameUI.m_bDrawPaused = false;
+						m_pacMan.m_gameUI.m_bRedrawAll = true;
+					}
 
 				} else {
 					m_pacMan.m_gameModel.m_pausedState = m_pacMan.m_gameModel.m_state;
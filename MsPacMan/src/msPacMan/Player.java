@@ -129,62 +129,128 @@ public class Player extends Thing {
 
 	// Overriden to update Pacman's direction
 	@Override
-	public void tickThing(GameUI gameUI) {
-		super.tickThing(gameUI);
+	public void tickThing(BoardGeometry geometry) {
+		super.tickThing(geometry);
+		m_direction = getNextDirection();
+	}
+
+	@Override
+	void updateBounds(BoardGeometry geometry) {
+		super.updateBounds(geometry);
 		m_boundingBoxFull.setBounds(m_boundingBox);
 		m_boundingBoxFull.grow(-pixelShrink_, -pixelShrink_);
+	}
 
-		if (m_direction == m_requestedDirection)
-			return;
+	@Override
+	int getSteadyTicks() {
+		int ticks = super.getSteadyTicks();
+		if (ticks <= 0 || getNextDirection() != m_direction)
+			return 0;
+
+		// Moving Pacman eats whatever is in the cell
+		if (isMoving()) {
+			Point pacLoc = new Point(m_locX, m_locY);
+			if (m_gameModel.m_dots.get(pacLoc) != null
+					|| m_gameModel.m_powerdots.get(pacLoc) != null)
+				return 0;
+		}
+		return ticks;
+	}
+
+	/**
+	 * Gets the direction Pacman will be moving in after turning towards the
+	 * requested direction, if he can.
+	 * 
+	 * @return The direction to move in.
+	 */
+	private byte getNextDirection() {
+		byte direction = m_direction;
+		if (direction == m_requestedDirection)
+			return direction;
 
 		// See if we can make a 90 degree turn, this can only happen when the
 		// thing is located dead-center in the cell.
 		if (m_deltaLocX == 0 && m_deltaLocY == 0) {
 			// Try to make a 90 degree turn left or right
-			if ((m_direction == UP || m_direction == DOWN || m_direction == STILL)
+			if ((direction == UP || direction == DOWN || direction == STILL)
 					&& (m_requestedDirection == LEFT || m_requestedDirection == RIGHT)) {
 				// You can make a left turn if there is no wall there.
 				if (m_requestedDirection == LEFT
 						&& (m_gameModel.m_gameState[m_locX][m_locY] & GameModel.GS_WEST) == 0)
-					m_direction = LEFT;
+					direction = LEFT;
 				else if (m_requestedDirection == RIGHT
 						&& (m_gameModel.m_gameState[m_locX][m_locY] & GameModel.GS_EAST) == 0)
 					// Otherwise, try to make a right turn if there is no wall
-					m_direction = RIGHT;
+					direction = RIGHT;
 
-			} else if ((m_direction == LEFT || m_direction == RIGHT || m_direction == STILL)
+			} else if ((direction == LEFT || direction == RIGHT || direction == STILL)
 					&& // Try to make a 90 degree turn up or down
 					(m_requestedDirection == UP || m_requestedDirection == DOWN)) {
 				// You can turn up if there is no wall there.
 				if (m_requestedDirection == UP
 						&& (m_gameModel.m_gameState[m_locX][m_locY] & GameModel.GS_NORTH) == 0)
-					m_direction = UP;
+					direction = UP;
 				else if (m_requestedDirection == DOWN
 						&& (m_gameModel.m_gameState[m_locX][m_locY] & GameModel.GS_SOUTH) == 0)
 					// Otherwise, try to make a down turn if there is no wall
-					m_direction = DOWN;
+					direction = DOWN;
 			}
 		}
 
 		// Direction change is also possible if the thing makes
 		// a 180 degree turn.
-		if ((m_direction == LEFT && m_requestedDirection == RIGHT)
-				|| (m_direction == RIGHT && m_requestedDirection == LEFT)
-				|| (m_direction == UP && m_requestedDirection == DOWN)
-				|| (m_direction == DOWN && m_requestedDirection == UP)) {
-			m_direction = m_requestedDirection;
+		if ((direction == LEFT && m_requestedDirection == RIGHT)
+				|| (direction == RIGHT && m_requestedDirection == LEFT)
+				|| (direction == UP && m_requestedDirection == DOWN)
+				|| (direction == DOWN && m_requestedDirection == UP)) {
+			direction = m_requestedDirection;
 		}
 
 		// In case Pacman is STILL and his deltaX or deltaY != 0,
 		// then allow him to move that delta's direction.
 		// Ex. When Pacman starts, he's in between cells
-		if (m_direction == STILL
+		if (direction == STILL
 				&& m_deltaLocX != 0
 				&& (m_requestedDirection == RIGHT || m_requestedDirection == LEFT))
-			m_direction = m_requestedDirection;
-		else if (m_direction == STILL && m_deltaLocY != 0
+			direction = m_requestedDirection;
+		else if (direction == STILL && m_deltaLocY != 0
 				&& (m_requestedDirection == UP || m_requestedDirection == DOWN))
-			m_direction = m_requestedDirection;
+			direction = m_requestedDirection;
+		return direction;
+	}
+
+	@Override
+	void saveState(GameSnapshot.StateBuffer buffer) {
+		super.saveState(buffer);
+		buffer.put(m_degreeRotation);
+		buffer.put(m_score);
+		buffer.put(m_mouthDegree);
+		buffer.put(m_mouthChomping);
+		buffer.put(m_bDrawDead);
+		buffer.put(m_requestedDirection);
+		buffer.put(m_boundingBoxFull.x);
+		buffer.put(m_boundingBoxFull.y);
+		buffer.put(m_boundingBoxFull.width);
+		buffer.put(m_boundingBoxFull.height);
+		buffer.put(m_rotationDying);
+		buffer.put(m_mouthDegreeDying);
+		buffer.put(m_mouthArcDying);
+	}
+
+	@Override
+	void loadState(GameSnapshot.StateBuffer buffer) {
+		super.loadState(buffer);
+		m_degreeRotation = buffer.getInt();
+		m_score = buffer.getInt();
+		m_mouthDegree = buffer.getInt();
+		m_mouthChomping = buffer.getBoolean();
+		m_bDrawDead = buffer.getBoolean();
+		m_requestedDirection = (byte) buffer.getInt();
+		m_boundingBoxFull.setBounds(buffer.getInt(), buffer.getInt(),
+				buffer.getInt(), buffer.getInt());
+		m_rotationDying = buffer.getInt();
+		m_mouthDegreeDying = buffer.getInt();
+		m_mouthArcDying = buffer.getInt();
 	}
 
 	@Override
@@ -201,24 +267,24 @@ public class Player extends Thing {
 	}
 
 	@Override
-	protected void updatePixelVals(GameUI gameUI) {
-		pixelSize_ = gameUI.CELL_LENGTH + gameUI.WALL1 + gameUI.WALL1;
-		double pacManX = gameUI.m_gridInset + m_locX * gameUI.CELL_LENGTH
+	protected void updatePixelVals(BoardGeometry geometry) {
+		pixelSize_ = geometry.CELL_LENGTH + geometry.WALL1 + geometry.WALL1;
+		double pacManX = geometry.m_gridInset + m_locX * geometry.CELL_LENGTH
 				- pixelSize_ / 2.0;
-		double pacManY = gameUI.m_gridInset + m_locY * gameUI.CELL_LENGTH
+		double pacManY = geometry.m_gridInset + m_locY * geometry.CELL_LENGTH
 				- pixelSize_ / 2.0;
 		double deltaPixelX = 0;
 		double deltaPixelY = 0;
 
-		pacManX += gameUI.CELL_LENGTH / 2.0;
-		pacManY += gameUI.CELL_LENGTH / 2.0;
+		pacManX += geometry.CELL_LENGTH / 2.0;
+		pacManY += geometry.CELL_LENGTH / 2.0;
 
 		if (m_deltaLocX != 0)
 			deltaPixelX = m_deltaLocX
-					* (gameUI.CELL_LENGTH / (m_deltaMax * 2.0 - 1));
+					* (geometry.CELL_LENGTH / (m_deltaMax * 2.0 - 1));
 		else if (m_deltaLocY != 0)
 			deltaPixelY = m_deltaLocY
-					* (gameUI.CELL_LENGTH / (m_deltaMax * 2.0 - 1));
+					* (geometry.CELL_LENGTH / (m_deltaMax * 2.0 - 1));
 
 		pixelX_ = (int) (pacManX + deltaPixelX);
 		pixelY_ = (int) (pacManY + deltaPixelY);
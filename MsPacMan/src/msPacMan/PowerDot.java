@@ -62,6 +62,6 @@ public class PowerDot extends Thing {
 	}
 
 	@Override
-	protected void updatePixelVals(GameUI gameUI) {
+	protected void updatePixelVals(BoardGeometry geometry) {
 	}
 }
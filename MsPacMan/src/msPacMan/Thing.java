@@ -93,17 +93,105 @@ public abstract class Thing extends PacPoint {
 	public void draw(GameUI gameUI, Graphics g2) {
 	}
 
-	public void tickThing(GameUI gameUI) {
-		updatePixelVals(gameUI);
+	public void tickThing(BoardGeometry geometry) {
+		updateBounds(geometry);
+	}
+
+	/**
+	 * Updates the pixel position and bounding box from the current location.
+	 * 
+	 * @param geometry
+	 *            The board geometry.
+	 */
+	void updateBounds(BoardGeometry geometry) {
+		updatePixelVals(geometry);
 		m_boundingBox.setBounds(pixelX_, pixelY_, pixelSize_, pixelSize_);
 		m_boundingBox.grow(pixelShrink_, pixelShrink_);
 	}
 
+	/**
+	 * If this Thing will move when next ticked.
+	 * 
+	 * @return True if it is not paused and has a direction.
+	 */
+	boolean isMoving() {
+		return canMove() && m_direction != STILL;
+	}
+
+	/**
+	 * Gets the number of ticks this Thing could be advanced without ticking
+	 * it. A moving Thing can be advanced until it reaches the centre or edge
+	 * of its cell, where walls, turns and cell changes are decided. Subclasses
+	 * further limit this by their own timers and decisions.
+	 * 
+	 * @return The number of ticks before the Thing needs ticking again.
+	 */
+	int getSteadyTicks() {
+		if (!isMoving())
+			return Integer.MAX_VALUE;
+
+		int delta, crossDelta;
+		if (m_direction == LEFT || m_direction == RIGHT) {
+			delta = (m_direction == LEFT) ? -m_deltaLocX : m_deltaLocX;
+			crossDelta = m_deltaLocY;
+		} else {
+			delta = (m_direction == UP) ? -m_deltaLocY : m_deltaLocY;
+			crossDelta = m_deltaLocX;
+		}
+		if (delta == 0 || crossDelta != 0)
+			return 0;
+		// Moving towards the centre, or towards the next cell
+		return (delta < 0) ? -delta : m_deltaMax - 1 - delta;
+	}
+
+	/**
+	 * Advances this Thing by a number of ticks as if it had been ticked and
+	 * moved each tick. Only valid for up to getSteadyTicks() ticks.
+	 * 
+	 * @param ticks
+	 *            The number of ticks to advance.
+	 * @param geometry
+	 *            The board geometry.
+	 */
+	void skipTicks(int ticks, BoardGeometry geometry) {
+		if (!isMoving()) {
+			updateBounds(geometry);
+			return;
+		}
+
+		int step = (m_direction == LEFT || m_direction == UP) ? -1 : 1;
+		boolean horizontal = m_direction == LEFT || m_direction == RIGHT;
+		// The bounds are updated at the start of the last tick, before it
+		// moves
+		if (horizontal)
+			m_deltaLocX += step * (ticks - 1);
+		else
+			m_deltaLocY += step * (ticks - 1);
+		updateBounds(geometry);
+		m_lastLocX = m_locX;
+		m_lastLocY = m_locY;
+		m_lastDeltaLocX = m_deltaLocX;
+		m_lastDeltaLocY = m_deltaLocY;
+		if (horizontal)
+			m_deltaLocX += step;
+		else
+			m_deltaLocY += step;
+	}
+
+	/**
+	 * If Pacman could collide with this Thing.
+	 * 
+	 * @return True if touching it would catch, or be caught by, Pacman.
+	 */
+	boolean canCollide() {
+		return false;
+	}
+
 	public int checkCollision(Player player) {
 		return 0;
 	}
 
-	protected abstract void updatePixelVals(GameUI gameUI);
+	protected abstract void updatePixelVals(BoardGeometry geometry);
 
 	// Called to return the Thing back to starting location
 	public void returnToStart() {
@@ -120,6 +208,72 @@ public abstract class Thing extends PacPoint {
 		m_boundingBox.setBounds(0, 0, 0, 0);
 	}
 
+	/**
+	 * Writes the dynamic state of this Thing into a snapshot buffer.
+	 * Subclasses append their own state after calling this.
+	 * 
+	 * @param buffer
+	 *            The buffer to write to.
+	 */
+	void saveState(GameSnapshot.StateBuffer buffer) {
+		buffer.put(m_locX);
+		buffer.put(m_locY);
+		buffer.put(m_deltaMax);
+		buffer.put(m_bInsideRoom);
+		buffer.put(m_deltaLocX);
+		buffer.put(m_deltaLocY);
+		buffer.put(m_lastLocX);
+		buffer.put(m_lastLocY);
+		buffer.put(m_lastDeltaLocX);
+		buffer.put(m_lastDeltaLocY);
+		buffer.put(m_direction);
+		buffer.put(m_startX);
+		buffer.put(m_startY);
+		buffer.put(m_deltaStartX);
+		buffer.put(m_boundingBox.x);
+		buffer.put(m_boundingBox.y);
+		buffer.put(m_boundingBox.width);
+		buffer.put(m_boundingBox.height);
+		buffer.put(m_bPaused);
+		buffer.put(m_bVisible);
+		buffer.put(pixelX_);
+		buffer.put(pixelY_);
+		buffer.put(pixelSize_);
+		buffer.put(pixelShrink_);
+	}
+
+	/**
+	 * Reads the dynamic state of this Thing from a snapshot buffer, in the
+	 * order it was written by saveState.
+	 * 
+	 * @param buffer
+	 *            The buffer to read from.
+	 */
+	void loadState(GameSnapshot.StateBuffer buffer) {
+		m_locX = buffer.getInt();
+		m_locY = buffer.getInt();
+		m_deltaMax = buffer.getInt();
+		m_bInsideRoom = buffer.getBoolean();
+		m_deltaLocX = buffer.getInt();
+		m_deltaLocY = buffer.getInt();
+		m_lastLocX = buffer.getInt();
+		m_lastLocY = buffer.getInt();
+		m_lastDeltaLocX = buffer.getInt();
+		m_lastDeltaLocY = buffer.getInt();
+		m_direction = (byte) buffer.getInt();
+		m_startX = buffer.getInt();
+		m_startY = buffer.getInt();
+		m_deltaStartX = buffer.getInt();
+		m_boundingBox.setBounds(buffer.getInt(), buffer.getInt(),
+				buffer.getInt(), buffer.getInt());
+		m_bPaused = buffer.getBoolean();
+		m_bVisible = buffer.getBoolean();
+		pixelX_ = buffer.getInt();
+		pixelY_ = buffer.getInt();
+		pixelSize_ = buffer.getInt();
+		pixelShrink_ = buffer.getInt();
+	}
+
 	public boolean canMove() {
 		return !m_bPaused;
 	}
@@ -158,6 +312,11 @@ public abstract class Thing extends PacPoint {
 	// next possible turning location would be.
 	public static boolean getDestination(int direction, int locX, int locY,
 			Point point, GameModel model) {
+		// The turning points of a loaded maze are precalculated
+		MazeLayout maze = model.getMaze();
+		if (maze != null && direction >= UP && direction <= RIGHT)
+			return maze.getDestination(direction, locX, locY, point);
+
 		if (!isValidMove(direction, locX, locY, model))
 			return false;
 
@@ -0,0 +1,143 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/msPacManVsGhosts/JunctionTable.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package msPacManVsGhosts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import game.core.Game;
+
+/**
+ * A table of the closest junction in each direction from every node of a
+ * maze. A junction is in a direction from a node if Pac-Man's path to it
+ * starts in that direction (as Game.getNextPacManDir would choose). The table
+ * is built once per maze, so finding the closest junctions from Pac-Man's
+ * location is a lookup rather than a search over every junction.
+ *
+ * @author Sam Sarjant
+ */
+public class JunctionTable {
+	/** The number of directions Pac-Man can move in. */
+	public static final int NUM_DIRS = 4;
+
+	/** The tables built for each maze. */
+	private static final Map<Integer, JunctionTable> tables_ = new HashMap<Integer, JunctionTable>();
+
+	/** The closest junction, by node and direction (or -1 if none). */
+	private final int[] junctions_;
+
+	/** The distance to the closest junction, by node and direction. */
+	private final int[] distances_;
+
+	/**
+	 * Builds the table for the game's current maze.
+	 *
+	 * @param game
+	 *            The game.
+	 */
+	private JunctionTable(Game game) {
+		int numNodes = game.getNumberOfNodes();
+		junctions_ = new int[numNodes * NUM_DIRS];
+		Arrays.fill(junctions_, -1);
+		distances_ = new int[numNodes * NUM_DIRS];
+		Arrays.fill(distances_, Integer.MAX_VALUE);
+
+		int[] junctionIndices = game.getJunctionIndices();
+		for (int node = 0; node < numNodes; node++) {
+			for (int junc : junctionIndices) {
+				// A junction the node is at is disregarded
+				if (node == junc)
+					continue;
+				int dir = getFirstDirection(game, node, junc);
+				if (dir == -1)
+					continue;
+				int dist = game.getPathDistance(node, junc);
+				int index = node * NUM_DIRS + dir;
+				if (dist < distances_[index]) {
+					distances_[index] = dist;
+					junctions_[index] = junc;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the table for the game's current maze, building it if necessary.
+	 *
+	 * @param game
+	 *            The game.
+	 * @return The junction table of the current maze.
+	 */
+	public static synchronized JunctionTable getTable(Game game) {
+		JunctionTable table = tables_.get(game.getCurMaze());
+		if (table == null) {
+			table = new JunctionTable(game);
+			tables_.put(game.getCurMaze(), table);
+		}
+		return table;
+	}
+
+	/**
+	 * Gets the first direction of the shortest path between two nodes, as
+	 * Game.getNextPacManDir would from the starting node.
+	 *
+	 * @param game
+	 *            The game.
+	 * @param from
+	 *            The starting node.
+	 * @param to
+	 *            The destination node.
+	 * @return The direction to move in, or -1 if there is none.
+	 */
+	public static int getFirstDirection(Game game, int from, int to) {
+		int dir = -1;
+		int min = Integer.MAX_VALUE;
+		for (int d = 0; d < NUM_DIRS; d++) {
+			int neighbour = game.getNeighbour(from, d);
+			if (neighbour != -1) {
+				int dist = game.getPathDistance(neighbour, to);
+				if (dist < min) {
+					min = dist;
+					dir = d;
+				}
+			}
+		}
+		return dir;
+	}
+
+	/**
+	 * Gets the closest junction in each direction from a node.
+	 *
+	 * @param node
+	 *            The node.
+	 * @param junctions
+	 *            The array to fill with the closest junction in each
+	 *            direction (or -1 if none).
+	 * @param distances
+	 *            The array to fill with the distance to each junction.
+	 */
+	public void getClosestJunctions(int node, int[] junctions, int[] distances) {
+		System.arraycopy(junctions_, node * NUM_DIRS, junctions, 0, NUM_DIRS);
+		System.arraycopy(distances_, node * NUM_DIRS, distances, 0, NUM_DIRS);
+	}
+}
@@ -51,6 +51,12 @@ public class MsPacManGhostEnvironment extends RRLEnvironment {
 	private GameView gv_;
 	private int prevLives_;
 	private int prevScore_;
+	/** The closest junction in each direction (reused each step). */
+	private final int[] closestJuncs_ = new int[JunctionTable.NUM_DIRS];
+	/** The distance to each closest junction (reused each step). */
+	private final int[] juncDists_ = new int[JunctionTable.NUM_DIRS];
+	/** The safety of each closest junction (reused each step). */
+	private final int[] juncSafety_ = new int[JunctionTable.NUM_DIRS];
 
 	/**
 	 * Makes an assertion of distance for a particular thing.
@@ -144,27 +150,14 @@ public class MsPacManGhostEnvironment extends RRLEnvironment {
 
 		int pacPos = game_.getCurPacManLoc();
 
-		// Calculate closest junctions
-		int[] closestJuncs = new int[4];
-		Arrays.fill(closestJuncs, -1);
-		int[] juncDists = new int[4];
-		Arrays.fill(juncDists, Integer.MAX_VALUE);
-		for (int junc : game_.getJunctionIndices()) {
-			// If Pac-Man is already at this junction, disregard it
-			if (pacPos != junc) {
-				// Find the direction and distance to a junction
-				int dir = game_.getNextPacManDir(junc, true, DM.PATH);
-				int dist = game_.getPathDistance(pacPos, junc);
-				// Find closest junction
-				if (dist < juncDists[dir]) {
-					juncDists[dir] = dist;
-					closestJuncs[dir] = junc;
-				}
-			}
-		}
+		// Look up the closest junctions (by direction)
+		int[] closestJuncs = closestJuncs_;
+		int[] juncDists = juncDists_;
+		JunctionTable.getTable(game_).getClosestJunctions(pacPos,
+				closestJuncs, juncDists);
 
 		// Ghosts
-		int[] juncSafety = new int[4];
+		int[] juncSafety = juncSafety_;
 		Arrays.fill(juncSafety, Integer.MAX_VALUE);
 		// int numActiveGhosts = 0;
 		// double centreX = 0;
@@ -187,7 +180,10 @@ public class MsPacManGhostEnvironment extends RRLEnvironment {
 						rete.assertString("(blinking " + ghost + ")");
 					}
 				} else {
-					// Calculating junction safety
+					// Calculating junction safety. The direction to each
+					// junction is its index.
+					int ghostDir = game_.getNextPacManDir(ghostPos, true,
+							DM.PATH);
 					for (int j = 0; j < closestJuncs.length; j++) {
 						if (closestJuncs[j] != -1) {
 							int ghostDistance = game_.getGhostPathDistance(g,
@@ -197,10 +193,7 @@ public class MsPacManGhostEnvironment extends RRLEnvironment {
 							// PacMan and the junction
 							int ghostJuncDist = game_.getPathDistance(ghostPos,
 									closestJuncs[j]);
-							if (pacGhostDist <= ghostJuncDist
-									&& game_.getNextPacManDir(ghostPos, true,
-											DM.PATH) == game_.getNextPacManDir(
-											closestJuncs[j], true, DM.PATH))
+							if (pacGhostDist <= ghostJuncDist && ghostDir == j)
 								thisGhostDist = ghostJuncDist - juncDists[j];
 
 							juncSafety[j] = Math.min(juncSafety[j],
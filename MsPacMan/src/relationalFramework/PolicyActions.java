@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 
 /**
@@ -111,12 +112,24 @@ public class PolicyActions {
 	 * @return A random action from the first collection of fired actions.
 	 */
 	public RelationalPredicate getFirstRandomAction() {
+		return getFirstRandomAction(RRLExperiment.random_);
+	}
+
+	/**
+	 * Gets a random action from the collection of fired actions in the action
+	 * list, using the given random number generator.
+	 * 
+	 * @param random
+	 *            The random number generator to select with.
+	 * @return A random action from the first collection of fired actions.
+	 */
+	public RelationalPredicate getFirstRandomAction(Random random) {
 		Collection<FiredAction> firedActions = getFirstActionList();
 		if (firedActions == null)
 			return null;
 		List<FiredAction> actionsList = new ArrayList<FiredAction>(firedActions);
-		FiredAction selectedAction = actionsList.get(RRLExperiment.random_
-				.nextInt(actionsList.size()));
+		FiredAction selectedAction = actionsList.get(random.nextInt(actionsList
+				.size()));
 		selectedAction.triggerRule();
 		return selectedAction.getAction();
 	}
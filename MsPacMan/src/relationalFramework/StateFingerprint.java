@@ -0,0 +1,190 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/relationalFramework/StateFingerprint.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package relationalFramework;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import jess.Fact;
+import jess.JessEvent;
+import jess.JessException;
+import jess.JessListener;
+import jess.Rete;
+
+/**
+ * A rolling 64-bit Zobrist-style fingerprint of the facts in a Rete. Every
+ * fact contributes a content-based 64-bit key which is XORed in when it is
+ * asserted and XORed out when it is retracted, so two Rete states containing
+ * the same facts share the same fingerprint and comparing states is O(1).
+ *
+ * @author Sam Sarjant
+ */
+public class StateFingerprint implements JessListener {
+	/** The FNV-1a 64-bit offset basis. */
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	/** The FNV-1a 64-bit prime. */
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/** The keys XORed into the fingerprint, indexed by fact id. */
+	private final Map<Integer, Long> factKeys_;
+
+	/** The current fingerprint. */
+	private long fingerprint_;
+
+	/** If the fingerprint must be recalculated from the Rete facts. */
+	private boolean dirty_;
+
+	/** The Rete being fingerprinted. */
+	private final Rete rete_;
+
+	/**
+	 * Creates and registers a fingerprint with the given Rete.
+	 *
+	 * @param rete
+	 *            The Rete to track.
+	 */
+	public StateFingerprint(Rete rete) {
+		rete_ = rete;
+		factKeys_ = new HashMap<Integer, Long>();
+		dirty_ = true;
+		register();
+	}
+
+	/**
+	 * Adds a fact key to the fingerprint.
+	 *
+	 * @param fact
+	 *            The fact being added.
+	 */
+	private void addFact(Fact fact) {
+		long key = factKey(fact);
+		Long oldKey = factKeys_.put(fact.getFactId(), key);
+		if (oldKey != null)
+			fingerprint_ ^= oldKey;
+		fingerprint_ ^= key;
+	}
+
+	/**
+	 * Removes a fact key from the fingerprint.
+	 *
+	 * @param fact
+	 *            The fact being removed.
+	 */
+	private void removeFact(Fact fact) {
+		Long oldKey = factKeys_.remove(fact.getFactId());
+		if (oldKey != null)
+			fingerprint_ ^= oldKey;
+	}
+
+	/**
+	 * Recalculates the fingerprint from every fact in the Rete.
+	 */
+	@SuppressWarnings("unchecked")
+	private void recalculate() {
+		factKeys_.clear();
+		fingerprint_ = 0;
+		for (Iterator<Fact> factIter = rete_.listFacts(); factIter.hasNext();)
+			addFact(factIter.next());
+		dirty_ = false;
+	}
+
+	@Override
+	public void eventHappened(JessEvent je) throws JessException {
+		int type = je.getType();
+		if ((type & JessEvent.RESET) != 0 || (type & JessEvent.CLEAR) != 0) {
+			// Reset/clear may not notify of every fact, so recalculate lazily
+			dirty_ = true;
+			return;
+		}
+		if (dirty_ || (type & JessEvent.FACT) == 0
+				|| !(je.getObject() instanceof Fact))
+			return;
+
+		Fact fact = (Fact) je.getObject();
+		if ((type & JessEvent.REMOVED) != 0)
+			removeFact(fact);
+		else
+			addFact(fact);
+	}
+
+	/**
+	 * Gets the fingerprint of the current Rete state.
+	 *
+	 * @return A 64-bit fingerprint of the Rete facts.
+	 */
+	public long getFingerprint() {
+		if (dirty_)
+			recalculate();
+		return fingerprint_;
+	}
+
+	public Rete getRete() {
+		return rete_;
+	}
+
+	/**
+	 * (Re)registers this fingerprint as a listener of the Rete. Needs to be
+	 * called whenever the Rete is cleared, as clearing can remove listeners.
+	 */
+	public void register() {
+		rete_.removeJessListener(this);
+		rete_.addJessListener(this);
+		rete_.setEventMask(rete_.getEventMask() | JessEvent.FACT
+				| JessEvent.RESET | JessEvent.CLEAR);
+		dirty_ = true;
+	}
+
+	/**
+	 * Stops this fingerprint listening to the Rete. The fingerprint is no
+	 * longer kept up to date until it is registered again.
+	 */
+	public void unregister() {
+		rete_.removeJessListener(this);
+		dirty_ = true;
+	}
+
+	/**
+	 * Creates the content-based key for a fact.
+	 *
+	 * @param fact
+	 *            The fact to create a key for.
+	 * @return A well-mixed 64-bit key for the fact content.
+	 */
+	public static long factKey(Fact fact) {
+		String factStr = fact.toString();
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < factStr.length(); i++) {
+			hash ^= factStr.charAt(i);
+			hash *= FNV_PRIME;
+		}
+
+		// Final avalanche mix so similar facts produce unrelated keys
+		hash ^= (hash >>> 33);
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= (hash >>> 33);
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= (hash >>> 33);
+		return hash;
+	}
+}
@@ -25,6 +25,8 @@ import relationalFramework.RelationalPredicate;
 import relationalFramework.RelationalRule;
 import relationalFramework.StateSpec;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -95,6 +97,9 @@ public abstract class StateSpec {
 	/** The terms present in an action's precondition. */
 	private MultiMap<String, String> actionPreconditions_;
 
+	/** The action terms each action's precondition doesn't bind. */
+	private Map<String, boolean[]> unboundActionTerms_;
+
 	/** The actions of the rules and their structure. */
 	private Map<String, RelationalPredicate> actions_;
 
@@ -140,6 +145,15 @@ public abstract class StateSpec {
 	/** The LogicFactory for the experiment. */
 	private Rete rete_;
 
+	/** The rolling fingerprint of the facts in the rete. */
+	private StateFingerprint stateFingerprint_;
+
+	/** The Rete objects used by threads instead of the main Rete. */
+	private final ThreadLocal<Rete> threadRete_ = new ThreadLocal<Rete>();
+
+	/** The fingerprints of the threads' Rete objects. */
+	private final ThreadLocal<StateFingerprint> threadFingerprint_ = new ThreadLocal<StateFingerprint>();
+
 	/** The type hierarchy. */
 	private Map<String, ParentChildren> typeHierarchy_;
 
@@ -216,9 +230,11 @@ public abstract class StateSpec {
 		try {
 			if (initAll) {
 				rete_ = new Rete();
+				stateFingerprint_ = new StateFingerprint(rete_);
 				environment_ = this.getClass().getPackage().getName();
 				RelationalArgument.resetRangeIndex();
-			}
+			} else
+				stateFingerprint_.register();
 			numberPreds_ = new HashSet<String>();
 
 			// Initialise any deffunctions
@@ -229,6 +245,7 @@ public abstract class StateSpec {
 
 			// Main predicates
 			initialiseRegularPredicates();
+			initialiseEnvironmentFunctions(rete_);
 
 			// Actions
 			initialiseActionPredicates();
@@ -281,12 +298,20 @@ public abstract class StateSpec {
 		// Initialise the queries for determining action preconditions
 		Map<String, String> purePreConds = initialiseActionPreconditions();
 		actionPreconditions_ = MultiMap.createListMultiMap();
+		unboundActionTerms_ = new HashMap<String, boolean[]>();
 		for (String action : purePreConds.keySet()) {
 			String query = "(defquery " + action + ACTION_PRECOND_SUFFIX + " "
 					+ purePreConds.get(action) + ")";
 			rete_.eval(query);
-			actionPreconditions_.putCollection(action,
-					formActionTerms(actions_.get(action)));
+			List<String> terms = formActionTerms(actions_.get(action));
+			actionPreconditions_.putCollection(action, terms);
+
+			// Note any terms the precondition leaves to resolveActionArgument
+			boolean[] unbound = new boolean[terms.size()];
+			for (int i = 0; i < unbound.length; i++)
+				unbound[i] = !Pattern.compile("\\?" + terms.get(i) + "\\b")
+						.matcher(purePreConds.get(action)).find();
+			unboundActionTerms_.put(action, unbound);
 		}
 	}
 
@@ -295,14 +320,15 @@ public abstract class StateSpec {
 		// Type hierarchy rules
 		backgroundRules_ = new HashMap<String, BackgroundKnowledge>();
 		for (String name : typeAssertions.keySet())
-			backgroundRules_.put(name,
-					new BackgroundKnowledge(typeAssertions.get(name), false));
+			backgroundRules_.put(name, new BackgroundKnowledge(
+					typeAssertions.get(name), isLogicalTypes()));
 
 		// State Spec rules
 		backgroundRules_.putAll(initialiseBackgroundKnowledge());
 		for (String ruleNames : backgroundRules_.keySet())
-			rete_.eval("(defrule " + ruleNames + " "
-					+ backgroundRules_.get(ruleNames) + ")");
+			if (isReteBackgroundRule(ruleNames))
+				rete_.eval("(defrule " + ruleNames + " "
+						+ backgroundRules_.get(ruleNames) + ")");
 	}
 
 	private void initialiseFunctions() throws Exception {
@@ -427,6 +453,31 @@ public abstract class StateSpec {
 		}
 	}
 
+	/**
+	 * If the type hierarchy rules are logical, so the inferred types are
+	 * retracted along with the facts they were inferred from. Environments
+	 * that retract state facts between steps instead of resetting the Rete
+	 * need this. By default the rules are not logical.
+	 * 
+	 * @return True if the type rules should be logical.
+	 */
+	protected boolean isLogicalTypes() {
+		return false;
+	}
+
+	/**
+	 * If a background rule is evaluated by the Rete. Environments that maintain
+	 * some relations natively can exclude their rules, which then only serve as
+	 * background knowledge. By default every rule is evaluated.
+	 * 
+	 * @param ruleName
+	 *            The name of the background rule.
+	 * @return True if the rule should be defined in the Rete.
+	 */
+	protected boolean isReteBackgroundRule(String ruleName) {
+		return true;
+	}
+
 	/**
 	 * Initialises the rules for finding valid actions.
 	 * 
@@ -473,6 +524,18 @@ public abstract class StateSpec {
 	 */
 	protected abstract Collection<String> initialiseConstantFacts();
 
+	/**
+	 * Initialises any environment-specific functions and backward chaining in
+	 * the rete. Called after the predicate templates are defined, but before
+	 * any rules or queries use them. By default there are none.
+	 * 
+	 * @param rete
+	 *            The rete object.
+	 */
+	protected void initialiseEnvironmentFunctions(Rete rete)
+			throws JessException {
+	}
+
 	/**
 	 * Initialises the goal state.
 	 * 
@@ -518,7 +581,7 @@ public abstract class StateSpec {
 			goalString.append(" " + arg);
 		String assertion = "(" + GOALARGS_PRED + " " + goalName_ + goalString
 				+ ")";
-		rete_.assertString(assertion);
+		state.assertString(assertion);
 
 		// Setting the ObjectObservations
 		BidiMap goalReplacements = new DualHashBidiMap();
@@ -615,12 +678,16 @@ public abstract class StateSpec {
 			try {
 				QueryResult result = state.runQueryStar(action
 						+ ACTION_PRECOND_SUFFIX, new ValueVector());
+				List<String> actionTerms = actionPreconditions_.getList(action);
+				boolean[] unbound = unboundActionTerms_.get(action);
 				while (result.next()) {
-					List<String> actionTerms = actionPreconditions_
-							.getList(action);
 					String[] arguments = new String[actionTerms.size()];
 					for (int i = 0; i < arguments.length; i++) {
-						arguments[i] = result.getSymbol(actionTerms.get(i));
+						if (unbound[i])
+							arguments[i] = resolveActionArgument(action,
+									arguments, i);
+						else
+							arguments[i] = result.getSymbol(actionTerms.get(i));
 					}
 					validActions.put(action, arguments);
 				}
@@ -632,6 +699,26 @@ public abstract class StateSpec {
 		return validActions;
 	}
 
+	/**
+	 * Resolves an action argument the action's precondition doesn't bind (such
+	 * as a value that is only asserted on demand). Environments with such
+	 * preconditions must override this.
+	 * 
+	 * @param action
+	 *            The action name.
+	 * @param arguments
+	 *            The action's arguments so far (those before the index are
+	 *            resolved).
+	 * @param index
+	 *            The index of the argument to resolve.
+	 * @return The argument value.
+	 */
+	protected String resolveActionArgument(String action, String[] arguments,
+			int index) {
+		throw new IllegalStateException("The precondition of " + action
+				+ " doesn't bind argument " + index);
+	}
+
 	public Map<String, RelationalPredicate> getActions() {
 		return actions_;
 	}
@@ -690,8 +777,80 @@ public abstract class StateSpec {
 		return predicates_;
 	}
 
+	/**
+	 * Gets the Rete object states are asserted to. This is the main Rete,
+	 * unless the current thread has been given its own.
+	 * 
+	 * @return The current thread's Rete object.
+	 */
 	public Rete getRete() {
-		return rete_;
+		Rete rete = threadRete_.get();
+		return (rete != null) ? rete : rete_;
+	}
+
+	/**
+	 * Saves the main Rete object (its templates, rules, queries and functions)
+	 * so independent copies can be loaded with {@link #loadRete(byte[])}.
+	 * Queries made after saving are not included, so any queries needed in the
+	 * copies should be made first.
+	 * 
+	 * @return The saved Rete object.
+	 */
+	public byte[] saveRete() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		// The fingerprint only follows the main Rete
+		rete_.removeJessListener(stateFingerprint_);
+		try {
+			rete_.bsave(bytes);
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			stateFingerprint_.register();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Sets (or clears) the Rete object the current thread uses in place of the
+	 * main one. Each thread evaluating a separate state needs its own Rete.
+	 * 
+	 * @param rete
+	 *            The thread's Rete object, or null to use the main one.
+	 */
+	public void setThreadRete(Rete rete) {
+		StateFingerprint fingerprint = threadFingerprint_.get();
+		if (fingerprint != null && fingerprint.getRete() != rete) {
+			fingerprint.unregister();
+			threadFingerprint_.remove();
+		}
+		if (rete == null)
+			threadRete_.remove();
+		else
+			threadRete_.set(rete);
+	}
+
+	/**
+	 * Gets the fingerprint of a rete state. Two states with the same facts
+	 * have the same fingerprint, so this can be used to cheaply key anything
+	 * on state identity. The main Rete and each thread's Rete have their own
+	 * fingerprint listener.
+	 * 
+	 * @param state
+	 *            The Rete state to fingerprint.
+	 * @return The 64-bit fingerprint of the state.
+	 */
+	public long getStateFingerprint(Rete state) {
+		if (state == rete_)
+			return stateFingerprint_.getFingerprint();
+
+		StateFingerprint fingerprint = threadFingerprint_.get();
+		if (fingerprint == null || fingerprint.getRete() != state) {
+			if (fingerprint != null)
+				fingerprint.unregister();
+			fingerprint = new StateFingerprint(state);
+			threadFingerprint_.set(fingerprint);
+		}
+		return fingerprint.getFingerprint();
 	}
 
 	/**
@@ -983,6 +1142,26 @@ public abstract class StateSpec {
 		return facts;
 	}
 
+	/**
+	 * Loads a Rete object saved by {@link #saveRete()}.
+	 * 
+	 * @param savedRete
+	 *            The saved Rete object.
+	 * @return An independent copy of the saved Rete.
+	 * @throws IllegalStateException
+	 *             If the Rete couldn't be loaded (rather than falling back to
+	 *             the shared main Rete).
+	 */
+	public static Rete loadRete(byte[] savedRete) {
+		try {
+			Rete rete = new Rete();
+			rete.bload(new ByteArrayInputStream(savedRete));
+			return rete;
+		} catch (Exception e) {
+			throw new IllegalStateException("Could not load the saved Rete", e);
+		}
+	}
+
 	/**
 	 * Gets the singleton instance of the state spec.
 	 * 
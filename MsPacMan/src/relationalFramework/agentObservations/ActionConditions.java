@@ -0,0 +1,63 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/relationalFramework/agentObservations/ActionConditions.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package relationalFramework.agentObservations;
+
+import java.util.Collection;
+
+import relationalFramework.RelationalPredicate;
+
+/**
+ * The conditions collected for a single grounded action during a covering
+ * scan, before they are noted into the agent observations.
+ *
+ * @author Sam Sarjant
+ */
+public class ActionConditions {
+	/** The grounded action the conditions were collected for. */
+	private final RelationalPredicate action_;
+
+	/** The conditions relating to the action's terms. */
+	private final Collection<RelationalPredicate> actionConds_;
+
+	/** The conditions relating to the action and goal terms. */
+	private final Collection<RelationalPredicate> goalActionConds_;
+
+	public ActionConditions(RelationalPredicate action,
+			Collection<RelationalPredicate> actionConds,
+			Collection<RelationalPredicate> goalActionConds) {
+		action_ = action;
+		actionConds_ = actionConds;
+		goalActionConds_ = goalActionConds;
+	}
+
+	public RelationalPredicate getAction() {
+		return action_;
+	}
+
+	public Collection<RelationalPredicate> getActionConditions() {
+		return actionConds_;
+	}
+
+	public Collection<RelationalPredicate> getGoalActionConditions() {
+		return goalActionConds_;
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/relationalFramework/agentObservations/CoveringSnapshot.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package relationalFramework.agentObservations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+import jess.Fact;
+import jess.Rete;
+
+import relationalFramework.RelationalArgument;
+import relationalFramework.StateSpec;
+import util.MultiMap;
+
+/**
+ * An immutable copy of the information a covering scan needs from a single
+ * step, so the scan can be performed away from the live Rete state.
+ *
+ * @author Sam Sarjant
+ */
+public class CoveringSnapshot {
+	/** The actions the RLGG rules activated in the state. */
+	private final MultiMap<String, String[]> activatedActions_;
+
+	/** The state facts, in string form. */
+	private final Collection<String> facts_;
+
+	/** The fingerprint of the state. */
+	private final long fingerprint_;
+
+	/** The goal replacements for the state (a -> ?G_0). */
+	private final Map<RelationalArgument, RelationalArgument> goalReplacements_;
+
+	/** The valid actions of the state. */
+	private final MultiMap<String, String[]> validActions_;
+
+	/**
+	 * Takes a snapshot of the current state. The valid and activated actions
+	 * are created fresh every step, so they are referenced rather than copied.
+	 *
+	 * @param state
+	 *            The Rete state to copy the facts from.
+	 * @param validActions
+	 *            The valid actions of the state.
+	 * @param activatedActions
+	 *            The actions the RLGG rules activated.
+	 * @param goalReplacements
+	 *            The goal replacements for the state.
+	 */
+	@SuppressWarnings("unchecked")
+	public CoveringSnapshot(Rete state,
+			MultiMap<String, String[]> validActions,
+			MultiMap<String, String[]> activatedActions,
+			Map<RelationalArgument, RelationalArgument> goalReplacements) {
+		facts_ = new ArrayList<String>();
+		for (Iterator<Fact> factIter = state.listFacts(); factIter.hasNext();)
+			facts_.add(factIter.next().toString());
+		fingerprint_ = StateSpec.getInstance().getStateFingerprint(state);
+		validActions_ = validActions;
+		activatedActions_ = activatedActions;
+		goalReplacements_ = new HashMap<RelationalArgument, RelationalArgument>(
+				goalReplacements);
+	}
+
+	public MultiMap<String, String[]> getActivatedActions() {
+		return activatedActions_;
+	}
+
+	/**
+	 * Gets the names of the predicates present in the snapshot.
+	 *
+	 * @return The fact names of the state facts.
+	 */
+	public Collection<String> getFactNames() {
+		Collection<String> factNames = new HashSet<String>();
+		for (String fact : facts_)
+			factNames.add(StateSpec.splitFact(fact)[0]);
+		return factNames;
+	}
+
+	public Collection<String> getFacts() {
+		return facts_;
+	}
+
+	public long getFingerprint() {
+		return fingerprint_;
+	}
+
+	public Map<RelationalArgument, RelationalArgument> getGoalReplacements() {
+		return goalReplacements_;
+	}
+
+	public MultiMap<String, String[]> getValidActions() {
+		return validActions_;
+	}
+}
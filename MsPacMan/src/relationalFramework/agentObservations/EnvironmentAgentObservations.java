@@ -48,7 +48,6 @@ import java.util.TreeSet;
 
 import cerrla.ProgramArgument;
 import cerrla.modular.GeneralGoalCondition;
-import jess.Fact;
 import jess.QueryResult;
 import jess.Rete;
 import jess.ValueVector;
@@ -88,8 +87,11 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 	/** The environment these observations are for. */
 	private String environment_;
 
-	/** Records the last scanned state to prevent redundant scanning. */
-	private transient Collection<Fact> lastScannedState_;
+	/**
+	 * Records the fingerprint of the last scanned state to prevent redundant
+	 * scanning.
+	 */
+	private transient Long lastScannedFingerprint_;
 
 	/** A transient group of facts indexed by terms used within. */
 	private transient MultiMap<RelationalArgument, RelationalPredicate> termMappedFacts_;
@@ -198,27 +200,19 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 	}
 
 	/**
-	 * Gathers all relevant facts for a particular action and returns them.
+	 * Collects the action conditions and goal action conditions for a
+	 * particular action from the term mapped facts of the last scanned state.
+	 * This does not modify the observations, so it may be called concurrently
+	 * for different actions once the state has been scanned.
 	 * 
-	 * @param stateFacts
-	 *            The state facts of this state.
 	 * @param action
 	 *            The action (with arguments).
-	 * @param actionRanges
-	 *            The action ranges to observe.
-	 * @param goalTerms
+	 * @param goalReplacements
 	 *            The terms present in the goal.
-	 * @return The relevant facts pertaining to the action.
+	 * @return The collected conditions for the action.
 	 */
-	public Collection<RelationalPredicate> gatherActionFacts(
-			Collection<Fact> stateFacts, RelationalPredicate action,
-			Map<RelationalArgument, RelationalArgument> goalReplacements,
-			Map<RangeContext, Pair<RelationalArgument, double[]>> actionRanges) {
-		// If the state has been scanned, then the actions do not need to be
-		// rescanned.
-		boolean needToScan = (lastScannedState_ == null || !lastScannedState_
-				.equals(stateFacts));
-
+	public ActionConditions collectActionConditions(RelationalPredicate action,
+			Map<RelationalArgument, RelationalArgument> goalReplacements) {
 		// Note down action conditions if still unsettled.
 		Map<RelationalArgument, RelationalArgument> replacementMap = action
 				.createVariableTermReplacementMap(false, false);
@@ -229,7 +223,6 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 			goalReplacements.putAll(replacementMap);
 		}
 
-		Collection<RelationalPredicate> actionFacts = new HashSet<RelationalPredicate>();
 		Set<RelationalPredicate> actionConds = new HashSet<RelationalPredicate>();
 		Set<RelationalPredicate> goalActionConds = new HashSet<RelationalPredicate>();
 		// Gather facts for each (non-number) action argument
@@ -239,13 +232,6 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 						.get(argument);
 				// Modify the term facts, retaining constants, replacing terms
 				for (RelationalPredicate termFact : termFacts) {
-					// If the action needs to be scanned.
-					RelationalPredicate notedFact = new RelationalPredicate(
-							termFact);
-
-					if (!actionFacts.contains(notedFact))
-						actionFacts.add(notedFact);
-
 					// Note the action condition
 					RelationalPredicate actionCond = new RelationalPredicate(
 							termFact);
@@ -253,7 +239,6 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 					actionCond.replaceArguments(replacementMap, false, true);
 					actionConds.add(actionCond);
 
-
 					// Note the goal action condition
 					if (goalReplacements != null) {
 						RelationalPredicate goalCond = new RelationalPredicate(
@@ -267,18 +252,64 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 			}
 		}
 
+		return new ActionConditions(action, actionConds, goalActionConds);
+	}
+
+	/**
+	 * Gathers all relevant facts for a particular action and returns them.
+	 * 
+	 * @param stateFingerprint
+	 *            The fingerprint of this state.
+	 * @param action
+	 *            The action (with arguments).
+	 * @param actionRanges
+	 *            The action ranges to observe.
+	 * @param goalTerms
+	 *            The terms present in the goal.
+	 * @return The relevant facts pertaining to the action.
+	 */
+	public Collection<RelationalPredicate> gatherActionFacts(
+			long stateFingerprint, RelationalPredicate action,
+			Map<RelationalArgument, RelationalArgument> goalReplacements,
+			Map<RangeContext, Pair<RelationalArgument, double[]>> actionRanges) {
+		ActionConditions collected = collectActionConditions(action,
+				goalReplacements);
+		noteActionConditions(collected, stateFingerprint, actionRanges);
+		return collected.getGoalActionConditions();
+	}
+
+	/**
+	 * Notes previously collected action conditions into the action based
+	 * observations. Unlike the collection, this must be called serially, in a
+	 * consistent action order.
+	 * 
+	 * @param collected
+	 *            The collected conditions for an action.
+	 * @param stateFingerprint
+	 *            The fingerprint of this state.
+	 * @param actionRanges
+	 *            The action ranges to observe.
+	 */
+	public void noteActionConditions(ActionConditions collected,
+			long stateFingerprint,
+			Map<RangeContext, Pair<RelationalArgument, double[]>> actionRanges) {
+		// If the state has been scanned, then the actions do not need to be
+		// rescanned.
+		boolean needToScan = !isScannedState(stateFingerprint);
+
 		// If the environment needs to be scanned.
+		RelationalPredicate action = collected.getAction();
 		ActionBasedObservations abo = getActionBasedObservation(action
 				.getFactName());
 		if (needToScan) {
+			Collection<RelationalPredicate> actionConds = collected
+					.getActionConditions();
 			if (!actionConds.isEmpty()
 					&& abo.addActionConditions(actionConds, action,
 							actionRanges)) {
 				resetInactivity();
 			}
 		}
-
-		return goalActionConds;
 	}
 
 	public Map<String, ConditionBeliefs> getConditionBeliefs() {
@@ -416,6 +447,56 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 	public boolean isCoveringNeeded(Rete state,
 			MultiMap<String, String[]> validActions,
 			MultiMap<String, String[]> activatedActions) {
+		if (isActivationIncomplete(validActions, activatedActions))
+			return true;
+
+		// Check for unseen predicates
+		if (conditionObservations_.checkForUnseenPreds(state)) {
+			return true;
+		}
+
+		boolean changed = isScanNeeded();
+		return changed;
+	}
+
+	/**
+	 * A method which checks if covering is necessary or required for a
+	 * snapshot of a state. Identical to
+	 * {@link #isCoveringNeeded(Rete, MultiMap, MultiMap)}, but does not need
+	 * the Rete.
+	 * 
+	 * @param snapshot
+	 *            The snapshot of the state.
+	 * @return True if covering is needed.
+	 */
+	public boolean isCoveringNeeded(CoveringSnapshot snapshot) {
+		if (isActivationIncomplete(snapshot.getValidActions(),
+				snapshot.getActivatedActions()))
+			return true;
+
+		// Check for unseen predicates
+		if (conditionObservations_.checkForUnseenPreds(snapshot
+				.getFactNames())) {
+			return true;
+		}
+
+		boolean changed = isScanNeeded();
+		return changed;
+	}
+
+	/**
+	 * Checks if the activated actions fail to cover the valid actions,
+	 * resetting inactivity if so.
+	 * 
+	 * @param validActions
+	 *            The set of valid actions for the state.
+	 * @param activatedActions
+	 *            The set of actions already activated by the policy.
+	 * @return True if some valid action is not activated.
+	 */
+	private boolean isActivationIncomplete(
+			MultiMap<String, String[]> validActions,
+			MultiMap<String, String[]> activatedActions) {
 		for (String action : validActions.keySet()) {
 			// If the activated actions don't even contain the key, return
 			// true.
@@ -431,24 +512,43 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 				return true;
 			}
 		}
+		return false;
+	}
 
-		// Check for unseen predicates
-		if (conditionObservations_.checkForUnseenPreds(state)) {
-			return true;
-		}
+	/**
+	 * Checks if the state contains any predicates that have not yet been
+	 * observed. Unlike the covering check, this does not note the predicates
+	 * as seen.
+	 * 
+	 * @param state
+	 *            The current state.
+	 * @return True if a previously unseen predicate is present.
+	 */
+	public boolean containsUnseenPredicates(Rete state) {
+		return !conditionObservations_.findUnseenPreds(state, true).isEmpty();
+	}
 
-		boolean changed = isScanNeeded();
-		return changed;
+	/**
+	 * Checks if a state is the last scanned state.
+	 * 
+	 * @param stateFingerprint
+	 *            The fingerprint of the state.
+	 * @return True if the state was the last state scanned.
+	 */
+	public boolean isScannedState(long stateFingerprint) {
+		return lastScannedFingerprint_ != null
+				&& lastScannedFingerprint_.longValue() == stateFingerprint;
 	}
 
 	/**
 	 * Note the last scanned state to avoid redundant scanning.
 	 * 
-	 * @param stateFacts
-	 *            The facts of the state.
+	 * @param stateFingerprint
+	 *            The fingerprint of the state, or null to forget the last
+	 *            scanned state.
 	 */
-	public void noteScannedState(Collection<Fact> stateFacts) {
-		lastScannedState_ = stateFacts;
+	public void noteScannedState(Long stateFingerprint) {
+		lastScannedFingerprint_ = stateFingerprint;
 	}
 
 	@Override
@@ -511,18 +611,21 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 	 * settled).
 	 * 
 	 * @param state
-	 *            The state in raw fact form.
+	 *            The state in raw fact form (Jess facts or fact strings). Only
+	 *            used if the state has not already been scanned.
+	 * @param stateFingerprint
+	 *            The fingerprint of the state.
 	 * @param goalReplacements
 	 *            The variable replacements for the local goal.
 	 * @return All facts which contain a goal term.
 	 */
-	public Collection<RelationalPredicate> scanState(Collection<Fact> state,
+	public Collection<RelationalPredicate> scanState(Collection<?> state,
+			long stateFingerprint,
 			Map<RelationalArgument, RelationalArgument> goalReplacements) {
 		Collection<RelationalPredicate> goalFacts = new HashSet<RelationalPredicate>();
 
-
 		// If the state was already scanned, no need to scan again.
-		if (lastScannedState_ != null && lastScannedState_.equals(state)) {
+		if (isScannedState(stateFingerprint)) {
 			for (RelationalArgument term : goalReplacements.keySet()) {
 				Collection<RelationalPredicate> goalTermFacts = termMappedFacts_
 						.get(term);
@@ -534,16 +637,13 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 				}
 			}
 		} else {
-
-
-
 			// Run through the facts, adding to term mapped facts and adding the
 			// raw facts for condition belief scanning.
 			Collection<RelationalPredicate> stateFacts = new ArrayList<RelationalPredicate>(
 					state.size());
 			Collection<String> generalStateFacts = new HashSet<String>();
 			termMappedFacts_ = MultiMap.createSortedSetMultiMap();
-			for (Fact stateFact : state) {
+			for (Object stateFact : state) {
 				RelationalPredicate strFact = null;
 				strFact = StateSpec.toRelationalPredicate(stateFact.toString());
 
@@ -1130,28 +1230,71 @@ public final class EnvironmentAgentObservations extends SettlingScan implements
 		 * @return True if the state does need to be scanned.
 		 */
 		private boolean checkForUnseenPreds(Rete state) {
-			boolean triggerCovering = false;
+			Collection<RelationalPredicate> removables = findUnseenPreds(state,
+					false);
+
+			// If any unseen preds are seen, trigger covering.
+			boolean triggerCovering = !removables.isEmpty();
+			if (triggerCovering)
+				unseenPreds_.removeAll(removables);
+			return triggerCovering;
+		}
+
+		/**
+		 * Finds the unseen predicates present in the state.
+		 * 
+		 * @param state
+		 *            The current state.
+		 * @param stopAtFirst
+		 *            If the search can stop once a single unseen predicate is
+		 *            found.
+		 * @return The unseen predicates present in the state.
+		 */
+		private Collection<RelationalPredicate> findUnseenPreds(Rete state,
+				boolean stopAtFirst) {
+			Collection<RelationalPredicate> present = new HashSet<RelationalPredicate>();
 			try {
 				// Run through the unseen preds, checking if they are present.
-				Collection<RelationalPredicate> removables = new HashSet<RelationalPredicate>();
 				for (RelationalPredicate unseenPred : unseenPreds_) {
 					String query = StateSpec.getInstance().getRuleQuery(
 							unseenPred, false);
 					QueryResult results = state.runQueryStar(query,
 							new ValueVector());
 					if (results.next()) {
-						// The unseen pred exists - trigger covering
-						triggerCovering = true;
-						removables.add(unseenPred);
+						// The unseen pred exists
+						present.add(unseenPred);
+						if (stopAtFirst)
+							break;
 					}
 				}
-
-				// If any unseen preds are seen, trigger covering.
-				if (triggerCovering)
-					unseenPreds_.removeAll(removables);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
+			return present;
+		}
+
+		/**
+		 * Runs through the set of unseen predicates to check if any are
+		 * present in a set of fact names.
+		 * 
+		 * @param factNames
+		 *            The names of the facts present in the state.
+		 * @return True if the state does need to be scanned.
+		 */
+		private boolean checkForUnseenPreds(Collection<String> factNames) {
+			boolean triggerCovering = false;
+			Collection<RelationalPredicate> removables = new HashSet<RelationalPredicate>();
+			for (RelationalPredicate unseenPred : unseenPreds_) {
+				if (factNames.contains(unseenPred.getFactName())) {
+					// The unseen pred exists - trigger covering
+					triggerCovering = true;
+					removables.add(unseenPred);
+				}
+			}
+
+			// If any unseen preds are seen, trigger covering.
+			if (triggerCovering)
+				unseenPreds_.removeAll(removables);
 			return triggerCovering;
 		}
 
@@ -46,6 +46,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import jess.Fact;
 import jess.Rete;
@@ -106,9 +111,15 @@ public class LocalAgentObservations extends SettlingScan implements
 	/** The observed ranges. */
 	private Map<RangeContext, Pair<RelationalArgument, double[]>> rangeContexts_;
 
+	/** The number of steps since the last covering check while settled. */
+	private transient int settledSteps_;
+
 	/** A static collection of all the active local agent observations. */
 	private transient static Map<GoalCondition, LocalAgentObservations> localAOManager_;
 
+	/** The worker pool for parallel covering scans. */
+	private transient static ExecutorService coveringPool_;
+
 	/**
 	 * The constructor for a new local goal object.
 	 * 
@@ -144,6 +155,27 @@ public class LocalAgentObservations extends SettlingScan implements
 		localAOManager_.put(lao.localGoal_, lao);
 	}
 
+	/**
+	 * Gets the shared worker pool used for splitting covering scans.
+	 * 
+	 * @return The covering worker pool.
+	 */
+	private static synchronized ExecutorService getCoveringPool() {
+		if (coveringPool_ == null) {
+			coveringPool_ = Executors.newFixedThreadPool(
+					ProgramArgument.COVERING_THREADS.intValue(),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "CoveringWorker");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return coveringPool_;
+	}
+
 	/**
 	 * Adds a goal fact to the observed goal predicates.
 	 * 
@@ -263,6 +295,34 @@ public class LocalAgentObservations extends SettlingScan implements
 		return changed;
 	}
 
+	/**
+	 * Checks if the covering check (and therefore RLGG rule evaluation) is
+	 * needed this step. While the observations are settled, covering rarely
+	 * triggers, so the check is only needed on an exponentially spaced sample
+	 * of steps, or if a previously unseen predicate appears in the state.
+	 * 
+	 * @param state
+	 *            The current state.
+	 * @return True if the RLGG rules should be evaluated and covering
+	 *         checked.
+	 */
+	public boolean isCoveringCheckNeeded(Rete state) {
+		if (!isSettled()
+				|| EnvironmentAgentObservations.getInstance()
+						.containsUnseenPredicates(state)) {
+			settledSteps_ = 0;
+			return true;
+		}
+
+		// Sample the steps with the same spacing as the settling scans.
+		if (settledSteps_ >= (Math.pow(2, getInactivity()) - 1)) {
+			settledSteps_ = 0;
+			return true;
+		}
+		settledSteps_++;
+		return false;
+	}
+
 	@Override
 	protected int updateHash() {
 		final int prime = 31;
@@ -337,33 +397,115 @@ public class LocalAgentObservations extends SettlingScan implements
 	}
 
 	/**
-	 * Gathers the facts associated with the given action together and records
-	 * them.
+	 * Collects the action conditions for every argument set of a single
+	 * action predicate.
 	 * 
 	 * @param action
-	 *            The action to gather facts for.
+	 *            The action predicate.
+	 * @param actionArgs
+	 *            The valid argument sets for the action.
 	 * @param goalReplacements
 	 *            The current goal replacements.
-	 * @param stateFacts
-	 *            The state facts of this state.
+	 * @return The collected action conditions, in argument order.
+	 */
+	private List<ActionConditions> collectActionConditions(String action,
+			Collection<String[]> actionArgs,
+			Map<RelationalArgument, RelationalArgument> goalReplacements) {
+		RelationalPredicate baseAction = StateSpec.getInstance()
+				.getPredicateByName(action);
+		List<ActionConditions> collected = new ArrayList<ActionConditions>(
+				actionArgs.size());
+		for (String[] args : actionArgs) {
+			RelationalPredicate actionFact = new RelationalPredicate(
+					baseAction, args);
+			collected.add(EnvironmentAgentObservations.getInstance()
+					.collectActionConditions(actionFact, goalReplacements));
+		}
+		return collected;
+	}
+
+	/**
+	 * Collects the action conditions for all valid actions. If multiple
+	 * covering threads are available, each action predicate is collected in
+	 * parallel. The results are always returned in the order of the given
+	 * actions, so the subsequent merge is deterministic.
+	 * 
+	 * @param actions
+	 *            The action predicates to collect for.
+	 * @param validActions
+	 *            The valid actions of the state.
+	 * @param goalReplacements
+	 *            The current goal replacements.
+	 * @return The collected conditions for each action predicate.
+	 */
+	private List<List<ActionConditions>> collectActionConditions(
+			List<String> actions,
+			final MultiMap<String, String[]> validActions,
+			final Map<RelationalArgument, RelationalArgument> goalReplacements) {
+		List<List<ActionConditions>> collected = new ArrayList<List<ActionConditions>>(
+				actions.size());
+		if (ProgramArgument.COVERING_THREADS.intValue() <= 1
+				|| actions.size() <= 1) {
+			for (String action : actions)
+				collected.add(collectActionConditions(action,
+						validActions.get(action), goalReplacements));
+			return collected;
+		}
+
+		// Split the collection by action predicate
+		List<Future<List<ActionConditions>>> futures = new ArrayList<Future<List<ActionConditions>>>(
+				actions.size());
+		for (final String action : actions) {
+			futures.add(getCoveringPool().submit(
+					new Callable<List<ActionConditions>>() {
+						@Override
+						public List<ActionConditions> call() {
+							return collectActionConditions(action,
+									validActions.get(action), goalReplacements);
+						}
+					}));
+		}
+
+		for (int i = 0; i < actions.size(); i++) {
+			try {
+				collected.add(futures.get(i).get());
+			} catch (Exception e) {
+				e.printStackTrace();
+				// Fall back to collecting serially
+				String action = actions.get(i);
+				collected.add(collectActionConditions(action,
+						validActions.get(action), goalReplacements));
+			}
+		}
+		return collected;
+	}
+
+	/**
+	 * Notes the collected action conditions into the environment and local
+	 * observations.
+	 * 
+	 * @param collected
+	 *            The collected conditions of an action.
+	 * @param stateFingerprint
+	 *            The fingerprint of this state.
 	 * @return True if the action observations have changed from this operation.
 	 */
-	public boolean gatherActionFacts(RelationalPredicate action,
-			Map<RelationalArgument, RelationalArgument> goalReplacements,
-			Collection<Fact> stateFacts) {
-		// Gather the facts
-		Collection<RelationalPredicate> goalActionConds = EnvironmentAgentObservations
-				.getInstance().gatherActionFacts(stateFacts, action,
-						goalReplacements, rangeContexts_);
-		boolean changed = initLocalActionConds(action.getFactName(),
-				goalActionConds);
+	private boolean noteActionConditions(ActionConditions collected,
+			long stateFingerprint) {
+		EnvironmentAgentObservations.getInstance().noteActionConditions(
+				collected, stateFingerprint, rangeContexts_);
+		Collection<RelationalPredicate> goalActionConds = collected
+				.getGoalActionConditions();
+		String actionPred = collected.getAction().getFactName();
+		boolean changed = initLocalActionConds(actionPred, goalActionConds);
 		if (changed)
 			return true;
 
 		// Revise the invariant/variants (return true if the method return not
 		// null)
-		changed = InvariantObservations.intersectActionConditions(goalActionConds,
-				invariantGoalActionConditions_.get(action.getFactName()), variantGoalActionConditions_.get(action.getFactName()));
+		changed = InvariantObservations.intersectActionConditions(
+				goalActionConds, invariantGoalActionConditions_.get(actionPred),
+				variantGoalActionConditions_.get(actionPred));
 
 		// If it changed, recreate the specialisations
 		if (changed) {
@@ -373,6 +515,26 @@ public class LocalAgentObservations extends SettlingScan implements
 		return changed;
 	}
 
+	/**
+	 * Gathers the facts associated with the given action together and records
+	 * them.
+	 * 
+	 * @param action
+	 *            The action to gather facts for.
+	 * @param goalReplacements
+	 *            The current goal replacements.
+	 * @param stateFingerprint
+	 *            The fingerprint of this state.
+	 * @return True if the action observations have changed from this operation.
+	 */
+	public boolean gatherActionFacts(RelationalPredicate action,
+			Map<RelationalArgument, RelationalArgument> goalReplacements,
+			long stateFingerprint) {
+		return noteActionConditions(EnvironmentAgentObservations.getInstance()
+				.collectActionConditions(action, goalReplacements),
+				stateFingerprint);
+	}
+
 	/**
 	 * Gets the maximum number of specialisations for a given action.
 	 * 
@@ -566,6 +728,99 @@ public class LocalAgentObservations extends SettlingScan implements
 				|| cond.getFactName().equals(StateSpec.GOALARGS_PRED);
 	}
 
+	/**
+	 * Covers a state by scanning it thoroughly, noting condition relations
+	 * and extracting action-related conditions.
+	 * 
+	 * @param stateFacts
+	 *            The facts of the state (Jess facts or fact strings). May be
+	 *            null if the state has already been scanned.
+	 * @param fingerprint
+	 *            The fingerprint of the state.
+	 * @param validActions
+	 *            The valid actions of the state.
+	 * @param goalReplacements
+	 *            The goal replacements to use.
+	 * @return True if the observations modified the state of the agent
+	 *         observations.
+	 */
+	private boolean coverState(Collection<?> stateFacts, long fingerprint,
+			MultiMap<String, String[]> validActions,
+			Map<RelationalArgument, RelationalArgument> goalReplacements) {
+		if (RRLExperiment.debugMode_) {
+			System.out.println("Environment Covering "
+					+ EnvironmentAgentObservations.getInstance()
+							.getInactivity());
+			System.out.println(localGoal_ + " Covering " + getInactivity());
+		}
+
+		// Scan the state for condition inter-relations
+		boolean changed = scanState(stateFacts, fingerprint, goalReplacements);
+
+		// Run through each valid action, collecting the action conditions
+		// (possibly in parallel) then noting them in a fixed order.
+		List<String> actions = new ArrayList<String>(validActions.keySet());
+		List<List<ActionConditions>> collected = collectActionConditions(
+				actions, validActions, goalReplacements);
+		for (List<ActionConditions> actionConds : collected) {
+			for (ActionConditions actionCond : actionConds)
+				changed |= noteActionConditions(actionCond, fingerprint);
+		}
+
+		boolean observeState = isChanged()
+				|| EnvironmentAgentObservations.getInstance().isChanged();
+
+		// If this didn't change, increment inactivity
+		if (changed) {
+			resetInactivity();
+		} else
+			incrementInactivity();
+
+		// Environmental changes
+		EnvironmentAgentObservations.getInstance().noteScannedState(fingerprint);
+
+		return observeState;
+	}
+
+	/**
+	 * Notes that a state did not need covering.
+	 */
+	private void noteUncoveredState() {
+		// Set the last state to null just once (from the main behaviour).
+		if (localGoal_.isMainGoal())
+			EnvironmentAgentObservations.getInstance().noteScannedState(null);
+	}
+
+	/**
+	 * Observes a snapshot of a state taken earlier in the episode. This is the
+	 * same as {@link #observeState(RRLObservations, MultiMap, Map)}, but does
+	 * not require the live Rete state, so it can be run by a background
+	 * worker.
+	 * 
+	 * @param snapshot
+	 *            The snapshot of the state to observe.
+	 * @return True if the observations modified the state of the agent
+	 *         observations.
+	 */
+	public boolean observeSnapshot(CoveringSnapshot snapshot) {
+		// First check if the agent needs to observe the state
+		boolean needed = isScanNeeded();
+		needed |= EnvironmentAgentObservations.getInstance().isCoveringNeeded(
+				snapshot);
+		if (!needed) {
+			noteUncoveredState();
+			return false;
+		}
+
+		// Only use the facts if the state has not already been scanned.
+		Collection<String> stateFacts = null;
+		if (!EnvironmentAgentObservations.getInstance().isScannedState(
+				snapshot.getFingerprint()))
+			stateFacts = snapshot.getFacts();
+		return coverState(stateFacts, snapshot.getFingerprint(),
+				snapshot.getValidActions(), snapshot.getGoalReplacements());
+	}
+
 	/**
 	 * Observes a state by scanning it thoroughly, noting condition relations
 	 * and extracting action-related conditions.
@@ -589,55 +844,23 @@ public class LocalAgentObservations extends SettlingScan implements
 				.getValidActions();
 		if (!isCoveringNeeded(observations.getState(), validActions,
 				activatedActions)) {
-			// Set the last state to null just once (from the main behaviour).
-			if (localGoal_.isMainGoal())
-				EnvironmentAgentObservations.getInstance().noteScannedState(
-						null);
+			noteUncoveredState();
 			return false;
 		}
 
-		if (RRLExperiment.debugMode_) {
-			System.out.println("Environment Covering "
-					+ EnvironmentAgentObservations.getInstance()
-							.getInactivity());
-			System.out.println(localGoal_ + " Covering " + getInactivity());
-		}
-
 		// The relevant facts which contain the key term
 		Rete state = observations.getState();
 		if (goalReplacements == null)
 			goalReplacements = observations.getGoalReplacements();
 
-		// Scan the state for condition inter-relations
-		Collection<Fact> stateFacts = StateSpec.extractFacts(state);
-		boolean changed = scanState(stateFacts, goalReplacements);
-
-		// Run through each valid action.
-		for (String action : validActions.keySet()) {
-			// Gather the action facts for each valid action
-			RelationalPredicate baseAction = StateSpec.getInstance()
-					.getPredicateByName(action);
-			for (String[] actionArgs : validActions.get(action)) {
-				RelationalPredicate actionFact = new RelationalPredicate(
-						baseAction, actionArgs);
-				changed |= gatherActionFacts(actionFact, goalReplacements,
-						stateFacts);
-			}
-		}
-
-		boolean observeState = isChanged()
-				|| EnvironmentAgentObservations.getInstance().isChanged();
-
-		// If this didn't change, increment inactivity
-		if (changed) {
-			resetInactivity();
-		} else
-			incrementInactivity();
-
-		// Environmental changes
-		EnvironmentAgentObservations.getInstance().noteScannedState(stateFacts);
-
-		return observeState;
+		// Only extract the facts if the state has not already been scanned.
+		long fingerprint = StateSpec.getInstance().getStateFingerprint(state);
+		Collection<Fact> stateFacts = null;
+		if (!EnvironmentAgentObservations.getInstance().isScannedState(
+				fingerprint))
+			stateFacts = StateSpec.extractFacts(state);
+		return coverState(stateFacts, fingerprint, validActions,
+				goalReplacements);
 	}
 
 	@Override
@@ -733,16 +956,39 @@ public class LocalAgentObservations extends SettlingScan implements
 	 * gathered.
 	 * 
 	 * @param stateFacts
-	 *            The facts of the state.
+	 *            The facts of the current rete state (the current thread's
+	 *            Rete).
 	 * @param goalReplacements
 	 *            The current goal replacements (a -> ?G_0).
 	 * @return True if the scan modified the agent observations at all.
 	 */
 	public boolean scanState(Collection<Fact> stateFacts,
 			Map<RelationalArgument, RelationalArgument> goalReplacements) {
+		StateSpec spec = StateSpec.getInstance();
+		return scanState(stateFacts, spec.getStateFingerprint(spec.getRete()),
+				goalReplacements);
+	}
+
+	/**
+	 * Scans the current state and extracts observations from the information
+	 * gathered.
+	 * 
+	 * @param stateFacts
+	 *            The facts of the state (Jess facts or fact strings). May be
+	 *            null if the state has already been scanned.
+	 * @param stateFingerprint
+	 *            The fingerprint of the state.
+	 * @param goalReplacements
+	 *            The current goal replacements (a -> ?G_0).
+	 * @return True if the scan modified the agent observations at all.
+	 */
+	public boolean scanState(Collection<?> stateFacts,
+			long stateFingerprint,
+			Map<RelationalArgument, RelationalArgument> goalReplacements) {
 		// Scan the environment's state
 		Collection<RelationalPredicate> goalFacts = EnvironmentAgentObservations
-				.getInstance().scanState(stateFacts, goalReplacements);
+				.getInstance().scanState(stateFacts, stateFingerprint,
+						goalReplacements);
 		boolean changed = localInvariants_.noteSpecificInvariants(goalFacts);
 
 		// Remove non-goal terms from goal replacements
@@ -0,0 +1,158 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/rlPacMan/DirectionArbiter.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package rlPacMan;
+
+/**
+ * Arbitrates between the directions proposed by the fired rules of a policy,
+ * narrowing the legal directions rule by rule until a single direction
+ * remains. Directions are held as a 4-bit mask (UP, DOWN, LEFT, RIGHT from the
+ * lowest bit) so a step can be arbitrated without allocating.
+ * 
+ * @author Sam Sarjant
+ */
+public class DirectionArbiter {
+	/** The moving directions, in mask bit order. */
+	private static final PacManLowAction[] DIRECTIONS = { PacManLowAction.UP,
+			PacManLowAction.DOWN, PacManLowAction.LEFT, PacManLowAction.RIGHT };
+
+	/** The best weight seen for the current rule. */
+	private double bestWeight_;
+
+	/** If a rule has narrowed the directions down to one. */
+	private boolean decided_;
+
+	/** The remaining candidate directions. */
+	private int directions_;
+
+	/** The directions proposed at the best weight by the current rule. */
+	private int ruleDirections_;
+
+	/**
+	 * Gets the mask bit for a direction.
+	 * 
+	 * @param direction
+	 *            A direction as a Thing or {@link PacManLowAction} ordinal.
+	 * @return The direction's bit, or 0 if the direction is not a move.
+	 */
+	public static int bit(int direction) {
+		if (direction < PacManLowAction.UP.ordinal()
+				|| direction > PacManLowAction.RIGHT.ordinal())
+			return 0;
+		return 1 << (direction - PacManLowAction.UP.ordinal());
+	}
+
+	/**
+	 * Proposes a direction for the current rule. Only the directions of the
+	 * most heavily weighted proposals are kept.
+	 * 
+	 * @param direction
+	 *            The direction to move in, or the negated direction to move
+	 *            anywhere but.
+	 * @param weight
+	 *            The weight of the proposal.
+	 */
+	public void addDirection(byte direction, double weight) {
+		// If weighting is higher, clear the previous decisions and use this one
+		if (weight > bestWeight_) {
+			ruleDirections_ = 0;
+			bestWeight_ = weight;
+		}
+		if (weight == bestWeight_) {
+			if (direction < 0)
+				ruleDirections_ |= directions_ & ~bit(-direction);
+			else
+				ruleDirections_ |= bit(direction);
+		}
+	}
+
+	/**
+	 * Chooses the direction to move in. If the rules did not settle on a
+	 * single direction, the last direction is kept if possible, otherwise a
+	 * direction perpendicular to it is taken.
+	 * 
+	 * @param lastDirection
+	 *            The previous direction moved in.
+	 * @return The direction to move in.
+	 */
+	public PacManLowAction chooseDirection(PacManLowAction lastDirection) {
+		if (decided_)
+			return DIRECTIONS[Integer.numberOfTrailingZeros(directions_)];
+		if ((directions_ & bit(lastDirection.ordinal())) != 0)
+			return lastDirection;
+
+		for (int i = 0; i < DIRECTIONS.length; i++) {
+			if ((directions_ & (1 << i)) != 0
+					&& DIRECTIONS[i] != lastDirection.opposite())
+				lastDirection = DIRECTIONS[i];
+		}
+		return lastDirection;
+	}
+
+	/**
+	 * Ends the current rule, narrowing the candidate directions to those it
+	 * proposed (unless none of them are candidates).
+	 * 
+	 * @return True if the rule narrowed the candidate directions.
+	 */
+	public boolean endRule() {
+		int narrowed = directions_ & ruleDirections_;
+		if (narrowed == 0)
+			narrowed = directions_;
+		boolean utilised = Integer.bitCount(narrowed) < Integer
+				.bitCount(directions_);
+		directions_ = narrowed;
+		decided_ = Integer.bitCount(directions_) == 1;
+		return utilised;
+	}
+
+	public int getDirections() {
+		return directions_;
+	}
+
+	/**
+	 * If the rules have settled on a single direction.
+	 * 
+	 * @return True if no further rules need to be considered.
+	 */
+	public boolean isDecided() {
+		return decided_;
+	}
+
+	/**
+	 * Resets the arbiter for a new step.
+	 * 
+	 * @param legalDirections
+	 *            The mask of legal directions.
+	 */
+	public void reset(int legalDirections) {
+		directions_ = legalDirections;
+		decided_ = false;
+	}
+
+	/**
+	 * Starts collecting the proposals of a new rule.
+	 */
+	public void startRule() {
+		ruleDirections_ = 0;
+		bestWeight_ = Integer.MIN_VALUE;
+	}
+}
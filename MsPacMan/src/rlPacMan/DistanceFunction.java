@@ -0,0 +1,115 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/rlPacMan/DistanceFunction.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package rlPacMan;
+
+import java.awt.geom.Point2D;
+
+import jess.Context;
+import jess.JessException;
+import jess.RU;
+import jess.Userfunction;
+import jess.Value;
+import jess.ValueVector;
+
+import msPacMan.GameModel;
+import msPacMan.Ghost;
+
+/**
+ * A Jess function giving the distance from Ms. PacMan to a named thing, looked
+ * up from the current distance grid. Rules can call it (or have it called
+ * through backward chaining) for the objects they have bound, rather than
+ * matching against a distance fact for every object in the maze.
+ * 
+ * @author Sam Sarjant
+ */
+public class DistanceFunction implements Userfunction {
+	/** The name of the function in Jess. */
+	public static final String NAME = "pacDistance";
+
+	/** The distance grid from Ms. PacMan's current location. */
+	private DistanceDir[][] distanceGrid_;
+
+	/** The game being measured. */
+	private GameModel model_;
+
+	/**
+	 * Gets the distance from Ms. PacMan to a location. This is the path
+	 * distance if the location is reachable, otherwise the rounded Euclidean
+	 * distance.
+	 * 
+	 * @param x
+	 *            The x location.
+	 * @param y
+	 *            The y location.
+	 * @return The distance to the location.
+	 */
+	public int getDistance(int x, int y) {
+		if (distanceGrid_[x][y] != null)
+			return distanceGrid_[x][y].getDistance();
+		return (int) Math.round(Point2D.distance(x, y,
+				model_.m_player.m_locX, model_.m_player.m_locY));
+	}
+
+	/**
+	 * Gets the distance from Ms. PacMan to a thing by its Jess name.
+	 * 
+	 * @param thingName
+	 *            The name of the thing (e.g. dot_1_3, blinky or fruit).
+	 * @return The distance to the thing.
+	 */
+	public int getDistance(String thingName) {
+		if (thingName.equals(model_.m_fruit.toString()))
+			return getDistance(model_.m_fruit.m_locX, model_.m_fruit.m_locY);
+		for (Ghost ghost : model_.m_ghosts)
+			if (thingName.equals(ghost.toString()))
+				return getDistance(ghost.m_locX, ghost.m_locY);
+
+		String[] coords = thingName.split("_");
+		return getDistance(Integer.parseInt(coords[1]),
+				Integer.parseInt(coords[2]));
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public Value call(ValueVector vv, Context context) throws JessException {
+		String thingName = vv.get(1).resolveValue(context).stringValue(context);
+		return new Value(getDistance(thingName), RU.INTEGER);
+	}
+
+	/**
+	 * Sets the state the distances are measured in. Needs to be called every
+	 * step, before any rules use the function.
+	 * 
+	 * @param model
+	 *            The game model.
+	 * @param distanceGrid
+	 *            The distance grid from Ms. PacMan's location.
+	 */
+	public void setState(GameModel model, DistanceDir[][] distanceGrid) {
+		model_ = model;
+		distanceGrid_ = distanceGrid;
+	}
+}
@@ -21,12 +21,16 @@
  */
 package rlPacMan;
 
-import java.awt.Color;
 import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
@@ -37,22 +41,46 @@ import msPacMan.Junction;
 import msPacMan.Thing;
 
 /**
- * A cache of precalculated distance grids for each and every valid position in
- * all of Ms. PacMan's levels.
+ * A cache of precalculated distances between each and every valid position in
+ * all of Ms. PacMan's levels. Each distinct maze is stored as a packed
+ * all-pairs table of distances and first directions indexed by cell id, which
+ * is written to a memory-mapped cache file keyed by the maze's hash so later
+ * runs can load it without searching the maze.
  * 
  * @author Sam Sarjant
  */
 public class DistanceGridCache {
-	/** The collection of grids mapped to each level. */
-	private Map<Integer, DistanceGrid[][]> grids_;
+	/** The folder the maze tables are cached in. */
+	public static final File CACHE_FOLDER = new File("distanceCache"
+			+ File.separatorChar);
+
+	/** The number of recently unpacked distance grids to keep. */
+	private static final int GRID_CACHE_SIZE = 32;
+
+	/** The header value identifying a cache file. */
+	private static final int MAGIC = 0x50414344;
+
+	/** The version of the cache file layout. */
+	private static final int VERSION = 1;
+
+	/** The header size (magic, version, hash, sizeX, sizeY, cells, juncs). */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 4;
+
+	/** The wall bits of the game state (the only bits affecting distance). */
+	private static final int WALL_MASK = GameModel.GS_NORTH | GameModel.GS_EAST
+			| GameModel.GS_SOUTH | GameModel.GS_WEST;
+
+	/** The maze tables mapped to each level. */
+	private MazeTable[] tables_;
 
 	public DistanceGridCache(GameModel model, int startX, int startY) {
-		grids_ = new HashMap<Integer, DistanceGrid[][]>();
+		tables_ = new MazeTable[GameModel.MAX_LEVELS];
 		initialiseGrids(model, startX, startY);
 	}
 
 	/**
-	 * Initialises the distance grids.
+	 * Initialises the maze tables for every level, loading them from the cache
+	 * where possible.
 	 * 
 	 * @param model
 	 *            The model of the levels for Ms. PacMan.
@@ -65,63 +93,247 @@ public class DistanceGridCache {
 		model.m_stage = 0;
 		model.loadNextLevel();
 
-		// For each stage
-		Color prevLevelColor = null;
+		// Levels sharing a maze share the same table.
+		Map<Long, MazeTable> mazeTables = new HashMap<Long, MazeTable>();
 		for (int stage = 0; stage < GameModel.MAX_LEVELS; stage++) {
-			// If this level is the same as the last (determined by colour), use
-			// the last level's calculations.
-			if (model.m_pacMan.m_gameUI.m_wallColor.equals(prevLevelColor)) {
-				grids_.put(stage, grids_.get(stage - 1));
-			} else {
-				DistanceGrid[][] grids = new DistanceGrid[model.m_gameSizeX][model.m_gameSizeY];
-
-				// Maintain a collection of valid positions to take distances
-				// from.
-				Collection<Point> validPositions = new HashSet<Point>();
-
-				Iterator<Point> iter = null;
-				// Perform the initial scan, then iterate through every other
-				// valid position.
-				while ((iter == null) || (iter.hasNext())) {
-					// Initialise a new distance grid.
-					Map<Byte, DistanceDir[][]> distanceGrids = new HashMap<Byte, DistanceDir[][]>();
-					// for (byte b = 0; b < PacManLowAction.values().length;
-					// b++) {
-					for (byte b = 0; b < 1; b++) {
-						distanceGrids
-								.put(b,
-										new DistanceDir[model.m_gameSizeX][model.m_gameSizeY]);
-					}
-					SortedSet<Junction> closeJunctions = null;
-
-					Point origin = null;
-					if (iter == null) {
-						origin = new Point(startX, startY);
-						// Initial searching to fill the validPositions
-						closeJunctions = searchMaze(startX, startY,
-								distanceGrids, validPositions, model);
-						// Remove the initial position, so it isn't scanned
-						// twice and set the iterator.
-						validPositions.remove(origin);
-						iter = validPositions.iterator();
-					} else {
-						origin = iter.next();
-						// Search from a valid position
-						closeJunctions = searchMaze(origin.x, origin.y,
-								distanceGrids, null, model);
-					}
+			long mazeHash = hashMaze(model, startX, startY);
+			MazeTable table = mazeTables.get(mazeHash);
+			if (table == null) {
+				File cacheFile = new File(CACHE_FOLDER, "maze"
+						+ Long.toHexString(mazeHash) + ".dist");
+				table = loadTable(cacheFile, mazeHash, model);
+				if (table == null) {
+					table = buildTable(mazeHash, model, startX, startY);
+					table = saveTable(cacheFile, table);
+				}
+				mazeTables.put(mazeHash, table);
+			}
+			tables_[stage] = table;
+			model.loadNextLevel();
+		}
+	}
+
+	/**
+	 * Creates the hash of the current maze of the model. Only the walls and
+	 * start position affect the distances, so only they are hashed.
+	 * 
+	 * @param model
+	 *            The game model.
+	 * @param startX
+	 *            The starting X position.
+	 * @param startY
+	 *            The starting Y position.
+	 * @return A 64-bit hash of the maze.
+	 */
+	private long hashMaze(GameModel model, int startX, int startY) {
+		long hash = 0xcbf29ce484222325L;
+		int[] values = { VERSION, model.m_gameSizeX, model.m_gameSizeY,
+				startX, startY };
+		for (int value : values)
+			hash = (hash ^ value) * 0x100000001b3L;
+		for (int x = 0; x < model.m_gameSizeX; x++)
+			for (int y = 0; y < model.m_gameSizeY; y++)
+				hash = (hash ^ (model.m_gameState[x][y] & WALL_MASK))
+						* 0x100000001b3L;
+		return hash;
+	}
 
-					// Insert the grid
-					grids[origin.x][origin.y] = new DistanceGrid(distanceGrids,
-							closeJunctions);
+	/**
+	 * Builds the packed table for the current maze by searching from every
+	 * valid position.
+	 * 
+	 * @param mazeHash
+	 *            The hash of the maze.
+	 * @param model
+	 *            The game model.
+	 * @param startX
+	 *            The starting X position.
+	 * @param startY
+	 *            The starting Y position.
+	 * @return The table of the maze, backed by a heap buffer.
+	 */
+	private MazeTable buildTable(long mazeHash, GameModel model, int startX,
+			int startY) {
+		int sizeX = model.m_gameSizeX;
+		int sizeY = model.m_gameSizeY;
+
+		// Perform the initial scan to find the valid positions.
+		Collection<Point> validPositions = new HashSet<Point>();
+		Map<Byte, DistanceDir[][]> distanceGrids = new HashMap<Byte, DistanceDir[][]>();
+		distanceGrids.put(Thing.STILL, new DistanceDir[sizeX][sizeY]);
+		searchMaze(startX, startY, distanceGrids, validPositions, model);
+		validPositions.add(new Point(startX, startY));
+
+		// Number the cells
+		short[] cellIds = new short[sizeX * sizeY];
+		int numCells = 0;
+		for (int x = 0; x < sizeX; x++) {
+			for (int y = 0; y < sizeY; y++) {
+				if (validPositions.contains(new Point(x, y)))
+					cellIds[x * sizeY + y] = (short) numCells++;
+				else
+					cellIds[x * sizeY + y] = -1;
+			}
+		}
+
+		// Search from every cell, packing the results
+		short[] distances = new short[numCells * numCells];
+		byte[] directions = new byte[numCells * numCells];
+		int[] junctionOffsets = new int[numCells + 1];
+		int[] junctions = new int[numCells * 8];
+		int numJunctions = 0;
+		for (int x = 0; x < sizeX; x++) {
+			for (int y = 0; y < sizeY; y++) {
+				int origin = cellIds[x * sizeY + y];
+				if (origin < 0)
+					continue;
+
+				DistanceDir[][] distanceGrid = new DistanceDir[sizeX][sizeY];
+				distanceGrids.put(Thing.STILL, distanceGrid);
+				SortedSet<Junction> closeJunctions = searchMaze(x, y,
+						distanceGrids, null, model);
+
+				int row = origin * numCells;
+				for (int i = 0; i < cellIds.length; i++) {
+					if (cellIds[i] < 0)
+						continue;
+					DistanceDir dd = distanceGrid[i / sizeY][i % sizeY];
+					distances[row + cellIds[i]] = (dd == null) ? -1
+							: (short) dd.getDistance();
+					directions[row + cellIds[i]] = (dd == null) ? Thing.STILL
+							: dd.getDirection();
 				}
 
-				// Add the grids
-				grids_.put(stage, grids);
+				// Pack the junctions
+				junctionOffsets[origin] = numJunctions;
+				for (Junction junc : closeJunctions) {
+					if (numJunctions * 2 + 2 > junctions.length) {
+						int[] larger = new int[junctions.length * 2];
+						System.arraycopy(junctions, 0, larger, 0,
+								junctions.length);
+						junctions = larger;
+					}
+					junctions[numJunctions * 2] = (junc.m_locX << 16)
+							| junc.m_locY;
+					junctions[numJunctions * 2 + 1] = (junc.getDistance() << 16)
+							| ((junc.getDirection() & 0xff) << 8)
+							| (junc.getOrigDirection() & 0xff);
+					numJunctions++;
+				}
 			}
-			prevLevelColor = model.m_pacMan.m_gameUI.m_wallColor;
-			model.loadNextLevel();
 		}
+		junctionOffsets[numCells] = numJunctions;
+
+		// Write it all into a single buffer
+		MazeTable table = new MazeTable(sizeX, sizeY, numCells, numJunctions);
+		ByteBuffer buffer = ByteBuffer.allocate(table.getByteSize());
+		buffer.putInt(MAGIC).putInt(VERSION).putLong(mazeHash);
+		buffer.putInt(sizeX).putInt(sizeY).putInt(numCells)
+				.putInt(numJunctions);
+		for (short cellId : cellIds)
+			buffer.putShort(cellId);
+		for (int offset : junctionOffsets)
+			buffer.putInt(offset);
+		for (int i = 0; i < numJunctions * 2; i++)
+			buffer.putInt(junctions[i]);
+		for (short distance : distances)
+			buffer.putShort(distance);
+		buffer.put(directions);
+		buffer.flip();
+		table.setBuffer(buffer);
+		return table;
+	}
+
+	/**
+	 * Loads a maze table from a cache file, if the file exists and matches
+	 * the maze.
+	 * 
+	 * @param cacheFile
+	 *            The cache file.
+	 * @param mazeHash
+	 *            The hash of the maze.
+	 * @param model
+	 *            The game model.
+	 * @return The memory-mapped table or null if it could not be loaded.
+	 */
+	private MazeTable loadTable(File cacheFile, long mazeHash, GameModel model) {
+		if (!cacheFile.exists())
+			return null;
+		try {
+			RandomAccessFile raf = new RandomAccessFile(cacheFile, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				if (channel.size() < HEADER_SIZE)
+					return null;
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+						0, channel.size());
+				if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+						|| buffer.getLong(8) != mazeHash
+						|| buffer.getInt(16) != model.m_gameSizeX
+						|| buffer.getInt(20) != model.m_gameSizeY)
+					return null;
+				MazeTable table = new MazeTable(model.m_gameSizeX,
+						model.m_gameSizeY, buffer.getInt(24),
+						buffer.getInt(28));
+				if (table.getByteSize() != channel.size())
+					return null;
+				table.setBuffer(buffer);
+				return table;
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Writes a built table to its cache file and maps it back in. If the file
+	 * cannot be written, the heap-backed table is used as is.
+	 * 
+	 * @param cacheFile
+	 *            The cache file.
+	 * @param table
+	 *            The table to save.
+	 * @return The memory-mapped table, or the given table if saving failed.
+	 */
+	private MazeTable saveTable(File cacheFile, MazeTable table) {
+		try {
+			CACHE_FOLDER.mkdirs();
+			// Write to a temporary file first, so partial files are never read
+			// (the name is unique, as other JVMs may be saving the same table)
+			File tempFile = File.createTempFile(cacheFile.getName(), ".tmp",
+					CACHE_FOLDER);
+			RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+			try {
+				raf.setLength(0);
+				FileChannel channel = raf.getChannel();
+				ByteBuffer buffer = table.getBuffer().duplicate();
+				buffer.rewind();
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			} finally {
+				raf.close();
+			}
+			cacheFile.delete();
+			if (!tempFile.renameTo(cacheFile)) {
+				tempFile.delete();
+				return table;
+			}
+
+			raf = new RandomAccessFile(cacheFile, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				table.setBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						channel.size()));
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return table;
 	}
 
 	/**
@@ -365,6 +577,18 @@ public class DistanceGridCache {
 		return null;
 	}
 
+	/**
+	 * Gets the table of the maze for a particular level.
+	 * 
+	 * @param level
+	 *            The level (starting at 1).
+	 * @return The maze table for the level.
+	 */
+	private MazeTable getTable(int level) {
+		level = (level - 1) % GameModel.MAX_LEVELS + 1;
+		return tables_[level - 1];
+	}
+
 	/**
 	 * Gets the distance grid for a particular stage at a given location.
 	 * 
@@ -380,11 +604,39 @@ public class DistanceGridCache {
 	 */
 	public DistanceDir[][] getGrid(int level, int originX, int originY,
 			byte direction) {
-		level = (level - 1) % GameModel.MAX_LEVELS + 1;
-		DistanceGrid grid = grids_.get(level - 1)[originX][originY];
-		if (grid == null)
+		// Only stationary grids are calculated
+		if (direction != Thing.STILL)
 			return null;
-		return grid.getDistanceGrid(direction);
+		MazeTable table = getTable(level);
+		int origin = table.getCellId(originX, originY);
+		if (origin < 0)
+			return null;
+		return table.getGrid(origin);
+	}
+
+	/**
+	 * Gets the distance between two locations without unpacking a full grid.
+	 * 
+	 * @param level
+	 *            The level to get the distance in.
+	 * @param originX
+	 *            The x origin point.
+	 * @param originY
+	 *            The y origin point.
+	 * @param x
+	 *            The x destination point.
+	 * @param y
+	 *            The y destination point.
+	 * @return The distance between the points, or -1 if either is not a valid
+	 *         position or the destination cannot be reached.
+	 */
+	public int getDistance(int level, int originX, int originY, int x, int y) {
+		MazeTable table = getTable(level);
+		int origin = table.getCellId(originX, originY);
+		int dest = table.getCellId(x, y);
+		if (origin < 0 || dest < 0)
+			return -1;
+		return table.getDistance(origin, dest);
 	}
 
 	/**
@@ -400,8 +652,8 @@ public class DistanceGridCache {
 	 */
 	public Collection<Junction> getCloseJunctions(int level, int originX,
 			int originY) {
-		level = (level - 1) % GameModel.MAX_LEVELS + 1;
-		return grids_.get(level - 1)[originX][originY].getCloseJunctions();
+		MazeTable table = getTable(level);
+		return table.getCloseJunctions(table.getCellId(originX, originY));
 	}
 
 	/**
@@ -429,37 +681,178 @@ public class DistanceGridCache {
 	}
 
 	/**
-	 * A wrapper class for convenience.
+	 * The packed all-pairs distance and first direction tables of a single
+	 * maze, along with the closest junctions to each cell. All data lives in a
+	 * single buffer (which is memory-mapped when loaded from a cache file),
+	 * laid out as the header, the cell ids, the junction offsets, the packed
+	 * junctions, the distances and finally the directions.
 	 * 
 	 * @author Sam Sarjant
 	 */
-	private class DistanceGrid {
-		/** The actual distance grids for this position, mapped by direction. */
-		private Map<Byte, DistanceDir[][]> distanceGrids_;
+	private static class MazeTable {
+		/** The buffer holding the table. */
+		private ByteBuffer buffer_;
+
+		/** The cell id of each position (-1 if invalid). */
+		private short[] cellIds_;
 
-		/** The closest junctions to the origin. */
-		private Collection<Junction> closeJunctions_;
+		/** The byte offset of the first direction. */
+		private final int directionOffset_;
+
+		/** The byte offset of the first distance. */
+		private final int distanceOffset_;
+
+		/** The byte offset of the first junction offset. */
+		private final int junctionIndexOffset_;
+
+		/** The byte offset of the first packed junction. */
+		private final int junctionOffset_;
+
+		/** The number of valid cells. */
+		private final int numCells_;
+
+		/** The size of the maze. */
+		private final int sizeX_;
+		private final int sizeY_;
+
+		/** The total byte size of the table. */
+		private final int byteSize_;
 
 		/**
-		 * A constructor for a distance grid.
+		 * The recently unpacked grids, keyed by origin cell. Access order
+		 * means every get modifies the map, so it is only used while
+		 * synchronised on the table.
+		 */
+		private final Map<Integer, DistanceDir[][]> recentGrids_;
+
+		public MazeTable(int sizeX, int sizeY, int numCells, int numJunctions) {
+			sizeX_ = sizeX;
+			sizeY_ = sizeY;
+			numCells_ = numCells;
+			junctionIndexOffset_ = HEADER_SIZE + sizeX * sizeY * 2;
+			junctionOffset_ = junctionIndexOffset_ + (numCells + 1) * 4;
+			distanceOffset_ = junctionOffset_ + numJunctions * 8;
+			directionOffset_ = distanceOffset_ + numCells * numCells * 2;
+			byteSize_ = directionOffset_ + numCells * numCells;
+			recentGrids_ = new LinkedHashMap<Integer, DistanceDir[][]>(
+					GRID_CACHE_SIZE, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Integer, DistanceDir[][]> eldest) {
+					return size() > GRID_CACHE_SIZE;
+				}
+			};
+		}
+
+		public ByteBuffer getBuffer() {
+			return buffer_;
+		}
+
+		public int getByteSize() {
+			return byteSize_;
+		}
+
+		/**
+		 * Gets the id of a cell.
 		 * 
-		 * @param distanceGrid
-		 *            The distance grids for the location, mapped by direction.
-		 * @param closeJunctions
-		 *            The closest junctions to the origin location.
+		 * @param x
+		 *            The x position.
+		 * @param y
+		 *            The y position.
+		 * @return The id of the cell or -1 if not a valid position.
 		 */
-		public DistanceGrid(Map<Byte, DistanceDir[][]> distanceGrids,
-				Collection<Junction> closeJunctions) {
-			distanceGrids_ = distanceGrids;
-			closeJunctions_ = closeJunctions;
+		public int getCellId(int x, int y) {
+			if (x < 0 || y < 0 || x >= sizeX_ || y >= sizeY_)
+				return -1;
+			return cellIds_[x * sizeY_ + y];
 		}
 
-		public DistanceDir[][] getDistanceGrid(byte direction) {
-			return distanceGrids_.get(direction);
+		/**
+		 * Creates the close junctions of an origin cell. New junctions are
+		 * created every call, as their safety is modified by the caller.
+		 * 
+		 * @param origin
+		 *            The origin cell id.
+		 * @return The closest junctions to the origin.
+		 */
+		public SortedSet<Junction> getCloseJunctions(int origin) {
+			SortedSet<Junction> closeJunctions = new TreeSet<Junction>();
+			if (origin < 0)
+				return closeJunctions;
+			int start = buffer_.getInt(junctionIndexOffset_ + origin * 4);
+			int end = buffer_.getInt(junctionIndexOffset_ + (origin + 1) * 4);
+			for (int j = start; j < end; j++) {
+				int loc = buffer_.getInt(junctionOffset_ + j * 8);
+				int info = buffer_.getInt(junctionOffset_ + j * 8 + 4);
+				closeJunctions.add(new Junction(new Point(loc >>> 16,
+						loc & 0xffff), (byte) (info >> 8), info >>> 16,
+						(byte) info));
+			}
+			return closeJunctions;
 		}
 
-		public Collection<Junction> getCloseJunctions() {
-			return closeJunctions_;
+		/**
+		 * Gets the distance between two cells.
+		 * 
+		 * @param origin
+		 *            The origin cell id.
+		 * @param dest
+		 *            The destination cell id.
+		 * @return The distance or -1 if unreachable.
+		 */
+		public int getDistance(int origin, int dest) {
+			return buffer_.getShort(distanceOffset_
+					+ (origin * numCells_ + dest) * 2);
+		}
+
+		public synchronized void setBuffer(ByteBuffer buffer) {
+			buffer_ = buffer;
+			recentGrids_.clear();
+			cellIds_ = new short[sizeX_ * sizeY_];
+			for (int i = 0; i < cellIds_.length; i++)
+				cellIds_[i] = buffer.getShort(HEADER_SIZE + i * 2);
+		}
+
+		/**
+		 * Gets the distance grid of an origin cell, unpacking it if it has not
+		 * been recently used.
+		 * 
+		 * @param origin
+		 *            The origin cell id.
+		 * @return The distance grid from the origin.
+		 */
+		public synchronized DistanceDir[][] getGrid(int origin) {
+			DistanceDir[][] grid = recentGrids_.get(origin);
+			if (grid == null) {
+				grid = unpackGrid(origin);
+				recentGrids_.put(origin, grid);
+			}
+			return grid;
+		}
+
+		/**
+		 * Unpacks the distance grid of an origin cell.
+		 * 
+		 * @param origin
+		 *            The origin cell id.
+		 * @return The distance grid from the origin, with null elements for
+		 *         invalid or unreachable positions.
+		 */
+		private DistanceDir[][] unpackGrid(int origin) {
+			DistanceDir[][] grid = new DistanceDir[sizeX_][sizeY_];
+			int row = origin * numCells_;
+			for (int i = 0; i < cellIds_.length; i++) {
+				if (cellIds_[i] < 0)
+					continue;
+				int index = row + cellIds_[i];
+				short distance = buffer_.getShort(distanceOffset_ + index * 2);
+				if (distance >= 0)
+					grid[i / sizeY_][i % sizeY_] = new DistanceDir(distance,
+							buffer_.get(directionOffset_ + index));
+			}
+			return grid;
 		}
 	}
 }
@@ -0,0 +1,164 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/rlPacMan/EpisodeRecorder.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package rlPacMan;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records Ms. PacMan episodes to a compact binary file so they can be
+ * replayed without the learner by {@link EpisodeReplayer}. The file starts
+ * with a header of the game settings, followed by one record per episode:
+ * the episode's random seed, the action taken each step (one byte each) and
+ * the final score, tick count and whether the game was over.
+ * 
+ * @author Sam Sarjant
+ */
+public class EpisodeRecorder {
+	/** The folder episode recordings are stored in. */
+	public static final File RECORD_FOLDER = new File("episodeRecords"
+			+ File.separatorChar);
+
+	/** The header value identifying a recording. */
+	static final int MAGIC = 0x5041434d;
+
+	/** The version of the recording format. */
+	static final int VERSION = 1;
+
+	/** The setting flags of the header. */
+	static final int FLAG_NO_DOTS = 1;
+	static final int FLAG_NO_POWERDOTS = 2;
+	static final int FLAG_ONE_LIFE = 4;
+
+	/** The actions of the current episode. */
+	private final ByteArrayOutputStream actions_;
+
+	/** The number of actions in the current episode. */
+	private int numActions_;
+
+	/** The output stream. */
+	private DataOutputStream out_;
+
+	/** The seed of the current episode. */
+	private long seed_;
+
+	/** If an episode is currently being recorded. */
+	private boolean recording_;
+
+	/**
+	 * Creates a new recording, writing the header.
+	 * 
+	 * @param file
+	 *            The file to record to (overwritten).
+	 * @param noDots
+	 *            If the mazes have no dots.
+	 * @param noPowerDots
+	 *            If the mazes have no powerdots.
+	 * @param oneLife
+	 *            If the player only has one life.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public EpisodeRecorder(File file, boolean noDots, boolean noPowerDots,
+			boolean oneLife) throws IOException {
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+		out_ = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		out_.writeInt(MAGIC);
+		out_.writeInt(VERSION);
+		out_.writeByte((noDots ? FLAG_NO_DOTS : 0)
+				| (noPowerDots ? FLAG_NO_POWERDOTS : 0)
+				| (oneLife ? FLAG_ONE_LIFE : 0));
+		actions_ = new ByteArrayOutputStream();
+	}
+
+	/**
+	 * Closes the recording. Any unfinished episode is discarded.
+	 */
+	public void close() {
+		try {
+			if (out_ != null)
+				out_.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		out_ = null;
+	}
+
+	/**
+	 * Finishes the current episode, writing its record.
+	 * 
+	 * @param score
+	 *            The final score.
+	 * @param ticks
+	 *            The number of ticks played since the first learning tick.
+	 * @param gameOver
+	 *            If the game was over.
+	 */
+	public void endEpisode(int score, int ticks, boolean gameOver) {
+		if (!recording_ || out_ == null)
+			return;
+		try {
+			out_.writeLong(seed_);
+			out_.writeInt(numActions_);
+			actions_.writeTo(out_);
+			out_.writeInt(score);
+			out_.writeInt(ticks);
+			out_.writeBoolean(gameOver);
+			out_.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		recording_ = false;
+	}
+
+	/**
+	 * Records an action of the current episode.
+	 * 
+	 * @param action
+	 *            The action taken.
+	 */
+	public void recordAction(PacManLowAction action) {
+		if (!recording_)
+			return;
+		actions_.write(action.ordinal());
+		numActions_++;
+	}
+
+	/**
+	 * Starts recording a new episode.
+	 * 
+	 * @param seed
+	 *            The random seed of the episode.
+	 */
+	public void startEpisode(long seed) {
+		seed_ = seed;
+		actions_.reset();
+		numActions_ = 0;
+		recording_ = true;
+	}
+}
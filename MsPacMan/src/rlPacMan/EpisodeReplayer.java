@@ -0,0 +1,340 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/rlPacMan/EpisodeReplayer.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package rlPacMan;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays episodes recorded by {@link EpisodeRecorder} on a headless game at
+ * full speed, checking that every episode ends with the recorded score and
+ * tick count. Useful for benchmarking the simulator on its own and for
+ * reproducing a particular episode exactly. The episodes are independent, so
+ * several can be replayed side by side in a {@link PacManGameBatch}.
+ * 
+ * @author Sam Sarjant
+ */
+public class EpisodeReplayer {
+	/** The recording. */
+	private final File file_;
+
+	/** If idle animation ticks are fast-forwarded. */
+	private final boolean fastForward_;
+
+	/** The number of episodes replayed. */
+	private int episodes_;
+
+	/** The number of episodes replayed side by side. */
+	private final int numGames_;
+
+	/** The number of threads replaying the episodes. */
+	private final int numThreads_;
+
+	/** The number of episodes which did not match their recording. */
+	private int mismatches_;
+
+	/** The number of steps replayed. */
+	private long steps_;
+
+	/** The number of ticks replayed. */
+	private long ticks_;
+
+	/** The time spent replaying (in nanoseconds). */
+	private long time_;
+
+	/**
+	 * Creates a replayer for a recording.
+	 * 
+	 * @param file
+	 *            The recording.
+	 * @param fastForward
+	 *            If idle animation ticks are fast-forwarded.
+	 */
+	public EpisodeReplayer(File file, boolean fastForward) {
+		this(file, fastForward, 1, 1);
+	}
+
+	/**
+	 * Creates a replayer for a recording which replays several episodes side
+	 * by side.
+	 * 
+	 * @param file
+	 *            The recording.
+	 * @param fastForward
+	 *            If idle animation ticks are fast-forwarded.
+	 * @param numGames
+	 *            The number of episodes replayed side by side.
+	 * @param numThreads
+	 *            The number of threads stepping the episodes.
+	 */
+	public EpisodeReplayer(File file, boolean fastForward, int numGames,
+			int numThreads) {
+		file_ = file;
+		fastForward_ = fastForward;
+		numGames_ = Math.max(1, numGames);
+		numThreads_ = Math.max(1, numThreads);
+	}
+
+	/**
+	 * Checks a replayed episode against its recording.
+	 * 
+	 * @param game
+	 *            The game the episode was replayed in.
+	 * @param episode
+	 *            The recorded episode.
+	 * @param verbose
+	 *            If a mismatch is reported.
+	 */
+	private void checkEpisode(PacManGameInstance game, Episode episode,
+			boolean verbose) {
+		episodes_++;
+		steps_ += episode.actions_.length;
+		ticks_ += game.getTicks();
+		if (game.getModel().m_player.m_score != episode.score_
+				|| game.getTicks() != episode.ticks_
+				|| game.isGameOver() != episode.gameOver_) {
+			mismatches_++;
+			if (verbose)
+				System.err.println("Episode " + episodes_ + " mismatch: score "
+						+ game.getModel().m_player.m_score + " ("
+						+ episode.score_ + "), ticks " + game.getTicks() + " ("
+						+ episode.ticks_ + "), game over " + game.isGameOver()
+						+ " (" + episode.gameOver_ + ")");
+		}
+	}
+
+	/**
+	 * Reads the next episode of the recording.
+	 * 
+	 * @param in
+	 *            The recording stream.
+	 * @return The episode, or null if there are no more.
+	 * @throws IOException
+	 *             If the recording cannot be read.
+	 */
+	private Episode readEpisode(DataInputStream in) throws IOException {
+		Episode episode = new Episode();
+		try {
+			episode.seed_ = in.readLong();
+		} catch (EOFException e) {
+			return null;
+		}
+		episode.actions_ = new byte[in.readInt()];
+		in.readFully(episode.actions_);
+		episode.score_ = in.readInt();
+		episode.ticks_ = in.readInt();
+		episode.gameOver_ = in.readBoolean();
+		return episode;
+	}
+
+	/**
+	 * Replays episodes side by side, each in its own game of the batch.
+	 * 
+	 * @param batch
+	 *            The batch to replay in.
+	 * @param episodes
+	 *            The episodes (no more than the batch size).
+	 */
+	private void replayBatch(PacManGameBatch batch, List<Episode> episodes) {
+		long[] seeds = new long[episodes.size()];
+		for (int i = 0; i < seeds.length; i++)
+			seeds[i] = episodes.get(i).seed_;
+		batch.startEpisodes(seeds);
+
+		PacManLowAction[] actionValues = PacManLowAction.values();
+		PacManLowAction[] actions = new PacManLowAction[seeds.length];
+		for (int step = 0;; step++) {
+			boolean stepped = false;
+			for (int i = 0; i < actions.length; i++) {
+				byte[] recorded = episodes.get(i).actions_;
+				if (step < recorded.length
+						&& !batch.getGame(i).isGameOver()) {
+					actions[i] = actionValues[recorded[step]];
+					stepped = true;
+				} else
+					actions[i] = null;
+			}
+			if (!stepped)
+				return;
+			batch.step(actions);
+		}
+	}
+
+	public int getEpisodes() {
+		return episodes_;
+	}
+
+	public int getMismatches() {
+		return mismatches_;
+	}
+
+	public long getSteps() {
+		return steps_;
+	}
+
+	public long getTicks() {
+		return ticks_;
+	}
+
+	/**
+	 * Gets the time spent replaying (excluding creating the game).
+	 * 
+	 * @return The replay time in milliseconds.
+	 */
+	public long getTimeMillis() {
+		return time_ / 1000000;
+	}
+
+	/**
+	 * Replays every episode in the recording.
+	 * 
+	 * @param verbose
+	 *            If mismatched episodes are reported.
+	 * @return The number of episodes which did not match their recording.
+	 * @throws IOException
+	 *             If the recording cannot be read.
+	 */
+	public int replay(boolean verbose) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file_)));
+		try {
+			if (in.readInt() != EpisodeRecorder.MAGIC
+					|| in.readInt() != EpisodeRecorder.VERSION)
+				throw new IOException(file_ + " is not an episode recording.");
+			int flags = in.readByte();
+			boolean noDots = (flags & EpisodeRecorder.FLAG_NO_DOTS) != 0;
+			boolean noPowerDots = (flags & EpisodeRecorder.FLAG_NO_POWERDOTS) != 0;
+			boolean oneLife = (flags & EpisodeRecorder.FLAG_ONE_LIFE) != 0;
+
+			if (numGames_ > 1) {
+				// Replay the episodes a batch at a time
+				PacManGameBatch batch = new PacManGameBatch(numGames_,
+						numThreads_, fastForward_, noDots, noPowerDots, oneLife);
+				try {
+					List<Episode> episodes = new ArrayList<Episode>(numGames_);
+					while (true) {
+						episodes.clear();
+						Episode episode;
+						while (episodes.size() < numGames_
+								&& (episode = readEpisode(in)) != null)
+							episodes.add(episode);
+						if (episodes.isEmpty())
+							break;
+
+						long start = System.nanoTime();
+						replayBatch(batch, episodes);
+						time_ += System.nanoTime() - start;
+						for (int i = 0; i < episodes.size(); i++)
+							checkEpisode(batch.getGame(i), episodes.get(i),
+									verbose);
+					}
+				} finally {
+					batch.shutdown();
+				}
+				return mismatches_;
+			}
+
+			PacManGameInstance game = new PacManGameInstance(true,
+					fastForward_, noDots, noPowerDots, oneLife);
+			PacManLowAction[] actionValues = PacManLowAction.values();
+			Episode episode;
+			while ((episode = readEpisode(in)) != null) {
+				long start = System.nanoTime();
+				game.startEpisode(episode.seed_);
+				for (int i = 0; i < episode.actions_.length
+						&& !game.isGameOver(); i++)
+					game.step(actionValues[episode.actions_[i]]);
+				time_ += System.nanoTime() - start;
+				checkEpisode(game, episode, verbose);
+			}
+		} finally {
+			in.close();
+		}
+		return mismatches_;
+	}
+
+	/**
+	 * Replays a recording from the command line.
+	 * 
+	 * @param args
+	 *            The recording file, optionally followed by -noFastForward,
+	 *            -games N (episodes replayed side by side) and -threads N.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: EpisodeReplayer <recording> "
+					+ "[-noFastForward] [-games N] [-threads N]");
+			return;
+		}
+		boolean fastForward = true;
+		int numGames = 1;
+		int numThreads = 1;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-noFastForward"))
+				fastForward = false;
+			else if (args[i].equals("-games") && i + 1 < args.length)
+				numGames = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-threads") && i + 1 < args.length)
+				numThreads = Integer.parseInt(args[++i]);
+		}
+		EpisodeReplayer replayer = new EpisodeReplayer(new File(args[0]),
+				fastForward, numGames, numThreads);
+		try {
+			replayer.replay(true);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		long millis = Math.max(1, replayer.getTimeMillis());
+		System.out.println(replayer.getEpisodes() + " episodes, "
+				+ replayer.getSteps() + " steps, " + replayer.getTicks()
+				+ " ticks in " + millis + "ms ("
+				+ (replayer.getSteps() * 1000 / millis) + " steps/s). "
+				+ replayer.getMismatches() + " mismatched.");
+	}
+
+	/**
+	 * A recorded episode.
+	 */
+	private static class Episode {
+		/** The recorded actions. */
+		private byte[] actions_;
+
+		/** If the game was over. */
+		private boolean gameOver_;
+
+		/** The final score. */
+		private int score_;
+
+		/** The random seed. */
+		private long seed_;
+
+		/** The number of ticks played. */
+		private int ticks_;
+	}
+}
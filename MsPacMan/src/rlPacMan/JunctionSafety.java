@@ -0,0 +1,146 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/rlPacMan/JunctionSafety.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package rlPacMan;
+
+import java.util.Arrays;
+
+import msPacMan.GameModel;
+import msPacMan.Ghost;
+import msPacMan.Junction;
+import msPacMan.MazeLayout;
+
+/**
+ * Tracks how safe junctions are from the dangerous ghosts. The ghost-junction
+ * distances are cached per cell and only looked up again once the ghost has
+ * moved to a different cell, so the work per step depends on how far the
+ * ghosts moved rather than on the number of junctions and ghosts.
+ * 
+ * @author Sam Sarjant
+ */
+public class JunctionSafety {
+	/** The distance lookup. */
+	private final DistanceGridCache distanceGridCache_;
+
+	/** The cached distance from each ghost to each cell. */
+	private int[][] distances_;
+
+	/** The version of each ghost's cell each cached distance was taken at. */
+	private int[][] distanceVersions_;
+
+	/** The x location of each ghost at the last update. */
+	private int[] ghostX_;
+
+	/** The y location of each ghost at the last update. */
+	private int[] ghostY_;
+
+	/** The version of each ghost's cell, incremented whenever it moves. */
+	private int[] ghostVersions_;
+
+	/** The level of the last update. */
+	private int level_;
+
+	/** The maze of the last update. */
+	private MazeLayout maze_;
+
+	/** The safety of a junction with no ghost threatening it. */
+	private int maxSafety_;
+
+	/** If each ghost is currently a threat. */
+	private boolean[] threats_;
+
+	/**
+	 * Creates a new junction safety tracker.
+	 * 
+	 * @param distanceGridCache
+	 *            The distance lookup of the game.
+	 */
+	public JunctionSafety(DistanceGridCache distanceGridCache) {
+		distanceGridCache_ = distanceGridCache;
+	}
+
+	/**
+	 * Gets the safety of a junction: how much further the closest dangerous
+	 * ghost is from the junction than Ms. PacMan, capped at the maze width.
+	 * 
+	 * @param junction
+	 *            A junction, with its distance from Ms. PacMan.
+	 * @return The safety of the junction.
+	 */
+	public int getSafety(Junction junction) {
+		int cell = junction.m_locX * maze_.getSizeY() + junction.m_locY;
+		int safety = maxSafety_;
+		for (int g = 0; g < threats_.length; g++) {
+			if (!threats_[g])
+				continue;
+			if (distanceVersions_[g][cell] != ghostVersions_[g]) {
+				distances_[g][cell] = distanceGridCache_.getDistance(level_,
+						ghostX_[g], ghostY_[g], junction.m_locX,
+						junction.m_locY);
+				distanceVersions_[g][cell] = ghostVersions_[g];
+			}
+			if (distances_[g][cell] >= 0)
+				safety = Math.min(safety, distances_[g][cell]
+						- junction.getDistance());
+		}
+		return safety;
+	}
+
+	/**
+	 * Notes the current positions and threat of the ghosts. Only ghosts which
+	 * changed cell have their cached distances invalidated.
+	 * 
+	 * @param model
+	 *            The current game model.
+	 */
+	public void update(GameModel model) {
+		Ghost[] ghosts = model.m_ghosts;
+		if (model.getMaze() != maze_ || threats_ == null
+				|| threats_.length != ghosts.length) {
+			// A new maze invalidates everything
+			maze_ = model.getMaze();
+			int numCells = maze_.getSizeX() * maze_.getSizeY();
+			distances_ = new int[ghosts.length][numCells];
+			distanceVersions_ = new int[ghosts.length][numCells];
+			for (int[] versions : distanceVersions_)
+				Arrays.fill(versions, -1);
+			ghostX_ = new int[ghosts.length];
+			ghostY_ = new int[ghosts.length];
+			Arrays.fill(ghostX_, -1);
+			ghostVersions_ = new int[ghosts.length];
+			threats_ = new boolean[ghosts.length];
+		}
+		level_ = model.m_stage;
+		maxSafety_ = model.m_gameSizeX;
+
+		for (int g = 0; g < ghosts.length; g++) {
+			Ghost ghost = ghosts[g];
+			// Only visible, inedible ghosts are dangerous
+			threats_[g] = ghost.m_nTicks2Exit <= 0 && !ghost.m_bEaten
+					&& !ghost.isEdible();
+			if (ghost.m_locX != ghostX_[g] || ghost.m_locY != ghostY_[g]) {
+				ghostX_[g] = ghost.m_locX;
+				ghostY_[g] = ghost.m_locY;
+				ghostVersions_[g]++;
+			}
+		}
+	}
+}
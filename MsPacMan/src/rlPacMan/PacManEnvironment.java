@@ -28,10 +28,10 @@ import rrlFramework.RRLEnvironment;
 import rrlFramework.RRLExperiment;
 
 import java.awt.Point;
-import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 
 import cerrla.ProgramArgument;
@@ -46,55 +46,48 @@ import msPacMan.GhostCentre;
 import msPacMan.Junction;
 import msPacMan.PacMan;
 import msPacMan.PacPoint;
-import msPacMan.Player;
 import msPacMan.PowerDot;
 import msPacMan.Thing;
 
 public class PacManEnvironment extends RRLEnvironment {
 	public static int playerDelay_ = 0;
+	private final DirectionArbiter arbiter_ = new DirectionArbiter();
 	private Collection<Junction> closeJunctions_;
+	private DistanceFunction distanceFunction_;
 	private DistanceDir[][] distanceGrid_;
 	private DistanceGridCache distanceGridCache_;
 	private PacMan environment_;
 	private boolean experimentMode_ = false;
+	private PacManGameInstance game_;
+	private JunctionSafety junctionSafety_;
 	private PacManLowAction lastDirection_;
+	private boolean lazyDistances_;
 	private GameModel model_;
 	private int prevScore_;
+	private final Object[] stateObjs_ = new Object[3];
+	private final PacManState state_ = new PacManState(stateObjs_);
+	private final WeightedDirection weightedDir_ = new WeightedDirection();
 
 	/**
-	 * Resets the observation and distance grid array.
-	 */
-	private void cacheDistanceGrids() {
-		distanceGridCache_ = new DistanceGridCache(model_,
-				model_.m_player.m_startX, model_.m_player.m_startY);
-	}
-
-	/**
-	 * Make a distance assertion from the player to an object.
+	 * Make a distance assertion from the player to an object. If distances are
+	 * computed on demand, nothing is asserted.
 	 * 
 	 * @param thing
 	 *            The thing as arg2 of the distance.
 	 * @param thingName
 	 *            The JESS name of the thing.
-	 * @param pacMan
 	 * @throws JessException
 	 *             If Jess goes wrong.
 	 */
-	private void distanceAssertions(PacPoint thing, String thingName,
-			Player pacMan, Rete rete) throws JessException {
-		if (distanceGrid_[thing.m_locX][thing.m_locY] != null) {
-			// Use Ms. PacMan's natural distance (manhatten)
-			rete.assertString("(distance " + thingName + " "
-					+ distanceGrid_[thing.m_locX][thing.m_locY].getDistance()
-					+ ")");
-		} else {
-			// Use Euclidean distance, rounding
-			int distance = (int) Math.round(Point2D.distance(thing.m_locX,
-					thing.m_locY, pacMan.m_locX, pacMan.m_locY));
-			rete.assertString("(distance " + thingName + " " + distance + ")");
-		}
+	private void distanceAssertions(PacPoint thing, String thingName, Rete rete)
+			throws JessException {
+		if (lazyDistances_)
+			return;
+		rete.assertString("(distance " + thingName + " "
+				+ distanceFunction_.getDistance(thing.m_locX, thing.m_locY)
+				+ ")");
 	}
-	
+
 	/**
 	 * Draws the agent's action switch.
 	 * 
@@ -103,7 +96,7 @@ public class PacManEnvironment extends RRLEnvironment {
 	 *            with possible null elements.
 	 */
 	private void drawActions(ArrayList<Collection<FiredAction>> actions) {
-		if (!experimentMode_) {
+		if (!environment_.isHeadless()) {
 			FiredAction[] firedArray = new FiredAction[actions.size()];
 			for (int i = 0; i < actions.size(); i++)
 				firedArray[i] = actions.get(i).iterator().next();
@@ -119,6 +112,8 @@ public class PacManEnvironment extends RRLEnvironment {
 				model_.m_player.m_locX, model_.m_player.m_locY, Thing.STILL);
 		closeJunctions_ = distanceGridCache_.getCloseJunctions(model_.m_stage,
 				model_.m_player.m_locX, model_.m_player.m_locY);
+		distanceFunction_.setState(model_, distanceGrid_);
+		junctionSafety_.update(model_);
 
 		// Ghost Centre. Note that the centre can shift based on how the
 		// ghosts are positioned, as the warp points make the map
@@ -147,36 +142,12 @@ public class PacManEnvironment extends RRLEnvironment {
 				}
 
 				// Distances from pacman to ghost
-				distanceAssertions(ghost, ghost.toString(), model_.m_player,
-						rete);
+				distanceAssertions(ghost, ghost.toString(), rete);
 
-				// Junction distance
-				for (Junction junc : closeJunctions_) {
-					if (!junctionsNoted) {
-						// Assert types
+				// Junction types
+				if (!junctionsNoted) {
+					for (Junction junc : closeJunctions_)
 						rete.assertString("(junction " + junc + ")");
-						// Max safety
-						junc.setSafety(model_.m_gameSizeX);
-					}
-
-					// Junction Safety
-					int safety = model_.m_gameSizeX;
-					if (!ghost.isEdible()) {
-						DistanceDir[][] ghostGrid = distanceGridCache_.getGrid(
-								model_.m_stage, ghost.m_locX, ghost.m_locY,
-								Thing.STILL);
-						// If the ghost is in the ghost area or otherwise
-						// not accessible by PacMan, ignore it.
-						if (ghostGrid != null) {
-							int ghostDistance = ghostGrid[junc.m_locX][junc.m_locY]
-									.getDistance();
-							if (ghostDistance >= 0)
-								safety = ghostDistance - junc.getDistance();
-						}
-					}
-
-					if (safety < junc.getSafety())
-						junc.setSafety(safety);
 				}
 				junctionsNoted = true;
 
@@ -205,11 +176,10 @@ public class PacManEnvironment extends RRLEnvironment {
 			if (!junctionsNoted) {
 				// Assert types
 				rete.assertString("(junction " + junc + ")");
-				// Max safety
-				junc.setSafety(model_.m_gameSizeX);
 			}
 
-			// Assert safety
+			// Assert safety (from the closest dangerous ghost)
+			junc.setSafety(junctionSafety_.getSafety(junc));
 			rete.assertString("(junctionSafety " + junc + " "
 					+ junc.getSafety() + ")");
 		}
@@ -231,7 +201,7 @@ public class PacManEnvironment extends RRLEnvironment {
 
 			rete.assertString("(ghostCentre " + gc + ")");
 
-			distanceAssertions(gc, gc.toString(), model_.m_player, rete);
+			distanceAssertions(gc, gc.toString(), rete);
 		}
 
 		// Dots
@@ -239,7 +209,7 @@ public class PacManEnvironment extends RRLEnvironment {
 			rete.assertString("(dot " + dot + ")");
 
 			// Distances
-			distanceAssertions(dot, dot.toString(), model_.m_player, rete);
+			distanceAssertions(dot, dot.toString(), rete);
 		}
 
 		// Powerdots
@@ -247,8 +217,7 @@ public class PacManEnvironment extends RRLEnvironment {
 			rete.assertString("(powerDot " + powerdot + ")");
 
 			// Distances
-			distanceAssertions(powerdot, powerdot.toString(), model_.m_player,
-					rete);
+			distanceAssertions(powerdot, powerdot.toString(), rete);
 		}
 
 		// Fruit
@@ -257,7 +226,7 @@ public class PacManEnvironment extends RRLEnvironment {
 
 			// Distances
 			distanceAssertions(model_.m_fruit, model_.m_fruit.toString(),
-					model_.m_player, rete);
+					rete);
 		}
 
 		// Score, level, lives, highScore
@@ -285,98 +254,45 @@ public class PacManEnvironment extends RRLEnvironment {
 		ArrayList<Collection<FiredAction>> policyActions = actions.getActions();
 
 		// Find the valid directions
-		ArrayList<PacManLowAction> directions = new ArrayList<PacManLowAction>();
 		int x = model_.m_player.m_locX;
 		int y = model_.m_player.m_locY;
-		if (Thing.isValidMove(Thing.UP, x, y, model_))
-			directions.add(PacManLowAction.UP);
-		if (Thing.isValidMove(Thing.DOWN, x, y, model_))
-			directions.add(PacManLowAction.DOWN);
-		if (Thing.isValidMove(Thing.LEFT, x, y, model_))
-			directions.add(PacManLowAction.LEFT);
-		if (Thing.isValidMove(Thing.RIGHT, x, y, model_))
-			directions.add(PacManLowAction.RIGHT);
-
-
+		int directions = 0;
+		for (byte dir = Thing.UP; dir <= Thing.RIGHT; dir++)
+			if (Thing.isValidMove(dir, x, y, model_))
+				directions |= DirectionArbiter.bit(dir);
 
 		// Compile the state
-		Object[] stateObjs = { model_.m_ghosts, model_.m_fruit, distanceGrid_ };
-		PacManState state = new PacManState(stateObjs);
-
-
+		stateObjs_[PacManState.GHOST_ARRAY] = model_.m_ghosts;
+		stateObjs_[PacManState.FRUIT] = model_.m_fruit;
+		stateObjs_[PacManState.DISTANCE_GRID] = distanceGrid_;
 
 		// Run through each action, until a clear singular direction is arrived
 		// upon.
-		Collection<FiredAction> firedRules = new HashSet<FiredAction>();
+		PacManStateSpec stateSpec = (PacManStateSpec) StateSpec.getInstance();
+		arbiter_.reset(directions);
 		for (Collection<FiredAction> firedActions : policyActions) {
-			ArrayList<PacManLowAction> actionDirections = new ArrayList<PacManLowAction>();
-			double bestWeight = Integer.MIN_VALUE;
-
 			// Only use the closest object(s) to make decisions
+			arbiter_.startRule();
 			for (FiredAction firedAction : firedActions) {
-				WeightedDirection weightedDir = ((PacManStateSpec) StateSpec
-						.getInstance()).applyAction(firedAction.getAction(),
-						state);
-
-				if (weightedDir != null) {
-					// Use a linearly decreasing weight and the object proximity
-					double weighting = weightedDir.getWeight();
-					// If weighting is higher, clear the previous decisions and
-					// use this one.
-					if (weighting > bestWeight) {
-						actionDirections.clear();
-						bestWeight = weighting;
-					}
-					byte dir = weightedDir.getDirection();
-					// If this weighting is the same as the best weight, note
-					// the direction.
-					if (weighting == bestWeight) {
-						if (dir < 0) {
-							actionDirections.addAll(directions);
-							actionDirections
-									.remove(PacManLowAction.values()[-dir]);
-						} else
-							actionDirections.add(PacManLowAction.values()[dir]);
-					}
-				}
+				if (stateSpec.applyAction(firedAction.getAction(), state_,
+						weightedDir_))
+					arbiter_.addDirection(weightedDir_.getDirection(),
+							weightedDir_.getWeight());
 			}
 
-			// Refine the directions selected by this rule
-			ArrayList<PacManLowAction> backupDirections = new ArrayList<PacManLowAction>(
-					directions);
-			directions.retainAll(actionDirections);
-			// If no legal directions selected
-			if (directions.isEmpty())
-				directions = backupDirections;
 			// If the possible directions has shrunk, this rule has been
 			// utilised
-			if (directions.size() < backupDirections.size())
-				firedRules.addAll(firedActions);
+			if (arbiter_.endRule())
+				for (FiredAction fa : firedActions)
+					fa.triggerRule();
 			// If there is only one direction left, use that
-			if (directions.size() == 1) {
-				lastDirection_ = directions.get(0);
+			if (arbiter_.isDecided())
 				break;
-			}
-		}
-
-
-
-		if (!directions.contains(lastDirection_)) {
-			// If possible, continue with the last direction.
-			// Otherwise take a direction perpendicular to the last
-			// direction.
-			for (PacManLowAction dir : directions) {
-				if (dir != lastDirection_.opposite()) {
-					lastDirection_ = dir;
-				}
-			}
 		}
 
-
-
-		// Trigger the rules leading to this direction
-		for (FiredAction fa : firedRules)
-			fa.triggerRule();
+		// If possible, continue with the last direction. Otherwise take a
+		// direction perpendicular to the last direction.
+		lastDirection_ = arbiter_.chooseDirection(lastDirection_);
 
 		// Draw the actions.
 		if (!experimentMode_) {
@@ -412,21 +328,8 @@ public class PacManEnvironment extends RRLEnvironment {
 	 */
 	@Override
 	protected void startState() {
-		boolean noDots = model_.noDots_;
-		boolean noPowerDots = model_.noPowerDots_;
-		boolean oneLife = model_.oneLife_;
-		int highScore = model_.m_highScore;
-
-		environment_.reinit();
-
-		model_ = environment_.getGameModel();
-		model_.noDots_ = noDots;
-		model_.noPowerDots_ = noPowerDots;
-		model_.oneLife_ = oneLife;
-		model_.m_highScore = highScore;
-		model_.setRandom(RRLExperiment.random_);
-
 		prevScore_ = 0;
+		lastDirection_ = PacManLowAction.NOTHING;
 
 		// Letting the thread 'sleep' when not experiment mode, so it's
 		// watchable for humans.
@@ -436,24 +339,16 @@ public class PacManEnvironment extends RRLEnvironment {
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		model_.m_state = GameModel.STATE_NEWGAME;
-		environment_.m_gameUI.m_bDrawPaused = false;
 
-		lastDirection_ = PacManLowAction.NOTHING;
-
-		while (!model_.isLearning()) {
-			environment_.tick(false);
-		}
+		game_.startEpisode(RRLExperiment.random_.nextLong());
+		model_ = game_.getModel();
 
-
-		// If we're not in full experiment mode, redraw the scene.
-		if (!experimentMode_) {
+		// If the game is being drawn, redraw the scene.
+		if (!environment_.isHeadless()) {
+			environment_.m_gameUI.m_bDrawPaused = false;
 			environment_.m_gameUI.m_bRedrawAll = true;
 			environment_.m_gameUI.repaint();
 			environment_.m_topCanvas.repaint();
-		} else {
-			environment_.m_gameUI.update(null);
-			environment_.m_gameUI.m_bRedrawAll = false;
 		}
 	}
 
@@ -467,53 +362,34 @@ public class PacManEnvironment extends RRLEnvironment {
 			e.printStackTrace();
 		}
 
-		// Apply the key
-		environment_.simulateKeyPress(((PacManLowAction) action).getKey());
-
-		// Cycle through a full cell
-		int i = 0;
-		while ((i < model_.m_player.m_deltaMax * 2 - 1)
-				|| (!model_.isLearning())) {
-			environment_.tick(false);
-			i++;
-		}
-		model_.m_player.m_deltaLocX = 0;
-		model_.m_player.m_deltaLocY = 0;
+		game_.step((PacManLowAction) action);
 
-		// If we're not in full experiment mode, redraw the scene.
-		if (!experimentMode_) {
+		// If the game is being drawn, redraw the scene.
+		if (!environment_.isHeadless()) {
 			environment_.m_gameUI.m_bRedrawAll = true;
 			environment_.m_gameUI.repaint();
 			environment_.m_topCanvas.repaint();
 			environment_.m_bottomCanvas.repaint();
-		} else {
-			environment_.m_gameUI.update(null);
-			environment_.m_bottomCanvas.setActionsList(null);
+			environment_.m_gameUI.m_bRedrawAll = false;
 		}
-		environment_.m_gameUI.m_bRedrawAll = false;
-
-		// Set the highscore
-		if (model_.m_player.m_score > model_.m_highScore)
-			model_.m_highScore = model_.m_player.m_score;
 	}
 
 	@Override
 	public void cleanup() {
+		if (game_ != null)
+			game_.stopRecording();
+		game_ = null;
 		environment_ = null;
 	}
 
 	@Override
 	public void initialise(int runIndex, String[] extraArg) {
-		environment_ = new PacMan();
-		environment_.init(ProgramArgument.EXPERIMENT_MODE.booleanValue());
-
-		model_ = environment_.getGameModel();
+		experimentMode_ = ProgramArgument.EXPERIMENT_MODE.booleanValue();
 		// Survival mode
-		if (StateSpec.getInstance().getGoalName().equals("survive"))
-			model_.oneLife_ = true;
-
-		// Initialise the observations
-		cacheDistanceGrids();
+		boolean oneLife = StateSpec.getInstance().getGoalName()
+				.equals("survive");
+		boolean noDots = false;
+		boolean noPowerDots = false;
 
 		for (String arg : extraArg) {
 			if ((arg.length() > 7) && (arg.substring(0, 6).equals("simple"))) {
@@ -521,9 +397,9 @@ public class PacManEnvironment extends RRLEnvironment {
 				String param = arg.substring(7);
 				StateSpec.reinitInstance(param);
 				if (param.equals("noDots")) {
-					model_.noDots_ = true;
+					noDots = true;
 				} else if (param.equals("noPowerDots")) {
-					model_.noPowerDots_ = true;
+					noPowerDots = true;
 				}
 			} else {
 				try {
@@ -534,5 +410,31 @@ public class PacManEnvironment extends RRLEnvironment {
 				}
 			}
 		}
+
+		// Experiments run headless, without any drawing components
+		game_ = new PacManGameInstance(experimentMode_,
+				ProgramArgument.TICK_FAST_FORWARD.booleanValue(), noDots,
+				noPowerDots, oneLife);
+		environment_ = game_.getGame();
+		model_ = game_.getModel();
+		distanceGridCache_ = game_.getDistanceGridCache();
+		junctionSafety_ = new JunctionSafety(distanceGridCache_);
+
+		// On demand distances use the function registered with the rete
+		distanceFunction_ = ((PacManStateSpec) StateSpec.getInstance())
+				.getDistanceFunction();
+		lazyDistances_ = distanceFunction_ != null;
+		if (!lazyDistances_)
+			distanceFunction_ = new DistanceFunction();
+
+		if (ProgramArgument.RECORD_EPISODES.booleanValue()) {
+			try {
+				game_.setRecorder(new EpisodeRecorder(new File(
+						EpisodeRecorder.RECORD_FOLDER, "pacman" + runIndex
+								+ ".episodes"), noDots, noPowerDots, oneLife));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 }
@@ -0,0 +1,190 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/rlPacMan/PacManGameBatch.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package rlPacMan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A number of independent headless Ms. PacMan games which are started and
+ * stepped side by side, each on a worker thread. The games share nothing but
+ * the immutable maze layouts, so one game never observes another's state.
+ * 
+ * @author Sam Sarjant
+ */
+public class PacManGameBatch {
+	/** The games. */
+	private final PacManGameInstance[] games_;
+
+	/** The pool stepping the games. */
+	private final ExecutorService workers_;
+
+	/**
+	 * Creates a batch of new games.
+	 * 
+	 * @param numGames
+	 *            The number of games.
+	 * @param numThreads
+	 *            The number of threads to step the games with.
+	 * @param fastForward
+	 *            If idle animation ticks are fast-forwarded.
+	 * @param noDots
+	 *            If the mazes have no dots.
+	 * @param noPowerDots
+	 *            If the mazes have no powerdots.
+	 * @param oneLife
+	 *            If the player only has one life.
+	 */
+	public PacManGameBatch(int numGames, int numThreads, boolean fastForward,
+			boolean noDots, boolean noPowerDots, boolean oneLife) {
+		games_ = new PacManGameInstance[numGames];
+		for (int i = 0; i < numGames; i++)
+			games_[i] = new PacManGameInstance(true, fastForward, noDots,
+					noPowerDots, oneLife);
+		workers_ = Executors.newFixedThreadPool(Math.max(1, numThreads),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "PacManGame");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Runs a task for every game on the workers, waiting until all are done.
+	 * 
+	 * @param tasks
+	 *            The tasks to run.
+	 */
+	private void runAll(List<Callable<Object>> tasks) {
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(
+				tasks.size());
+		for (Callable<Object> task : tasks)
+			futures.add(workers_.submit(task));
+		for (Future<Object> future : futures) {
+			try {
+				future.get();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	public PacManGameInstance getGame(int index) {
+		return games_[index];
+	}
+
+	/**
+	 * If every game in the batch is over.
+	 * 
+	 * @return True if no game is still being played.
+	 */
+	public boolean isFinished() {
+		for (PacManGameInstance game : games_)
+			if (!game.isGameOver())
+				return false;
+		return true;
+	}
+
+	/**
+	 * Shuts down the worker threads. The batch cannot be used afterwards.
+	 */
+	public void shutdown() {
+		workers_.shutdown();
+	}
+
+	public int size() {
+		return games_.length;
+	}
+
+	/**
+	 * Starts a new episode in every game. Each game's seed is drawn from the
+	 * given generator in order, so a batch is reproducible.
+	 * 
+	 * @param random
+	 *            The generator to draw the games' seeds from.
+	 */
+	public void startEpisodes(Random random) {
+		long[] seeds = new long[games_.length];
+		for (int i = 0; i < seeds.length; i++)
+			seeds[i] = random.nextLong();
+		startEpisodes(seeds);
+	}
+
+	/**
+	 * Starts a new episode in the first games of the batch, one for each seed.
+	 * Any further games are left as they are.
+	 * 
+	 * @param seeds
+	 *            The seed for each game's episode.
+	 */
+	public void startEpisodes(long[] seeds) {
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(
+				seeds.length);
+		for (int i = 0; i < seeds.length; i++) {
+			final PacManGameInstance game = games_[i];
+			final long seed = seeds[i];
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					game.startEpisode(seed);
+					return null;
+				}
+			});
+		}
+		runAll(tasks);
+	}
+
+	/**
+	 * Steps every game with its action. Games which are over, or which have a
+	 * null action (or none at all), are not stepped.
+	 * 
+	 * @param actions
+	 *            The action for each game.
+	 */
+	public void step(PacManLowAction[] actions) {
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(
+				games_.length);
+		for (int i = 0; i < actions.length; i++) {
+			final PacManGameInstance game = games_[i];
+			final PacManLowAction action = actions[i];
+			if (action == null || game.isGameOver())
+				continue;
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					game.step(action);
+					return null;
+				}
+			});
+		}
+		runAll(tasks);
+	}
+}
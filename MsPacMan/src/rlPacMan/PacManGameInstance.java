@@ -0,0 +1,207 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/rlPacMan/PacManGameInstance.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package rlPacMan;
+
+import msPacMan.GameModel;
+import msPacMan.GameRandom;
+import msPacMan.GameSnapshot;
+import msPacMan.PacMan;
+
+/**
+ * A single, self-contained Ms. PacMan game: the game itself, its own random
+ * generator and its own distance lookup. Nothing is shared with other
+ * instances except the immutable maze layouts, so separate instances can be
+ * stepped on separate threads.
+ * 
+ * @author Sam Sarjant
+ */
+public class PacManGameInstance {
+	/** The distance lookup for the game's mazes. */
+	private final DistanceGridCache distanceGridCache_;
+
+	/** If idle animation ticks are fast-forwarded. */
+	private final boolean fastForward_;
+
+	/** The game. */
+	private final PacMan game_;
+
+	/** The highest score achieved in this game. */
+	private int highScore_;
+
+	/** The current game model (replaced when the game is first reset). */
+	private GameModel model_;
+
+	/** If the mazes have no dots. */
+	private final boolean noDots_;
+
+	/** If the mazes have no powerdots. */
+	private final boolean noPowerDots_;
+
+	/** If the player only has one life. */
+	private final boolean oneLife_;
+
+	/** The recorder of the episodes, if recording. */
+	private EpisodeRecorder recorder_;
+
+	/** The state of a fresh game at its first learning tick. */
+	private GameSnapshot startSnapshot_;
+
+	/** The number of ticks played this episode since the first learning tick. */
+	private int ticks_;
+
+	/**
+	 * Creates a new game.
+	 * 
+	 * @param headless
+	 *            If the game is run without any drawing components.
+	 * @param fastForward
+	 *            If idle animation ticks are fast-forwarded (headless only).
+	 * @param noDots
+	 *            If the mazes have no dots.
+	 * @param noPowerDots
+	 *            If the mazes have no powerdots.
+	 * @param oneLife
+	 *            If the player only has one life.
+	 */
+	public PacManGameInstance(boolean headless, boolean fastForward,
+			boolean noDots, boolean noPowerDots, boolean oneLife) {
+		fastForward_ = fastForward;
+		noDots_ = noDots;
+		noPowerDots_ = noPowerDots;
+		oneLife_ = oneLife;
+		game_ = new PacMan();
+		game_.init(headless);
+		model_ = game_.getGameModel();
+		distanceGridCache_ = new DistanceGridCache(model_,
+				model_.m_player.m_startX, model_.m_player.m_startY);
+	}
+
+	public DistanceGridCache getDistanceGridCache() {
+		return distanceGridCache_;
+	}
+
+	public PacMan getGame() {
+		return game_;
+	}
+
+	public GameModel getModel() {
+		return model_;
+	}
+
+	public int getTicks() {
+		return ticks_;
+	}
+
+	/**
+	 * If the current episode is over.
+	 * 
+	 * @return True if the game is over.
+	 */
+	public boolean isGameOver() {
+		return model_.m_state == GameModel.STATE_GAMEOVER;
+	}
+
+	/**
+	 * Records every following episode of this game.
+	 * 
+	 * @param recorder
+	 *            The recorder to record to, or null to stop recording.
+	 */
+	public void setRecorder(EpisodeRecorder recorder) {
+		recorder_ = recorder;
+	}
+
+	/**
+	 * Finishes recording the current episode and closes the recorder.
+	 */
+	public void stopRecording() {
+		if (recorder_ == null)
+			return;
+		recorder_.endEpisode(model_.m_player.m_score, ticks_, isGameOver());
+		recorder_.close();
+		recorder_ = null;
+	}
+
+	/**
+	 * Starts a new episode. Every new game is identical up to its first
+	 * learning tick, so after the first episode the game is restored from a
+	 * snapshot rather than replaying the intro.
+	 * 
+	 * @param seed
+	 *            The seed for the episode's random generator.
+	 */
+	public void startEpisode(long seed) {
+		if (recorder_ != null) {
+			recorder_.endEpisode(model_.m_player.m_score, ticks_, isGameOver());
+			recorder_.startEpisode(seed);
+		}
+		ticks_ = 0;
+
+		if (startSnapshot_ != null) {
+			game_.restore(startSnapshot_);
+			model_.m_highScore = highScore_;
+			model_.setRandom(new GameRandom(seed));
+			return;
+		}
+
+		game_.reinit();
+
+		model_ = game_.getGameModel();
+		model_.noDots_ = noDots_;
+		model_.noPowerDots_ = noPowerDots_;
+		model_.oneLife_ = oneLife_;
+		model_.m_highScore = highScore_;
+		model_.setRandom(new GameRandom(seed));
+		model_.m_state = GameModel.STATE_NEWGAME;
+
+		game_.tickUntilLearning(0, fastForward_);
+		startSnapshot_ = game_.snapshot();
+	}
+
+	/**
+	 * Applies an action and plays until Ms. PacMan has moved a full cell. Once
+	 * the game is over there is nothing left to play, so the step is ignored.
+	 * 
+	 * @param action
+	 *            The direction to move in.
+	 */
+	public void step(PacManLowAction action) {
+		if (isGameOver())
+			return;
+		if (recorder_ != null)
+			recorder_.recordAction(action);
+
+		// Apply the key
+		game_.simulateKeyPress(action.getKey());
+
+		// Cycle through a full cell
+		ticks_ += game_.tickUntilLearning(model_.m_player.m_deltaMax * 2 - 1,
+				fastForward_);
+		model_.m_player.m_deltaLocX = 0;
+		model_.m_player.m_deltaLocY = 0;
+
+		// Set the highscore
+		if (model_.m_player.m_score > highScore_)
+			highScore_ = model_.m_player.m_score;
+		model_.m_highScore = highScore_;
+	}
+}
@@ -30,9 +30,12 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import cerrla.ProgramArgument;
 
-import msPacMan.Ghost;
+import jess.JessException;
+import jess.Rete;
 
+import msPacMan.Ghost;
 
 import relationalFramework.agentObservations.BackgroundKnowledge;
 
@@ -42,12 +45,19 @@ import relationalFramework.agentObservations.BackgroundKnowledge;
  * @author Sam Sarjant
  */
 public class PacManStateSpec extends StateSpec {
+	/** The distance lookup function, if distances are computed on demand. */
+	private DistanceFunction distanceFunction_;
+
 	@Override
 	protected Map<String, String> initialiseActionPreconditions() {
 		Map<String, String> preconds = new HashMap<String, String>();
-		// Basic preconditions for actions
-		preconds.put("moveTo", "(thing ?A) (distance ?A ?B)");
-		preconds.put("moveFrom", "(thing ?A) (distance ?A ?B)");
+		// Basic preconditions for actions. With lazy distances, the distance
+		// argument is looked up directly (see resolveActionArgument) so the
+		// valid actions don't need a distance fact for every thing.
+		String distance = ProgramArgument.LAZY_DISTANCES.booleanValue() ? ""
+				: " (distance ?A ?B)";
+		preconds.put("moveTo", "(thing ?A)" + distance);
+		preconds.put("moveFrom", "(thing ?A)" + distance);
 		preconds.put("toJunction", "(junction ?A) (junctionSafety ?A ?B)");
 
 		return preconds;
@@ -88,6 +98,26 @@ public class PacManStateSpec extends StateSpec {
 		return bckKnowledge;
 	}
 
+	/**
+	 * If distances are computed on demand, registers the distance function and
+	 * makes distance facts backward chained, so a distance is only asserted
+	 * when a rule or query needs it for a bound object.
+	 */
+	@Override
+	protected void initialiseEnvironmentFunctions(Rete rete)
+			throws JessException {
+		if (!ProgramArgument.LAZY_DISTANCES.booleanValue())
+			return;
+
+		if (distanceFunction_ == null)
+			distanceFunction_ = new DistanceFunction();
+		rete.addUserfunction(distanceFunction_);
+		rete.eval("(do-backward-chaining distance)");
+		rete.eval("(defrule distanceLookup ?need <- (need-distance ?A ?) => "
+				+ "(retract ?need) (assert (distance ?A ("
+				+ DistanceFunction.NAME + " ?A))))");
+	}
+
 	@Override
 	protected String[] initialiseGoalState() {
 		if (envParameter_ == null)
@@ -208,49 +238,113 @@ public class PacManStateSpec extends StateSpec {
 	 * @return A Byte direction to move towards/from.
 	 */
 	public WeightedDirection applyAction(RelationalPredicate action, PacManState state) {
+		WeightedDirection result = new WeightedDirection();
+		if (applyAction(action, state, result))
+			return result;
+		return null;
+	}
+
+	/**
+	 * Applies an action, writing the direction to move towards/from into a
+	 * reusable result.
+	 * 
+	 * @param action
+	 *            The action to apply.
+	 * @param state
+	 *            The current state.
+	 * @param result
+	 *            The weighted direction to write the result into.
+	 * @return True if the action gives a direction, false if the object is
+	 *         unreachable.
+	 */
+	public boolean applyAction(RelationalPredicate action, PacManState state,
+			WeightedDirection result) {
 		String[] arguments = action.getArguments();
-		double weight = determineWeight(Integer.parseInt(arguments[1]));
+		int value = Integer.parseInt(arguments[1]);
 
 		// First parse the location of the object
 		int x = 0;
 		int y = 0;
-		if (arguments[0].equals("fruit")) {
+		String object = arguments[0];
+		if (object.equals("fruit")) {
 			x = state.getFruit().m_locX;
 			y = state.getFruit().m_locY;
-		} else if (arguments[0].equals("blinky")) {
+		} else if (object.equals("blinky")) {
 			x = state.getGhosts()[Ghost.BLINKY].m_locX;
 			y = state.getGhosts()[Ghost.BLINKY].m_locY;
-		} else if (arguments[0].equals("inky")) {
+		} else if (object.equals("inky")) {
 			x = state.getGhosts()[Ghost.INKY].m_locX;
 			y = state.getGhosts()[Ghost.INKY].m_locY;
-		} else if (arguments[0].equals("pinky")) {
+		} else if (object.equals("pinky")) {
 			x = state.getGhosts()[Ghost.PINKY].m_locX;
 			y = state.getGhosts()[Ghost.PINKY].m_locY;
-		} else if (arguments[0].equals("clyde")) {
+		} else if (object.equals("clyde")) {
 			x = state.getGhosts()[Ghost.CLYDE].m_locX;
 			y = state.getGhosts()[Ghost.CLYDE].m_locY;
 		} else {
-			String[] coords = arguments[0].split("_");
-			x = Integer.parseInt(coords[1]);
-			y = Integer.parseInt(coords[2]);
+			// Coordinates are in the form type_x_y
+			int xStart = object.indexOf('_') + 1;
+			int yStart = object.indexOf('_', xStart) + 1;
+			x = parseCoordinate(object, xStart, yStart - 1);
+			y = parseCoordinate(object, yStart, object.length());
 		}
 
 		DistanceDir distanceGrid = state.getDistanceGrid()[x][y];
 		if (distanceGrid == null)
-			return null;
+			return false;
 		byte path = distanceGrid.getDirection();
-		if (action.getFactName().equals("moveTo"))
-			return new WeightedDirection(path, weight);
-		else if (action.getFactName().equals("moveFrom"))
-			return new WeightedDirection((byte) (-path), weight);
-		else if (action.getFactName().equals("toJunction")) {
+		String actionName = action.getFactName();
+		if (actionName.equals("moveTo"))
+			result.set(path, determineWeight(value));
+		else if (actionName.equals("moveFrom"))
+			result.set((byte) (-path), determineWeight(value));
+		else if (actionName.equals("toJunction"))
 			// Junction value
-			int juncVal = Integer.parseInt(arguments[1]);
+			result.set(path, value);
+		else
+			return false;
+		return true;
+	}
 
-			return new WeightedDirection(distanceGrid.getDirection(), juncVal);
-		}
+	/**
+	 * Parses a non-negative coordinate from part of a string without creating
+	 * substrings.
+	 * 
+	 * @param str
+	 *            The string containing the coordinate.
+	 * @param start
+	 *            The index of the first digit.
+	 * @param end
+	 *            The index after the last digit.
+	 * @return The parsed coordinate.
+	 */
+	private int parseCoordinate(String str, int start, int end) {
+		int value = 0;
+		for (int i = start; i < end; i++)
+			value = value * 10 + (str.charAt(i) - '0');
+		return value;
+	}
 
-		return null;
+	/**
+	 * Resolves the distance argument of a moveTo/moveFrom action when
+	 * distances are computed on demand.
+	 */
+	@Override
+	protected String resolveActionArgument(String action, String[] arguments,
+			int index) {
+		if (distanceFunction_ != null && index == 1)
+			return Integer.toString(distanceFunction_.getDistance(arguments[0]));
+		return super.resolveActionArgument(action, arguments, index);
+	}
+
+	/**
+	 * Gets the distance lookup function.
+	 * 
+	 * @return The distance function, or null if distances are asserted for
+	 *         every object.
+	 */
+	public DistanceFunction getDistanceFunction() {
+		return distanceFunction_;
 	}
 
 	/**
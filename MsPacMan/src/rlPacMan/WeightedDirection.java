@@ -32,9 +32,11 @@ public class WeightedDirection {
 	private byte direction_;
 	private double weight_;
 
+	public WeightedDirection() {
+	}
+
 	public WeightedDirection(byte direction, double weight) {
-		direction_ = direction;
-		weight_ = weight;
+		set(direction, weight);
 	}
 
 	/**
@@ -51,6 +53,19 @@ public class WeightedDirection {
 		return weight_;
 	}
 
+	/**
+	 * Sets the direction and weight, so a single instance can be reused.
+	 * 
+	 * @param direction
+	 *            The direction.
+	 * @param weight
+	 *            The weight of the direction.
+	 */
+	public void set(byte direction, double weight) {
+		direction_ = direction;
+		weight_ = weight;
+	}
+
 	@Override
 	public String toString() {
 		String buffer = null;
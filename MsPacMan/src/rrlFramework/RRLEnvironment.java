@@ -30,6 +30,8 @@ import org.apache.commons.collections.BidiMap;
 import relationalFramework.PolicyActions;
 import relationalFramework.StateSpec;
 import util.MultiMap;
+import util.PhaseTimer;
+import util.PhaseTimer.Phase;
 
 /**
  * An interface for a RRL environment.
@@ -72,6 +74,7 @@ public abstract class RRLEnvironment {
 	private final RRLObservations formObservations(List<String> goalArgs,
 			boolean firstState) {
 		Rete rete = StateSpec.getInstance().getRete();
+		long start = PhaseTimer.start();
 		try {
 			if (!reteDriven_ || firstState) {
 				rete.reset();
@@ -94,10 +97,15 @@ public abstract class RRLEnvironment {
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+		PhaseTimer.stop(Phase.FACT_ASSERTION, start);
 
 		int isTerminal = isTerminal();
-		return compileObservation(rete, StateSpec.getInstance()
-				.generateValidActions(rete), goalReplacementMap_, isTerminal);
+		start = PhaseTimer.start();
+		MultiMap<String, String[]> validActions = StateSpec.getInstance()
+				.generateValidActions(rete);
+		PhaseTimer.stop(Phase.VALID_ACTIONS, start);
+		return compileObservation(rete, validActions, goalReplacementMap_,
+				isTerminal);
 	}
 
 	/**
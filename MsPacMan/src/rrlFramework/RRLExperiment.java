@@ -55,10 +55,10 @@ public class RRLExperiment {
 	public static boolean debugMode_ = false;
 
 	/** The agent to use for experiments. */
-	private RRLAgent agent_;
+	protected RRLAgent agent_;
 
 	/** The environment to use for experiments. */
-	private RRLEnvironment environment_;
+	protected RRLEnvironment environment_;
 
 	/**
 	 * Start a new experiment with the given args.
@@ -0,0 +1,197 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/BlocksWorldModelTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import jess.Fact;
+import jess.Rete;
+
+import org.junit.Test;
+
+import relationalFramework.StateSpec;
+
+import blocksWorld.BlocksWorldModel;
+import cerrla.ProgramArgument;
+
+public class BlocksWorldModelTest {
+	@Test
+	public void testMove() {
+		// b1 on b0, b2 on floor
+		BlocksWorldModel model = new BlocksWorldModel();
+		model.reset(new int[] { 0, 1, 0 }, null);
+		assertFalse(model.isClear(0));
+		assertTrue(model.isClear(1));
+		assertTrue(model.isHighest(1));
+		assertFalse(model.isHighest(2));
+		assertEquals(2, model.getHeight(1));
+
+		assertTrue(model.move(1, 2));
+		assertTrue(model.isClear(0));
+		assertFalse(model.isClear(2));
+		assertTrue(model.isAbove(1, 2));
+		assertFalse(model.isAbove(1, 0));
+
+		// Moving onto the same block does nothing
+		assertFalse(model.move(1, 2));
+		assertTrue(model.move(1, BlocksWorldModel.FLOOR));
+		assertTrue(model.isHighest(0));
+		assertTrue(model.isHighest(1));
+		assertTrue(model.isHighest(2));
+	}
+
+	@Test
+	public void testRandomMovesMatchState() {
+		Random random = new Random(0);
+		for (int episode = 0; episode < 200; episode++) {
+			int numBlocks = random.nextInt(12) + 1;
+			BlocksWorldModel model = new BlocksWorldModel();
+			model.reset(new int[numBlocks], null);
+			for (int step = 0; step < 100; step++) {
+				// Only clear blocks move onto clear blocks, as in the rules
+				int block = random.nextInt(numBlocks);
+				int dest = random.nextInt(numBlocks + 1) - 1;
+				if (!model.isClear(block)
+						|| (dest != BlocksWorldModel.FLOOR && !model
+								.isClear(dest)))
+					continue;
+				model.move(block, dest);
+				assertDerived(model.getState(), model);
+			}
+		}
+	}
+
+	@Test
+	public void testNativeFactsMatchRules() throws Exception {
+		// The Rete written to by the native model
+		ProgramArgument.NATIVE_DYNAMICS.setBooleanValue(true);
+		StateSpec.initInstance("blocksWorld.BlocksWorld");
+		Rete nativeRete = StateSpec.getInstance().getRete();
+
+		// The Rete with the Jess rule dynamics
+		ProgramArgument.NATIVE_DYNAMICS.setBooleanValue(false);
+		StateSpec.initInstance("blocksWorld.BlocksWorld");
+		Rete ruleRete = StateSpec.getInstance().getRete();
+
+		try {
+			Random random = new Random(1);
+			for (int episode = 0; episode < 20; episode++) {
+				int numBlocks = random.nextInt(8) + 1;
+				int[] state = new int[numBlocks];
+				BlocksWorldModel model = new BlocksWorldModel();
+				nativeRete.reset();
+				model.reset(state, nativeRete);
+				nativeRete.run();
+				ruleRete.reset();
+				for (int i = 0; i < numBlocks; i++) {
+					ruleRete.assertString("(on b" + i + " floor)");
+					ruleRete.assertString("(block b" + i + ")");
+				}
+				ruleRete.run();
+				assertEquals(getDynamicFacts(ruleRete),
+						getDynamicFacts(nativeRete));
+
+				for (int step = 0; step < 30; step++) {
+					int block = random.nextInt(numBlocks);
+					int dest = random.nextInt(numBlocks + 1) - 1;
+					if (!model.isClear(block)
+							|| (dest != BlocksWorldModel.FLOOR && !model
+									.isClear(dest))
+							|| model.getState()[block] == dest + 1
+							|| block == dest)
+						continue;
+
+					model.move(block, dest);
+					nativeRete.run();
+					ruleRete.assertString("(move "
+							+ BlocksWorldModel.name(block) + " "
+							+ BlocksWorldModel.name(dest) + ")");
+					ruleRete.run();
+					assertEquals("Episode " + episode + ", step " + step,
+							getDynamicFacts(ruleRete),
+							getDynamicFacts(nativeRete));
+				}
+			}
+		} finally {
+			ProgramArgument.NATIVE_DYNAMICS.setBooleanValue(true);
+			StateSpec.initInstance("blocksWorld.BlocksWorld");
+		}
+	}
+
+	/**
+	 * Gets the facts of the relations the native model maintains.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<String> getDynamicFacts(Rete rete) {
+		Collection<String> relations = Arrays.asList("on", "clear", "above",
+				"height", "highest");
+		List<String> facts = new ArrayList<String>();
+		for (Iterator<Fact> iter = rete.listFacts(); iter.hasNext();) {
+			Fact fact = iter.next();
+			String name = fact.getName();
+			if (relations.contains(name.substring(name.indexOf("::") + 2)))
+				facts.add(fact.toStringWithParens());
+		}
+		Collections.sort(facts);
+		return facts;
+	}
+
+	/**
+	 * Checks the model's derived relations against those calculated directly
+	 * from the state.
+	 */
+	private void assertDerived(int[] state, BlocksWorldModel model) {
+		int numBlocks = state.length;
+		int[] heights = new int[numBlocks];
+		int maxHeight = 0;
+		for (int i = 0; i < numBlocks; i++) {
+			for (int under = i; under != -1; under = state[under] - 1)
+				heights[i]++;
+			maxHeight = Math.max(maxHeight, heights[i]);
+		}
+
+		for (int i = 0; i < numBlocks; i++) {
+			boolean clear = true;
+			for (int j = 0; j < numBlocks; j++)
+				if (state[j] == i + 1)
+					clear = false;
+			assertEquals(clear, model.isClear(i));
+			assertEquals(heights[i], model.getHeight(i));
+			assertEquals(heights[i] == maxHeight, model.isHighest(i));
+			for (int j = 0; j < numBlocks; j++) {
+				boolean above = false;
+				for (int under = state[i] - 1; under != -1; under = state[under] - 1)
+					if (under == j)
+						above = true;
+				assertEquals(above, model.isAbove(i, j));
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/BlocksWorldSolverTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import relationalFramework.StateSpec;
+import rrlFramework.RRLExperiment;
+
+import blocksWorld.BlocksWorldEnvironment;
+import blocksWorld.BlocksWorldSolver;
+
+public class BlocksWorldSolverTest {
+	/** The number of random states to check per goal. */
+	private static final int NUM_STATES = 2000;
+
+	@Test
+	public void testOptimalSteps() {
+		// b0 on floor, b1 on b0, b2 on b1, b3 on floor, b4 on b3
+		int[] state = { 0, 1, 2, 0, 4 };
+		assertEquals(4, BlocksWorldSolver.optimalSteps("on$A$B", state,
+				new int[] { 0, 3 }));
+		assertEquals(3, BlocksWorldSolver.optimalSteps("on$A$B", state,
+				new int[] { 2, 0 }));
+		assertEquals(3, BlocksWorldSolver.optimalSteps("on$A$B", state,
+				new int[] { 0, 2 }));
+		assertEquals(2, BlocksWorldSolver.optimalSteps("clear$A", state,
+				new int[] { 0 }));
+		assertEquals(1, BlocksWorldSolver.optimalSteps("highest$A", state,
+				new int[] { 4 }));
+		assertEquals(3, BlocksWorldSolver.optimalSteps("highest$A", state,
+				new int[] { 0 }));
+		assertEquals(2, BlocksWorldSolver.optimalSteps("stack", state,
+				new int[0]));
+		assertEquals(3, BlocksWorldSolver.optimalSteps("unstack", state,
+				new int[0]));
+		assertEquals(BlocksWorldSolver.UNSOLVED, BlocksWorldSolver
+				.optimalSteps("on$A$Bon$B$C", state, new int[] { 0, 1, 2 }));
+	}
+
+	@Test
+	public void testMatchesOptimalPolicy() {
+		String[] goals = { "on$A$B", "clear$A", "highest$A", "stack",
+				"unstack" };
+		for (String goal : goals) {
+			RRLExperiment.random_.setSeed(0);
+			StateSpec.initInstance("blocksWorld.BlocksWorld", goal);
+			BlocksWorldEnvironment bwe = new BlocksWorldEnvironment();
+			bwe.initialise(0, new String[] { "8" });
+			for (int i = 0; i < NUM_STATES; i++) {
+				bwe.initialiseBlocksState(RRLExperiment.random_.nextInt(7) + 2);
+				int solved = BlocksWorldSolver.optimalSteps(StateSpec
+						.getInstance().getGoalName(), bwe.getState()
+						.getState().clone(), bwe.getGoalBlocks());
+				assertEquals(goal + " " + bwe.getState(),
+						bwe.policyOptimalSteps(), solved);
+			}
+		}
+	}
+}
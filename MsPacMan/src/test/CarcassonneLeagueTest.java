@@ -0,0 +1,76 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/CarcassonneLeagueTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import jCloisterZone.CarcassonneLeague;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import relationalFramework.RelationalPolicy;
+import relationalFramework.StateSpec;
+
+public class CarcassonneLeagueTest {
+	/** The number of games in the league. */
+	private static final int NUM_GAMES = 4;
+
+	/** The league seed. */
+	private static final long SEED = 42;
+
+	@Before
+	public void setUp() {
+		StateSpec.initInstance("jCloisterZone.Carcassonne");
+	}
+
+	/**
+	 * Plays the league games with an empty policy (so the tiles are placed
+	 * randomly, from each game's seeded generator).
+	 */
+	private double[] playLeague(int numThreads) {
+		CarcassonneLeague league = new CarcassonneLeague(NUM_GAMES,
+				numThreads, new String[0]);
+		try {
+			double[] values = league.playGames(new RelationalPolicy(), SEED);
+			assertEquals(0, league.getNumFailed());
+			return values;
+		} finally {
+			league.shutdown();
+		}
+	}
+
+	@Test
+	public void testThreadedMatchesSequential() {
+		double[] sequential = playLeague(1);
+		assertEquals(NUM_GAMES, sequential.length);
+		double[] threaded = playLeague(2);
+		assertTrue(Arrays.toString(sequential) + " vs "
+				+ Arrays.toString(threaded), Arrays.equals(sequential,
+				threaded));
+
+		// The same seed again gives the same games
+		assertTrue(Arrays.equals(threaded, playLeague(2)));
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/CarcassonneRelationalWrapperTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import jCloisterZone.CarcassonneEnvironment;
+import jess.Fact;
+import jess.Rete;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import relationalFramework.RelationalPolicy;
+import relationalFramework.StateSpec;
+import rrlFramework.RRLEnvironment;
+import rrlFramework.RRLObservations;
+
+import com.jcloisterzone.board.Position;
+import com.jcloisterzone.board.Rotation;
+import com.jcloisterzone.game.Game;
+import com.jcloisterzone.game.phase.TilePhase;
+
+public class CarcassonneRelationalWrapperTest {
+	/** The number of random games to play. */
+	private static final int NUM_GAMES = 3;
+
+	private CarcassonneEnvironment environment_;
+
+	@Before
+	public void setUp() {
+		StateSpec.initInstance("jCloisterZone.Carcassonne");
+		environment_ = new CarcassonneEnvironment(true);
+		environment_.initialise(0, new String[0]);
+	}
+
+	@After
+	public void tearDown() {
+		environment_.cleanup();
+	}
+
+	/**
+	 * Gets the facts in the Rete, without their IDs.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<String> getFacts(Rete rete) {
+		List<String> facts = new ArrayList<String>();
+		for (Iterator<Fact> iter = rete.listFacts(); iter.hasNext();)
+			facts.add(iter.next().toStringWithParens());
+		Collections.sort(facts);
+		return facts;
+	}
+
+	@Test
+	public void testIncrementalMatchesFullAssertion() throws Exception {
+		// An empty policy places the tiles randomly
+		RelationalPolicy policy = new RelationalPolicy();
+		int numActions = StateSpec.getInstance().getNumReturnedActions();
+		Random random = new Random(7);
+		for (int i = 0; i < NUM_GAMES; i++) {
+			environment_.setRandomGenerator(new Random(random.nextLong()));
+			RRLObservations observations = environment_.startEpisode();
+			int step = 0;
+			while (observations.isTerminal() == RRLEnvironment.NOT_TERMINAL) {
+				// Compare the incrementally updated facts with a full
+				// re-assertion of the board
+				Rete rete = StateSpec.getInstance().getRete();
+				List<String> incremental = getFacts(rete);
+				environment_.getRelationalWrapper().reassertBoard(rete);
+				rete.run();
+				assertEquals("Game " + i + ", step " + step, incremental,
+						getFacts(rete));
+
+				observations = environment_.step(policy.evaluatePolicy(
+						observations, numActions));
+				step++;
+			}
+		}
+	}
+
+	@Test
+	public void testPlacementIndexMatchesBoard() throws Exception {
+		RelationalPolicy policy = new RelationalPolicy();
+		int numActions = StateSpec.getInstance().getNumReturnedActions();
+		Random random = new Random(11);
+		for (int i = 0; i < NUM_GAMES; i++) {
+			environment_.setRandomGenerator(new Random(random.nextLong()));
+			RRLObservations observations = environment_.startEpisode();
+			int step = 0;
+			while (observations.isTerminal() == RRLEnvironment.NOT_TERMINAL) {
+				// The indexed placements are exactly the board's legal ones
+				Game game = environment_.getGame();
+				if (game.getPhase() instanceof TilePhase) {
+					Map<Position, Set<Rotation>> expected = new HashMap<Position, Set<Rotation>>(
+							game.getBoard().getAvailablePlacements());
+					assertFalse(expected.isEmpty());
+					assertEquals("Game " + i + ", step " + step, expected,
+							environment_.getRelationalWrapper()
+									.getTilePlacements(
+											game.getTilePack()
+													.getCurrentTile()));
+				}
+
+				observations = environment_.step(policy.evaluatePolicy(
+						observations, numActions));
+				step++;
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/DirectionArbiterTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import rlPacMan.DirectionArbiter;
+import rlPacMan.PacManLowAction;
+
+public class DirectionArbiterTest {
+	/** The number of random steps to compare. */
+	private static final int NUM_STEPS = 100000;
+
+	@Test
+	public void testBit() {
+		assertEquals(0, DirectionArbiter.bit(PacManLowAction.NOTHING.ordinal()));
+		assertEquals(1, DirectionArbiter.bit(PacManLowAction.UP.ordinal()));
+		assertEquals(2, DirectionArbiter.bit(PacManLowAction.DOWN.ordinal()));
+		assertEquals(4, DirectionArbiter.bit(PacManLowAction.LEFT.ordinal()));
+		assertEquals(8, DirectionArbiter.bit(PacManLowAction.RIGHT.ordinal()));
+	}
+
+	@Test
+	public void testSingleRuleDecides() {
+		DirectionArbiter arbiter = new DirectionArbiter();
+		arbiter.reset(0xf);
+		arbiter.startRule();
+		arbiter.addDirection((byte) 1, 0.5);
+		arbiter.addDirection((byte) 3, 0.25);
+		assertTrue(arbiter.endRule());
+		assertTrue(arbiter.isDecided());
+		assertEquals(PacManLowAction.UP,
+				arbiter.chooseDirection(PacManLowAction.DOWN));
+
+		// Moving away from LEFT leaves the other legal directions
+		arbiter.reset(0xf);
+		arbiter.startRule();
+		arbiter.addDirection((byte) -3, 1);
+		assertTrue(arbiter.endRule());
+		assertFalse(arbiter.isDecided());
+		assertEquals(0xb, arbiter.getDirections());
+		assertEquals(PacManLowAction.RIGHT,
+				arbiter.chooseDirection(PacManLowAction.RIGHT));
+	}
+
+	@Test
+	public void testMatchesListArbitration() {
+		Random random = new Random(0);
+		DirectionArbiter arbiter = new DirectionArbiter();
+		double[] weights = { -1, -0.5, 0.1, 0.25, 0.5, 1, 3 };
+		for (int step = 0; step < NUM_STEPS; step++) {
+			// Random legal directions, rules and proposals
+			int legal = random.nextInt(16);
+			PacManLowAction lastDirection = PacManLowAction.values()[random
+					.nextInt(5)];
+			int numRules = random.nextInt(5);
+			byte[][] dirs = new byte[numRules][];
+			double[][] ruleWeights = new double[numRules][];
+			for (int r = 0; r < numRules; r++) {
+				int numActions = random.nextInt(4);
+				dirs[r] = new byte[numActions];
+				ruleWeights[r] = new double[numActions];
+				for (int a = 0; a < numActions; a++) {
+					dirs[r][a] = (byte) (random.nextInt(9) - 4);
+					ruleWeights[r][a] = weights[random.nextInt(weights.length)];
+				}
+			}
+
+			boolean[] expectedUtilised = new boolean[numRules];
+			PacManLowAction expected = listArbitration(legal, lastDirection,
+					dirs, ruleWeights, expectedUtilised);
+
+			boolean[] utilised = new boolean[numRules];
+			arbiter.reset(legal);
+			for (int r = 0; r < numRules; r++) {
+				arbiter.startRule();
+				for (int a = 0; a < dirs[r].length; a++)
+					arbiter.addDirection(dirs[r][a], ruleWeights[r][a]);
+				utilised[r] = arbiter.endRule();
+				if (arbiter.isDecided())
+					break;
+			}
+
+			assertEquals("Step " + step, expected,
+					arbiter.chooseDirection(lastDirection));
+			assertEquals("Step " + step, Arrays.toString(expectedUtilised),
+					Arrays.toString(utilised));
+		}
+	}
+
+	/**
+	 * The list based arbitration PacManEnvironment used before the mask based
+	 * arbiter.
+	 */
+	private PacManLowAction listArbitration(int legal,
+			PacManLowAction lastDirection, byte[][] dirs,
+			double[][] ruleWeights, boolean[] utilised) {
+		ArrayList<PacManLowAction> directions = new ArrayList<PacManLowAction>();
+		for (int i = 1; i <= 4; i++)
+			if ((legal & DirectionArbiter.bit(i)) != 0)
+				directions.add(PacManLowAction.values()[i]);
+
+		for (int r = 0; r < dirs.length; r++) {
+			ArrayList<PacManLowAction> actionDirections = new ArrayList<PacManLowAction>();
+			double bestWeight = Integer.MIN_VALUE;
+			for (int a = 0; a < dirs[r].length; a++) {
+				double weighting = ruleWeights[r][a];
+				if (weighting > bestWeight) {
+					actionDirections.clear();
+					bestWeight = weighting;
+				}
+				byte dir = dirs[r][a];
+				if (weighting == bestWeight) {
+					if (dir < 0) {
+						actionDirections.addAll(directions);
+						actionDirections
+								.remove(PacManLowAction.values()[-dir]);
+					} else
+						actionDirections.add(PacManLowAction.values()[dir]);
+				}
+			}
+
+			ArrayList<PacManLowAction> backupDirections = new ArrayList<PacManLowAction>(
+					directions);
+			directions.retainAll(actionDirections);
+			if (directions.isEmpty())
+				directions = backupDirections;
+			if (directions.size() < backupDirections.size())
+				utilised[r] = true;
+			if (directions.size() == 1) {
+				lastDirection = directions.get(0);
+				break;
+			}
+		}
+
+		if (!directions.contains(lastDirection)) {
+			for (PacManLowAction dir : directions) {
+				if (dir != lastDirection.opposite()) {
+					lastDirection = dir;
+				}
+			}
+		}
+		return lastDirection;
+	}
+}
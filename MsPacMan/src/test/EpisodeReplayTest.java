@@ -0,0 +1,97 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/EpisodeReplayTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+import rlPacMan.EpisodeRecorder;
+import rlPacMan.EpisodeReplayer;
+import rlPacMan.PacManGameInstance;
+import rlPacMan.PacManLowAction;
+
+public class EpisodeReplayTest {
+	/** The directions the random agent chooses from. */
+	private static final PacManLowAction[] DIRECTIONS = { PacManLowAction.UP,
+			PacManLowAction.DOWN, PacManLowAction.LEFT, PacManLowAction.RIGHT };
+
+	@Test
+	public void testReplayMatchesRecording() throws Exception {
+		File file = File.createTempFile("pacman", ".episodes");
+		file.deleteOnExit();
+
+		// Record some random episodes, one cut short
+		PacManGameInstance game = new PacManGameInstance(true, true, false,
+				false, false);
+		game.setRecorder(new EpisodeRecorder(file, false, false, false));
+		Random random = new Random(1);
+		int steps = 0;
+		for (int episode = 0; episode < 4; episode++) {
+			game.startEpisode(random.nextLong());
+			int maxSteps = (episode == 2) ? 50 : 3000;
+			for (int i = 0; i < maxSteps && !game.isGameOver(); i++) {
+				game.step(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+				steps++;
+			}
+		}
+		game.stopRecording();
+
+		// Replay with and without fast-forwarding
+		EpisodeReplayer replayer = new EpisodeReplayer(file, true);
+		assertEquals(0, replayer.replay(false));
+		assertEquals(4, replayer.getEpisodes());
+		assertEquals(steps, replayer.getSteps());
+
+		replayer = new EpisodeReplayer(file, false);
+		assertEquals(0, replayer.replay(false));
+
+		// Replay several episodes side by side (with an uneven last batch)
+		replayer = new EpisodeReplayer(file, true, 3, 2);
+		assertEquals(0, replayer.replay(false));
+		assertEquals(4, replayer.getEpisodes());
+		assertEquals(steps, replayer.getSteps());
+	}
+
+	@Test
+	public void testReplayDetectsDifferences() throws Exception {
+		File file = File.createTempFile("pacman", ".episodes");
+		file.deleteOnExit();
+
+		// Record the game without dots...
+		PacManGameInstance game = new PacManGameInstance(true, true, true,
+				true, false);
+		game.setRecorder(new EpisodeRecorder(file, false, false, false));
+		Random random = new Random(2);
+		game.startEpisode(random.nextLong());
+		for (int i = 0; i < 200 && !game.isGameOver(); i++)
+			game.step(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+		game.stopRecording();
+
+		// ...but claim it had them, so the replay differs
+		EpisodeReplayer replayer = new EpisodeReplayer(file, true);
+		assertEquals(1, replayer.replay(false));
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/GameSnapshotTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import msPacMan.GameModel;
+import msPacMan.GameSnapshot;
+import msPacMan.PacMan;
+
+import org.junit.Test;
+
+public class GameSnapshotTest {
+	/** The number of steps played before the snapshot. */
+	private static final int PRE_STEPS = 10;
+
+	/** The number of steps played after the snapshot. */
+	private static final int NUM_STEPS = 150;
+
+	/**
+	 * Creates a new game, started and ready for the agent.
+	 */
+	private PacMan createGame(int seed) {
+		PacMan pacMan = PacManTestUtils.createGame(seed, false);
+		pacMan.tickUntilLearning(0, true);
+		return pacMan;
+	}
+
+	@Test
+	public void testRestoreRoundTrip() {
+		for (int seed = 0; seed < 5; seed++) {
+			PacMan pacMan = createGame(seed);
+			Random agent = new Random(seed);
+			play(pacMan, agent, PRE_STEPS);
+			assertFalse(isGameOver(pacMan));
+
+			// Snapshot, then play on (changing the game)
+			GameSnapshot snapshot = pacMan.snapshot();
+			String before = PacManTestUtils.observe(pacMan);
+			long agentSeed = agent.nextLong();
+			List<String> trace = play(pacMan, new Random(agentSeed), NUM_STEPS);
+			assertFalse(trace.isEmpty());
+			assertFalse(before.equals(PacManTestUtils.observe(pacMan)));
+
+			// Restoring returns the game to the snapshot, and it plays on
+			// exactly as it did the first time
+			pacMan.restore(snapshot);
+			assertEquals("Seed " + seed, before, PacManTestUtils
+					.observe(pacMan));
+			assertEquals("Seed " + seed, trace, play(pacMan, new Random(
+					agentSeed), NUM_STEPS));
+		}
+	}
+
+	@Test
+	public void testFork() {
+		PacMan pacMan = createGame(3);
+		play(pacMan, new Random(3), PRE_STEPS);
+		assertFalse(isGameOver(pacMan));
+		String before = PacManTestUtils.observe(pacMan);
+
+		// The fork plays on as the game would, without changing it
+		PacMan fork = pacMan.fork();
+		assertEquals(before, PacManTestUtils.observe(fork));
+		List<String> forkTrace = play(fork, new Random(4), NUM_STEPS);
+		assertFalse(forkTrace.isEmpty());
+		assertEquals(before, PacManTestUtils.observe(pacMan));
+		assertEquals(forkTrace, play(pacMan, new Random(4), NUM_STEPS));
+	}
+
+	private boolean isGameOver(PacMan pacMan) {
+		return pacMan.getGameModel().m_state == GameModel.STATE_GAMEOVER;
+	}
+
+	/**
+	 * Plays random steps (or until the game is over), recording the game
+	 * after each.
+	 */
+	private List<String> play(PacMan pacMan, Random agent, int numSteps) {
+		List<String> trace = new ArrayList<String>();
+		GameModel model = pacMan.getGameModel();
+		for (int step = 0; step < numSteps && !isGameOver(pacMan); step++) {
+			pacMan.simulateKeyPress(PacManTestUtils.KEYS[agent
+					.nextInt(PacManTestUtils.KEYS.length)]);
+			pacMan.tickUntilLearning(model.m_player.m_deltaMax * 2 - 1, true);
+			model.m_player.m_deltaLocX = 0;
+			model.m_player.m_deltaLocY = 0;
+			trace.add(PacManTestUtils.observe(pacMan));
+		}
+		return trace;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/LevelGeometryTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import mario.LevelGeometry;
+import mario.ObservationConstants;
+import mario.RLMarioMovement;
+
+import org.junit.Test;
+
+public class LevelGeometryTest {
+	/** The observation field size. */
+	private static final int WIDTH = 22, HEIGHT = 16;
+
+	/** The number of random levels to check. */
+	private static final int NUM_LEVELS = 500;
+
+	/**
+	 * Creates a random level field with ground (and pits), floating bricks
+	 * and boxes, and coins.
+	 */
+	private byte[][] randomLevel(Random random) {
+		byte[][] levelObs = new byte[HEIGHT][WIDTH];
+		int ground = HEIGHT - 3;
+		for (int x = 0; x < WIDTH; x++) {
+			if (random.nextInt(6) == 0)
+				ground = HEIGHT - 2 - random.nextInt(5);
+			// Pits
+			if (random.nextInt(5) == 0)
+				continue;
+			for (int y = ground; y < HEIGHT; y++)
+				levelObs[y][x] = ObservationConstants.LVL_BORDER_CANNOT_PASS_THROUGH;
+		}
+		for (int i = random.nextInt(15); i > 0; i--) {
+			int x = random.nextInt(WIDTH);
+			int y = random.nextInt(HEIGHT);
+			switch (random.nextInt(4)) {
+			case 0:
+				levelObs[y][x] = ObservationConstants.LVL_BRICK;
+				break;
+			case 1:
+				levelObs[y][x] = ObservationConstants.LVL_BREAKABLE_BRICK;
+				break;
+			case 2:
+				levelObs[y][x] = ObservationConstants.LVL_UNBREAKABLE_BRICK;
+				break;
+			default:
+				levelObs[y][x] = ObservationConstants.LVL_COIN;
+			}
+		}
+		return levelObs;
+	}
+
+	/**
+	 * The per-frame scan of the observation field the geometry replaces.
+	 */
+	private List<String> scanField(byte[][] levelObs, int marioMode) {
+		List<String> things = new ArrayList<String>();
+		for (int y = 0; y < levelObs.length; y++) {
+			for (int x = 0; x < levelObs[y].length; x++) {
+				switch (levelObs[y][x]) {
+				case (ObservationConstants.LVL_BRICK):
+				case (ObservationConstants.LVL_BREAKABLE_BRICK):
+					if (canMarioFit(x, y, levelObs, marioMode)) {
+						things.add("brick " + x + " " + y + " 1");
+						break;
+					}
+				case (ObservationConstants.LVL_UNBREAKABLE_BRICK):
+					if (canMarioFit(x, y, levelObs, marioMode)) {
+						things.add("box " + x + " " + y + " 1");
+						break;
+					}
+				case (ObservationConstants.LVL_BORDER_CANNOT_PASS_THROUGH):
+					checkForPit(levelObs, x, y, things);
+					break;
+				case (ObservationConstants.LVL_COIN):
+					things.add("coin " + x + " " + y + " 1");
+					break;
+				}
+			}
+		}
+		Collections.sort(things);
+		return things;
+	}
+
+	private boolean canMarioFit(int x, int y, byte[][] levelObs, int marioMode) {
+		int space = (marioMode != 0) ? 2 : 1;
+		for (int yMod = 1; yMod <= space; yMod++) {
+			if (y + yMod >= levelObs.length
+					|| !ObservationConstants.isEmptyCell(levelObs[y + yMod][x]))
+				return false;
+		}
+		return true;
+	}
+
+	private void checkForPit(byte[][] levelObs, int x, int y,
+			List<String> things) {
+		if (((y - 1) >= 0)
+				&& ObservationConstants.isEmptyCell(levelObs[y - 1][x])) {
+			int xMod = x + 1;
+			if ((xMod < levelObs[y].length)
+					&& ObservationConstants.isEmptyCell(levelObs[y][xMod])) {
+				boolean isPit = true;
+				int yMod = y + 1;
+				while (isPit && yMod < levelObs.length) {
+					isPit = ObservationConstants
+							.isEmptyCell(levelObs[yMod][xMod]);
+					yMod++;
+				}
+
+				if (isPit) {
+					xMod++;
+					boolean isSolid = false;
+					while (!isSolid) {
+						xMod++;
+						if (xMod >= levelObs[y].length)
+							break;
+						int yScan = Math.max(0, y
+								- RLMarioMovement.MAX_JUMP_HEIGHT / 16 + 1);
+						while (yScan < levelObs.length && !isSolid) {
+							if (!ObservationConstants
+									.isEmptyCell(levelObs[yScan][xMod])) {
+								isSolid = true;
+								if (yScan < y)
+									y = yScan;
+							}
+							yScan++;
+						}
+					}
+					things.add("pit " + (x + 1) + " " + y + " "
+							+ (xMod - x - 1));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the geometry's things, relative to the field.
+	 */
+	private List<String> geometryThings(LevelGeometry geometry, int originX,
+			int originY) {
+		List<String> things = new ArrayList<String>();
+		for (int x = 0; x < WIDTH; x++) {
+			for (LevelGeometry.StaticThing thing : geometry.getThings(originX
+					+ x)) {
+				int relX = thing.getColumn() - originX;
+				int relY = thing.getRow() - originY;
+				if (relX >= 0 && relX < WIDTH && relY >= 0 && relY < HEIGHT)
+					things.add(thing.getCondition() + " " + relX + " " + relY
+							+ " " + thing.getWidth());
+			}
+		}
+		Collections.sort(things);
+		return things;
+	}
+
+	@Test
+	public void testMatchesFieldScan() {
+		Random random = new Random(1);
+		for (int i = 0; i < NUM_LEVELS; i++) {
+			byte[][] levelObs = randomLevel(random);
+			for (int marioMode = 0; marioMode <= 1; marioMode++) {
+				int originX = random.nextInt(100);
+				int originY = random.nextInt(8);
+				LevelGeometry geometry = new LevelGeometry();
+				geometry.update(levelObs, originX, originY, marioMode);
+				assertEquals(scanField(levelObs, marioMode), geometryThings(
+						geometry, originX, originY));
+			}
+		}
+	}
+
+	@Test
+	public void testChangedTerrain() {
+		byte[][] levelObs = new byte[HEIGHT][WIDTH];
+		for (int x = 0; x < WIDTH; x++)
+			if (x < 5 || x > 8)
+				levelObs[HEIGHT - 2][x] = levelObs[HEIGHT - 1][x] = ObservationConstants.LVL_BORDER_CANNOT_PASS_THROUGH;
+		levelObs[HEIGHT - 4][10] = ObservationConstants.LVL_COIN;
+		levelObs[HEIGHT - 6][12] = ObservationConstants.LVL_BRICK;
+
+		LevelGeometry geometry = new LevelGeometry();
+		geometry.update(levelObs, 0, 0, 0);
+		assertEquals(scanField(levelObs, 0), geometryThings(geometry, 0, 0));
+		assertTrue(geometryThings(geometry, 0, 0).contains("pit 5 14 4"));
+
+		// Collect the coin, break the brick and fill the pit
+		levelObs[HEIGHT - 4][10] = 0;
+		levelObs[HEIGHT - 6][12] = 0;
+		for (int x = 5; x <= 8; x++)
+			levelObs[HEIGHT - 1][x] = ObservationConstants.LVL_BORDER_CANNOT_PASS_THROUGH;
+		geometry.update(levelObs, 0, 0, 0);
+		assertEquals(scanField(levelObs, 0), geometryThings(geometry, 0, 0));
+		assertTrue(geometryThings(geometry, 0, 0).isEmpty());
+
+		// Scroll onto a new pit and coin
+		byte[][] scrolled = new byte[HEIGHT][WIDTH];
+		for (int y = 0; y < HEIGHT; y++)
+			System.arraycopy(levelObs[y], 3, scrolled[y], 0, WIDTH - 3);
+		scrolled[HEIGHT - 2][WIDTH - 3] = scrolled[HEIGHT - 1][WIDTH - 3] = ObservationConstants.LVL_BORDER_CANNOT_PASS_THROUGH;
+		scrolled[HEIGHT - 3][WIDTH - 2] = ObservationConstants.LVL_COIN;
+		geometry.update(scrolled, 3, 0, 0);
+		assertEquals(scanField(scrolled, 0), geometryThings(geometry, 3, 0));
+		assertTrue(geometryThings(geometry, 3, 0).contains("pit 20 14 2"));
+	}
+}
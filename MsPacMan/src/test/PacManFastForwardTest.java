@@ -0,0 +1,154 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/PacManFastForwardTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import msPacMan.GameModel;
+import msPacMan.PacMan;
+
+import org.junit.Test;
+
+public class PacManFastForwardTest {
+	@Test
+	public void testDeathsMatchTickLoop() {
+		for (int seed = 0; seed < 5; seed++) {
+			int[] result = compareGames(seed, false, 3000);
+			// Deaths should have been fast-forwarded
+			assertTrue(result[1] > 0);
+		}
+	}
+
+	@Test
+	public void testPlayMatchesTickLoop() {
+		for (int seed = 0; seed < 5; seed++) {
+			PacMan ticked = PacManTestUtils.createGame(seed, false);
+			PacMan skipped = PacManTestUtils.createGame(seed, false);
+			ticked.tickUntilLearning(0, false);
+			skipped.tickUntilLearning(0, false);
+
+			// Step the game a tick at a time, skipping ticks where possible
+			// and ticking the other game through them
+			Random agent = new Random(seed);
+			int playSkips = 0;
+			for (int step = 0; step < 1000
+					&& ticked.getGameModel().m_state != GameModel.STATE_GAMEOVER; step++) {
+				int key = PacManTestUtils.KEYS[agent
+						.nextInt(PacManTestUtils.KEYS.length)];
+				ticked.simulateKeyPress(key);
+				skipped.simulateKeyPress(key);
+
+				int minTicks = ticked.getGameModel().m_player.m_deltaMax * 2 - 1;
+				for (int i = 0; (i < minTicks)
+						|| (!ticked.getGameModel().isLearning()); i++) {
+					boolean playing = skipped.getGameModel().isLearning();
+					int skip = skipped.skipIdleTicks(minTicks - i - 1);
+					for (int j = 0; j < skip; j++)
+						ticked.tick(false);
+					i += skip;
+					if (playing)
+						playSkips += skip;
+					String message = "Seed " + seed + ", step " + step
+							+ ", tick " + i;
+					assertEquals(message, PacManTestUtils.observe(ticked),
+							PacManTestUtils.observe(skipped));
+					assertTrue(message, ticked.snapshot().equals(
+							skipped.snapshot()));
+
+					ticked.tick(false);
+					skipped.tick(false);
+				}
+				resetDeltas(ticked);
+				resetDeltas(skipped);
+			}
+			// Ticks of play should have been skipped
+			assertTrue(playSkips > 0);
+		}
+	}
+
+	@Test
+	public void testLevelsMatchTickLoop() {
+		// With no dots, every level completes immediately (the game speed
+		// breaks down after several hundred levels, so only play a few).
+		for (int seed = 0; seed < 3; seed++) {
+			int[] result = compareGames(seed, true, 100);
+			assertTrue(result[1] > 0);
+		}
+	}
+
+	/**
+	 * Plays the same game with and without fast-forwarding, asserting the
+	 * games are identical after every step.
+	 * 
+	 * @param seed
+	 *            The seed for the game and agent.
+	 * @param noDots
+	 *            If the game has no dots or powerdots.
+	 * @param maxSteps
+	 *            The maximum number of agent steps to play.
+	 * @return The number of steps played and the number of ticks skipped.
+	 */
+	private int[] compareGames(int seed, boolean noDots, int maxSteps) {
+		PacMan ticked = PacManTestUtils.createGame(seed, noDots);
+		PacMan skipped = PacManTestUtils.createGame(seed, noDots);
+		assertTrue(skipped.isHeadless());
+
+		assertEquals(ticked.tickUntilLearning(0, false),
+				skipped.tickUntilLearning(0, true));
+		assertEquals(PacManTestUtils.observe(ticked),
+				PacManTestUtils.observe(skipped));
+
+		Random agent = new Random(seed);
+		int steps = 0;
+		int skippedTicks = 0;
+		while (ticked.getGameModel().m_state != GameModel.STATE_GAMEOVER
+				&& steps < maxSteps) {
+			int key = PacManTestUtils.KEYS[agent
+					.nextInt(PacManTestUtils.KEYS.length)];
+			ticked.simulateKeyPress(key);
+			skipped.simulateKeyPress(key);
+
+			int minTicks = ticked.getGameModel().m_player.m_deltaMax * 2 - 1;
+			int tickCount = ticked.tickUntilLearning(minTicks, false);
+			int skipCount = skipped.tickUntilLearning(minTicks, true);
+			assertEquals("Step " + steps, tickCount, skipCount);
+			if (tickCount > minTicks)
+				skippedTicks += tickCount - minTicks;
+			resetDeltas(ticked);
+			resetDeltas(skipped);
+
+			assertEquals("Step " + steps, PacManTestUtils.observe(ticked),
+					PacManTestUtils.observe(skipped));
+			assertTrue("Step " + steps, ticked.snapshot().equals(
+					skipped.snapshot()));
+			steps++;
+		}
+		return new int[] { steps, skippedTicks };
+	}
+
+	private void resetDeltas(PacMan pacMan) {
+		pacMan.getGameModel().m_player.m_deltaLocX = 0;
+		pacMan.getGameModel().m_player.m_deltaLocY = 0;
+	}
+}
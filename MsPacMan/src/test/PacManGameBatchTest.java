@@ -0,0 +1,107 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/PacManGameBatchTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import rlPacMan.PacManGameBatch;
+import rlPacMan.PacManGameInstance;
+import rlPacMan.PacManLowAction;
+
+public class PacManGameBatchTest {
+	/** The directions the random agents choose from. */
+	private static final PacManLowAction[] DIRECTIONS = { PacManLowAction.UP,
+			PacManLowAction.DOWN, PacManLowAction.LEFT, PacManLowAction.RIGHT };
+
+	/** The number of games in the batch. */
+	private static final int NUM_GAMES = 6;
+
+	/** The maximum number of steps per episode. */
+	private static final int MAX_STEPS = 600;
+
+	@Test
+	public void testGamesAreIndependent() {
+		PacManGameBatch batch = new PacManGameBatch(NUM_GAMES, 3, true, false,
+				false, false);
+		assertEquals(NUM_GAMES, batch.size());
+		for (int i = 0; i < NUM_GAMES; i++)
+			for (int j = i + 1; j < NUM_GAMES; j++) {
+				assertNotSame(batch.getGame(i).getModel(), batch.getGame(j)
+						.getModel());
+				assertNotSame(batch.getGame(i).getDistanceGridCache(), batch
+						.getGame(j).getDistanceGridCache());
+			}
+
+		// The same games played alone, one after another
+		PacManGameInstance[] solos = new PacManGameInstance[NUM_GAMES];
+		for (int i = 0; i < NUM_GAMES; i++)
+			solos[i] = new PacManGameInstance(true, true, false, false, false);
+
+		for (int episode = 0; episode < 2; episode++) {
+			// Play every game side by side, on the batch's threads
+			batch.startEpisodes(new Random(episode));
+			List<List<String>> sideTraces = new ArrayList<List<String>>();
+			Random[] agents = new Random[NUM_GAMES];
+			for (int i = 0; i < NUM_GAMES; i++) {
+				sideTraces.add(new ArrayList<String>());
+				sideTraces.get(i).add(
+						PacManTestUtils.observe(batch.getGame(i).getModel()));
+				agents[i] = new Random(i);
+			}
+			for (int step = 0; step < MAX_STEPS && !batch.isFinished(); step++) {
+				PacManLowAction[] actions = new PacManLowAction[NUM_GAMES];
+				for (int i = 0; i < NUM_GAMES; i++)
+					if (!batch.getGame(i).isGameOver())
+						actions[i] = DIRECTIONS[agents[i]
+								.nextInt(DIRECTIONS.length)];
+				batch.step(actions);
+				for (int i = 0; i < NUM_GAMES; i++)
+					if (actions[i] != null)
+						sideTraces.get(i).add(
+								PacManTestUtils.observe(batch.getGame(i)
+										.getModel()));
+			}
+
+			// Each game must play exactly as it does alone
+			Random seeds = new Random(episode);
+			for (int i = 0; i < NUM_GAMES; i++) {
+				PacManGameInstance solo = solos[i];
+				solo.startEpisode(seeds.nextLong());
+				List<String> soloTrace = new ArrayList<String>();
+				soloTrace.add(PacManTestUtils.observe(solo.getModel()));
+				Random agent = new Random(i);
+				for (int step = 0; step < MAX_STEPS && !solo.isGameOver(); step++) {
+					solo.step(DIRECTIONS[agent.nextInt(DIRECTIONS.length)]);
+					soloTrace.add(PacManTestUtils.observe(solo.getModel()));
+				}
+				assertEquals("Game " + i, soloTrace, sideTraces.get(i));
+			}
+		}
+		batch.shutdown();
+	}
+}
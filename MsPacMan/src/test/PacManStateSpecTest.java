@@ -22,8 +22,22 @@
 package test;
 
 import static org.junit.Assert.*;
+
+import java.util.Iterator;
+
+import jess.Fact;
+import jess.Rete;
+
+import msPacMan.GameModel;
+import msPacMan.PacMan;
+
+import cerrla.ProgramArgument;
+
 import relationalFramework.RelationalRule;
 import relationalFramework.StateSpec;
+import rlPacMan.DistanceDir;
+import rlPacMan.PacManStateSpec;
+import util.MultiMap;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -81,4 +95,65 @@ public class PacManStateSpecTest {
 		assertEquals(rule.getAction(), StateSpec
 				.toRelationalPredicate("(fromGhost ?Ghost ?Dist0)"));
 	}
+
+	@Test
+	public void testLazyDistances() throws Exception {
+		ProgramArgument.LAZY_DISTANCES.setBooleanValue(true);
+		try {
+			StateSpec.initInstance("rlPacMan.PacMan");
+			PacManStateSpec spec = (PacManStateSpec) StateSpec.getInstance();
+			PacMan pacMan = new PacMan();
+			pacMan.init(true);
+			pacMan.reinit();
+			GameModel model = pacMan.getGameModel();
+			// No path distances: the Euclidean distance is used
+			spec.getDistanceFunction().setState(model,
+					new DistanceDir[model.m_gameSizeX][model.m_gameSizeY]);
+			int[][] dots = { { 1, 1 }, { 6, 5 }, { 26, 29 } };
+
+			Rete rete = spec.getRete();
+			rete.reset();
+			for (int[] dot : dots)
+				rete.assertString("(dot dot_" + dot[0] + "_" + dot[1] + ")");
+			rete.run();
+
+			// The valid actions carry the distances...
+			MultiMap<String, String[]> validActions = spec
+					.generateValidActions(rete);
+			for (int[] dot : dots) {
+				String distance = Integer.toString(spec.getDistanceFunction()
+						.getDistance(dot[0], dot[1]));
+				String dotName = "dot_" + dot[0] + "_" + dot[1];
+				boolean found = false;
+				for (String[] args : validActions.get("moveTo"))
+					if (args[0].equals(dotName))
+						found = args[1].equals(distance);
+				assertTrue(dotName, found);
+			}
+			// ...without asserting any distance facts
+			assertEquals(0, countDistances(rete));
+
+			// Only the distance a rule references is asserted
+			rete.eval("(defrule nearDot (dot dot_6_5) (distance dot_6_5 ?B) =>)");
+			rete.run();
+			assertEquals(1, countDistances(rete));
+			spec.generateValidActions(rete);
+			assertEquals(1, countDistances(rete));
+		} finally {
+			ProgramArgument.LAZY_DISTANCES.setBooleanValue(false);
+			StateSpec.initInstance("rlPacMan.PacMan");
+		}
+	}
+
+	/**
+	 * Counts the distance facts in the Rete.
+	 */
+	@SuppressWarnings("unchecked")
+	private int countDistances(Rete rete) {
+		int count = 0;
+		for (Iterator<Fact> iter = rete.listFacts(); iter.hasNext();)
+			if (iter.next().getName().endsWith("::distance"))
+				count++;
+		return count;
+	}
 }
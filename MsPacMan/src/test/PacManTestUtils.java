@@ -0,0 +1,104 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/PacManTestUtils.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import java.awt.event.KeyEvent;
+
+import msPacMan.GameModel;
+import msPacMan.GameRandom;
+import msPacMan.Ghost;
+import msPacMan.PacMan;
+
+/**
+ * The game setup and observation shared by the Ms. Pac-Man tests.
+ *
+ * @author Sam Sarjant
+ */
+public class PacManTestUtils {
+	/** The keys the random agents press. */
+	public static final int[] KEYS = { KeyEvent.VK_UP, KeyEvent.VK_DOWN,
+			KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT };
+
+	private PacManTestUtils() {
+	}
+
+	/**
+	 * Creates a new headless game, as the environment does. The game is
+	 * ready to start, but has not been ticked.
+	 *
+	 * @param seed
+	 *            The seed for the game's random generator.
+	 * @param noDots
+	 *            If the game has no dots or powerdots.
+	 * @return The new game.
+	 */
+	public static PacMan createGame(long seed, boolean noDots) {
+		PacMan pacMan = new PacMan();
+		pacMan.init(true);
+		pacMan.reinit();
+		GameModel model = pacMan.getGameModel();
+		model.noDots_ = noDots;
+		model.noPowerDots_ = noDots;
+		model.setRandom(new GameRandom(seed));
+		model.m_state = GameModel.STATE_NEWGAME;
+		return pacMan;
+	}
+
+	/**
+	 * Records the observable state of a game.
+	 *
+	 * @param pacMan
+	 *            The game.
+	 * @return A string of the game state.
+	 */
+	public static String observe(PacMan pacMan) {
+		return observe(pacMan.getGameModel());
+	}
+
+	/**
+	 * Records the observable state of a game.
+	 *
+	 * @param model
+	 *            The game's model.
+	 * @return A string of the game state.
+	 */
+	public static String observe(GameModel model) {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append(model.m_state + " " + model.m_stage + " "
+				+ model.m_nLives + " " + model.m_player.m_score + " "
+				+ model.m_highScore + " " + model.m_dots.size() + " "
+				+ model.m_powerdots.size());
+		buffer.append(" player " + model.m_player.m_locX + ","
+				+ model.m_player.m_locY + " " + model.m_player.m_deltaLocX
+				+ "," + model.m_player.m_deltaLocY);
+		for (Ghost ghost : model.m_ghosts) {
+			buffer.append(" " + ghost + " " + ghost.m_locX + ","
+					+ ghost.m_locY + " " + ghost.m_deltaLocX + ","
+					+ ghost.m_deltaLocY + " " + ghost.isEdible() + " "
+					+ ghost.isBlinking() + " " + ghost.m_nTicks2Exit + " "
+					+ ghost.m_bEaten);
+		}
+		buffer.append(" fruit " + model.m_fruit.m_locX + ","
+				+ model.m_fruit.m_locY + " " + model.m_fruit.isEdible());
+		return buffer.toString();
+	}
+}
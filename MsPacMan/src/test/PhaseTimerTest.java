@@ -0,0 +1,95 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/test/PhaseTimerTest.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import util.PhaseTimer;
+import util.PhaseTimer.Phase;
+
+public class PhaseTimerTest {
+	@Before
+	public void setUp() {
+		PhaseTimer.reset();
+		PhaseTimer.setEnabled(true);
+	}
+
+	@After
+	public void tearDown() {
+		PhaseTimer.setEnabled(false);
+		PhaseTimer.reset();
+	}
+
+	@Test
+	public void testNestedPhasesExclusive() {
+		long before = System.nanoTime();
+		long outer = PhaseTimer.start();
+		long innerBefore = System.nanoTime();
+		long inner = PhaseTimer.start();
+		PhaseTimer.stop(Phase.COVERING, inner);
+		long innerAfter = System.nanoTime();
+		PhaseTimer.stop(Phase.POLICY_EVALUATION, outer);
+		long after = System.nanoTime();
+
+		long covering = PhaseTimer.getNanos(Phase.COVERING);
+		long evaluation = PhaseTimer.getNanos(Phase.POLICY_EVALUATION);
+		assertEquals(1, PhaseTimer.getCount(Phase.COVERING));
+		assertEquals(1, PhaseTimer.getCount(Phase.POLICY_EVALUATION));
+		// The inner phase is within its span, and the outer phase doesn't
+		// count it again
+		assertTrue(covering >= 0);
+		assertTrue(covering <= innerAfter - innerBefore);
+		assertTrue(evaluation >= 0);
+		assertTrue(covering + evaluation <= after - before);
+	}
+
+	@Test
+	public void testCounts() {
+		for (int i = 0; i < 3; i++) {
+			long outer = PhaseTimer.start();
+			for (int j = 0; j < 2; j++)
+				PhaseTimer.stop(Phase.VALID_ACTIONS, PhaseTimer.start());
+			PhaseTimer.stop(Phase.POLICY_EVALUATION, outer);
+		}
+		assertEquals(6, PhaseTimer.getCount(Phase.VALID_ACTIONS));
+		assertEquals(3, PhaseTimer.getCount(Phase.POLICY_EVALUATION));
+		assertEquals(0, PhaseTimer.getCount(Phase.COVERING));
+
+		PhaseTimer.reset();
+		assertEquals(0, PhaseTimer.getCount(Phase.VALID_ACTIONS));
+		assertEquals(0, PhaseTimer.getNanos(Phase.POLICY_EVALUATION));
+	}
+
+	@Test
+	public void testDisabled() {
+		PhaseTimer.setEnabled(false);
+		long start = PhaseTimer.start();
+		PhaseTimer.setEnabled(true);
+		PhaseTimer.stop(Phase.CE_UPDATE, start);
+		assertEquals(0, PhaseTimer.getCount(Phase.CE_UPDATE));
+		assertEquals(0, PhaseTimer.getNanos(Phase.CE_UPDATE));
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ *    This file is part of the CERRLA algorithm
+ *
+ *    CERRLA is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    CERRLA is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with CERRLA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    src/util/PhaseTimer.java
+ *    Copyright (C) 2012 Samuel Sarjant
+ */
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Accumulates the time spent in each phase of an episode step. Timing is off
+ * unless enabled, in which case start/stop pairs cost a couple of
+ * System.nanoTime() calls. Phases nested within another phase on the same
+ * thread (such as covering within policy evaluation) are only counted
+ * towards the inner phase.
+ *
+ * @author Sam Sarjant
+ */
+public class PhaseTimer {
+	/** The token returned by {@link #start()} when timing is disabled. */
+	private static final long DISABLED = Long.MIN_VALUE;
+
+	/** If timing is enabled. */
+	private static volatile boolean enabled_ = false;
+
+	/** The number of times each phase has been timed. */
+	private static final AtomicLongArray counts_ = new AtomicLongArray(
+			Phase.values().length);
+
+	/** The total (exclusive) nanoseconds spent in each phase. */
+	private static final AtomicLongArray totals_ = new AtomicLongArray(
+			Phase.values().length);
+
+	/** The total nanoseconds already attributed to a phase on this thread. */
+	private static final ThreadLocal<long[]> attributed_ = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+
+	/**
+	 * Gets the number of times a phase has been timed.
+	 *
+	 * @param phase
+	 *            The phase.
+	 * @return The number of start/stop pairs recorded for the phase.
+	 */
+	public static long getCount(Phase phase) {
+		return counts_.get(phase.ordinal());
+	}
+
+	/**
+	 * Gets the total time spent in a phase.
+	 *
+	 * @param phase
+	 *            The phase.
+	 * @return The time (in nanoseconds) spent in the phase, excluding nested
+	 *         phases.
+	 */
+	public static long getNanos(Phase phase) {
+		return totals_.get(phase.ordinal());
+	}
+
+	public static boolean isEnabled() {
+		return enabled_;
+	}
+
+	/**
+	 * Clears the recorded times.
+	 */
+	public static void reset() {
+		for (int i = 0; i < totals_.length(); i++) {
+			counts_.set(i, 0);
+			totals_.set(i, 0);
+		}
+	}
+
+	public static void setEnabled(boolean enabled) {
+		enabled_ = enabled;
+	}
+
+	/**
+	 * Starts timing a phase.
+	 *
+	 * @return The token to pass to {@link #stop(Phase, long)}.
+	 */
+	public static long start() {
+		if (!enabled_)
+			return DISABLED;
+		return System.nanoTime() - attributed_.get()[0];
+	}
+
+	/**
+	 * Stops timing a phase, recording the time since the matching
+	 * {@link #start()} not already recorded by a nested phase.
+	 *
+	 * @param phase
+	 *            The phase being timed.
+	 * @param start
+	 *            The token returned by {@link #start()}.
+	 */
+	public static void stop(Phase phase, long start) {
+		if (start == DISABLED)
+			return;
+		long[] attributed = attributed_.get();
+		long elapsed = System.nanoTime() - attributed[0] - start;
+		attributed[0] += elapsed;
+		counts_.incrementAndGet(phase.ordinal());
+		totals_.addAndGet(phase.ordinal(), elapsed);
+	}
+
+	/**
+	 * The timed phases of an episode step.
+	 *
+	 * @author Sam Sarjant
+	 */
+	public enum Phase {
+		/** Asserting the state facts and running the background rules. */
+		FACT_ASSERTION,
+		/** Generating the valid actions from the Rete. */
+		VALID_ACTIONS,
+		/** Evaluating the policy rules against the state. */
+		POLICY_EVALUATION,
+		/** Covering the state to form the RLGG rules. */
+		COVERING,
+		/**
+		 * Waiting for the covering worker and publishing its RLGG rules (the
+		 * worker's own scans are timed as COVERING).
+		 */
+		COVERING_DRAIN,
+		/** Updating the cross-entropy distributions. */
+		CE_UPDATE;
+	}
+}